@@ -0,0 +1,102 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.benchmarks;
+
+import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
+import com.palantir.isofilereader.isofilereader.IsoFileReader;
+import com.palantir.isofilereader.isofilereader.iso.TraditionalIsoReader;
+import com.palantir.isofilereader.isofilereader.iso.types.AbstractVolumeDescriptor;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the hot paths of opening, indexing, looking up and extracting from an image. Every benchmark runs
+ * against the synthetic images of {@link SyntheticImageState}, so results are comparable between machines and runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmarks {
+    @State(Scope.Thread)
+    public static class StreamBuffer {
+        @Param({"4096", "65536", "1048576"})
+        public int bufferSize;
+    }
+
+    @Benchmark
+    public AbstractVolumeDescriptor[] volumeDescriptors(SyntheticImageState state) throws Exception {
+        // A fresh reader each time, so the descriptor set is read and parsed rather than served from its cache
+        return new TraditionalIsoReader(state.image).getVolumeDescriptors();
+    }
+
+    @Benchmark
+    public AbstractVolumeDescriptor[] volumeDescriptorsCached(SyntheticImageState state) throws Exception {
+        return state.reader.getTraditionalIsoReader().getVolumeDescriptors();
+    }
+
+    @Benchmark
+    public String findOptimalSettings(SyntheticImageState state) throws Exception {
+        // The default constructor runs findOptimalSettings, closing releases the handles it opened
+        try (IsoFileReader reader = new IsoFileReader(state.image)) {
+            return reader.getCurrentSetting();
+        }
+    }
+
+    @Benchmark
+    public GenericInternalIsoFile[] isoIndexing(SyntheticImageState state) throws Exception {
+        try (IsoFileReader reader = new IsoFileReader(state.image, state.reader.getCurrentSetting())) {
+            return reader.getAllFiles();
+        }
+    }
+
+    @Benchmark
+    public Optional<GenericInternalIsoFile> pathLookup(SyntheticImageState state) {
+        return state.reader.getSpecificFileByName(state.tree, state.deepestFilePath);
+    }
+
+    @Benchmark
+    public byte[] getFileBytes(SyntheticImageState state) throws Exception {
+        return state.reader.getFileBytes(state.deepestFile);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long isoInputStreamThroughput(SyntheticImageState state, StreamBuffer buffer) throws Exception {
+        byte[] data = new byte[buffer.bufferSize];
+        long total = 0;
+        try (InputStream stream = state.reader.getFileStream(state.largeFile)) {
+            int read;
+            while ((read = stream.read(data, 0, data.length)) > 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.benchmarks;
+
+import com.palantir.isofilereader.fixtures.SyntheticImageGenerator;
+import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
+import com.palantir.isofilereader.isofilereader.IsoFileReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Generates one plain ISO-9660 synthetic image per scale into a temporary file and keeps an indexed reader open on it.
+ */
+@State(Scope.Benchmark)
+public class SyntheticImageState {
+    static final long LARGE_FILE_SIZE = 64L * 1024 * 1024;
+
+    @Param({"small", "medium", "large"})
+    public String scale;
+
+    File image;
+    IsoFileReader reader;
+    GenericInternalIsoFile[] tree;
+    String deepestFilePath;
+    GenericInternalIsoFile deepestFile;
+    GenericInternalIsoFile largeFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticImageGenerator generator =
+                shape(scale).joliet(false).rockRidge(false).udf(false).largeFileSize(LARGE_FILE_SIZE);
+        image = Files.createTempFile("isofilereader-" + scale, ".iso").toFile();
+        generator.write(image);
+        deepestFilePath = generator.deepestIsoFilePath();
+
+        reader = new IsoFileReader(image);
+        tree = reader.getAllFiles();
+        deepestFile = required(reader.getSpecificFileByName(tree, deepestFilePath));
+        largeFile = required(reader.getSpecificFileByName(tree, "/LARGE.BIN"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        Files.deleteIfExists(image.toPath());
+    }
+
+    /**
+     * Tree shape shared by the benchmarks for each scale.
+     *
+     * @param scale small, medium or large
+     * @return generator with depth and fan out set
+     */
+    static SyntheticImageGenerator shape(String scale) {
+        switch (scale) {
+            case "small":
+                return new SyntheticImageGenerator()
+                        .depth(2)
+                        .directoriesPerDirectory(4)
+                        .filesPerDirectory(16);
+            case "medium":
+                return new SyntheticImageGenerator()
+                        .depth(3)
+                        .directoriesPerDirectory(8)
+                        .filesPerDirectory(32);
+            case "large":
+                return new SyntheticImageGenerator()
+                        .depth(3)
+                        .directoriesPerDirectory(16)
+                        .filesPerDirectory(64);
+            default:
+                throw new IllegalArgumentException("Unknown scale " + scale);
+        }
+    }
+
+    private static GenericInternalIsoFile required(Optional<GenericInternalIsoFile> file) {
+        return file.orElseThrow(() -> new IllegalStateException("Generated image is missing an expected file"));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.benchmarks;
+
+import com.palantir.isofilereader.fixtures.SyntheticImageGenerator;
+import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
+import com.palantir.isofilereader.isofilereader.IsoFileReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * UDF benchmarks against synthetic images that carry ISO-9660, Joliet, Rock Ridge and a UDF 2.60 bridge, with long
+ * names so every name format is exercised. Larger trees can be run with -p scale=... using the scales of
+ * {@link SyntheticImageState}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UdfBenchmarks {
+    @Param({"small", "medium", "large"})
+    public String scale;
+
+    File image;
+    IsoFileReader reader;
+    GenericInternalIsoFile[] tree;
+    String deepestFilePath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticImageGenerator generator = SyntheticImageState.shape(scale).nameLength(64);
+        image = Files.createTempFile("isofilereader-udf-" + scale, ".iso").toFile();
+        generator.write(image);
+        deepestFilePath = generator.deepestFilePath();
+        reader = new IsoFileReader(image, "1,0,0");
+        tree = reader.getAllFiles();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        Files.deleteIfExists(image.toPath());
+    }
+
+    @Benchmark
+    public GenericInternalIsoFile[] udfIndexing() throws Exception {
+        try (IsoFileReader indexing = new IsoFileReader(image, "1,0,0")) {
+            return indexing.getAllFiles();
+        }
+    }
+
+    @Benchmark
+    public Optional<GenericInternalIsoFile> udfPathLookup() {
+        return reader.getSpecificFileByName(tree, deepestFilePath);
+    }
+}
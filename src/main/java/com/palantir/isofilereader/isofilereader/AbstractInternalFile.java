@@ -16,6 +16,9 @@
 
 package com.palantir.isofilereader.isofilereader;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Date;
 import java.util.Optional;
 
@@ -62,6 +65,25 @@ public abstract class AbstractInternalFile<T> {
      */
     public abstract Optional<Date> getDateAsDate();
 
+    /**
+     * Get the date the file was recorded, with the offset from GMT it was recorded with. This default is built from
+     * getDateAsDate, which has no offset, so it is given in UTC; subclasses that know the recorded offset override it.
+     *
+     * @return OffsetDateTime object
+     */
+    public Optional<OffsetDateTime> getDateAsOffsetDateTime() {
+        return getDateAsDate().map(date -> date.toInstant().atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Get the date the file was recorded as an Instant. This default is built from getDateAsDate.
+     *
+     * @return Instant object
+     */
+    public Optional<Instant> getDateAsInstant() {
+        return getDateAsDate().map(Date::toInstant);
+    }
+
     /**
      * Get the filename of the entry.
      *
@@ -0,0 +1,117 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes the little endian, big endian and both byte order numeric fields of ECMA-119 and ECMA-167 structures
+ * straight out of byte arrays. Reads go through VarHandle byte array views, so decoding never copies, wraps or
+ * allocates, and bounds are checked once per read.
+ */
+public final class BinaryFields {
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private BinaryFields() {}
+
+    /**
+     * Unsigned 8 bit value, ECMA-119 7.1.1 / ECMA-167 1/7.1.1.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value 0 to 255
+     */
+    public static int uint8(byte[] data, int offset) {
+        return Byte.toUnsignedInt(data[offset]);
+    }
+
+    /**
+     * Unsigned 16 bit little endian value, ECMA-119 7.2.1 / ECMA-167 1/7.1.3.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value 0 to 65535
+     */
+    public static int uint16Le(byte[] data, int offset) {
+        return Short.toUnsignedInt((short) SHORT_LE.get(data, offset));
+    }
+
+    /**
+     * Unsigned 16 bit big endian value, ECMA-119 7.2.2. For both byte order fields (7.2.3) read the big endian half
+     * at offset + 2.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value 0 to 65535
+     */
+    public static int uint16Be(byte[] data, int offset) {
+        return Short.toUnsignedInt((short) SHORT_BE.get(data, offset));
+    }
+
+    /**
+     * Signed 32 bit little endian value.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value
+     */
+    public static int int32Le(byte[] data, int offset) {
+        return (int) INT_LE.get(data, offset);
+    }
+
+    /**
+     * Unsigned 32 bit little endian value, ECMA-119 7.3.1 / ECMA-167 1/7.1.5.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value 0 to 2^32 - 1
+     */
+    public static long uint32Le(byte[] data, int offset) {
+        return Integer.toUnsignedLong((int) INT_LE.get(data, offset));
+    }
+
+    /**
+     * Unsigned 32 bit big endian value, ECMA-119 7.3.2. For both byte order fields (7.3.3) read the big endian half
+     * at offset + 4.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value 0 to 2^32 - 1
+     */
+    public static long uint32Be(byte[] data, int offset) {
+        return Integer.toUnsignedLong((int) INT_BE.get(data, offset));
+    }
+
+    /**
+     * 64 bit little endian value, ECMA-167 1/7.1.7.
+     *
+     * @param data array holding the field
+     * @param offset offset of the field
+     * @return value, values above Long.MAX_VALUE come back negative
+     */
+    public static long int64Le(byte[] data, int offset) {
+        return (long) LONG_LE.get(data, offset);
+    }
+}
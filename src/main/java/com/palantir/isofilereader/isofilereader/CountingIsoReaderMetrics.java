@@ -0,0 +1,247 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IsoReaderMetrics that keeps running totals, safe to share between readers and threads. Totals can be read at any
+ * time, for example to export to a metrics system, or printed with toString.
+ */
+public final class CountingIsoReaderMetrics implements IsoReaderMetrics {
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder readCalls = new LongAdder();
+    private final LongAdder seeks = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> cacheHits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> cacheMisses = new ConcurrentHashMap<>();
+    private final LongAdder directorySectorsParsed = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> descriptorsParsed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, LongAdder> volumeDescriptorsParsed = new ConcurrentHashMap<>();
+    private final LongAdder findOptimalSettingsNanos = new LongAdder();
+    private final LongAdder indexingNanos = new LongAdder();
+    private final LongAdder extractionNanos = new LongAdder();
+
+    @Override
+    public void read(long bytes) {
+        readCalls.increment();
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public void seek() {
+        seeks.increment();
+    }
+
+    @Override
+    public void cacheHit(String cache) {
+        cacheHits.computeIfAbsent(cache, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void cacheMiss(String cache) {
+        cacheMisses.computeIfAbsent(cache, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void directorySectorsParsed(long sectors) {
+        directorySectorsParsed.add(sectors);
+    }
+
+    @Override
+    public void descriptorParsed(int tagIdentifier) {
+        descriptorsParsed.computeIfAbsent(tagIdentifier, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void volumeDescriptorParsed(int volumeDescriptorType) {
+        volumeDescriptorsParsed
+                .computeIfAbsent(volumeDescriptorType, key -> new LongAdder())
+                .increment();
+    }
+
+    @Override
+    public void findOptimalSettingsTime(long nanos) {
+        findOptimalSettingsNanos.add(nanos);
+    }
+
+    @Override
+    public void indexingTime(long nanos) {
+        indexingNanos.add(nanos);
+    }
+
+    @Override
+    public void extractionTime(long nanos) {
+        extractionNanos.add(nanos);
+    }
+
+    /**
+     * Total bytes returned by read calls against the image.
+     *
+     * @return bytes
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Total read calls (syscalls) against the image.
+     *
+     * @return count of reads
+     */
+    public long getReadCalls() {
+        return readCalls.sum();
+    }
+
+    /**
+     * Total seeks on RandomAccessFile handles of the image.
+     *
+     * @return count of seeks
+     */
+    public long getSeeks() {
+        return seeks.sum();
+    }
+
+    /**
+     * Cache hits over every cache.
+     *
+     * @return count of hits
+     */
+    public long getCacheHits() {
+        return sum(cacheHits);
+    }
+
+    /**
+     * Cache hits of one cache.
+     *
+     * @param cache name of the cache
+     * @return count of hits
+     */
+    public long getCacheHits(String cache) {
+        LongAdder hits = cacheHits.get(cache);
+        return hits == null ? 0 : hits.sum();
+    }
+
+    /**
+     * Cache misses over every cache.
+     *
+     * @return count of misses
+     */
+    public long getCacheMisses() {
+        return sum(cacheMisses);
+    }
+
+    /**
+     * Cache misses of one cache.
+     *
+     * @param cache name of the cache
+     * @return count of misses
+     */
+    public long getCacheMisses(String cache) {
+        LongAdder misses = cacheMisses.get(cache);
+        return misses == null ? 0 : misses.sum();
+    }
+
+    /**
+     * Directory sectors parsed, ISO-9660 and UDF.
+     *
+     * @return count of sectors
+     */
+    public long getDirectorySectorsParsed() {
+        return directorySectorsParsed.sum();
+    }
+
+    /**
+     * UDF descriptors parsed, by tag identifier.
+     *
+     * @return sorted map of tag identifier to count
+     */
+    public Map<Integer, Long> getDescriptorsParsed() {
+        return snapshot(descriptorsParsed);
+    }
+
+    /**
+     * ISO-9660 volume descriptors parsed, by volume descriptor type.
+     *
+     * @return sorted map of type to count
+     */
+    public Map<Integer, Long> getVolumeDescriptorsParsed() {
+        return snapshot(volumeDescriptorsParsed);
+    }
+
+    /**
+     * Time spent in findOptimalSettings.
+     *
+     * @return nanoseconds
+     */
+    public long getFindOptimalSettingsNanos() {
+        return findOptimalSettingsNanos.sum();
+    }
+
+    /**
+     * Time spent indexing.
+     *
+     * @return nanoseconds
+     */
+    public long getIndexingNanos() {
+        return indexingNanos.sum();
+    }
+
+    /**
+     * Time spent in getFileBytes.
+     *
+     * @return nanoseconds
+     */
+    public long getExtractionNanos() {
+        return extractionNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CountingIsoReaderMetrics{bytesRead=" + getBytesRead()
+                + ", readCalls=" + getReadCalls()
+                + ", seeks=" + getSeeks()
+                + ", cacheHits=" + snapshot(cacheHits)
+                + ", cacheMisses=" + snapshot(cacheMisses)
+                + ", directorySectorsParsed=" + getDirectorySectorsParsed()
+                + ", descriptorsParsed=" + getDescriptorsParsed()
+                + ", volumeDescriptorsParsed=" + getVolumeDescriptorsParsed()
+                + ", findOptimalSettingsNanos=" + getFindOptimalSettingsNanos()
+                + ", indexingNanos=" + getIndexingNanos()
+                + ", extractionNanos=" + getExtractionNanos()
+                + '}';
+    }
+
+    private static long sum(Map<?, LongAdder> counters) {
+        long total = 0;
+        for (LongAdder counter : counters.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    private static <K> Map<K, Long> snapshot(Map<K, LongAdder> counters) {
+        Map<K, Long> copy = new TreeMap<>();
+        for (Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().sum());
+        }
+        return copy;
+    }
+}
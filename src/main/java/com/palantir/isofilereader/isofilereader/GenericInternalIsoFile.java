@@ -16,7 +16,14 @@
 
 package com.palantir.isofilereader.isofilereader;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -25,6 +32,19 @@ import java.util.Optional;
  */
 @SuppressWarnings("StrictUnusedVariable")
 public abstract class GenericInternalIsoFile extends AbstractInternalFile<GenericInternalIsoFile> {
+    // Folders with fewer children are scanned, a hash index only pays off above this
+    private static final int CHILD_INDEX_THRESHOLD = 16;
+
+    // Building list, replaced by frozenChildren once the tree is frozen
+    private List<GenericInternalIsoFile> children = new ArrayList<>();
+    private volatile GenericInternalIsoFile[] frozenChildren;
+    private List<GenericInternalIsoFile> frozenView;
+    // Built on the first lookup by name, cleared when children are added
+    private volatile Map<String, GenericInternalIsoFile> childIndex;
+    private volatile Map<String, GenericInternalIsoFile> caseInsensitiveChildIndex;
+    // Built on the first getFullFileName call for a separator
+    private volatile CachedFullFileName cachedFullFileName;
+
     /**
      * getChildren should return the child files to this file, assuming this file is a folder.
      * @return Array of child files
@@ -34,6 +54,130 @@ public abstract class GenericInternalIsoFile extends AbstractInternalFile<Generi
         return new GenericInternalIsoFile[0];
     }
 
+    /**
+     * The child files as a read only list. For a frozen folder this is a view over the children with no copying, and
+     * the same list is returned on every call, otherwise it is a single copy of the children.
+     *
+     * @return List of child files
+     */
+    public List<? extends GenericInternalIsoFile> getChildrenList() {
+        if (frozenChildren != null) {
+            return frozenView;
+        }
+        return List.copyOf(children);
+    }
+
+    /**
+     * Copy of the children for getChildren, in an array of the implementation's type.
+     *
+     * @param empty empty array of the type to return
+     * @param <T> implementation type
+     * @return children of this folder
+     */
+    @SuppressWarnings("unchecked")
+    protected final <T extends GenericInternalIsoFile> T[] copyChildren(T[] empty) {
+        GenericInternalIsoFile[] frozen = frozenChildren;
+        if (frozen != null) {
+            return Arrays.copyOf(frozen, frozen.length, (Class<T[]>) empty.getClass());
+        }
+        return children.toArray(empty);
+    }
+
+    /**
+     * Add children to this folder, implementations call this from addChild and addChildren before setting the parent
+     * of each child.
+     *
+     * @param added children to add
+     * @throws IllegalStateException the tree is frozen
+     */
+    protected final void appendChildren(GenericInternalIsoFile... added) {
+        if (frozenChildren != null) {
+            throw new IllegalStateException("Can not add children to a frozen tree: " + getFileName());
+        }
+        children.addAll(Arrays.asList(added));
+        childrenChanged();
+    }
+
+    /**
+     * Find a child of this folder by name. The ";1" style version suffix is ignored on both sides, and case is
+     * ignored if asked. Large folders build a hash index of their children on the first lookup, so later lookups take
+     * constant time. If two children have the same name, the first one is found.
+     *
+     * @param name name of the child, without parent folders
+     * @param caseInsensitive true to compare names ignoring case
+     * @return the child, or empty if there is none with that name
+     */
+    public Optional<GenericInternalIsoFile> findChild(String name, boolean caseInsensitive) {
+        String wanted = normalizeName(name, caseInsensitive);
+        Map<String, GenericInternalIsoFile> index = caseInsensitive ? caseInsensitiveChildIndex : childIndex;
+        if (index == null) {
+            List<? extends GenericInternalIsoFile> children = getChildrenList();
+            if (children.size() < CHILD_INDEX_THRESHOLD) {
+                for (GenericInternalIsoFile child : children) {
+                    if (wanted.equals(normalizeName(child.getFileName(), caseInsensitive))) {
+                        return Optional.of(child);
+                    }
+                }
+                return Optional.empty();
+            }
+            index = new HashMap<>((int) (children.size() / 0.75f) + 1);
+            for (GenericInternalIsoFile child : children) {
+                index.putIfAbsent(normalizeName(child.getFileName(), caseInsensitive), child);
+            }
+            if (caseInsensitive) {
+                caseInsensitiveChildIndex = index;
+            } else {
+                childIndex = index;
+            }
+        }
+        return Optional.ofNullable(index.get(wanted));
+    }
+
+    /**
+     * Name as compared by findChild, anything from the first ';' on (the ISO-9660 version) is dropped.
+     *
+     * @param name file name
+     * @param caseInsensitive true to fold the name to lower case
+     * @return normalized name
+     */
+    public static String normalizeName(String name, boolean caseInsensitive) {
+        int version = name.indexOf(';');
+        String normalized = version < 0 ? name : name.substring(0, version);
+        return caseInsensitive ? normalized.toLowerCase(Locale.ROOT) : normalized;
+    }
+
+    private void childrenChanged() {
+        childIndex = null;
+        caseInsensitiveChildIndex = null;
+    }
+
+    /**
+     * Freeze this file and everything under it. Children are moved into fixed arrays, adding children afterwards
+     * throws IllegalStateException, and the tree can be shared between threads once the freezing thread publishes it.
+     */
+    public final void freeze() {
+        if (frozenChildren != null) {
+            return;
+        }
+        GenericInternalIsoFile[] frozen = children.toArray(new GenericInternalIsoFile[0]);
+        for (GenericInternalIsoFile child : frozen) {
+            child.freeze();
+        }
+        frozenView = Collections.unmodifiableList(Arrays.asList(frozen));
+        // The volatile write publishes the array, the view and everything below it
+        frozenChildren = frozen;
+        children = null;
+    }
+
+    /**
+     * Check if freeze has been called on this file or a folder above it.
+     *
+     * @return true if the children can no longer change
+     */
+    public final boolean isFrozen() {
+        return frozenChildren != null;
+    }
+
     /**
      * Add a single child file to this, now, presumed directory. Also update the child object, marking this file as
      * its parent.
@@ -101,9 +245,34 @@ public abstract class GenericInternalIsoFile extends AbstractInternalFile<Generi
      */
     @Override
     public String getFullFileName(char separatorChar) {
+        CachedFullFileName cached = cachedFullFileName;
+        if (cached != null && cached.separatorChar == separatorChar) {
+            return cached.fullFileName;
+        }
+        String fullFileName = buildFullFileName(separatorChar);
+        if (fullFileName != null) {
+            cachedFullFileName = new CachedFullFileName(separatorChar, fullFileName);
+        }
+        return fullFileName;
+    }
+
+    /**
+     * Build the full filename for getFullFileName, which keeps the result for the separator it was built with.
+     *
+     * @param separatorChar separator to join the names with
+     * @return string of name
+     */
+    protected String buildFullFileName(char separatorChar) {
         return null;
     }
 
+    /**
+     * Drop the full filename kept by getFullFileName, for when something it was built from, such as the parent, changes.
+     */
+    protected final void clearFullFileName() {
+        cachedFullFileName = null;
+    }
+
     /**
      * Size of the file, implementors of this class should make sure whatever method their table of contents uses
      * returns a file size here.
@@ -134,4 +303,17 @@ public abstract class GenericInternalIsoFile extends AbstractInternalFile<Generi
     public long getLogicalSectorLocation() {
         return 0;
     }
+
+    /**
+     * A full file name with the separator it was joined with, replaced as a whole so readers never see a mix.
+     */
+    private static final class CachedFullFileName {
+        private final char separatorChar;
+        private final String fullFileName;
+
+        private CachedFullFileName(char separatorChar, String fullFileName) {
+            this.separatorChar = separatorChar;
+            this.fullFileName = fullFileName;
+        }
+    }
 }
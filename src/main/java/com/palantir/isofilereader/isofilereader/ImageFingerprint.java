@@ -0,0 +1,418 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import com.palantir.isofilereader.isofilereader.io.SectorSource;
+import com.palantir.isofilereader.isofilereader.iso.IsoFormatInternalDataFile;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
+import com.palantir.isofilereader.isofilereader.udf.UdfInternalDataFile;
+import com.palantir.isofilereader.isofilereader.udf.types.files.FileEntry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+
+/**
+ * Merkle tree fingerprint of a whole image. The image is cut into leaves of a fixed number of sectors, every byte of
+ * each leaf is hashed with CRC32C, and pairs of hashes are hashed again up to a single root. Unlike the image IV, which
+ * is all or nothing, comparing two fingerprints of a rebuilt image tells which leaves changed, so a cache only has to
+ * revalidate files whose data falls in those leaves.
+ *
+ * <p>The fingerprint is written as M1|leafSize|length|leaf hashes, eight hex digits per leaf, and read back with
+ * parse.
+ */
+public final class ImageFingerprint {
+    // 2048 sectors, 4 MiB leaves keep the fingerprint of a DVD image near 9 KB of text
+    public static final int DEFAULT_LEAF_SECTORS = 2048;
+    private static final String PREFIX = "M1";
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private final int leafSize;
+    private final long length;
+    // levels[0] are the leaves, the last level holds only the root
+    private final int[][] levels;
+
+    private ImageFingerprint(int leafSize, long length, int[] leaves) {
+        this.leafSize = leafSize;
+        this.length = length;
+        this.levels = buildLevels(leaves);
+    }
+
+    /**
+     * Hash the whole image, reading each leaf sequentially. Leaves are hashed in parallel on the executor, or on the
+     * calling thread if the executor is null.
+     *
+     * @param source positional source of the image
+     * @param leafSectors sectors in each leaf
+     * @param executor executor to hash leaves on, or null
+     * @return fingerprint of the image
+     * @throws IOException failure reading the image
+     */
+    public static ImageFingerprint compute(SectorSource source, int leafSectors, Executor executor) throws IOException {
+        if (leafSectors <= 0 || leafSectors > Integer.MAX_VALUE / IsoFormatConstant.BYTES_PER_SECTOR) {
+            throw new IllegalArgumentException("Leaf sectors out of range: " + leafSectors);
+        }
+        int leafSize = leafSectors * IsoFormatConstant.BYTES_PER_SECTOR;
+        long length = source.length();
+        int leafCount = Math.toIntExact((length + leafSize - 1) / leafSize);
+        int[] leaves = new int[leafCount];
+        if (executor == null) {
+            byte[] buffer = new byte[Math.min(leafSize, READ_BUFFER_SIZE)];
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                leaves[leaf] = hashLeaf(source, leaf, leafSize, length, buffer);
+            }
+            return new ImageFingerprint(leafSize, length, leaves);
+        }
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(leafCount);
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            int index = leaf;
+            tasks.add(CompletableFuture.runAsync(
+                    () -> {
+                        try {
+                            byte[] buffer = new byte[Math.min(leafSize, READ_BUFFER_SIZE)];
+                            leaves[index] = hashLeaf(source, index, leafSize, length, buffer);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    },
+                    executor));
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException && e.getCause().getCause() instanceof IOException) {
+                throw (IOException) e.getCause().getCause();
+            }
+            throw e;
+        }
+        return new ImageFingerprint(leafSize, length, leaves);
+    }
+
+    /**
+     * Read a fingerprint written by toString.
+     *
+     * @param fingerprint string from toString
+     * @return the fingerprint
+     * @throws IllegalArgumentException the string is not a fingerprint
+     */
+    public static ImageFingerprint parse(String fingerprint) {
+        String[] fields = fingerprint.split("\\|", -1);
+        if (fields.length != 4 || !fields[0].equals(PREFIX)) {
+            throw new IllegalArgumentException("Not an image fingerprint");
+        }
+        int leafSize = Integer.parseInt(fields[1]);
+        long length = Long.parseLong(fields[2]);
+        if (leafSize <= 0
+                || length < 0
+                || fields[3].length() % 8 != 0
+                || fields[3].length() / 8 != (length + leafSize - 1) / leafSize) {
+            throw new IllegalArgumentException("Image fingerprint fields do not agree");
+        }
+        int[] leaves = new int[fields[3].length() / 8];
+        for (int leaf = 0; leaf < leaves.length; leaf++) {
+            leaves[leaf] = Integer.parseUnsignedInt(fields[3].substring(leaf * 8, leaf * 8 + 8), 16);
+        }
+        return new ImageFingerprint(leafSize, length, leaves);
+    }
+
+    /**
+     * Bytes covered by each leaf, the last leaf may be shorter.
+     *
+     * @return leaf size in bytes
+     */
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * Length of the image that was hashed.
+     *
+     * @return length in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Number of leaves.
+     *
+     * @return leaf count
+     */
+    public int getLeafCount() {
+        return levels[0].length;
+    }
+
+    /**
+     * Root of the tree, equal roots mean every leaf is equal.
+     *
+     * @return root hash as eight hex digits
+     */
+    public String getRoot() {
+        int[] top = levels[levels.length - 1];
+        return top.length == 0 ? toHex(0) : toHex(top[0]);
+    }
+
+    /**
+     * Find the leaves that differ from another fingerprint of the same leaf size. When both images have the same
+     * length only subtrees whose hashes differ are walked, otherwise leaves are compared one by one and leaves that
+     * exist in only one of them count as changed.
+     *
+     * @param other fingerprint of the other image
+     * @return set of changed leaf indexes
+     * @throws IllegalArgumentException the leaf sizes differ
+     */
+    public BitSet changedLeaves(ImageFingerprint other) {
+        if (other.leafSize != leafSize) {
+            throw new IllegalArgumentException("Fingerprints use different leaf sizes");
+        }
+        BitSet changed = new BitSet();
+        if (other.length == length) {
+            if (levels[0].length > 0) {
+                collectChanged(other, levels.length - 1, 0, changed);
+            }
+            return changed;
+        }
+        int shared = Math.min(getLeafCount(), other.getLeafCount());
+        for (int leaf = 0; leaf < shared; leaf++) {
+            if (levels[0][leaf] != other.levels[0][leaf]) {
+                changed.set(leaf);
+            }
+        }
+        changed.set(shared, Math.max(getLeafCount(), other.getLeafCount()));
+        // The last shared leaf can cover a different number of bytes in each image
+        if (shared > 0) {
+            changed.set(shared - 1);
+        }
+        return changed;
+    }
+
+    /**
+     * Check whether the bytes of a file extent fall only in unchanged leaves.
+     *
+     * @param changedLeaves result of changedLeaves
+     * @param logicalSector logical sector the extent starts at
+     * @param size size of the extent in bytes
+     * @return true if no byte of the extent is in a changed leaf
+     */
+    public boolean isExtentUnchanged(BitSet changedLeaves, long logicalSector, long size) {
+        if (size <= 0) {
+            return true;
+        }
+        long start = logicalSector * IsoFormatConstant.BYTES_PER_SECTOR;
+        int first = (int) (start / leafSize);
+        int last = (int) ((start + size - 1) / leafSize);
+        int next = changedLeaves.nextSetBit(first);
+        return next < 0 || next > last;
+    }
+
+    /**
+     * Check whether the data of a file IV, of either version, falls only in unchanged leaves. A file that passes was
+     * not touched by the rebuild, so its stored IV still holds without checking it again. A file IV records a single
+     * extent, so this is only right for files stored in one extent, use the GenericInternalIsoFile variant to have
+     * that checked.
+     *
+     * @param changedLeaves result of changedLeaves
+     * @param fileIv Initialization vector of the file
+     * @return true if no byte of the file is in a changed leaf
+     */
+    public boolean isFileUnchanged(BitSet changedLeaves, String fileIv) {
+        String[] fields = fileIv.split("\\|", -1);
+        return isExtentUnchanged(changedLeaves, Long.parseLong(fields[4]), Long.parseLong(fields[3]));
+    }
+
+    /**
+     * Check whether the data of a file falls only in unchanged leaves. Only files stored in one extent are checked, a
+     * UDF file with more than one allocation descriptor or with its data embedded in its File Entry, or any ISO-9660
+     * record of a multi-extent file, the last one included, is reported as changed so it gets a full check instead.
+     * ISO-9660 records are told apart by their siblings, so they must come from an index with parents set.
+     *
+     * @param changedLeaves result of changedLeaves
+     * @param file file from the index of the image
+     * @return true if the file is in one extent and no byte of it is in a changed leaf
+     */
+    public boolean isFileUnchanged(BitSet changedLeaves, GenericInternalIsoFile file) {
+        return isSingleExtent(file)
+                && isExtentUnchanged(changedLeaves, file.getLogicalSectorLocation(), file.getSize());
+    }
+
+    private static boolean isSingleExtent(GenericInternalIsoFile file) {
+        if (file instanceof UdfInternalDataFile) {
+            FileEntry entry = ((UdfInternalDataFile) file).getThisFileEntry();
+            int descriptorSize;
+            // ECMA-167 4/14.6.8, the low 3 bits of the ICB flags give the allocation descriptor type
+            switch (entry.getIcbTag().getFlags()[0] & 0x07) {
+                case 0:
+                    descriptorSize = 8;
+                    break;
+                case 1:
+                    descriptorSize = 16;
+                    break;
+                case 2:
+                    descriptorSize = 20;
+                    break;
+                default:
+                    return false;
+            }
+            return entry.getLengthOfAllocationDescriptorsAsInt() <= descriptorSize;
+        }
+        if (file instanceof IsoFormatInternalDataFile) {
+            return isSingleIsoExtent((IsoFormatInternalDataFile) file);
+        }
+        return false;
+    }
+
+    private static boolean isSingleIsoExtent(IsoFormatInternalDataFile file) {
+        Optional<IsoFormatDirectoryRecord> record = file.getUnderlyingRecord();
+        // Multi-Extent flag, ECMA-119 9.1.6
+        if (record.isEmpty() || (record.get().getFileFlags() & 0x80) != 0) {
+            return false;
+        }
+        // The last record of a multi-extent file has the flag clear, it follows a record of the same name that has it
+        IsoFormatInternalDataFile parent = file.getParent();
+        if (parent == null) {
+            return false;
+        }
+        List<? extends GenericInternalIsoFile> siblings = parent.getChildrenList();
+        for (int i = 0; i < siblings.size(); i++) {
+            if (siblings.get(i) != file) {
+                continue;
+            }
+            if (i == 0) {
+                return true;
+            }
+            Optional<IsoFormatDirectoryRecord> previous =
+                    ((IsoFormatInternalDataFile) siblings.get(i - 1)).getUnderlyingRecord();
+            return previous.isEmpty()
+                    || (previous.get().getFileFlags() & 0x80) == 0
+                    || !Arrays.equals(
+                            previous.get().getFileIdentifier(), record.get().getFileIdentifier());
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        int[] leaves = levels[0];
+        StringBuilder sb = new StringBuilder(32 + leaves.length * 8);
+        sb.append(PREFIX)
+                .append('|')
+                .append(leafSize)
+                .append('|')
+                .append(length)
+                .append('|');
+        for (int leaf : leaves) {
+            sb.append(toHex(leaf));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ImageFingerprint)) {
+            return false;
+        }
+        ImageFingerprint that = (ImageFingerprint) other;
+        return leafSize == that.leafSize && length == that.length && Arrays.equals(levels[0], that.levels[0]);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(length) + Arrays.hashCode(levels[0]);
+    }
+
+    private void collectChanged(ImageFingerprint other, int level, int node, BitSet changed) {
+        if (levels[level][node] == other.levels[level][node]) {
+            return;
+        }
+        if (level == 0) {
+            changed.set(node);
+            return;
+        }
+        int left = node * 2;
+        collectChanged(other, level - 1, left, changed);
+        if (left + 1 < levels[level - 1].length) {
+            collectChanged(other, level - 1, left + 1, changed);
+        }
+    }
+
+    private static int hashLeaf(SectorSource source, int leaf, int leafSize, long length, byte[] buffer)
+            throws IOException {
+        CRC32C crc = new CRC32C();
+        long position = (long) leaf * leafSize;
+        long end = Math.min(position + leafSize, length);
+        while (position < end) {
+            int read = source.readFully(position, buffer, 0, (int) Math.min(buffer.length, end - position));
+            if (read <= 0) {
+                throw new IOException("Image ended before its reported length");
+            }
+            crc.update(buffer, 0, read);
+            position += read;
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Each node hashes the eight bytes of its two children, a node without a right child is carried up unchanged.
+     */
+    private static int[][] buildLevels(int[] leaves) {
+        List<int[]> levels = new ArrayList<>();
+        levels.add(leaves);
+        int[] current = leaves;
+        byte[] pair = new byte[8];
+        while (current.length > 1) {
+            int[] parent = new int[(current.length + 1) / 2];
+            for (int node = 0; node < parent.length; node++) {
+                int left = node * 2;
+                if (left + 1 == current.length) {
+                    parent[node] = current[left];
+                    continue;
+                }
+                putInt(pair, 0, current[left]);
+                putInt(pair, 4, current[left + 1]);
+                CRC32C crc = new CRC32C();
+                crc.update(pair, 0, pair.length);
+                parent[node] = (int) crc.getValue();
+            }
+            levels.add(parent);
+            current = parent;
+        }
+        return levels.toArray(new int[0][]);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static String toHex(int value) {
+        String hex = Integer.toHexString(value);
+        return "00000000".substring(hex.length()) + hex;
+    }
+}
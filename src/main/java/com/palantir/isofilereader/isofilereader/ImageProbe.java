@@ -0,0 +1,266 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import com.palantir.isofilereader.isofilereader.io.FileChannelSectorSource;
+import com.palantir.isofilereader.isofilereader.io.MeteredSectorSource;
+import com.palantir.isofilereader.isofilereader.io.SectorSource;
+import com.palantir.isofilereader.isofilereader.iso.types.AbstractVolumeDescriptor;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
+import com.palantir.isofilereader.isofilereader.udf.types.types.Tag;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Classify an image from its descriptors alone, without walking any directory tree. Sectors 16 to 256 are read in
+ * one request, which covers the ISO-9660 volume descriptor set, the UDF volume recognition sequence, the anchors at
+ * sectors 32 and 256 and, on most images, the UDF volume descriptor sequence and the root directory as well. Further
+ * reads only happen when something lives outside that window: the anchors at N - 256 and N when no earlier anchor is
+ * found, the UDF volume descriptor sequence, and the first sector of the root directory for the Rock Ridge check.
+ */
+public final class ImageProbe {
+    private static final int SECTOR = IsoFormatConstant.BYTES_PER_SECTOR;
+    private static final int FIRST_DESCRIPTOR_SECTOR = IsoFormatConstant.BUFFER_SECTORS;
+    // Up to and including the anchor at 256
+    private static final int WINDOW_END_SECTOR = 257;
+    // Bound on how much of a UDF volume descriptor sequence is read when looking for the logical volume descriptor
+    private static final int MAX_VDS_SECTORS = 32;
+    private static final byte[] STANDARD_IDENTIFIER = {'C', 'D', '0', '0', '1'};
+    // Extension identifiers of RRIP 1.09, 1.10 and 1.12
+    private static final Set<String> ROCK_RIDGE_IDS = Set.of("RRIP_1991A", "IEEE_P1282", "IEEE_1282");
+
+    private ImageProbe() {}
+
+    /**
+     * Probe an image file.
+     *
+     * @param isoFile image to classify
+     * @return what was found
+     * @throws IOException failure reading the image
+     */
+    public static ProbedImage probe(File isoFile) throws IOException {
+        return probe(isoFile, IsoReaderMetrics.NO_OP);
+    }
+
+    /**
+     * Probe an image file, reporting reads and the time taken (as findOptimalSettingsTime) to metrics.
+     *
+     * @param isoFile image to classify
+     * @param metrics listener for reads and timing
+     * @return what was found
+     * @throws IOException failure reading the image
+     */
+    public static ProbedImage probe(File isoFile, IsoReaderMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        try (SectorSource source = new MeteredSectorSource(new FileChannelSectorSource(isoFile), metrics)) {
+            return probe(source);
+        } finally {
+            metrics.findOptimalSettingsTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Probe an already open source, the source is not closed.
+     *
+     * @param source image to classify
+     * @return what was found
+     * @throws IOException failure reading the image
+     */
+    public static ProbedImage probe(SectorSource source) throws IOException {
+        long sectors = source.length() / SECTOR;
+        long windowEnd = Math.min(WINDOW_END_SECTOR, sectors);
+        if (windowEnd <= FIRST_DESCRIPTOR_SECTOR) {
+            return new ProbedImage(false, false, false, false, 0, -1, -1);
+        }
+        byte[] window = new byte[(int) (windowEnd - FIRST_DESCRIPTOR_SECTOR) * SECTOR];
+        int windowRead = source.readFully((long) FIRST_DESCRIPTOR_SECTOR * SECTOR, window, 0, window.length);
+        Window probeWindow = new Window(source, window, windowRead / SECTOR);
+
+        // ISO-9660 volume descriptor set, table indexes match TraditionalIsoReader.getVolumeDescriptors()
+        int primaryTable = -1;
+        int jolietTable = -1;
+        long rootDirectorySector = -1;
+        int table = 0;
+        for (int i = 0; i < probeWindow.sectorCount; i++) {
+            int base = i * SECTOR;
+            if (!Arrays.equals(window, base + 1, base + 6, STANDARD_IDENTIFIER, 0, 5)) {
+                break;
+            }
+            int type = Byte.toUnsignedInt(window[base]);
+            if (type == Byte.toUnsignedInt(AbstractVolumeDescriptor.VolumeDescriptorTerminator)) {
+                break;
+            }
+            if (type == AbstractVolumeDescriptor.IsoPrimaryVolumeDescriptor) {
+                if (primaryTable == -1) {
+                    primaryTable = table;
+                    // Root directory record at 156, its extent location (LSB) two bytes in
+                    rootDirectorySector = BinaryFields.uint32Le(window, base + 158);
+                }
+            } else if (type == AbstractVolumeDescriptor.IsoEnhancedVolumeDescriptor) {
+                if (jolietTable == -1 && isJolietEscape(window, base + 88)) {
+                    jolietTable = table;
+                }
+            } else if (type != AbstractVolumeDescriptor.IsoVolumePartitionDescriptor) {
+                // Boot records and anything else are not part of the reader's table list
+                continue;
+            }
+            table++;
+        }
+
+        boolean rockRidge = rootDirectorySector > 0 && hasRockRidge(probeWindow.sector(rootDirectorySector));
+
+        // UDF anchors, same candidates as UdfIsoReader.checkForUdfData()
+        byte[] anchor = null;
+        long[] anchorSectors = {32, 256, sectors - 1 - 256, sectors - 1};
+        for (long anchorSector : anchorSectors) {
+            byte[] candidate = probeWindow.sector(anchorSector);
+            if (candidate != null && new Tag(candidate).verifyValidTag(anchorSector)) {
+                anchor = candidate;
+                break;
+            }
+        }
+        int udfRevision = anchor == null ? 0 : readUdfRevision(probeWindow, anchor);
+
+        return new ProbedImage(
+                primaryTable != -1,
+                jolietTable != -1,
+                rockRidge,
+                anchor != null,
+                udfRevision,
+                primaryTable,
+                jolietTable);
+    }
+
+    private static boolean isJolietEscape(byte[] data, int offset) {
+        // ECMA-35 escape sequences for UCS-2 levels 1, 2 and 3
+        return data[offset] == '%'
+                && data[offset + 1] == '/'
+                && (data[offset + 2] == '@' || data[offset + 2] == 'C' || data[offset + 2] == 'E');
+    }
+
+    /**
+     * Look for the SUSP SP entry in the system use area of the root directory's "." record, followed by an ER entry
+     * naming Rock Ridge, or a CE entry the ER may have been moved to. Images with CD-XA attributes put 14 bytes of
+     * XA data in front of the SP entry.
+     */
+    private static boolean hasRockRidge(byte[] rootSector) {
+        if (rootSector == null) {
+            return false;
+        }
+        int recordLength = Math.min(Byte.toUnsignedInt(rootSector[0]), rootSector.length);
+        int nameLength = Byte.toUnsignedInt(rootSector[32]);
+        int systemUse = 33 + nameLength + (nameLength % 2 == 0 ? 1 : 0);
+        for (int start : new int[] {systemUse, systemUse + 14}) {
+            if (start + 7 <= recordLength
+                    && rootSector[start] == 'S'
+                    && rootSector[start + 1] == 'P'
+                    && rootSector[start + 4] == (byte) 0xBE
+                    && rootSector[start + 5] == (byte) 0xEF) {
+                return hasRockRidgeExtension(rootSector, start, recordLength);
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasRockRidgeExtension(byte[] record, int start, int end) {
+        int entry = start;
+        while (entry + 4 <= end) {
+            int length = Byte.toUnsignedInt(record[entry + 2]);
+            if (length < 4 || entry + length > end) {
+                break;
+            }
+            if (record[entry] == 'C' && record[entry + 1] == 'E') {
+                return true;
+            }
+            if (record[entry] == 'E' && record[entry + 1] == 'R' && length >= 8) {
+                int idLength = Byte.toUnsignedInt(record[entry + 4]);
+                String id = new String(record, entry + 8, Math.min(idLength, length - 8), StandardCharsets.US_ASCII);
+                if (ROCK_RIDGE_IDS.contains(id)) {
+                    return true;
+                }
+            }
+            entry += length;
+        }
+        return false;
+    }
+
+    /**
+     * Follow the anchor's main volume descriptor sequence to the logical volume descriptor and read the revision from
+     * its domain identifier suffix (UDF 2.60 2.1.5.3).
+     */
+    private static int readUdfRevision(Window window, byte[] anchor) throws IOException {
+        long vdsSector = BinaryFields.uint32Le(anchor, 20);
+        int vdsSectors = (int) Math.min(MAX_VDS_SECTORS, (BinaryFields.uint32Le(anchor, 16) + SECTOR - 1) / SECTOR);
+        byte[] sequence = window.sectors(vdsSector, vdsSectors);
+        for (int i = 0; i < sequence.length / SECTOR; i++) {
+            byte[] sector = Arrays.copyOfRange(sequence, i * SECTOR, (i + 1) * SECTOR);
+            Tag tag = new Tag(sector);
+            if (tag.getTagIdentifierAsInt() == Tag.LOGICAL_VOLUME_DESCRIPTOR) {
+                // Domain identifier at 216, its suffix 24 bytes in starts with the revision
+                return BinaryFields.uint16Le(sector, 216 + 24);
+            }
+            if (tag.getTagIdentifierAsInt() == Tag.TERMINATING_DESCRIPTOR) {
+                break;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The leading read, handing out sectors from it and reading single sectors outside it.
+     */
+    private static final class Window {
+        private final SectorSource source;
+        private final byte[] data;
+        private final int sectorCount;
+
+        Window(SectorSource source, byte[] data, int sectorCount) {
+            this.source = source;
+            this.data = data;
+            this.sectorCount = sectorCount;
+        }
+
+        boolean contains(long sector) {
+            return sector >= FIRST_DESCRIPTOR_SECTOR && sector < FIRST_DESCRIPTOR_SECTOR + sectorCount;
+        }
+
+        byte[] sector(long sector) throws IOException {
+            if (sector < 0) {
+                return null;
+            }
+            byte[] single = sectors(sector, 1);
+            return single.length == SECTOR ? single : null;
+        }
+
+        /**
+         * Get count sectors from the window if they are all inside it, otherwise with one read. The array is cut
+         * short at the end of the image.
+         */
+        byte[] sectors(long start, int count) throws IOException {
+            if (contains(start) && contains(start + count - 1)) {
+                int offset = (int) (start - FIRST_DESCRIPTOR_SECTOR) * SECTOR;
+                return Arrays.copyOfRange(data, offset, offset + count * SECTOR);
+            }
+            byte[] read = new byte[count * SECTOR];
+            int length = source.readFully(start * SECTOR, read, 0, read.length);
+            return length == read.length ? read : Arrays.copyOf(read, Math.max(length, 0) / SECTOR * SECTOR);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import com.palantir.isofilereader.isofilereader.io.SectorSource;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Version 2 Initialization Vectors. Samples are spread evenly from the first to the last byte of the image or file,
+ * read with positional reads and hashed with CRC32C. Version 1 IVs are still built by IsoFileReader, unchanged.
+ */
+final class InitializationVectors {
+    static final String IMAGE_PREFIX = "I2|";
+    static final String FILE_PREFIX = "F2|";
+    static final int SAMPLE_SIZE = 2048;
+    static final int IMAGE_SAMPLES = 10;
+    static final int FILE_SAMPLES = 4;
+
+    // Bounds on parameters taken from an IV string, so a bad string cannot make us allocate or read without limit
+    private static final int MAX_SAMPLE_SIZE = 1024 * 1024;
+    private static final int MAX_SAMPLES = 1024;
+
+    private InitializationVectors() {}
+
+    /**
+     * Build the IV of a whole image.
+     *
+     * @param source positional source of the image
+     * @param sampleSize bytes in each sample
+     * @param samples number of samples to take
+     * @return image IV, I2|sampleSize|samples|length|crc
+     * @throws IOException failure to read the image
+     */
+    static String forImage(SectorSource source, int sampleSize, int samples) throws IOException {
+        long length = source.length();
+        CRC32C crc = new CRC32C();
+        updateWithSamples(crc, source, 0, length, sampleSize, samples);
+        return IMAGE_PREFIX + sampleSize + "|" + samples + "|" + length + "|" + toHex(crc.getValue());
+    }
+
+    /**
+     * Build the IV of a file in an image. The full name is hashed before the samples, so two empty files differ.
+     *
+     * @param source positional source of the image
+     * @param sampleSize bytes in each sample
+     * @param samples number of samples to take
+     * @param size size of the file in bytes
+     * @param logicalSector logical sector the file data starts at
+     * @param fullFileName full path of the file in the image
+     * @return file IV, F2|sampleSize|samples|size|logicalSector|fullFileName|crc
+     * @throws IOException failure to read the image
+     */
+    static String forFile(
+            SectorSource source, int sampleSize, int samples, long size, long logicalSector, String fullFileName)
+            throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(fullFileName.getBytes(StandardCharsets.UTF_8));
+        updateWithSamples(crc, source, logicalSector * IsoFormatConstant.BYTES_PER_SECTOR, size, sampleSize, samples);
+        return FILE_PREFIX + sampleSize + "|" + samples + "|" + size + "|" + logicalSector + "|" + fullFileName + "|"
+                + toHex(crc.getValue());
+    }
+
+    /**
+     * Check a version 2 image IV against the image.
+     *
+     * @param source positional source of the image
+     * @param imageIv IV from an earlier run
+     * @return true if the IV is well formed and matches the image
+     * @throws IOException failure to read the image
+     */
+    static boolean imageMatches(SectorSource source, String imageIv) throws IOException {
+        String[] fields = imageIv.split("\\|", -1);
+        if (fields.length != 5 || !fields[0].equals("I2")) {
+            return false;
+        }
+        try {
+            int sampleSize = Integer.parseInt(fields[1]);
+            int samples = Integer.parseInt(fields[2]);
+            if (!validSampling(sampleSize, samples) || Long.parseLong(fields[3]) != source.length()) {
+                return false;
+            }
+            return forImage(source, sampleSize, samples).equals(imageIv);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parse a version 2 file IV. The name may itself hold pipes, it runs from the sixth field to the hash.
+     *
+     * @param fileIv IV from an earlier run
+     * @return the parsed IV, empty if it is not a well formed version 2 file IV
+     */
+    static Optional<FileIv> parseFileIv(String fileIv) {
+        if (!fileIv.startsWith(FILE_PREFIX)) {
+            return Optional.empty();
+        }
+        String[] fields = fileIv.split("\\|", 6);
+        int hashStart = fileIv.lastIndexOf('|');
+        if (fields.length != 6 || hashStart < fileIv.length() - fields[5].length()) {
+            return Optional.empty();
+        }
+        try {
+            FileIv parsed = new FileIv(
+                    fileIv,
+                    Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]),
+                    Long.parseLong(fields[3]),
+                    Long.parseLong(fields[4]),
+                    fileIv.substring(fileIv.length() - fields[5].length(), hashStart));
+            if (!validSampling(parsed.sampleSize, parsed.samples) || parsed.size < 0 || parsed.logicalSector < 0) {
+                return Optional.empty();
+            }
+            return Optional.of(parsed);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Check a parsed version 2 file IV against the image.
+     *
+     * @param source positional source of the image
+     * @param fileIv parsed IV
+     * @return true if the file data and name still match
+     * @throws IOException failure to read the image
+     */
+    static boolean fileMatches(SectorSource source, FileIv fileIv) throws IOException {
+        return forFile(
+                        source,
+                        fileIv.sampleSize,
+                        fileIv.samples,
+                        fileIv.size,
+                        fileIv.logicalSector,
+                        fileIv.fullFileName)
+                .equals(fileIv.iv);
+    }
+
+    private static boolean validSampling(int sampleSize, int samples) {
+        return sampleSize > 0 && sampleSize <= MAX_SAMPLE_SIZE && samples > 0 && samples <= MAX_SAMPLES;
+    }
+
+    /**
+     * Sample i starts at start + (length - sampleSize) * i / (samples - 1), so the first sample covers the first byte
+     * and the last covers the last byte. Data that fits in one sample is read once.
+     */
+    private static void updateWithSamples(
+            CRC32C crc, SectorSource source, long start, long length, int sampleSize, int samples) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        byte[] buffer = new byte[(int) Math.min(sampleSize, length)];
+        if (length <= sampleSize || samples == 1) {
+            crc.update(buffer, 0, source.readFully(start, buffer, 0, buffer.length));
+            return;
+        }
+        long span = length - sampleSize;
+        for (int i = 0; i < samples; i++) {
+            long position = start + span * i / (samples - 1);
+            crc.update(buffer, 0, source.readFully(position, buffer, 0, sampleSize));
+        }
+    }
+
+    private static String toHex(long crc) {
+        String hex = Long.toHexString(crc);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Fields of a version 2 file IV.
+     */
+    static final class FileIv {
+        private final String iv;
+        private final int sampleSize;
+        private final int samples;
+        private final long size;
+        private final long logicalSector;
+        private final String fullFileName;
+
+        FileIv(String iv, int sampleSize, int samples, long size, long logicalSector, String fullFileName) {
+            this.iv = iv;
+            this.sampleSize = sampleSize;
+            this.samples = samples;
+            this.size = size;
+            this.logicalSector = logicalSector;
+            this.fullFileName = fullFileName;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLogicalSector() {
+            return logicalSector;
+        }
+
+        String getFullFileName() {
+            return fullFileName;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import com.palantir.isofilereader.isofilereader.io.SectorSource;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An InputStream for a single file in an image that reads through a shared {@link SectorSource} with positional
+ * reads. Each stream keeps its own position, so any number of streams (one per virtual thread for example) can read
+ * from the same source at once without locks or extra file handles. A single stream is not meant to be shared
+ * between threads. Closing the stream does not close the shared source.
+ */
+public class IsoChannelInputStream extends InputStream {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final SectorSource source;
+    private final long startingLoc;
+    private final long endLoc;
+    private long currentLoc;
+    private long markLoc;
+
+    /**
+     * Create a stream for a file record of the image.
+     *
+     * @param source shared source of the raw image
+     * @param subFile GenericInternalIsoFile or (subtype of UdfInternalDataFile/IsoFormatInternalDataFile) to get
+     */
+    public IsoChannelInputStream(SectorSource source, GenericInternalIsoFile subFile) {
+        this(source, subFile.getLogicalSectorLocation() * IsoFormatConstant.BYTES_PER_SECTOR, subFile.getSize());
+    }
+
+    /**
+     * A more raw constructor, give the source, and a start with length to read.
+     *
+     * @param source shared source of the raw image
+     * @param start start location in bytes of the subfile
+     * @param length length of the subfile
+     */
+    public IsoChannelInputStream(SectorSource source, long start, long length) {
+        this.source = source;
+        this.startingLoc = start;
+        this.endLoc = start + length;
+        this.currentLoc = start;
+        this.markLoc = start;
+    }
+
+    /**
+     * Read one byte of data.
+     * @return a byte in INT format
+     * @throws IOException error reading byte
+     */
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        if (count <= 0) {
+            return -1;
+        }
+        return single[0] & 0xFF;
+    }
+
+    /**
+     * Read up to len bytes into the array, never past the end of the file.
+     *
+     * @param byteArray array to put data into
+     * @param off offset to start in array
+     * @param len length to read
+     * @return how many bytes were read, -1 at the end of the file
+     * @throws IOException failure to read underlying media
+     */
+    @Override
+    public int read(byte[] byteArray, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, byteArray.length);
+        if (len == 0) {
+            return 0;
+        }
+        long remaining = endLoc - currentLoc;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int toRead = (int) Math.min(len, remaining);
+        int bytesRead = source.read(currentLoc, byteArray, off, toRead);
+        if (bytesRead <= 0) {
+            return -1;
+        }
+        currentLoc += bytesRead;
+        return bytesRead;
+    }
+
+    /**
+     * Skip Bytes, this only moves the position and does not read.
+     * @param byteNumber the number of bytes to be skipped.
+     * @return the actual number of bytes skipped
+     */
+    @Override
+    public long skip(long byteNumber) {
+        if (byteNumber <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(byteNumber, endLoc - currentLoc);
+        currentLoc += skipped;
+        return skipped;
+    }
+
+    /**
+     * Bytes left in the file.
+     *
+     * @return int of bytes left
+     */
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, endLoc - currentLoc);
+    }
+
+    /**
+     * Position in the file.
+     * @return long of position in file
+     */
+    public long position() {
+        return currentLoc - startingLoc;
+    }
+
+    /**
+     * Get the length of the file being read.
+     * @return long of length
+     */
+    public long getLength() {
+        return endLoc - startingLoc;
+    }
+
+    /**
+     * Seek into the file.
+     * @param seekLoc bytes to seek in
+     * @throws IOException if seeking past the end of the file
+     */
+    public void seek(long seekLoc) throws IOException {
+        if (seekLoc < 0 || seekLoc > getLength()) {
+            throw new IOException("Seeking past end of file");
+        }
+        currentLoc = startingLoc + seekLoc;
+    }
+
+    /**
+     * Read all bytes from current location to end of file.
+     *
+     * @return byte array of data in the file
+     * @throws IOException error in reading underlying media
+     */
+    @Override
+    public byte[] readAllBytes() throws IOException {
+        return readNBytes((int) (endLoc - currentLoc));
+    }
+
+    /**
+     * Close the stream, the shared source stays open for other streams.
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * Mark the current position, the read limit is ignored since no data is buffered.
+     *
+     * @param readlimit ignored
+     */
+    @Override
+    @SuppressWarnings("StrictUnusedVariable")
+    public void mark(int readlimit) {
+        markLoc = currentLoc;
+    }
+
+    /**
+     * Reset this InputStream to the last mark, or the start of the file if mark was never called.
+     */
+    @Override
+    public void reset() {
+        currentLoc = markLoc;
+    }
+
+    /**
+     * Marks are supported, since resetting only moves the position.
+     *
+     * @return always true
+     */
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Transfer the data of an InputStream to an Outputstream. Note: This does not reset InputStream location.
+     * @param out the output stream, non-null
+     * @return length of file transferred in bytes
+     * @throws IOException read IO exception can occur if there is a read error with the underlying media
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        long transferred = 0;
+        byte[] buffer = new byte[(int) Math.min(DEFAULT_BUFFER_SIZE, Math.max(1, endLoc - currentLoc))];
+        int read;
+        while ((read = this.read(buffer, 0, buffer.length)) >= 0) {
+            out.write(buffer, 0, read);
+            transferred += read;
+        }
+        return transferred;
+    }
+}
@@ -16,9 +16,18 @@
 
 package com.palantir.isofilereader.isofilereader;
 
+import com.palantir.isofilereader.isofilereader.io.BlockCache;
+import com.palantir.isofilereader.isofilereader.io.BlockCacheBinding;
+import com.palantir.isofilereader.isofilereader.io.FileChannelSectorSource;
+import com.palantir.isofilereader.isofilereader.io.FileContentCache;
+import com.palantir.isofilereader.isofilereader.io.MeteredRandomAccessFile;
+import com.palantir.isofilereader.isofilereader.io.MeteredSectorSource;
+import com.palantir.isofilereader.isofilereader.io.RandomAccessFilePool;
+import com.palantir.isofilereader.isofilereader.io.SectorSource;
 import com.palantir.isofilereader.isofilereader.iso.IsoFormatInternalDataFile;
 import com.palantir.isofilereader.isofilereader.iso.TraditionalIsoReader;
 import com.palantir.isofilereader.isofilereader.iso.types.AbstractVolumeDescriptor;
+import com.palantir.isofilereader.isofilereader.iso.types.DirectoryPath;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatEnhancedVolumeDescriptor;
@@ -35,16 +44,44 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class IsoFileReader implements AutoCloseable {
+    /**
+     * Name getAllFilesFrozen calls are reported under, a hit is a call that waited for an index already in flight.
+     */
+    public static final String COALESCED_INDEXES = "coalescedIndexes";
+    /**
+     * Name getFileBytes reads are reported under, a hit is a read that waited for one of the same extent in flight.
+     */
+    public static final String COALESCED_READS = "coalescedReads";
+
+    // Bounds list sizes taken from counts recorded in the image, in case the image is damaged
+    private static final int MAX_PRESIZED_CAPACITY = 1 << 20;
+    private static final int DEFAULT_CAPACITY = 10;
+
     private final File isoFile;
     private final TraditionalIsoReader traditionalIsoReader;
-    private final List<RandomAccessFile> openFileHandles = new ArrayList<>();
+    private final RandomAccessFilePool fileHandlePool;
     private int udfModeInUse = 0; // 0 is not initialized, 1 is do not use, 2 is use. This is used to manually override
     // the auto-detection of UDF.
     private final UdfIsoReader udfIsoReader;
+    // Shared positional source, opened on first use; see usePositionalReads
+    private final AtomicReference<SectorSource> sharedSource = new AtomicReference<>();
+    private volatile boolean positionalReads = false;
+    private volatile boolean caseInsensitiveNames = false;
+    // Content cache and the key of this image in it, both set together
+    private volatile ContentCacheBinding contentCache = null;
+    private volatile BlockCacheBinding blockCache = null;
+    // Concurrent getAllFilesFrozen calls with the same setting, and concurrent getFileBytes calls for the same extent,
+    // share one computation
+    private final SingleFlight<String, GenericInternalIsoFile[]> indexing;
+    private final SingleFlight<String, byte[]> extentReads;
+    private final IsoReaderMetrics metrics;
 
     /**
      * Create a new file reader with the file attached, this constructor will automatically scan the iso for which
@@ -54,9 +91,25 @@ public class IsoFileReader implements AutoCloseable {
      * @throws IOException in attempting find the correct headers to use, a IO exception occurred
      */
     public IsoFileReader(File isoFile) throws IOException {
+        this(isoFile, IsoReaderMetrics.NO_OP);
+    }
+
+    /**
+     * Create a new file reader that reports reads, parsing and timings to metrics, this constructor will
+     * automatically scan the iso for which headers to use.
+     *
+     * @param isoFile file to use
+     * @param metrics listener, for example a CountingIsoReaderMetrics
+     * @throws IOException in attempting find the correct headers to use, a IO exception occurred
+     */
+    public IsoFileReader(File isoFile, IsoReaderMetrics metrics) throws IOException {
         this.isoFile = isoFile;
-        this.traditionalIsoReader = new TraditionalIsoReader(isoFile);
-        this.udfIsoReader = new UdfIsoReader(isoFile);
+        this.metrics = metrics;
+        this.traditionalIsoReader = new TraditionalIsoReader(isoFile, metrics);
+        this.udfIsoReader = new UdfIsoReader(isoFile, metrics);
+        this.fileHandlePool = new RandomAccessFilePool(isoFile, metrics);
+        this.indexing = new SingleFlight<>(metrics, COALESCED_INDEXES);
+        this.extentReads = new SingleFlight<>(metrics, COALESCED_READS);
         findOptimalSettings();
     }
 
@@ -67,28 +120,141 @@ public class IsoFileReader implements AutoCloseable {
      * @param setting header setting to use, formatted as "#,#,#"
      */
     public IsoFileReader(File isoFile, String setting) {
+        this(isoFile, setting, IsoReaderMetrics.NO_OP);
+    }
+
+    /**
+     * Create a new file reader that reports reads, parsing and timings to metrics, this constructor uses the input
+     * setting for the headers to use.
+     *
+     * @param isoFile file to use
+     * @param setting header setting to use, formatted as "#,#,#"
+     * @param metrics listener, for example a CountingIsoReaderMetrics
+     */
+    public IsoFileReader(File isoFile, String setting, IsoReaderMetrics metrics) {
         this.isoFile = isoFile;
-        this.traditionalIsoReader = new TraditionalIsoReader(isoFile);
-        this.udfIsoReader = new UdfIsoReader(isoFile);
+        this.metrics = metrics;
+        this.traditionalIsoReader = new TraditionalIsoReader(isoFile, metrics);
+        this.udfIsoReader = new UdfIsoReader(isoFile, metrics);
+        this.fileHandlePool = new RandomAccessFilePool(isoFile, metrics);
+        this.indexing = new SingleFlight<>(metrics, COALESCED_INDEXES);
+        this.extentReads = new SingleFlight<>(metrics, COALESCED_READS);
         implementGivenSetting(setting);
     }
 
     /**
-     * Close for auto closing, if the user has used getIsoWithAutoClose, then all file handles are closed.
+     * Close for auto closing, all pooled file handles are closed, including ones from getRawIsoWithAutoClose and
+     * getFileStream that were never closed.
      */
     @Override
     public void close() {
-        for (RandomAccessFile temp : openFileHandles) {
-            if (temp != null && temp.getChannel().isOpen()) {
-                try {
-                    temp.close();
-                } catch (IOException e) {
-                    // whatever
-                }
+        fileHandlePool.close();
+        SectorSource source = sharedSource.getAndSet(null);
+        if (source != null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                // whatever
             }
         }
     }
 
+    /**
+     * Switch file extraction to positional reads on one shared channel. In this mode getFileStream and getFileBytes
+     * do not open a RandomAccessFile per call and hold no locks while reading, so a thread per request (including
+     * virtual threads on Java 21) can extract from the same reader concurrently without pinning carrier threads.
+     *
+     * @param positionalReads true to read through the shared channel
+     */
+    public void usePositionalReads(boolean positionalReads) {
+        this.positionalReads = positionalReads;
+    }
+
+    /**
+     * Keep the contents of small files read with getFileBytes in a cache, null turns caching off. Entries are keyed by
+     * the image path, length and modification time, taken when the cache is set as for useBlockCache, so one cache can
+     * be shared by readers of many images and a reader of a rebuilt image does not see the old contents. Hits and
+     * misses are reported to the metrics under FileContentCache.CONTENT_CACHE.
+     *
+     * @param contentCache cache to use, or null
+     */
+    public void useContentCache(FileContentCache contentCache) {
+        this.contentCache =
+                contentCache == null ? null : new ContentCacheBinding(contentCache, BlockCache.imageKey(isoFile));
+    }
+
+    /**
+     * Read descriptors, path tables and directories through a block cache, null reads the image directly. One cache
+     * can be passed to every reader in the JVM, blocks are keyed by the image path, length and modification time, so
+     * readers of the same image share them. Hits and misses are reported to the metrics under BlockCache.BLOCK_CACHE.
+     *
+     * @param blockCache shared cache, or null
+     */
+    public void useBlockCache(BlockCache blockCache) {
+        // One key for every handle and sub-reader, so they all share the same blocks
+        BlockCacheBinding binding = BlockCacheBinding.of(blockCache, isoFile);
+        this.blockCache = binding;
+        traditionalIsoReader.setBlockCache(binding);
+        udfIsoReader.setBlockCache(binding);
+    }
+
+    /**
+     * Match names in getSpecificFileByName ignoring case, useful for images where only some tables are upper case.
+     *
+     * @param caseInsensitiveNames true to ignore case
+     */
+    public void useCaseInsensitiveNames(boolean caseInsensitiveNames) {
+        this.caseInsensitiveNames = caseInsensitiveNames;
+    }
+
+    /**
+     * Check if getSpecificFileByName is ignoring case.
+     *
+     * @return true if so
+     */
+    public boolean isCaseInsensitiveNamesInUse() {
+        return caseInsensitiveNames;
+    }
+
+    /**
+     * Check if extraction is using positional reads on the shared channel.
+     *
+     * @return true if so
+     */
+    public boolean isPositionalReadsInUse() {
+        return positionalReads;
+    }
+
+    /**
+     * Get the shared positional source for this image, opening it on first use. The source is owned by this reader
+     * and closed with it, callers should not close it.
+     *
+     * @return shared SectorSource
+     * @throws IOException failure opening the image
+     */
+    public SectorSource getSectorSource() throws IOException {
+        SectorSource source = sharedSource.get();
+        if (source != null) {
+            return source;
+        }
+        SectorSource opened = new MeteredSectorSource(new FileChannelSectorSource(isoFile), metrics);
+        if (sharedSource.compareAndSet(null, opened)) {
+            return opened;
+        }
+        // Another thread won the race, use theirs
+        opened.close();
+        return sharedSource.get();
+    }
+
+    /**
+     * Get the metrics listener this reader reports to.
+     *
+     * @return listener, IsoReaderMetrics.NO_OP unless one was passed in
+     */
+    public IsoReaderMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get the traditionalIsoReader from inside the Generic IsoFileReader. This allows lower level access to
      * traditional ISO internals.
@@ -135,9 +301,16 @@ public class IsoFileReader implements AutoCloseable {
      * @throws IOException If the file fails to open or read you can get an IOException
      */
     public IsoFormatDirectoryRecord[] getAllFileRecordsInIsoRaw() throws IOException {
-        IsoFormatDirectoryRecord currentFileDirectoryRecord = traditionalIsoReader.getRootDirectoryOfCurrentToC();
-        return traditionalIsoReader.getIsoDirectoryRecords(
-                currentFileDirectoryRecord.getLocOfExtAsLong(), currentFileDirectoryRecord.getDataLengthAsLong(), "");
+        long start = System.nanoTime();
+        try {
+            IsoFormatDirectoryRecord currentFileDirectoryRecord = traditionalIsoReader.getRootDirectoryOfCurrentToC();
+            return traditionalIsoReader.getIsoDirectoryRecords(
+                    currentFileDirectoryRecord.getLocOfExtAsLong(),
+                    currentFileDirectoryRecord.getDataLengthAsLong(),
+                    "");
+        } finally {
+            metrics.indexingTime(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -147,14 +320,25 @@ public class IsoFileReader implements AutoCloseable {
      * @throws IOException If the file fails to open or read you can get an IOException
      */
     public IsoFormatInternalDataFile[] getAllFilesAsIsoFormatInternalDataFile() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return indexIsoFormat();
+        } finally {
+            metrics.indexingTime(System.nanoTime() - start);
+        }
+    }
+
+    private IsoFormatInternalDataFile[] indexIsoFormat() throws IOException {
         IsoFormatDirectoryRecord currentFileDirectoryRecord = traditionalIsoReader.getRootDirectoryOfCurrentToC();
         IsoFormatInternalDataFile rootLevel = new IsoFormatInternalDataFile(
                 currentFileDirectoryRecord, traditionalIsoReader.isUseRockRidgeOverStandard());
-        rootLevel.addChildren(traditionalIsoReader.getInternalDataFiles(
-                getRawIsoWithAutoClose(),
-                currentFileDirectoryRecord.getLocOfExtAsLong(),
-                currentFileDirectoryRecord.getDataLengthAsLong(),
-                ""));
+        try (RandomAccessFile rawIso = leaseDirectoryHandle()) {
+            rootLevel.addChildren(traditionalIsoReader.getInternalDataFiles(
+                    rawIso,
+                    currentFileDirectoryRecord.getLocOfExtAsLong(),
+                    currentFileDirectoryRecord.getDataLengthAsLong(),
+                    DirectoryPath.ROOT));
+        }
         IsoFormatInternalDataFile[] tempArray = new IsoFormatInternalDataFile[1];
         tempArray[0] = rootLevel;
         return tempArray;
@@ -167,12 +351,18 @@ public class IsoFileReader implements AutoCloseable {
      * @throws UdfFormatException failure to read the table of contents
      */
     public UdfInternalDataFile[] getAllFilesAsUdfInternalDataFiles() throws UdfFormatException {
-        return udfIsoReader.getAllFiles();
+        long start = System.nanoTime();
+        try {
+            return udfIsoReader.getAllFiles();
+        } finally {
+            metrics.indexingTime(System.nanoTime() - start);
+        }
     }
 
     /**
      * No matter the internal format of the image, get all the directory records for this ISO. This will return
      * InternalIsoFile, which will be an instance of either {@link IsoFormatInternalDataFile} or {@link UdfInternalDataFile}.
+     * Each call indexes the image and returns its own tree, use getAllFilesFrozen to share one index between threads.
      *
      * @return InternalIsoFile directory records
      * @throws IOException file read error
@@ -186,6 +376,36 @@ public class IsoFileReader implements AutoCloseable {
         }
     }
 
+    /**
+     * Get all the files like getAllFiles, then freeze the tree. A frozen tree can not be changed, returns children
+     * from getChildrenList without copying, and can be cached and searched by any number of threads at once. Threads
+     * that call this while another thread is indexing with the same setting wait for it and share its frozen tree,
+     * each getting its own copy of the root array.
+     *
+     * @return frozen root records
+     * @throws IOException file read error
+     * @throws UdfFormatException UDF table of contents read error
+     */
+    public GenericInternalIsoFile[] getAllFilesFrozen() throws IOException, UdfFormatException {
+        return indexing.run(
+                getCurrentSetting(),
+                () -> {
+                    GenericInternalIsoFile[] files = getAllFiles();
+                    for (GenericInternalIsoFile file : files) {
+                        file.freeze();
+                    }
+                    return files;
+                },
+                GenericInternalIsoFile[]::clone);
+    }
+
+    /**
+     * Handle for walking ISO-9660 directories, reading through the block cache when one is in use.
+     */
+    private RandomAccessFile leaseDirectoryHandle() throws IOException {
+        return fileHandlePool.lease(blockCache);
+    }
+
     /**
      * Get raw access to the iso for file operations. YOU NEED TO CLOSE THIS!
      *
@@ -193,20 +413,28 @@ public class IsoFileReader implements AutoCloseable {
      * @throws FileNotFoundException if the file is not found this can error
      */
     public RandomAccessFile getRawIso() throws FileNotFoundException {
-        return new RandomAccessFile(isoFile, "r");
+        return new MeteredRandomAccessFile(isoFile, metrics);
     }
 
     /**
-     * This is the same as getRawIso but tracks which file handles are open for auto closing, safer to use, but if a lot
-     * of file handles are being used can decrease perf.
+     * This is the same as getRawIso but the handle is leased from this reader's pool. Any handle still open is closed
+     * with the reader, so closing it is optional, but closing it gives it back for reuse.
      *
      * @return get a RandomAccessFile handle
-     * @throws FileNotFoundException if file cant be found then this is thrown.
+     * @throws FileNotFoundException if the file is not found this can error
      */
     public RandomAccessFile getRawIsoWithAutoClose() throws FileNotFoundException {
-        RandomAccessFile temp = new RandomAccessFile(isoFile, "r");
-        openFileHandles.add(temp);
-        return temp;
+        return fileHandlePool.lease();
+    }
+
+    /**
+     * Get the pool that getRawIsoWithAutoClose, getFileStream and getFileBytes lease handles from, for example to
+     * check how many are leased.
+     *
+     * @return this reader's file handle pool
+     */
+    public RandomAccessFilePool getFileHandlePool() {
+        return fileHandlePool;
     }
 
     /**
@@ -219,6 +447,15 @@ public class IsoFileReader implements AutoCloseable {
      * @throws IOException Error reading from the ISO in getting the headers
      */
     public void findOptimalSettings() throws IOException {
+        long start = System.nanoTime();
+        try {
+            detectOptimalSettings();
+        } finally {
+            metrics.findOptimalSettingsTime(System.nanoTime() - start);
+        }
+    }
+
+    private void detectOptimalSettings() throws IOException {
         if (udfModeInUse == 0 && udfIsoReader.checkForUdfData()) {
             // UDF is a newer standard and at the current time we will assume a disk with UDF would prefer that.
             udfModeInUse = 2;
@@ -252,11 +489,15 @@ public class IsoFileReader implements AutoCloseable {
                 continue;
             }
 
-            IsoFormatInternalDataFile[] rootLevelDiscFolder = traditionalIsoReader.getInternalDataFiles(
-                    getRawIsoWithAutoClose(),
-                    rootIsoDirectoryRecord.getLocOfExtAsLong(),
-                    rootIsoDirectoryRecord.getDataLengthAsLong(),
-                    "");
+            IsoFormatInternalDataFile[] rootLevelDiscFolder;
+            try (RandomAccessFile rawIso = leaseDirectoryHandle()) {
+                rootLevelDiscFolder = traditionalIsoReader.getInternalDataFiles(
+                        rawIso,
+                        rootIsoDirectoryRecord.getLocOfExtAsLong(),
+                        rootIsoDirectoryRecord.getDataLengthAsLong(),
+                        DirectoryPath.ROOT,
+                        vol);
+            }
             if (rootLevelDiscFolder != null) {
                 // Checking for rock ridge
                 int temp = traditionalIsoReader.scanForNmEntries(rootLevelDiscFolder);
@@ -316,24 +557,92 @@ public class IsoFileReader implements AutoCloseable {
      * @throws IOException failed to read underlying ISO file
      */
     public byte[] getFileBytes(GenericInternalIsoFile file) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ContentCacheBinding binding = contentCache;
+            if (binding == null || !binding.cache.admits(file.getSize())) {
+                return readFileBytesOnce(file);
+            }
+            byte[] cached = binding.cache.get(binding.imageKey, file.getLogicalSectorLocation(), file.getSize());
+            if (cached != null) {
+                metrics.cacheHit(FileContentCache.CONTENT_CACHE);
+                return cached.clone();
+            }
+            metrics.cacheMiss(FileContentCache.CONTENT_CACHE);
+            byte[] data = readFileBytesOnce(file);
+            binding.cache.put(binding.imageKey, file.getLogicalSectorLocation(), data.clone());
+            return data;
+        } finally {
+            metrics.extractionTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Threads reading the same extent at once share one read, each waiting thread gets its own copy.
+     */
+    private byte[] readFileBytesOnce(GenericInternalIsoFile file) throws IOException {
+        return extentReads.run(
+                file.getLogicalSectorLocation() + "|" + file.getSize(), () -> readFileBytes(file), byte[]::clone);
+    }
+
+    private byte[] readFileBytes(GenericInternalIsoFile file) throws IOException {
         long dataSize = file.getSize();
         byte[] data = new byte[(int) dataSize];
-        RandomAccessFile randomAccessFile = null;
-        try {
-            randomAccessFile = getRawIso();
+        if (positionalReads) {
+            int read = getSectorSource()
+                    .readFully(
+                            file.getLogicalSectorLocation() * IsoFormatConstant.BYTES_PER_SECTOR, data, 0, data.length);
+            if (read != (int) dataSize) {
+                throw new IOException("Failed to read correct amount of data.");
+            }
+            return data;
+        }
+        try (RandomAccessFile randomAccessFile = fileHandlePool.lease()) {
             randomAccessFile.seek(file.getLogicalSectorLocation() * IsoFormatConstant.BYTES_PER_SECTOR);
             int read = randomAccessFile.read(data, 0, (int) dataSize);
             if (read != (int) dataSize) {
                 throw new IOException("Failed to read correct amount of data.");
             }
-        } finally {
-            if (randomAccessFile != null && randomAccessFile.getChannel().isOpen()) {
-                randomAccessFile.close();
-            }
         }
         return data;
     }
 
+    /**
+     * Number of files in the image, directories not included, without indexing it. The count comes from the UDF
+     * Logical Volume Integrity Descriptor, which is read with the volume descriptors. ISO-9660 does not record a file
+     * count, so the UDF count is returned in both modes, as getDirectoryCount falls back to it, and images without UDF
+     * return -1.
+     *
+     * @return number of files, -1 if the image does not record it
+     */
+    public long getFileCount() {
+        return udfIsoReader.getRecordedFileCount();
+    }
+
+    /**
+     * Number of directories in the image, the root included, without indexing it. In UDF mode the count comes from
+     * the Logical Volume Integrity Descriptor, otherwise from the path table of the ISO-9660 table of contents in use,
+     * each falling back to the other.
+     *
+     * @return number of directories, -1 if the image does not record it
+     * @throws IOException failure to read the image
+     */
+    public long getDirectoryCount() throws IOException {
+        long directories;
+        if (isUdfModeInUse()) {
+            directories = udfIsoReader.getRecordedDirectoryCount();
+            if (directories < 0) {
+                directories = traditionalIsoReader.getDirectoryCount();
+            }
+        } else {
+            directories = traditionalIsoReader.getDirectoryCount();
+            if (directories < 0) {
+                directories = udfIsoReader.getRecordedDirectoryCount();
+            }
+        }
+        return directories;
+    }
+
     /**
      * Check if the reader is functioning in UDF mode.
      *
@@ -358,13 +667,17 @@ public class IsoFileReader implements AutoCloseable {
 
     /**
      * Get a file stream of the specific GenericInternalIsoFile in the image. This allows for streaming of large
-     * files. This method creates a new RandomAccessFile.
+     * files. The stream leases a handle from this reader's pool and gives it back when closed, unless positional
+     * reads are in use, then the stream reads through the shared channel.
      *
      * @param file file to access
      * @return InputStream
      * @throws IOException can occur when failing to read underlying media
      */
     public InputStream getFileStream(GenericInternalIsoFile file) throws IOException {
+        if (positionalReads) {
+            return new IsoChannelInputStream(getSectorSource(), file);
+        }
         return new IsoInputStream(getRawIsoWithAutoClose(), file);
     }
 
@@ -383,6 +696,7 @@ public class IsoFileReader implements AutoCloseable {
 
     /**
      * Searches the collection of files a file given as a representation. This is useful if you know the file you want.
+     * Below the root, each folder finds the next name with findChild, which uses a hash index in large folders.
      *
      * @param files file collection to search
      * @param filename filename with either \ or / file separators in use
@@ -400,24 +714,25 @@ public class IsoFileReader implements AutoCloseable {
         }
 
         String[] splitPath = normalizedFilename.split("/");
-        return fileSearcher(files, splitPath, 0);
+        return fileSearcher(Arrays.asList(files), splitPath, 0);
     }
 
-    private Optional<GenericInternalIsoFile> fileSearcher(GenericInternalIsoFile[] files, String[] nameSplit, int pos) {
+    private Optional<GenericInternalIsoFile> fileSearcher(
+            List<? extends GenericInternalIsoFile> files, String[] nameSplit, int pos) {
+        // If you get the most basic of names, in 8.3, sometimes there is a ;# at the end, normalizeName drops it
+        String wanted = GenericInternalIsoFile.normalizeName(nameSplit[pos], caseInsensitiveNames);
         for (GenericInternalIsoFile singleFile : files) {
-            String name = singleFile.getFileName();
-            if (name.contains(";")) {
-                // If you get the most basic of names, in 8.3, sometimes there is a ;# at the end
-                name = name.split(";", -1)[0];
-            }
-            if (nameSplit[pos].equals(name)) {
-                // File does match at this name location
-                if (pos == (nameSplit.length - 1)) {
-                    return Optional.of(singleFile);
-                } else {
-                    int tempPos = pos + 1;
-                    return fileSearcher(singleFile.getChildren(), nameSplit, tempPos);
+            if (wanted.equals(GenericInternalIsoFile.normalizeName(singleFile.getFileName(), caseInsensitiveNames))) {
+                // File does match at this name location, below the roots each folder looks up its own index
+                GenericInternalIsoFile current = singleFile;
+                for (int i = pos + 1; i < nameSplit.length; i++) {
+                    Optional<GenericInternalIsoFile> child = current.findChild(nameSplit[i], caseInsensitiveNames);
+                    if (child.isEmpty()) {
+                        return Optional.empty();
+                    }
+                    current = child.get();
                 }
+                return Optional.of(current);
             }
         }
         return Optional.empty();
@@ -430,17 +745,36 @@ public class IsoFileReader implements AutoCloseable {
      * @return flat list of files
      */
     public List<GenericInternalIsoFile> convertTreeFilesToFlatList(GenericInternalIsoFile[] records) {
-        List<GenericInternalIsoFile> returnData = new ArrayList<>();
+        List<GenericInternalIsoFile> returnData = new ArrayList<>(flatListCapacity(records));
+        addFilesToFlatList(Arrays.asList(records), returnData);
+        return returnData;
+    }
+
+    /**
+     * The whole tree of a UDF volume holds the number of files its integrity descriptor records, so the list is sized
+     * once. Anything else starts at the default capacity.
+     */
+    private int flatListCapacity(GenericInternalIsoFile[] records) {
+        if (isUdfModeInUse() && records.length == 1 && records[0].getParent() == null) {
+            long files = udfIsoReader.getRecordedFileCount();
+            if (files > 0) {
+                return (int) Math.min(files, MAX_PRESIZED_CAPACITY);
+            }
+        }
+        return DEFAULT_CAPACITY;
+    }
+
+    private static void addFilesToFlatList(
+            List<? extends GenericInternalIsoFile> records, List<GenericInternalIsoFile> returnData) {
         for (GenericInternalIsoFile singleRecord : records) {
-            if (singleRecord.isDirectory() && singleRecord.getChildren() != null) {
+            if (singleRecord.isDirectory()) {
                 // Directory
-                returnData.addAll(convertTreeFilesToFlatList(singleRecord.getChildren()));
+                addFilesToFlatList(singleRecord.getChildrenList(), returnData);
             } else {
                 // File we want
                 returnData.add(singleRecord);
             }
         }
-        return returnData;
     }
 
     /**
@@ -454,11 +788,37 @@ public class IsoFileReader implements AutoCloseable {
      * @throws NoSuchAlgorithmException failure to load MD5 in this JDK
      */
     public String getInitializationVectorForImage() throws IOException, NoSuchAlgorithmException {
-        RandomAccessFile file = getRawIsoWithAutoClose();
-        return getInitializationVectorForImageWithPassedFile(file);
+        return getInitializationVectorForImageWithSource(getSectorSource());
     }
 
-    private static String getInitializationVectorForImageWithPassedFile(RandomAccessFile file)
+    /**
+     * Version 2 of the image Initialization Vector. Samples are spread from the first to the last byte of the image,
+     * read with positional reads on the shared source and hashed with CRC32C, which is much cheaper to build and to
+     * check than version 1. Both versions are accepted by getFileDataWithIVs and the other retrieval methods.
+     *
+     * @return string of the IV of this image, starting with I2
+     * @throws IOException failure to read inside the image where needed
+     */
+    public String getInitializationVectorForImageV2() throws IOException {
+        return InitializationVectors.forImage(
+                getSectorSource(), InitializationVectors.SAMPLE_SIZE, InitializationVectors.IMAGE_SAMPLES);
+    }
+
+    /**
+     * Merkle tree fingerprint of the whole image, see ImageFingerprint. Every byte of the image is read, so this is
+     * meant for when an image is built or indexed, comparing it with the fingerprint of a rebuilt image tells which
+     * cached file IVs are worth checking again.
+     *
+     * @param leafSectors sectors in each leaf, ImageFingerprint.DEFAULT_LEAF_SECTORS to start with
+     * @param executor executor to hash leaves on in parallel, or null to hash on the calling thread
+     * @return fingerprint of the image
+     * @throws IOException failure to read the image
+     */
+    public ImageFingerprint getImageFingerprint(int leafSectors, Executor executor) throws IOException {
+        return ImageFingerprint.compute(getSectorSource(), leafSectors, executor);
+    }
+
+    private static String getInitializationVectorForImageWithSource(SectorSource source)
             throws IOException, NoSuchAlgorithmException {
         String iv = "I1|";
         int bytesToRead = 2048;
@@ -468,11 +828,12 @@ public class IsoFileReader implements AutoCloseable {
         iv += numberOfReadLocations;
         iv += "|";
 
-        iv += file.length();
+        long length = source.length();
+        iv += length;
         iv += "|";
 
         MessageDigest md = MessageDigest.getInstance("MD5");
-        updateHashWithData(md, file, bytesToRead, numberOfReadLocations);
+        updateHashWithData(md, source, length, bytesToRead, numberOfReadLocations);
 
         byte[] bytes = md.digest();
         StringBuilder sb = new StringBuilder();
@@ -485,13 +846,11 @@ public class IsoFileReader implements AutoCloseable {
     }
 
     private static void updateHashWithData(
-            MessageDigest md, RandomAccessFile file, int bytesToRead, int numberOfReadLocations) throws IOException {
-        for (long loc = 0; loc < numberOfReadLocations; loc += (file.length() / numberOfReadLocations) + 1) {
-            file.seek(loc);
+            MessageDigest md, SectorSource source, long length, int bytesToRead, int numberOfReadLocations)
+            throws IOException {
+        for (long loc = 0; loc < numberOfReadLocations; loc += (length / numberOfReadLocations) + 1) {
             byte[] byteArray = new byte[bytesToRead];
-            int bytesCount = 0;
-
-            bytesCount = file.read(byteArray);
+            int bytesCount = source.readFully(loc, byteArray, 0, bytesToRead);
             md.update(byteArray, 0, bytesCount);
         }
     }
@@ -511,8 +870,6 @@ public class IsoFileReader implements AutoCloseable {
         iv += numberOfReadLocations;
         iv += "|";
 
-        InputStream is = getFileStream(genericInternalIsoFile);
-
         iv += genericInternalIsoFile.getSize();
         iv += "|";
 
@@ -524,12 +881,34 @@ public class IsoFileReader implements AutoCloseable {
 
         MessageDigest md = MessageDigest.getInstance("MD5");
         md.update(genericInternalIsoFile.getFullFileName('/').getBytes(StandardCharsets.UTF_8));
-        String md5 = updateHashWithDataInputStream(md, is, bytesToRead, numberOfReadLocations);
+        String md5;
+        try (InputStream is = getFileStream(genericInternalIsoFile)) {
+            md5 = updateHashWithDataInputStream(md, is, bytesToRead, numberOfReadLocations);
+        }
 
         iv += md5;
         return iv;
     }
 
+    /**
+     * Version 2 of the file Initialization Vector, see getInitializationVectorForImageV2. Samples are spread from the
+     * first to the last byte of the file.
+     *
+     * @param genericInternalIsoFile file to build the IV for
+     * @return string of the IV, starting with F2
+     * @throws IOException failure to read inside the image where needed
+     */
+    public String getFileInitializationVectorForFileV2(GenericInternalIsoFile genericInternalIsoFile)
+            throws IOException {
+        return InitializationVectors.forFile(
+                getSectorSource(),
+                InitializationVectors.SAMPLE_SIZE,
+                InitializationVectors.FILE_SAMPLES,
+                genericInternalIsoFile.getSize(),
+                genericInternalIsoFile.getLogicalSectorLocation(),
+                genericInternalIsoFile.getFullFileName('/'));
+    }
+
     private static String updateHashWithDataInputStream(
             MessageDigest md, InputStream file, int bytesToRead, int numberOfReadLocations) throws IOException {
         for (long loc = 0; loc < numberOfReadLocations; loc += (file.available() / numberOfReadLocations) + 1) {
@@ -580,22 +959,11 @@ public class IsoFileReader implements AutoCloseable {
            I-IV: I1|2048|10|1310720|345bd27a7de3762f50b260f197023c13
            F-IV: F1|2048|4|53|550|/test2/aligned.md5|281864d2591d72115a41593c788cda4c
         */
-        if (!getInitializationVectorForImageWithPassedFile(rafFile).equals(imageIv)) {
+        if (!ivsMatch(rafFile, imageIv, fileIv)) {
             return Optional.empty();
         }
         String[] oldFiv = fileIv.split("\\|", -1);
 
-        String fiv = reconstructFileIv(
-                rafFile,
-                Integer.parseInt(oldFiv[1]), // Bytes To Read
-                Integer.parseInt(oldFiv[2]), // Places To Read
-                Long.parseLong(oldFiv[3]), // Size
-                Long.parseLong(oldFiv[4]), // Logical Sector
-                oldFiv[5]); // File Name
-        if (!fiv.equals(fileIv)) {
-            return Optional.empty();
-        }
-
         long dataSize = Long.parseLong(oldFiv[3]);
         byte[] data = new byte[(int) dataSize];
         try {
@@ -612,22 +980,69 @@ public class IsoFileReader implements AutoCloseable {
         return Optional.of(data);
     }
 
-    private static String reconstructFileIv(
-            RandomAccessFile rafFile,
-            int bytesToRead,
-            int numberOfReadLocations,
-            long size,
-            long logicalSector,
-            String filename)
+    /**
+     * Check the image IV and then the file IV, each in the version it was written in. Version 2 IVs are checked with
+     * positional reads on the channel of the file, which leaves its file pointer alone.
+     */
+    private static boolean ivsMatch(RandomAccessFile rafFile, String imageIv, String fileIv)
+            throws IOException, NoSuchAlgorithmException {
+        if (!imageIvMatches(rafFile, imageIv)) {
+            return false;
+        }
+        if (fileIv.startsWith(InitializationVectors.FILE_PREFIX)) {
+            return fileIvMatches(new FileChannelSectorSource(rafFile.getChannel()), fileIv);
+        }
+        String[] oldFiv = fileIv.split("\\|", -1);
+        InputStream data = new IsoInputStream(
+                rafFile, Long.parseLong(oldFiv[4]) * IsoFormatConstant.BYTES_PER_SECTOR, Long.parseLong(oldFiv[3]));
+        return reconstructFileIv(data, oldFiv).equals(fileIv);
+    }
+
+    /**
+     * Check an image IV of either version, version 1 moves the file pointer of the file.
+     */
+    static boolean imageIvMatches(RandomAccessFile rafFile, String imageIv)
             throws IOException, NoSuchAlgorithmException {
+        return imageIvMatches(new FileChannelSectorSource(rafFile.getChannel()), imageIv);
+    }
+
+    /**
+     * Check an image IV of either version with positional reads on the source.
+     */
+    static boolean imageIvMatches(SectorSource source, String imageIv) throws IOException, NoSuchAlgorithmException {
+        if (imageIv.startsWith(InitializationVectors.IMAGE_PREFIX)) {
+            return InitializationVectors.imageMatches(source, imageIv);
+        }
+        return getInitializationVectorForImageWithSource(source).equals(imageIv);
+    }
+
+    /**
+     * Check a file IV of either version with positional reads on the source, safe to call from many threads at once.
+     */
+    static boolean fileIvMatches(SectorSource source, String fileIv) throws IOException, NoSuchAlgorithmException {
+        if (fileIv.startsWith(InitializationVectors.FILE_PREFIX)) {
+            Optional<InitializationVectors.FileIv> parsed = InitializationVectors.parseFileIv(fileIv);
+            return parsed.isPresent() && InitializationVectors.fileMatches(source, parsed.get());
+        }
+        String[] oldFiv = fileIv.split("\\|", -1);
+        InputStream data = new IsoChannelInputStream(
+                source, Long.parseLong(oldFiv[4]) * IsoFormatConstant.BYTES_PER_SECTOR, Long.parseLong(oldFiv[3]));
+        return reconstructFileIv(data, oldFiv).equals(fileIv);
+    }
+
+    private static String reconstructFileIv(InputStream data, String[] oldFiv)
+            throws IOException, NoSuchAlgorithmException {
+        int bytesToRead = Integer.parseInt(oldFiv[1]);
+        int numberOfReadLocations = Integer.parseInt(oldFiv[2]);
+        long size = Long.parseLong(oldFiv[3]);
+        long logicalSector = Long.parseLong(oldFiv[4]);
+        String filename = oldFiv[5];
         String iv = "F1|" + bytesToRead + "|" + numberOfReadLocations + "|" + size + "|" + logicalSector + "|"
                 + filename + "|";
         // F1|2048|4|53|550|/test2/aligned.md5|281864d2591d72115a41593c788cda4c
-        IsoInputStream newInputStream =
-                new IsoInputStream(rafFile, logicalSector * IsoFormatConstant.BYTES_PER_SECTOR, size);
         MessageDigest md = MessageDigest.getInstance("MD5");
         md.update(filename.getBytes(StandardCharsets.UTF_8));
-        String md5 = updateHashWithDataInputStream(md, newInputStream, bytesToRead, numberOfReadLocations);
+        String md5 = updateHashWithDataInputStream(md, data, bytesToRead, numberOfReadLocations);
 
         iv += md5;
         return iv;
@@ -651,22 +1066,11 @@ public class IsoFileReader implements AutoCloseable {
            I-IV: I1|2048|10|1310720|345bd27a7de3762f50b260f197023c13
            F-IV: F1|2048|4|53|550|/test2/aligned.md5|281864d2591d72115a41593c788cda4c
         */
-        if (!getInitializationVectorForImageWithPassedFile(rafFile).equals(imageIv)) {
+        if (!ivsMatch(rafFile, imageIv, fileIv)) {
             return Optional.empty();
         }
         String[] oldFiv = fileIv.split("\\|", -1);
 
-        String fiv = reconstructFileIv(
-                rafFile,
-                Integer.parseInt(oldFiv[1]), // Bytes To Read
-                Integer.parseInt(oldFiv[2]), // Places To Read
-                Long.parseLong(oldFiv[3]), // Size
-                Long.parseLong(oldFiv[4]), // Logical Sector
-                oldFiv[5]); // File Name
-        if (!fiv.equals(fileIv)) {
-            return Optional.empty();
-        }
-
         IsoInputStream isoInputStream = new IsoInputStream(
                 rafFile, Long.parseLong(oldFiv[4]) * IsoFormatConstant.BYTES_PER_SECTOR, Long.parseLong(oldFiv[3]));
         return Optional.of(isoInputStream);
@@ -689,4 +1093,14 @@ public class IsoFileReader implements AutoCloseable {
         RandomAccessFile rafFile = new RandomAccessFile(file, "r");
         return getFileDataAsStreamWithIVs(rafFile, imageIv, fileIv);
     }
+
+    private static final class ContentCacheBinding {
+        private final FileContentCache cache;
+        private final String imageKey;
+
+        private ContentCacheBinding(FileContentCache cache, String imageKey) {
+            this.cache = cache;
+            this.imageKey = imageKey;
+        }
+    }
 }
@@ -249,6 +249,11 @@ public class IsoInputStream extends InputStream {
         file.close();
     }
 
+    /**
+     * Marks are not supported, reset always returns to the start of the file.
+     *
+     * @param readlimit ignored
+     */
     @Override
     @SuppressWarnings("StrictUnusedVariable")
     public synchronized void mark(int readlimit) {}
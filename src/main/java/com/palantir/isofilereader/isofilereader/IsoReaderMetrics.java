@@ -0,0 +1,106 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+/**
+ * Listener for where a reader spends its time, split between I/O (bytes, read calls, seeks, cache hits and misses)
+ * and parsing (directory sectors, descriptors) plus wall time of the main phases. Every method has an empty default
+ * so implementations only override what they need. Methods are called on the reading thread, often from several
+ * threads at once, and sit on the read path, so implementations must be thread safe and cheap.
+ */
+public interface IsoReaderMetrics {
+    /**
+     * Default listener, ignores everything.
+     */
+    IsoReaderMetrics NO_OP = new IsoReaderMetrics() {};
+
+    /**
+     * One read call against the image returned; each call is one read syscall.
+     *
+     * @param bytes bytes returned by the call, 0 at end of file
+     */
+    default void read(long bytes) {}
+
+    /**
+     * The file pointer of a RandomAccessFile on the image was moved. Positional reads do not seek.
+     */
+    default void seek() {}
+
+    /**
+     * A lookup was answered from a cache.
+     *
+     * @param cache name of the cache
+     */
+    default void cacheHit(String cache) {}
+
+    /**
+     * A lookup missed a cache and went to the image.
+     *
+     * @param cache name of the cache
+     */
+    default void cacheMiss(String cache) {}
+
+    /**
+     * Directory data was parsed, ISO-9660 directory extents or UDF File Identifier Descriptor areas.
+     *
+     * @param sectors number of sectors parsed
+     */
+    default void directorySectorsParsed(long sectors) {}
+
+    /**
+     * A UDF descriptor was read and parsed.
+     *
+     * @param tagIdentifier tag identifier of the descriptor, see Tag
+     */
+    default void descriptorParsed(int tagIdentifier) {}
+
+    /**
+     * A UDF volume descriptor failed its tag checksum, location or CRC check, so its sequence was not used as is.
+     *
+     * @param tagIdentifier tag identifier of the descriptor, see Tag
+     */
+    default void descriptorCheckFailed(int tagIdentifier) {}
+
+    /**
+     * An ISO-9660 volume descriptor was read and parsed.
+     *
+     * @param volumeDescriptorType type of the descriptor, see AbstractVolumeDescriptor
+     */
+    default void volumeDescriptorParsed(int volumeDescriptorType) {}
+
+    /**
+     * Time spent in findOptimalSettings.
+     *
+     * @param nanos elapsed nanoseconds
+     */
+    default void findOptimalSettingsTime(long nanos) {}
+
+    /**
+     * Time spent indexing the image, the getAllFiles family of calls.
+     *
+     * @param nanos elapsed nanoseconds
+     */
+    default void indexingTime(long nanos) {}
+
+    /**
+     * Time spent extracting a file with getFileBytes. Streams are read at the caller's pace, their cost shows up in
+     * read calls and bytes instead.
+     *
+     * @param nanos elapsed nanoseconds
+     */
+    default void extractionTime(long nanos) {}
+}
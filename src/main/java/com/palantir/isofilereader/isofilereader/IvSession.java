@@ -0,0 +1,191 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import com.palantir.isofilereader.isofilereader.io.FileChannelSectorSource;
+import com.palantir.isofilereader.isofilereader.io.SectorSource;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves many files of one image by their file IVs, checking the image IV only once. The session holds one open
+ * handle and reads through it with positional reads, so it can be shared by any number of threads. A thread interrupted
+ * mid read only fails its own read, the handle is reopened for the others, and reads fail instead if the image on disk
+ * was replaced since it was checked. File IVs of either version are checked once each and remembered for the life of
+ * the session.
+ */
+public final class IvSession implements AutoCloseable {
+    private final SectorSource source;
+    private final Map<String, Boolean> checkedFileIvs = new ConcurrentHashMap<>();
+
+    private IvSession(SectorSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Open a session on an image, checking the image IV of either version.
+     *
+     * @param image raw image file
+     * @param imageIv Initialization vector of the image, gotten from another time when the full library was used
+     * @return the open session, or empty if the image IV does not match and the image should be fully parsed instead
+     * @throws IOException failure opening or reading the image
+     * @throws NoSuchAlgorithmException MD5 is used to verify version 1 IVs
+     */
+    public static Optional<IvSession> open(File image, String imageIv) throws IOException, NoSuchAlgorithmException {
+        // Checked through the channel the session reads from, a reopen after an interrupt fails if the image changed
+        FileChannelSectorSource source = new FileChannelSectorSource(image);
+        boolean matches = false;
+        try {
+            matches = IsoFileReader.imageIvMatches(source, imageIv);
+        } finally {
+            if (!matches) {
+                source.close();
+            }
+        }
+        return matches ? Optional.of(new IvSession(source)) : Optional.empty();
+    }
+
+    /**
+     * Check a file IV against the image, the answer is remembered for the session.
+     *
+     * @param fileIv Initialization vector of the file
+     * @return true if the file IV matches
+     * @throws IOException failure reading the image
+     * @throws NoSuchAlgorithmException MD5 is used to verify version 1 IVs
+     */
+    public boolean isValid(String fileIv) throws IOException, NoSuchAlgorithmException {
+        Boolean checked = checkedFileIvs.get(fileIv);
+        if (checked != null) {
+            return checked;
+        }
+        boolean matches = IsoFileReader.fileIvMatches(source, fileIv);
+        checkedFileIvs.put(fileIv, matches);
+        return matches;
+    }
+
+    /**
+     * Check many file IVs at once on the executor, one task per IV not yet checked.
+     *
+     * @param fileIvs Initialization vectors of the files
+     * @param executor executor to check on, a virtual thread per task executor works well
+     * @return whether each file IV matches, in the order given
+     * @throws IOException failure reading the image
+     * @throws NoSuchAlgorithmException MD5 is used to verify version 1 IVs
+     */
+    public List<Boolean> validate(List<String> fileIvs, Executor executor)
+            throws IOException, NoSuchAlgorithmException {
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>(fileIvs.size());
+        for (String fileIv : fileIvs) {
+            Boolean checked = checkedFileIvs.get(fileIv);
+            if (checked != null) {
+                checks.add(CompletableFuture.completedFuture(checked));
+            } else {
+                checks.add(CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return isValid(fileIv);
+                            } catch (IOException | NoSuchAlgorithmException e) {
+                                throw new RuntimeException(e);
+                            }
+                        },
+                        executor));
+            }
+        }
+        List<Boolean> results = new ArrayList<>(checks.size());
+        for (CompletableFuture<Boolean> check : checks) {
+            results.add(join(check));
+        }
+        return results;
+    }
+
+    /**
+     * Get the bytes of a file if its IV matches.
+     *
+     * @param fileIv Initialization vector of the file
+     * @return the bytes of the file, or empty if the IV does not match
+     * @throws IOException failure reading the image
+     * @throws NoSuchAlgorithmException MD5 is used to verify version 1 IVs
+     */
+    public Optional<byte[]> getFileData(String fileIv) throws IOException, NoSuchAlgorithmException {
+        if (!isValid(fileIv)) {
+            return Optional.empty();
+        }
+        String[] fields = fileIv.split("\\|", -1);
+        long dataSize = Long.parseLong(fields[3]);
+        byte[] data = new byte[(int) dataSize];
+        int read =
+                source.readFully(Long.parseLong(fields[4]) * IsoFormatConstant.BYTES_PER_SECTOR, data, 0, data.length);
+        if (read != (int) dataSize) {
+            throw new IOException("Failed to read correct amount of data.");
+        }
+        return Optional.of(data);
+    }
+
+    /**
+     * Get a stream of a file if its IV matches. The stream reads through the session, so it must not be used after
+     * the session is closed, closing the stream leaves the session open.
+     *
+     * @param fileIv Initialization vector of the file
+     * @return the stream, or empty if the IV does not match
+     * @throws IOException failure reading the image
+     * @throws NoSuchAlgorithmException MD5 is used to verify version 1 IVs
+     */
+    public Optional<InputStream> getFileStream(String fileIv) throws IOException, NoSuchAlgorithmException {
+        if (!isValid(fileIv)) {
+            return Optional.empty();
+        }
+        String[] fields = fileIv.split("\\|", -1);
+        return Optional.of(new IsoChannelInputStream(
+                source, Long.parseLong(fields[4]) * IsoFormatConstant.BYTES_PER_SECTOR, Long.parseLong(fields[3])));
+    }
+
+    /**
+     * Close the handle on the image.
+     *
+     * @throws IOException failure closing the image
+     */
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private static boolean join(CompletableFuture<Boolean> check) throws IOException, NoSuchAlgorithmException {
+        try {
+            return check.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException && cause.getCause() instanceof IOException) {
+                throw (IOException) cause.getCause();
+            }
+            if (cause instanceof RuntimeException && cause.getCause() instanceof NoSuchAlgorithmException) {
+                throw (NoSuchAlgorithmException) cause.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+/**
+ * What ImageProbe found in an image's descriptors. Instances are immutable, so one can be kept per image (for example
+ * keyed by a content hash) and its setting passed to IsoFileReader(File, String) every time the image is opened,
+ * skipping detection entirely.
+ */
+public final class ProbedImage {
+    private final boolean iso9660;
+    private final boolean joliet;
+    private final boolean rockRidge;
+    private final boolean udf;
+    private final int udfRevision;
+    private final int primaryTable;
+    private final int jolietTable;
+
+    ProbedImage(
+            boolean iso9660,
+            boolean joliet,
+            boolean rockRidge,
+            boolean udf,
+            int udfRevision,
+            int primaryTable,
+            int jolietTable) {
+        this.iso9660 = iso9660;
+        this.joliet = joliet;
+        this.rockRidge = rockRidge;
+        this.udf = udf;
+        this.udfRevision = udfRevision;
+        this.primaryTable = primaryTable;
+        this.jolietTable = jolietTable;
+    }
+
+    /**
+     * The image has an ISO-9660 primary volume descriptor.
+     *
+     * @return true if so
+     */
+    public boolean isIso9660() {
+        return iso9660;
+    }
+
+    /**
+     * The image has a Joliet supplementary volume descriptor.
+     *
+     * @return true if so
+     */
+    public boolean hasJoliet() {
+        return joliet;
+    }
+
+    /**
+     * The root directory of the primary volume descriptor announces the Rock Ridge extensions.
+     *
+     * @return true if so
+     */
+    public boolean hasRockRidge() {
+        return rockRidge;
+    }
+
+    /**
+     * A valid UDF anchor volume descriptor pointer was found.
+     *
+     * @return true if so
+     */
+    public boolean isUdf() {
+        return udf;
+    }
+
+    /**
+     * UDF and ISO-9660 file systems describing the same files, usually called a bridge or hybrid image.
+     *
+     * @return true if both are present
+     */
+    public boolean isBridge() {
+        return udf && iso9660;
+    }
+
+    /**
+     * UDF revision from the logical volume domain identifier, as stored, so 0x0260 is UDF 2.60.
+     *
+     * @return revision, 0 if the image is not UDF or the revision could not be read
+     */
+    public int getUdfRevision() {
+        return udfRevision;
+    }
+
+    /**
+     * UDF revision formatted as it is written in the specification, for example "2.60".
+     *
+     * @return revision string, empty if unknown
+     */
+    public String getUdfRevisionAsString() {
+        if (udfRevision == 0) {
+            return "";
+        }
+        return Integer.toHexString(udfRevision >> 8) + "." + String.format("%02x", udfRevision & 0xFF);
+    }
+
+    /**
+     * The settings IsoFileReader would use for this image, formatted like IsoFileReader.getCurrentSetting(): UDF in
+     * use, Rock Ridge in use, table of contents index. UDF is preferred, then Joliet, then Rock Ridge. Joliet goes
+     * before Rock Ridge because many images carry Rock Ridge for POSIX attributes only, with no alternate names; when
+     * Rock Ridge names longer than Joliet's 64 characters matter, use IsoFileReader.findOptimalSettings() instead.
+     *
+     * @return setting string, for IsoFileReader(File, String)
+     */
+    public String getSetting() {
+        if (udf) {
+            return "1,0,0";
+        }
+        if (joliet) {
+            return "0,0," + jolietTable;
+        }
+        if (rockRidge) {
+            return "0,1," + primaryTable;
+        }
+        return "0,0," + primaryTable;
+    }
+
+    @Override
+    public String toString() {
+        return "ProbedImage{"
+                + "iso9660=" + iso9660
+                + ", joliet=" + joliet
+                + ", rockRidge=" + rockRidge
+                + ", udf=" + udf
+                + ", udfRevision=" + getUdfRevisionAsString()
+                + ", setting=" + getSetting()
+                + '}';
+    }
+}
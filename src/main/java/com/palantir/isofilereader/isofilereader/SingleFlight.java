@@ -0,0 +1,149 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent calls for the same key into one. The first caller runs the call, callers that arrive while it
+ * is in flight wait for it and get its result, or its exception, instead of repeating the work. If the call failed
+ * only because the thread running it was interrupted, waiting callers that were not interrupted run it again instead.
+ * Once the call finishes the key is free again, so results are never kept after the last waiter has them. Callers
+ * that wait for another's call are reported to the metrics as cache hits, callers that run the call as misses.
+ *
+ * @param <K> key of the work, such as a file extent
+ * @param <V> result of the work
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final IsoReaderMetrics metrics;
+    private final String name;
+
+    /**
+     * Create a SingleFlight that does not report to metrics.
+     */
+    public SingleFlight() {
+        this(IsoReaderMetrics.NO_OP, "");
+    }
+
+    /**
+     * Create a SingleFlight that reports each call to metrics.
+     *
+     * @param metrics listener, a caller that waits for another's call is a hit and one that runs it is a miss
+     * @param name name the calls are reported under
+     */
+    public SingleFlight(IsoReaderMetrics metrics, String name) {
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    /**
+     * Work that can be coalesced.
+     *
+     * @param <V> result of the work
+     * @param <E> checked exception thrown besides IOException
+     */
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+        V call() throws E, IOException;
+    }
+
+    /**
+     * Run the call, or wait for the one already in flight for the key.
+     *
+     * @param key key of the work
+     * @param call work to run if none is in flight
+     * @param share applied to the result for each waiting caller, for example to hand out copies of an array
+     * @param <E> checked exception thrown by the call besides IOException
+     * @return result of the call
+     * @throws E thrown by the call
+     * @throws IOException thrown by the call, or interrupted while waiting
+     */
+    public <E extends Exception> V run(K key, Call<V, E> call, UnaryOperator<V> share) throws E, IOException {
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+            if (leader == null) {
+                metrics.cacheMiss(name);
+                return lead(key, flight, call);
+            }
+            metrics.cacheHit(name);
+            try {
+                return share.apply(this.<E>await(leader));
+            } catch (ClosedByInterruptException | InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                // Only the leader was interrupted, its call says nothing about this one
+            }
+        }
+    }
+
+    private <E extends Exception> V lead(K key, CompletableFuture<V> flight, Call<V, E> call) throws E, IOException {
+        V value;
+        try {
+            value = call.call();
+        } catch (Throwable t) {
+            // Free the key first, so a waiter that retries starts a new call instead of seeing this one again
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(t);
+            throw t;
+        }
+        inFlight.remove(key, flight);
+        flight.complete(value);
+        return value;
+    }
+
+    /**
+     * Number of keys with a call in flight.
+     *
+     * @return calls in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> V await(CompletableFuture<V> leader) throws E, IOException {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a coalesced read");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // The leader ran a call for the same key, so it threw the same checked exception type
+            throw (E) cause;
+        }
+    }
+}
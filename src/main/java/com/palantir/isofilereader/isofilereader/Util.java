@@ -16,21 +16,30 @@
 
 package com.palantir.isofilereader.isofilereader;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
 import java.util.Optional;
-import java.util.TimeZone;
 
 public final class Util {
+    private static final int MAX_QUARTER_HOURS = 72;
+
+    /**
+     * ZoneOffsets for every 15 minute step ZoneOffset can represent (-18:00 to +18:00), indexed by quarter hours plus
+     * MAX_QUARTER_HOURS. Built once so decoding a timestamp never has to look up a time zone.
+     */
+    private static final ZoneOffset[] QUARTER_HOUR_OFFSETS = new ZoneOffset[MAX_QUARTER_HOURS * 2 + 1];
+
+    static {
+        for (int i = 0; i < QUARTER_HOUR_OFFSETS.length; i++) {
+            QUARTER_HOUR_OFFSETS[i] = ZoneOffset.ofTotalSeconds((i - MAX_QUARTER_HOURS) * 15 * 60);
+        }
+    }
+
     private Util() {}
 
     /**
@@ -51,33 +60,83 @@ public final class Util {
         return returningArray;
     }
 
+    /**
+     * Get the ZoneOffset for a GMT offset given in 15 minute intervals, as used by ECMA-119 9.1.5 and 8.4.26.1.
+     *
+     * @param quarterHours signed offset from GMT in 15 minute intervals
+     * @return cached ZoneOffset, UTC if the offset is outside what a ZoneOffset can hold
+     */
+    public static ZoneOffset quarterHourOffset(int quarterHours) {
+        if (quarterHours < -MAX_QUARTER_HOURS || quarterHours > MAX_QUARTER_HOURS) {
+            return ZoneOffset.UTC;
+        }
+        return QUARTER_HOUR_OFFSETS[quarterHours + MAX_QUARTER_HOURS];
+    }
+
+    /**
+     * Get the ZoneOffset for a GMT offset given in minutes, as used by UDF timestamps.
+     *
+     * @param minutes signed offset from GMT in minutes
+     * @return ZoneOffset, cached when the offset is a whole number of quarter hours, UTC if out of range
+     */
+    public static ZoneOffset minuteOffset(int minutes) {
+        if (minutes % 15 == 0) {
+            return quarterHourOffset(minutes / 15);
+        }
+        if (minutes < -MAX_QUARTER_HOURS * 15 || minutes > MAX_QUARTER_HOURS * 15) {
+            return ZoneOffset.UTC;
+        }
+        return ZoneOffset.ofTotalSeconds(minutes * 60);
+    }
+
     /**
      * Convert ISO format dates to Java Date. Note: This hasn't been thoroughly tested, most tools seem to standardize
      * to GMT.
      *
      * @param dateTime byte array of the date, 7 bytes
-     * @return Nicely formatted date inside and optional, if the provided data isn't 7 bytes, or cant convert to a
-     * date, you will get an empty optional.
+     * @return Nicely formatted date inside and optional, if the provided data isn't 7 bytes you will get an empty
+     * optional. Fields out of range roll over leniently as they always have, so an all zero date gives 1899-11-30,
+     * use convert9_1_5OffsetDateTime to get an empty optional for those instead.
      */
     public static Optional<Date> convert9_1_5DateTime(byte[] dateTime) {
         if (dateTime.length != 7) {
             return Optional.empty();
         }
-        int year = 1900 + Byte.toUnsignedInt(dateTime[0]);
-        int month = dateTime[1] - 1;
-        int day = dateTime[2];
-        int hour = dateTime[3];
-        int minute = dateTime[4];
-        int second = dateTime[5];
-        int offset = dateTime[6]; // This is a signed number, GMT offset 15 minutes * this
-        int rawOffsetAdjustedForJava = offset * 15 * 60 * 1000;
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(year, month, day, hour, minute, second);
-        String[] timezones = TimeZone.getAvailableIDs(rawOffsetAdjustedForJava);
-        if (timezones.length > 0) { // If an offset is entered and a timezone at that location doesn't exist
-            calendar.setTimeZone(TimeZone.getTimeZone(timezones[0]));
-        }
-        return Optional.of(calendar.getTime());
+        // Each field is added on to the start of the year, the same roll over as a lenient Calendar
+        OffsetDateTime time = OffsetDateTime.of(
+                        1900 + Byte.toUnsignedInt(dateTime[0]), 1, 1, 0, 0, 0, 0, quarterHourOffset(dateTime[6]))
+                .plusMonths(dateTime[1] - 1L)
+                .plusDays(dateTime[2] - 1L)
+                .plusHours(dateTime[3])
+                .plusMinutes(dateTime[4])
+                .plusSeconds(dateTime[5]);
+        return Optional.of(Date.from(time.toInstant()));
+    }
+
+    /**
+     * Convert ISO format dates (ECMA-119 9.1.5, used in directory records) to an OffsetDateTime.
+     *
+     * @param dateTime byte array of the date, 7 bytes
+     * @return date with its recorded GMT offset, empty if the data isn't 7 bytes or is not a valid date
+     */
+    public static Optional<OffsetDateTime> convert9_1_5OffsetDateTime(byte[] dateTime) {
+        if (dateTime.length != 7) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(OffsetDateTime.of(
+                    1900 + Byte.toUnsignedInt(dateTime[0]),
+                    dateTime[1],
+                    dateTime[2],
+                    dateTime[3],
+                    dateTime[4],
+                    dateTime[5],
+                    0,
+                    // This is a signed number, GMT offset 15 minutes * this
+                    quarterHourOffset(dateTime[6])));
+        } catch (DateTimeException e) {
+            return Optional.empty();
+        }
     }
 
     /**
@@ -89,50 +148,120 @@ public final class Util {
      * @throws ParseException If the bytes cannot be converted, a ParseException can be thrown.
      */
     public static Optional<Date> convert8_4_26_1DateTime(byte[] dateTime) throws ParseException {
-        String dateAsString = new String(Arrays.copyOf(dateTime, 16), StandardCharsets.UTF_8);
+        return convert8_4_26_1OffsetDateTime(dateTime).map(time -> Date.from(time.toInstant()));
+    }
+
+    /**
+     * Convert a date according to ECMA-119 8.4.26.1 (16 ASCII digits and a GMT offset byte) to an OffsetDateTime.
+     *
+     * @param dateTime 17 bytes of the date and time to convert
+     * @return date with its recorded GMT offset, empty if the date is all zeros (not specified) or too short
+     * @throws ParseException if the digits are not digits or do not form a valid date
+     */
+    public static Optional<OffsetDateTime> convert8_4_26_1OffsetDateTime(byte[] dateTime) throws ParseException {
         // 2019112123095100
-        if (dateAsString.length() != 16) {
+        if (dateTime.length < 17) {
             return Optional.empty();
         }
-        DateFormat df = new SimpleDateFormat("yyyyMMddkkmmssSS", Locale.ENGLISH);
-        int offset = dateTime[16]; // This is a signed number, GMT offset 15 minutes * this
-        int rawOffsetAdjustedForJava = offset * 15 * 60 * 1000;
-        String[] timezones = TimeZone.getAvailableIDs(rawOffsetAdjustedForJava);
-        if (timezones.length > 0) { // If an offset is entered and a timezone at that location doesnt exist
-            df.setTimeZone(TimeZone.getTimeZone(timezones[0]));
+        int year = asciiDigits(dateTime, 0, 4);
+        int month = asciiDigits(dateTime, 4, 2);
+        int day = asciiDigits(dateTime, 6, 2);
+        int hour = asciiDigits(dateTime, 8, 2);
+        int minute = asciiDigits(dateTime, 10, 2);
+        int second = asciiDigits(dateTime, 12, 2);
+        int hundredths = asciiDigits(dateTime, 14, 2);
+        if (year == 0 && month == 0 && day == 0) {
+            // All zeros means the date and time is not specified
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(OffsetDateTime.of(
+                    year,
+                    month,
+                    day,
+                    hour,
+                    minute,
+                    second,
+                    hundredths * 10_000_000,
+                    // This is a signed number, GMT offset 15 minutes * this
+                    quarterHourOffset(dateTime[16])));
+        } catch (DateTimeException e) {
+            ParseException parseException = new ParseException("Invalid date " + e.getMessage(), 0);
+            parseException.initCause(e);
+            throw parseException;
         }
-        return Optional.ofNullable(df.parse(dateAsString));
+    }
+
+    private static int asciiDigits(byte[] data, int offset, int length) throws ParseException {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ParseException("Unparseable date digit", i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 
     /**
-     * Convert UDF style dStrings into Java Strings.
+     * Convert UDF style dStrings into Java Strings. A dString is a fixed size field whose last byte holds the number
+     * of bytes in use, compression ID included (ECMA-167 1/7.2.12). Fields that do not carry a usable length byte fall
+     * back to dropping trailing padding, a whole character at a time so 16 bit names keep their last character.
      *
      * @param inputData byte array of dString
      * @return Java String
      */
     public static String convertDStringBytesToString(byte[] inputData) {
-        if (inputData.length == 0) {
+        if (inputData.length < 2) {
             return "";
         }
-        int compressionId = Byte.toUnsignedInt(inputData[0]);
-        Charset usingCharset = StandardCharsets.UTF_8;
-        if ((compressionId == 16 || compressionId == 255)) {
-            usingCharset = StandardCharsets.UTF_16;
-        }
-        // I have yet to find this in use, but it could be in the future.
-        // TODO(#57): Implement dString compression.
-        // boolean isCompressed = (compressionId == 254 || compressionId == 255);
-
-        int realLength = inputData.length;
-        // For some reason some fields seem to have an extra bit at the end.
-        for (int i = inputData.length - 1; i >= 0; i--) {
-            if (inputData[i] != 0x00) {
-                realLength = i;
-                break;
-            }
+        int recordedLength = Byte.toUnsignedInt(inputData[inputData.length - 1]);
+        if (recordedLength > 0 && recordedLength < inputData.length) {
+            return convertDCharactersToString(inputData, 0, recordedLength);
+        }
+        int unit = isSixteenBitCompression(Byte.toUnsignedInt(inputData[0])) ? 2 : 1;
+        int end = inputData.length - ((inputData.length - 1) % unit);
+        while (end > 1 && isZero(inputData, end - unit, unit)) {
+            end -= unit;
         }
+        return convertDCharactersToString(inputData, 0, end);
+    }
+
+    /**
+     * Convert OSTA CS0 d-characters, such as a File Identifier, into a Java String. The first byte is the compression
+     * ID, 8 and 254 store one byte per character (Unicode code points up to 255, which is Latin-1), 16 and 255 store
+     * two bytes per character big endian. Every byte after the compression ID is part of the name, nothing is
+     * trimmed.
+     *
+     * @param data bytes holding the d-characters
+     * @param offset offset of the compression ID
+     * @param length number of bytes, compression ID included
+     * @return Java String
+     */
+    public static String convertDCharactersToString(byte[] data, int offset, int length) {
+        if (length <= 1) {
+            return "";
+        }
+        int compressionId = Byte.toUnsignedInt(data[offset]);
+        if (isSixteenBitCompression(compressionId)) {
+            // An odd trailing byte can not be half of a character, leave it out
+            return new String(data, offset + 1, (length - 1) & ~1, StandardCharsets.UTF_16BE);
+        }
+        return new String(data, offset + 1, length - 1, StandardCharsets.ISO_8859_1);
+    }
 
-        return new String(Arrays.copyOfRange(inputData, 1, realLength + 1), usingCharset);
+    private static boolean isSixteenBitCompression(int compressionId) {
+        return compressionId == 16 || compressionId == 255;
+    }
+
+    private static boolean isZero(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] != 0x00) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -142,12 +271,7 @@ public final class Util {
      * @return java int
      */
     public static int twoUnsignedByteToInt(byte[] data) {
-        byte[] temp = new byte[4];
-        temp[1] = data[1];
-        temp[0] = data[0];
-        final ByteBuffer bb = ByteBuffer.wrap(temp);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.uint16Le(data, 0);
     }
 
     /**
@@ -157,8 +281,6 @@ public final class Util {
      * @return java int
      */
     public static int fourUnsignedByteToInt(byte[] data) {
-        final ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(data, 0);
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import com.palantir.isofilereader.isofilereader.SingleFlight;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache of fixed size blocks of images, meant to be shared by every reader in the JVM so directory and descriptor
+ * sectors are read from disk once. Blocks are keyed by an image key and block number. The blocks are split over
+ * stripes by key, each stripe is least recently used and has its own lock, so readers of different blocks rarely wait
+ * on each other. Blocks are read through with {@link CachingSectorSource}, concurrent misses on one block share a
+ * single read.
+ */
+public final class BlockCache {
+    public static final String BLOCK_CACHE = "blocks";
+    public static final int DEFAULT_BLOCK_SIZE = 8192;
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int STRIPES = 16;
+
+    private final int blockSize;
+    private final int capacity;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final SingleFlight<Key, byte[]> loads = new SingleFlight<>();
+
+    /**
+     * Create a cache of DEFAULT_CAPACITY blocks of DEFAULT_BLOCK_SIZE bytes, 32 MiB in all.
+     */
+    public BlockCache() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param blockSize bytes in each block, a multiple of the 2048 byte sector
+     * @param capacity most blocks held at once, over all images
+     */
+    public BlockCache(int blockSize, int capacity) {
+        if (blockSize <= 0 || blockSize % 2048 != 0) {
+            throw new IllegalArgumentException("Block size must be a positive multiple of 2048, got " + blockSize);
+        }
+        if (capacity < STRIPES) {
+            throw new IllegalArgumentException("Capacity must be at least " + STRIPES + " blocks, got " + capacity);
+        }
+        this.blockSize = blockSize;
+        this.capacity = capacity;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity / STRIPES);
+        }
+    }
+
+    /**
+     * Key for an image, from its path, length and modification time, so a rebuilt image gets new blocks.
+     *
+     * @param isoFile image
+     * @return key to cache blocks of the image under
+     */
+    public static String imageKey(File isoFile) {
+        return isoFile.getAbsolutePath() + "|" + isoFile.length() + "|" + isoFile.lastModified();
+    }
+
+    /**
+     * Bytes in each block.
+     *
+     * @return block size
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Most blocks held at once.
+     *
+     * @return capacity in blocks
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Look up a block. The returned array is shared and must not be changed, it is shorter than the block size for
+     * the last block of an image.
+     *
+     * @param image key of the image
+     * @param block block number, the byte position divided by the block size
+     * @return the block, or null if not cached
+     */
+    public byte[] get(String image, long block) {
+        Key key = new Key(image, block);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    /**
+     * Add a block, evicting the least recently used block of its stripe if the stripe is full. The array is kept as
+     * is, it must not be changed afterwards.
+     *
+     * @param image key of the image
+     * @param block block number
+     * @param data contents of the block
+     */
+    public void put(String image, long block, byte[] data) {
+        Key key = new Key(image, block);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, data);
+        }
+    }
+
+    /**
+     * Load a block that missed the cache and add it. Threads loading the same block at once share one load.
+     *
+     * @param image key of the image
+     * @param block block number
+     * @param loader reads the block from the image
+     * @return the block, shared and not to be changed
+     * @throws IOException failure reading the block
+     */
+    public byte[] load(String image, long block, SingleFlight.Call<byte[], RuntimeException> loader)
+            throws IOException {
+        Key key = new Key(image, block);
+        return loads.run(
+                key,
+                () -> {
+                    byte[] data = loader.call();
+                    Stripe stripe = stripeFor(key);
+                    synchronized (stripe) {
+                        stripe.put(key, data);
+                    }
+                    return data;
+                },
+                UnaryOperator.identity());
+    }
+
+    /**
+     * Number of blocks held.
+     *
+     * @return blocks in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Drop every block.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    private Stripe stripeFor(Key key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * One least recently used stripe, callers hold its monitor.
+     */
+    private static final class Stripe {
+        private final int maxBlocks;
+        // Access ordered, so the first entry is the least recently used
+        private final LinkedHashMap<Key, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+        Stripe(int maxBlocks) {
+            this.maxBlocks = maxBlocks;
+        }
+
+        byte[] get(Key key) {
+            return blocks.get(key);
+        }
+
+        void put(Key key, byte[] data) {
+            blocks.put(key, data);
+            if (blocks.size() > maxBlocks) {
+                Iterator<Key> eldest = blocks.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        int size() {
+            return blocks.size();
+        }
+
+        void clear() {
+            blocks.clear();
+        }
+    }
+
+    private static final class Key {
+        private final String image;
+        private final long block;
+
+        Key(String image, long block) {
+            this.image = image;
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return block == that.block && image.equals(that.image);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * image.hashCode() + Long.hashCode(block);
+        }
+    }
+}
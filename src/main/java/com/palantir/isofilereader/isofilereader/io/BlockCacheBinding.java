@@ -0,0 +1,63 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import java.io.File;
+
+/**
+ * A shared BlockCache together with the key of one image in it. The key is computed once, when the binding is made,
+ * and every handle and reader of the image reads through the same binding, so all of them cache the image under the
+ * same key.
+ */
+public final class BlockCacheBinding {
+    private final BlockCache cache;
+    private final String imageKey;
+
+    private BlockCacheBinding(BlockCache cache, String imageKey) {
+        this.cache = cache;
+        this.imageKey = imageKey;
+    }
+
+    /**
+     * Bind a cache to an image, taking the image key from its path, length and modification time now.
+     *
+     * @param cache shared cache, or null
+     * @param isoFile image
+     * @return binding, or null if cache is null
+     */
+    public static BlockCacheBinding of(BlockCache cache, File isoFile) {
+        return cache == null ? null : new BlockCacheBinding(cache, BlockCache.imageKey(isoFile));
+    }
+
+    /**
+     * Get the shared cache.
+     *
+     * @return cache
+     */
+    public BlockCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Get the key of the image in the cache.
+     *
+     * @return image key
+     */
+    public String getImageKey() {
+        return imageKey;
+    }
+}
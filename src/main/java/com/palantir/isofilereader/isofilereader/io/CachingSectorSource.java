@@ -0,0 +1,96 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * SectorSource decorator that reads through a shared {@link BlockCache}. Each block a read touches is taken from the
+ * cache, or read whole from the delegate and added. Reads longer than a few blocks are file data rather than metadata
+ * and go straight to the delegate, so they do not push directory and descriptor blocks out. Lookups are reported to
+ * the metrics as hits and misses on {@link BlockCache#BLOCK_CACHE}.
+ */
+public final class CachingSectorSource implements SectorSource {
+    private static final int MAX_CACHED_READ_BLOCKS = 8;
+
+    private final SectorSource delegate;
+    private final BlockCache cache;
+    private final String image;
+    private final IsoReaderMetrics metrics;
+
+    /**
+     * Wrap a source, closing this closes the delegate.
+     *
+     * @param delegate source to read from on a miss
+     * @param cache shared block cache
+     * @param image key of the image, see BlockCache.imageKey
+     * @param metrics listener for hits and misses
+     */
+    public CachingSectorSource(SectorSource delegate, BlockCache cache, String image, IsoReaderMetrics metrics) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.image = image;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        int blockSize = cache.getBlockSize();
+        if (length > blockSize * MAX_CACHED_READ_BLOCKS) {
+            return delegate.read(position, buffer, offset, length);
+        }
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            byte[] block = getBlock(current / blockSize);
+            int inBlock = (int) (current % blockSize);
+            if (inBlock >= block.length) {
+                break;
+            }
+            int count = Math.min(length - copied, block.length - inBlock);
+            System.arraycopy(block, inBlock, buffer, offset + copied, count);
+            copied += count;
+        }
+        return copied == 0 && length > 0 ? -1 : copied;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return delegate.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private byte[] getBlock(long blockNumber) throws IOException {
+        byte[] block = cache.get(image, blockNumber);
+        if (block != null) {
+            metrics.cacheHit(BlockCache.BLOCK_CACHE);
+            return block;
+        }
+        metrics.cacheMiss(BlockCache.BLOCK_CACHE);
+        return cache.load(image, blockNumber, () -> {
+            byte[] data = new byte[cache.getBlockSize()];
+            int read = delegate.readFully(blockNumber * data.length, data, 0, data.length);
+            return read == data.length ? data : Arrays.copyOf(data, Math.max(0, read));
+        });
+    }
+}
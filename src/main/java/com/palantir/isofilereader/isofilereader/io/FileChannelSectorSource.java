@@ -0,0 +1,176 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * SectorSource backed by a single FileChannel using positional reads. FileChannel.read(ByteBuffer, long) does not
+ * touch the channel position, so concurrent readers never need to coordinate and no monitor is held while the read
+ * is in flight. Interrupting a thread in a channel read closes the channel, a source opened from a file reopens it so
+ * only the interrupted read fails and the other readers carry on. The reopened channel must be the same file, same file
+ * key, size and modification time, as the one first opened, so a source never silently moves to a replaced image.
+ */
+public final class FileChannelSectorSource implements SectorSource {
+    // Null when wrapping a channel opened elsewhere, such a channel can not be reopened
+    private final File isoFile;
+    // Identity of the file first opened, null when wrapping a channel
+    private final FileIdentity identity;
+    private volatile FileChannel channel;
+    private volatile boolean closed = false;
+
+    /**
+     * Open the image for positional reading.
+     *
+     * @param isoFile image to open
+     * @throws IOException failure opening the image
+     */
+    public FileChannelSectorSource(File isoFile) throws IOException {
+        this.isoFile = isoFile;
+        FileChannel opened = FileChannel.open(isoFile.toPath(), StandardOpenOption.READ);
+        try {
+            this.identity = FileIdentity.of(isoFile, opened);
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+        this.channel = opened;
+    }
+
+    /**
+     * Wrap an already open channel, the channel will be closed when this source is closed. An interrupted read
+     * closes the channel for good, so the source fails from then on.
+     *
+     * @param channel channel opened for reading
+     */
+    public FileChannelSectorSource(FileChannel channel) {
+        this.isoFile = null;
+        this.identity = null;
+        this.channel = channel;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            FileChannel current = channel;
+            try {
+                return current.read(ByteBuffer.wrap(buffer, offset, length), position);
+            } catch (ClosedByInterruptException e) {
+                // This thread was interrupted, its read fails but the next reader gets a fresh channel
+                reopen(current, e);
+                throw e;
+            } catch (ClosedChannelException e) {
+                // Another thread was interrupted mid read, retry on a fresh channel
+                reopen(current, e);
+            }
+        }
+    }
+
+    @Override
+    public long length() throws IOException {
+        while (true) {
+            FileChannel current = channel;
+            try {
+                return current.size();
+            } catch (ClosedByInterruptException e) {
+                reopen(current, e);
+                throw e;
+            } catch (ClosedChannelException e) {
+                reopen(current, e);
+            }
+        }
+    }
+
+    private synchronized void reopen(FileChannel failed, ClosedChannelException cause) throws IOException {
+        if (closed || isoFile == null) {
+            throw cause;
+        }
+        if (channel != failed) {
+            return;
+        }
+        FileChannel reopened = FileChannel.open(isoFile.toPath(), StandardOpenOption.READ);
+        try {
+            if (!identity.equals(FileIdentity.of(isoFile, reopened))) {
+                throw new IOException("Image changed since it was opened: " + isoFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            reopened.close();
+            throw e;
+        }
+        channel = reopened;
+    }
+
+    /**
+     * Close the underlying channel.
+     *
+     * @throws IOException failure closing the channel
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private static final class FileIdentity {
+        private final Object fileKey;
+        private final FileTime lastModified;
+        private final long size;
+
+        private FileIdentity(Object fileKey, FileTime lastModified, long size) {
+            this.fileKey = fileKey;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * Identity of the file at the path, checked against the open channel so a file renamed over the path between
+         * the open and the stat is noticed.
+         */
+        static FileIdentity of(File file, FileChannel channel) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            long size = channel.size();
+            if (attributes.size() != size) {
+                throw new IOException("Image changed while it was opened: " + file);
+            }
+            return new FileIdentity(attributes.fileKey(), attributes.lastModifiedTime(), size);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FileIdentity)) {
+                return false;
+            }
+            FileIdentity that = (FileIdentity) other;
+            return Objects.equals(fileKey, that.fileKey) && lastModified.equals(that.lastModified) && size == that.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileKey, lastModified, size);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte bounded cache of small file contents, keyed by an image key and the extent of the file. Only files up to
+ * the size threshold are admitted, so a few large reads can not push out many hot small files. When the budget is
+ * full entries are evicted with the CLOCK algorithm: a hand sweeps the entries, clearing the referenced bit of ones
+ * read since its last pass and evicting the first one that was not. One cache can be shared by many readers, as the
+ * image key keeps their entries apart. All methods are thread safe.
+ */
+public final class FileContentCache {
+    public static final String CONTENT_CACHE = "fileContents";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILE_SIZE = 64 * 1024;
+
+    private final long maxBytes;
+    private final int maxFileSize;
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private final List<Entry> clock = new ArrayList<>();
+    private int hand = 0;
+    private long usedBytes = 0;
+
+    /**
+     * Create a cache with the default budget and size threshold.
+     */
+    public FileContentCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maxBytes most bytes of file content held at once
+     * @param maxFileSize largest file admitted, in bytes
+     */
+    public FileContentCache(long maxBytes, int maxFileSize) {
+        if (maxBytes < 0 || maxFileSize < 0) {
+            throw new IllegalArgumentException("Cache bounds can not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Check whether a file of this size would be admitted.
+     *
+     * @param size size of the file in bytes
+     * @return true if the file is small enough to cache
+     */
+    public boolean admits(long size) {
+        return size <= maxFileSize && size <= maxBytes;
+    }
+
+    /**
+     * Look up a file. The returned array is the cached one and must not be changed.
+     *
+     * @param image key of the image, such as BlockCache.imageKey
+     * @param logicalSector logical sector the file data starts at
+     * @param size size of the file in bytes
+     * @return contents of the file, or null if not cached
+     */
+    public synchronized byte[] get(String image, long logicalSector, long size) {
+        Entry entry = entries.get(new Key(image, logicalSector, size));
+        if (entry == null) {
+            return null;
+        }
+        entry.referenced = true;
+        return entry.data;
+    }
+
+    /**
+     * Add a file, if it is small enough. Entries are evicted until it fits in the budget. The array is kept as is, it
+     * must not be changed afterwards.
+     *
+     * @param image key of the image, such as BlockCache.imageKey
+     * @param logicalSector logical sector the file data starts at
+     * @param data contents of the file
+     */
+    public synchronized void put(String image, long logicalSector, byte[] data) {
+        if (!admits(data.length)) {
+            return;
+        }
+        Key key = new Key(image, logicalSector, data.length);
+        if (entries.containsKey(key)) {
+            return;
+        }
+        while (usedBytes + data.length > maxBytes) {
+            evictOne();
+        }
+        Entry entry = new Entry(key, data);
+        entries.put(key, entry);
+        clock.add(entry);
+        usedBytes += data.length;
+    }
+
+    /**
+     * Bytes of file content held.
+     *
+     * @return bytes in the cache
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Number of files held.
+     *
+     * @return entries in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drop every entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        clock.clear();
+        hand = 0;
+        usedBytes = 0;
+    }
+
+    private void evictOne() {
+        while (true) {
+            if (hand >= clock.size()) {
+                hand = 0;
+            }
+            Entry entry = clock.get(hand);
+            if (entry.referenced) {
+                entry.referenced = false;
+                hand++;
+                continue;
+            }
+            // Move the last entry into the free slot, the hand looks at it next
+            Entry last = clock.remove(clock.size() - 1);
+            if (last != entry) {
+                clock.set(hand, last);
+            }
+            entries.remove(entry.key);
+            usedBytes -= entry.data.length;
+            return;
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final byte[] data;
+        private boolean referenced = false;
+
+        Entry(Key key, byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
+
+    private static final class Key {
+        private final String image;
+        private final long logicalSector;
+        private final long size;
+
+        Key(String image, long logicalSector, long size) {
+            this.image = image;
+            this.logicalSector = logicalSector;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return logicalSector == that.logicalSector && size == that.size && image.equals(that.image);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * image.hashCode() + Long.hashCode(logicalSector)) + Long.hashCode(size);
+        }
+    }
+}
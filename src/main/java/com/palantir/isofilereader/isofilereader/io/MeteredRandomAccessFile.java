@@ -0,0 +1,129 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Read only RandomAccessFile that reports every read call and seek to an IsoReaderMetrics. readFully and the other
+ * DataInput methods go through the overridden reads, so they are counted per underlying call. When opened with a
+ * BlockCache, array reads are served through the cache and only misses reach the image. Misses are read through this
+ * handle rather than its FileChannel, so an interrupt never closes it.
+ */
+public class MeteredRandomAccessFile extends RandomAccessFile {
+    private final IsoReaderMetrics metrics;
+    private SectorSource cached;
+
+    /**
+     * Open the image read only.
+     *
+     * @param isoFile image to open
+     * @param metrics listener for reads and seeks
+     * @throws FileNotFoundException the image can not be opened
+     */
+    public MeteredRandomAccessFile(File isoFile, IsoReaderMetrics metrics) throws FileNotFoundException {
+        this(isoFile, metrics, null);
+    }
+
+    /**
+     * Open the image read only, reading through a shared block cache.
+     *
+     * @param isoFile image to open
+     * @param metrics listener for reads, seeks and block cache lookups
+     * @param blockCache binding of the shared cache to this image, or null to read the image directly
+     * @throws FileNotFoundException the image can not be opened
+     */
+    public MeteredRandomAccessFile(File isoFile, IsoReaderMetrics metrics, BlockCacheBinding blockCache)
+            throws FileNotFoundException {
+        super(isoFile, "r");
+        this.metrics = metrics;
+        useBlockCache(blockCache);
+    }
+
+    /**
+     * Read through a block cache from now on, or directly from the image for null. Used by the pool to bind a leased
+     * handle to the cache of its reader.
+     */
+    final void useBlockCache(BlockCacheBinding blockCache) {
+        this.cached = blockCache == null
+                ? null
+                : new CachingSectorSource(
+                        new MeteredSectorSource(new HandleSectorSource(), metrics),
+                        blockCache.getCache(),
+                        blockCache.getImageKey(),
+                        metrics);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        metrics.read(value < 0 ? 0 : 1);
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (cached != null) {
+            long position = getFilePointer();
+            int read = cached.read(position, buffer, offset, length);
+            if (read > 0) {
+                // Not a seek of the caller, only keeps the file pointer where a direct read would leave it
+                super.seek(position + read);
+            }
+            return read;
+        }
+        int read = super.read(buffer, offset, length);
+        metrics.read(Math.max(0, read));
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer) throws IOException {
+        return read(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        super.seek(position);
+        metrics.seek();
+    }
+
+    /**
+     * Cache misses, read with the plain RandomAccessFile calls so they are counted once by the metered wrapper.
+     */
+    private final class HandleSectorSource implements SectorSource {
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+            MeteredRandomAccessFile.super.seek(position);
+            return MeteredRandomAccessFile.super.read(buffer, offset, length);
+        }
+
+        @Override
+        public long length() throws IOException {
+            return MeteredRandomAccessFile.this.length();
+        }
+
+        @Override
+        public void close() {
+            // The handle is closed by its owner
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import java.io.IOException;
+
+/**
+ * SectorSource decorator that reports every read call to an IsoReaderMetrics. Positional reads have no seeks.
+ */
+public final class MeteredSectorSource implements SectorSource {
+    private final SectorSource delegate;
+    private final IsoReaderMetrics metrics;
+
+    /**
+     * Wrap a source, closing this closes the delegate.
+     *
+     * @param delegate source to read from
+     * @param metrics listener for reads
+     */
+    public MeteredSectorSource(SectorSource delegate, IsoReaderMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        int read = delegate.read(position, buffer, offset, length);
+        metrics.read(Math.max(0, read));
+        return read;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return delegate.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A pool of read only handles on one image. A handle is leased with {@link #lease()} and given back by closing it,
+ * after which it is kept open for the next lease. Leases are never refused or made to wait, a handle that is never
+ * given back simply stays leased until the pool is closed, as handles from getRawIsoWithAutoClose always have. At most
+ * maxIdleHandles given back handles are kept, further ones are closed straight away. There is no timer, a kept handle
+ * that has been idle for the idle timeout is closed the next time a handle is leased or given back, and all handles
+ * are closed with the pool. Reusing an idle handle is reported to the metrics as a cache hit on
+ * {@link #FILE_HANDLE_CACHE}, opening a new one as a miss.
+ */
+public final class RandomAccessFilePool implements AutoCloseable {
+    public static final String FILE_HANDLE_CACHE = "fileHandles";
+    public static final int DEFAULT_MAX_IDLE_HANDLES = 16;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    private final File isoFile;
+    private final IsoReaderMetrics metrics;
+    private final int maxIdleHandles;
+    private final long idleTimeoutNanos;
+    // Most recently returned first, so the oldest handles are the ones left to go idle
+    private final Deque<IdleHandle> idle = new ArrayDeque<>();
+    private final Set<PooledRandomAccessFile> leased = new HashSet<>();
+    private boolean closed = false;
+
+    /**
+     * Create a pool with the default bounds.
+     *
+     * @param isoFile image to open handles on
+     * @param metrics listener for reads, seeks and handle reuse
+     */
+    public RandomAccessFilePool(File isoFile, IsoReaderMetrics metrics) {
+        this(isoFile, metrics, DEFAULT_MAX_IDLE_HANDLES, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Create a pool, no handles are opened until the first lease.
+     *
+     * @param isoFile image to open handles on
+     * @param metrics listener for reads, seeks and handle reuse
+     * @param maxIdleHandles most given back handles kept open for reuse
+     * @param idleTimeout how long a given back handle is kept for reuse, zero closes it straight away
+     */
+    public RandomAccessFilePool(File isoFile, IsoReaderMetrics metrics, int maxIdleHandles, Duration idleTimeout) {
+        if (maxIdleHandles < 0) {
+            throw new IllegalArgumentException("Idle handle bound can not be negative, got " + maxIdleHandles);
+        }
+        this.isoFile = isoFile;
+        this.metrics = metrics;
+        this.maxIdleHandles = maxIdleHandles;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Lease a handle on the image. Close the handle to give it back, it must not be used after that.
+     *
+     * @return handle positioned wherever its last user left it
+     * @throws FileNotFoundException the image can not be opened
+     * @throws IllegalStateException the pool is closed
+     */
+    public RandomAccessFile lease() throws FileNotFoundException {
+        return lease(null);
+    }
+
+    /**
+     * Lease a handle on the image that reads through a block cache until it is given back. Close the handle to give
+     * it back, it must not be used after that.
+     *
+     * @param blockCache binding of the shared cache to this image, or null to read the image directly
+     * @return handle positioned wherever its last user left it
+     * @throws FileNotFoundException the image can not be opened
+     * @throws IllegalStateException the pool is closed
+     */
+    public RandomAccessFile lease(BlockCacheBinding blockCache) throws FileNotFoundException {
+        PooledRandomAccessFile handle = takeIdle();
+        if (handle == null) {
+            metrics.cacheMiss(FILE_HANDLE_CACHE);
+            handle = new PooledRandomAccessFile(this, isoFile, metrics);
+        } else {
+            metrics.cacheHit(FILE_HANDLE_CACHE);
+        }
+        handle.useBlockCache(blockCache);
+        synchronized (this) {
+            if (!closed) {
+                leased.add(handle);
+                return handle;
+            }
+        }
+        closeQuietly(handle);
+        throw new IllegalStateException("File handle pool is closed");
+    }
+
+    private synchronized PooledRandomAccessFile takeIdle() {
+        if (closed) {
+            throw new IllegalStateException("File handle pool is closed");
+        }
+        evictIdle(System.nanoTime());
+        IdleHandle idleHandle = idle.pollFirst();
+        return idleHandle == null ? null : idleHandle.handle;
+    }
+
+    private void release(PooledRandomAccessFile handle) throws IOException {
+        boolean reuse;
+        synchronized (this) {
+            if (!leased.remove(handle)) {
+                // Already given back, closing twice is allowed
+                return;
+            }
+            reuse = !closed
+                    && idleTimeoutNanos > 0
+                    && idle.size() < maxIdleHandles
+                    && handle.getChannel().isOpen();
+            if (reuse) {
+                long now = System.nanoTime();
+                idle.addFirst(new IdleHandle(handle, now));
+                evictIdle(now);
+            }
+        }
+        if (!reuse) {
+            handle.closeHandle();
+        }
+    }
+
+    private void evictIdle(long now) {
+        Iterator<IdleHandle> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            IdleHandle idleHandle = oldestFirst.next();
+            if (now - idleHandle.returnedAt < idleTimeoutNanos) {
+                return;
+            }
+            oldestFirst.remove();
+            closeQuietly(idleHandle.handle);
+        }
+    }
+
+    /**
+     * Number of handles currently leased.
+     *
+     * @return leased handles
+     */
+    public synchronized int getLeasedCount() {
+        return leased.size();
+    }
+
+    /**
+     * Number of returned handles kept open for reuse.
+     *
+     * @return idle handles
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Most given back handles kept open for reuse.
+     *
+     * @return idle handle bound
+     */
+    public int getMaxIdleHandles() {
+        return maxIdleHandles;
+    }
+
+    /**
+     * Close every handle, including ones still leased. Leasing after this fails.
+     */
+    @Override
+    public void close() {
+        List<PooledRandomAccessFile> handles = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (IdleHandle idleHandle : idle) {
+                handles.add(idleHandle.handle);
+            }
+            idle.clear();
+            // Cleared first, closing a handle's channel calls back into release
+            handles.addAll(leased);
+            leased.clear();
+        }
+        handles.forEach(RandomAccessFilePool::closeQuietly);
+    }
+
+    private static void closeQuietly(PooledRandomAccessFile handle) {
+        try {
+            handle.closeHandle();
+        } catch (IOException e) {
+            // whatever
+        }
+    }
+
+    private static final class IdleHandle {
+        private final PooledRandomAccessFile handle;
+        private final long returnedAt;
+
+        private IdleHandle(PooledRandomAccessFile handle, long returnedAt) {
+            this.handle = handle;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    /**
+     * A leased handle, closing it gives it back to the pool instead of closing the file.
+     */
+    private static final class PooledRandomAccessFile extends MeteredRandomAccessFile {
+        private final RandomAccessFilePool pool;
+
+        private PooledRandomAccessFile(RandomAccessFilePool pool, File isoFile, IsoReaderMetrics metrics)
+                throws FileNotFoundException {
+            super(isoFile, metrics);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pool.release(this);
+        }
+
+        private void closeHandle() throws IOException {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Positional, read only access to the bytes of an image. Unlike a RandomAccessFile there is no shared file pointer,
+ * every read names its own position, so one source can be shared by many threads (including virtual threads) without
+ * any locking around seek and read.
+ */
+public interface SectorSource extends Closeable {
+    /**
+     * Read up to length bytes at the absolute byte position in the image.
+     *
+     * @param position byte offset in the image to start reading at
+     * @param buffer array to put the data into
+     * @param offset offset in the array to start writing at
+     * @param length maximum number of bytes to read
+     * @return number of bytes read, or -1 if position is at or past the end of the image
+     * @throws IOException failure reading the underlying media
+     */
+    int read(long position, byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Get the length of the image in bytes.
+     *
+     * @return length in bytes
+     * @throws IOException failure reading the underlying media
+     */
+    long length() throws IOException;
+
+    /**
+     * Read until length bytes have been read or the end of the image is reached.
+     *
+     * @param position byte offset in the image to start reading at
+     * @param buffer array to put the data into
+     * @param offset offset in the array to start writing at
+     * @param length number of bytes wanted
+     * @return number of bytes actually read, less than length only at the end of the image
+     * @throws IOException failure reading the underlying media
+     */
+    default int readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int count = read(position + total, buffer, offset + total, length - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+}
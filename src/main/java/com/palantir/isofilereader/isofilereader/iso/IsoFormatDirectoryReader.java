@@ -16,7 +16,10 @@
 
 package com.palantir.isofilereader.isofilereader.iso;
 
+import com.palantir.isofilereader.isofilereader.iso.types.ContinuationAreas;
+import com.palantir.isofilereader.isofilereader.iso.types.DirectoryPath;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -30,6 +33,40 @@ public class IsoFormatDirectoryReader {
     private int lastLoc;
 
     public IsoFormatDirectoryReader(byte[] header, String parent) {
+        this(header, DirectoryPath.of(parent));
+    }
+
+    /**
+     * Read the directory records in one sector of a folder.
+     *
+     * @param header sector of directory records
+     * @param parent path of the folder, shared by every record read
+     */
+    public IsoFormatDirectoryReader(byte[] header, DirectoryPath parent) {
+        this(header, parent, null);
+    }
+
+    /**
+     * Read the directory records in one sector of a folder.
+     *
+     * @param header sector of directory records
+     * @param parent path of the folder, shared by every record read
+     * @param identifierCharset charset of the file identifiers, null to work it out per record
+     */
+    public IsoFormatDirectoryReader(byte[] header, DirectoryPath parent, Charset identifierCharset) {
+        this(header, parent, identifierCharset, null);
+    }
+
+    /**
+     * Read the directory records in one sector of a folder.
+     *
+     * @param header sector of directory records
+     * @param parent path of the folder, shared by every record read
+     * @param identifierCharset charset of the file identifiers, null to work it out per record
+     * @param continuationAreas continuation areas of the folder, null to not follow CE entries
+     */
+    public IsoFormatDirectoryReader(
+            byte[] header, DirectoryPath parent, Charset identifierCharset, ContinuationAreas continuationAreas) {
         List<IsoFormatDirectoryRecord> collectingRecords = new ArrayList<>();
 
         int loc = 0;
@@ -50,7 +87,11 @@ public class IsoFormatDirectoryReader {
                 lastLoc = loc;
                 return;
             } else {
-                tempRecord = new IsoFormatDirectoryRecord(Arrays.copyOfRange(header, loc, loc + sizeOfRecord), parent);
+                tempRecord = new IsoFormatDirectoryRecord(
+                        Arrays.copyOfRange(header, loc, loc + sizeOfRecord),
+                        parent,
+                        identifierCharset,
+                        continuationAreas);
             }
 
             collectingRecords.add(tempRecord);
@@ -18,19 +18,18 @@ package com.palantir.isofilereader.isofilereader.iso;
 
 import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
-import com.palantir.isofilereader.isofilereader.iso.types.RockRidgeAttribute;
+import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
  * Enhanced version of IsoDirectoryRecord with added on functions to work in a tree structure.
  */
 public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
-    private final List<IsoFormatInternalDataFile> children = new ArrayList<>();
     private final IsoFormatDirectoryRecord isoDirectoryRecord;
     private final boolean useRockRidge;
     private IsoFormatInternalDataFile parent;
@@ -47,7 +46,7 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
      */
     @Override
     public IsoFormatInternalDataFile[] getChildren() {
-        return children.toArray(new IsoFormatInternalDataFile[0]);
+        return copyChildren(new IsoFormatInternalDataFile[0]);
     }
 
     /**
@@ -59,8 +58,8 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
     @Override
     public IsoFormatInternalDataFile addChild(GenericInternalIsoFile child) {
         IsoFormatInternalDataFile convertedChild = (IsoFormatInternalDataFile) child;
+        appendChildren(convertedChild);
         convertedChild.setParent(this);
-        this.children.add(convertedChild);
         return convertedChild;
     }
 
@@ -81,8 +80,8 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
     @Override
     public final void addChildren(GenericInternalIsoFile[] passedChildren) {
         IsoFormatInternalDataFile[] convertedType = (IsoFormatInternalDataFile[]) passedChildren;
+        appendChildren(convertedType);
         Arrays.stream(convertedType).forEach(each -> each.setParent(this));
-        this.children.addAll(List.of(convertedType));
     }
 
     /**
@@ -115,6 +114,26 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
         return getUnderlyingRecord().flatMap(IsoFormatDirectoryRecord::getDataAndTimeAsDate);
     }
 
+    /**
+     * Get the date the file was recorded with its offset from GMT.
+     *
+     * @return OffsetDateTime object
+     */
+    @Override
+    public Optional<OffsetDateTime> getDateAsOffsetDateTime() {
+        return getUnderlyingRecord().flatMap(IsoFormatDirectoryRecord::getDataAndTimeAsOffsetDateTime);
+    }
+
+    /**
+     * Get the recorded time of the file as an Instant, from getDateAsOffsetDateTime.
+     *
+     * @return Instant object
+     */
+    @Override
+    public Optional<Instant> getDateAsInstant() {
+        return getDateAsOffsetDateTime().map(OffsetDateTime::toInstant);
+    }
+
     /**
      * Get the filename of the entry.
      *
@@ -122,11 +141,11 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
      */
     @Override
     public String getFileName() {
-        String name;
-        if (useRockRidge && hasRockRidgeName()) {
-            // Scan for rock ridge attribute
-            name = isoDirectoryRecord.getRockRidgeAttributeMap().get("NM").getDataBlobAsNmAsString();
-        } else {
+        String name = null;
+        if (useRockRidge) {
+            name = isoDirectoryRecord.getSystemUseArea().getName().orElse(null);
+        }
+        if (name == null) {
             name = isoDirectoryRecord.getFileIdentifierAsString();
         }
         if (name.equals(".")) {
@@ -135,16 +154,6 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
         return name;
     }
 
-    private boolean hasRockRidgeName() {
-        for (Map.Entry<String, RockRidgeAttribute> rockRidgeAttribute :
-                isoDirectoryRecord.getRockRidgeAttributeMap().entrySet()) {
-            if (rockRidgeAttribute.getKey().equals("NM")) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Get the full file name with the parent file.
      *
@@ -152,7 +161,7 @@ public class IsoFormatInternalDataFile extends GenericInternalIsoFile {
      * @return full filename as a string starting with / or \
      */
     @Override
-    public String getFullFileName(char separatorChar) {
+    protected String buildFullFileName(char separatorChar) {
         return this.isoDirectoryRecord.getParent() + separatorChar + getFileName();
     }
 
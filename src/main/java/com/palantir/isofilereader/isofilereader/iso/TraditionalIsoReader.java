@@ -16,29 +16,90 @@
 
 package com.palantir.isofilereader.isofilereader.iso;
 
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.io.BlockCache;
+import com.palantir.isofilereader.isofilereader.io.BlockCacheBinding;
+import com.palantir.isofilereader.isofilereader.io.MeteredRandomAccessFile;
 import com.palantir.isofilereader.isofilereader.iso.types.AbstractVolumeDescriptor;
+import com.palantir.isofilereader.isofilereader.iso.types.ContinuationAreas;
+import com.palantir.isofilereader.isofilereader.iso.types.DirectoryPath;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatEnhancedVolumeDescriptor;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatPrimaryVolumeDescriptor;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatVolumePartitionDescriptor;
-import com.palantir.isofilereader.isofilereader.iso.types.RockRidgeAttribute;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 public class TraditionalIsoReader {
+    /**
+     * Name reported to IsoReaderMetrics for hits and misses on the cached volume descriptor set.
+     */
+    public static final String VOLUME_DESCRIPTOR_CACHE = "volumeDescriptors";
+
+    // 16 sectors holds the PVD, a Joliet SVD, boot record and terminator with room to spare
+    private static final int VOLUME_DESCRIPTOR_READ_SECTORS = 16;
+    // Path tables are read in one go, anything larger than this is not trusted
+    private static final long MAX_PATH_TABLE_BYTES = 64L * 1024 * 1024;
+
     private final File isoFile;
     private char separatorChar = File.separatorChar;
     private int tableOfContentsInUse = -1;
     private boolean useRockRidgeOverStandard = true;
+    private final IsoReaderMetrics metrics;
+    private volatile AbstractVolumeDescriptor[] volumeDescriptors;
+    private volatile PathTableCount pathTableCount;
+    // Shared cache of image blocks and the key of this image in it, both set together
+    private volatile BlockCacheBinding blockCache = null;
 
     public TraditionalIsoReader(File isoFile) {
+        this(isoFile, IsoReaderMetrics.NO_OP);
+    }
+
+    /**
+     * Create a reader that reports reads and parsing to metrics.
+     *
+     * @param isoFile image to read
+     * @param metrics listener for reads and parsing
+     */
+    public TraditionalIsoReader(File isoFile, IsoReaderMetrics metrics) {
         this.isoFile = isoFile;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Read descriptors and directories through a block cache shared with other readers, null reads the image directly.
+     *
+     * @param blockCache shared cache, or null
+     */
+    public void setBlockCache(BlockCache blockCache) {
+        setBlockCache(BlockCacheBinding.of(blockCache, isoFile));
+    }
+
+    /**
+     * Read descriptors and directories through a block cache bound to this image, null reads the image directly. Lets
+     * the readers and handles of one image share a single image key.
+     *
+     * @param blockCache binding of the shared cache to this image, or null
+     */
+    public void setBlockCache(BlockCacheBinding blockCache) {
+        this.blockCache = blockCache;
+    }
+
+    private RandomAccessFile openImage() throws FileNotFoundException {
+        BlockCacheBinding binding = blockCache;
+        if (binding == null) {
+            return new MeteredRandomAccessFile(isoFile, metrics);
+        }
+        return new MeteredRandomAccessFile(isoFile, metrics, binding);
     }
 
     /**
@@ -101,7 +162,49 @@ public class TraditionalIsoReader {
      */
     public final IsoFormatInternalDataFile[] getInternalDataFiles(
             RandomAccessFile file, long logicalSector, long size, String parent) throws IOException {
+        return getInternalDataFiles(file, logicalSector, size, DirectoryPath.of(parent));
+    }
+
+    /**
+     * Get the internal data files for a traditional iso.
+     * @param file file we are reading from
+     * @param logicalSector which logical sector to start at
+     * @param size size of the file
+     * @param parent path of the folder, shared by the records in it
+     * @return Array of data files
+     * @throws IOException can be thrown if file can not be read
+     */
+    public final IsoFormatInternalDataFile[] getInternalDataFiles(
+            RandomAccessFile file, long logicalSector, long size, DirectoryPath parent) throws IOException {
+        return getInternalDataFiles(file, logicalSector, size, parent, getIdentifierCharsetOfCurrentToC());
+    }
+
+    /**
+     * Get the internal data files of a directory under a given volume descriptor rather than the table of contents in
+     * use, file identifiers are decoded as that descriptor records them.
+     * @param file file we are reading from
+     * @param logicalSector which logical sector to start at
+     * @param size size of the file
+     * @param parent path of the folder, shared by the records in it
+     * @param descriptor volume descriptor the directory belongs to
+     * @return Array of data files
+     * @throws IOException can be thrown if file can not be read
+     */
+    public final IsoFormatInternalDataFile[] getInternalDataFiles(
+            RandomAccessFile file,
+            long logicalSector,
+            long size,
+            DirectoryPath parent,
+            AbstractVolumeDescriptor descriptor)
+            throws IOException {
+        return getInternalDataFiles(file, logicalSector, size, parent, getIdentifierCharset(descriptor));
+    }
+
+    private IsoFormatInternalDataFile[] getInternalDataFiles(
+            RandomAccessFile file, long logicalSector, long size, DirectoryPath parent, Charset identifierCharset)
+            throws IOException {
         byte[] headerInfo = new byte[IsoFormatConstant.BYTES_PER_SECTOR];
+        ContinuationAreas continuationAreas = new ContinuationAreas(readsFrom(file));
         List<IsoFormatInternalDataFile> gatheringFiles = new ArrayList<>();
         IsoFormatInternalDataFile[] recordsRead;
         for (int i = 0; i < Math.ceil((double) size / IsoFormatConstant.BYTES_PER_SECTOR); i++) {
@@ -111,7 +214,9 @@ public class TraditionalIsoReader {
             if (read != headerInfo.length) {
                 return null;
             }
-            IsoFormatDirectoryReader reader = new IsoFormatDirectoryReader(headerInfo, parent);
+            metrics.directorySectorsParsed(1);
+            IsoFormatDirectoryReader reader =
+                    new IsoFormatDirectoryReader(headerInfo, parent, identifierCharset, continuationAreas);
             recordsRead = reader.getRecordsAsIsoInternalDataFile(isUseRockRidgeOverStandard());
             for (IsoFormatInternalDataFile singleRecord : recordsRead) {
                 if (singleRecord.getUnderlyingRecord().isEmpty()) {
@@ -123,29 +228,49 @@ public class TraditionalIsoReader {
                             file,
                             singleRecord.getUnderlyingRecord().get().getLocOfExtAsLong(),
                             singleRecord.getSize(),
-                            parent + separatorChar + singleRecord.getFileName()));
+                            parent.resolve(singleRecord.getFileName(), separatorChar),
+                            identifierCharset));
                 }
             }
             gatheringFiles.addAll(Arrays.asList(recordsRead));
         }
+        // Continuation areas are read now, through this handle, so the finished tree never goes back to the image
+        for (IsoFormatInternalDataFile singleRecord : gatheringFiles) {
+            IsoFormatDirectoryRecord record = singleRecord.getUnderlyingRecord().get();
+            if (record.hasContinuationArea()) {
+                record.loadSystemUseArea();
+            }
+        }
 
         return gatheringFiles.toArray(new IsoFormatInternalDataFile[0]);
     }
 
     public final IsoFormatDirectoryRecord[] getIsoDirectoryRecords(long logSect, long length, String parent)
             throws IOException {
+        return getIsoDirectoryRecords(logSect, length, DirectoryPath.of(parent), getIdentifierCharsetOfCurrentToC());
+    }
+
+    private IsoFormatDirectoryRecord[] getIsoDirectoryRecords(
+            long logSect, long length, DirectoryPath parent, Charset identifierCharset) throws IOException {
         List<IsoFormatDirectoryRecord> recordLibrary = new ArrayList<>();
         long scanLength = length;
         if (scanLength < 2048) {
             scanLength = 2048;
         }
-        try (RandomAccessFile file = new RandomAccessFile(isoFile, "r")) {
+        try (RandomAccessFile file = openImage()) {
+            ContinuationAreas continuationAreas = new ContinuationAreas(readsFrom(file));
             for (int i = 0; i < (length / IsoFormatConstant.BYTES_PER_SECTOR); i++) {
-                IsoFormatDirectoryRecord[] recordsRead = getRecordsAtSector(file, logSect, parent, i);
+                IsoFormatDirectoryRecord[] recordsRead =
+                        getRecordsAtSector(file, logSect, parent, i, identifierCharset, continuationAreas);
                 if (recordsRead != null) {
                     recordLibrary.addAll(Arrays.asList(recordsRead));
                 }
             }
+            for (IsoFormatDirectoryRecord singleRecord : recordLibrary) {
+                if (singleRecord.hasContinuationArea()) {
+                    singleRecord.loadSystemUseArea();
+                }
+            }
         }
         return recordLibrary.toArray(new IsoFormatDirectoryRecord[0]);
     }
@@ -208,8 +333,97 @@ public class TraditionalIsoReader {
         return currentFileDirectoryRecord;
     }
 
+    /**
+     * Number of directories in the table of contents in use, the root included. This is the number of records in the
+     * volume descriptor's L path table, so it takes a single read and does not walk the tree. The count is kept for
+     * the table in use.
+     *
+     * @return number of directories, -1 if the descriptor has no usable path table
+     * @throws IOException Error, could not read the image
+     */
+    public long getDirectoryCount() throws IOException {
+        AbstractVolumeDescriptor[] headers = getVolumeDescriptors();
+        int table = tableOfContentsInUse == -1 ? headers.length - 1 : tableOfContentsInUse;
+        if (table < 0 || table >= headers.length || !(headers[table] instanceof IsoFormatPrimaryVolumeDescriptor)) {
+            return -1;
+        }
+        PathTableCount cached = pathTableCount;
+        if (cached != null && cached.table == table) {
+            return cached.directories;
+        }
+        long directories = countPathTableRecords((IsoFormatPrimaryVolumeDescriptor) headers[table]);
+        pathTableCount = new PathTableCount(table, directories);
+        return directories;
+    }
+
+    /**
+     * Count the records of an L path table, each is 8 bytes plus the identifier, padded to an even length
+     * (ECMA-119 9.4).
+     */
+    private long countPathTableRecords(IsoFormatPrimaryVolumeDescriptor descriptor) throws IOException {
+        long size = descriptor.getPathTableSizeAsLong();
+        long location = descriptor.getLPathTableLocAsLong();
+        if (size < 10 || size > MAX_PATH_TABLE_BYTES || location <= 0) {
+            return -1;
+        }
+        byte[] table = new byte[(int) size];
+        try (RandomAccessFile file = openImage()) {
+            file.seek(location * IsoFormatConstant.BYTES_PER_SECTOR);
+            file.readFully(table);
+        } catch (EOFException e) {
+            return -1;
+        }
+        long directories = 0;
+        int position = 0;
+        while (position + 8 <= table.length) {
+            int identifierLength = Byte.toUnsignedInt(table[position]);
+            if (identifierLength == 0) {
+                break;
+            }
+            directories++;
+            position += 8 + identifierLength + (identifierLength & 1);
+        }
+        return directories;
+    }
+
+    /**
+     * Positional read for continuation areas, which are read after indexing has let go of its file handle.
+     */
+    private static ContinuationAreas.Source readsFrom(RandomAccessFile file) {
+        return (position, buffer, offset, length) -> {
+            file.seek(position);
+            return file.read(buffer, offset, length);
+        };
+    }
+
+    private Charset getIdentifierCharsetOfCurrentToC() throws IOException {
+        AbstractVolumeDescriptor[] headers = getVolumeDescriptors();
+        if (tableOfContentsInUse < 0 || tableOfContentsInUse >= headers.length) {
+            return null;
+        }
+        return getIdentifierCharset(headers[tableOfContentsInUse]);
+    }
+
+    /**
+     * File identifiers are UCS-2 big endian under a Joliet descriptor and d-characters under any other, so the charset
+     * is fixed by the descriptor being walked rather than guessed per name.
+     */
+    private static Charset getIdentifierCharset(AbstractVolumeDescriptor header) {
+        if (header instanceof IsoFormatEnhancedVolumeDescriptor
+                && ((IsoFormatEnhancedVolumeDescriptor) header).isJoliet()) {
+            return StandardCharsets.UTF_16BE;
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     private IsoFormatDirectoryRecord[] getRecordsAtSector(
-            RandomAccessFile file, long logSector, String parent, int loop) throws IOException {
+            RandomAccessFile file,
+            long logSector,
+            DirectoryPath parent,
+            int loop,
+            Charset identifierCharset,
+            ContinuationAreas continuationAreas)
+            throws IOException {
         long seekLocation =
                 (IsoFormatConstant.BYTES_PER_SECTOR * logSector) + ((long) IsoFormatConstant.BYTES_PER_SECTOR * loop);
         file.seek(seekLocation);
@@ -218,7 +432,9 @@ public class TraditionalIsoReader {
         if (read != headerInfo.length) {
             return null;
         }
-        IsoFormatDirectoryReader reader = new IsoFormatDirectoryReader(headerInfo, parent);
+        metrics.directorySectorsParsed(1);
+        IsoFormatDirectoryReader reader =
+                new IsoFormatDirectoryReader(headerInfo, parent, identifierCharset, continuationAreas);
         IsoFormatDirectoryRecord[] recordsRead = reader.getRecords();
         List<IsoFormatDirectoryRecord> collectingRecords = new ArrayList<>(Arrays.asList(recordsRead));
         for (IsoFormatDirectoryRecord singleRecord : recordsRead) {
@@ -226,47 +442,86 @@ public class TraditionalIsoReader {
                 collectingRecords.addAll(Arrays.asList(getIsoDirectoryRecords(
                         singleRecord.getLocOfExtAsLong(),
                         singleRecord.getDataLengthAsLong(),
-                        parent + separatorChar + singleRecord.getFileIdentifierAsString())));
+                        parent.resolve(singleRecord.getFileIdentifierAsString(), separatorChar),
+                        identifierCharset)));
             }
         }
         return collectingRecords.toArray(new IsoFormatDirectoryRecord[0]);
     }
 
     /**
-     * Read all the different volume descriptors and then make an array of them.
+     * Read all the different volume descriptors and then make an array of them. The descriptor set is read and parsed
+     * the first time this is called and kept for the life of the reader, later calls do no I/O.
      *
      * @return Array of volume descriptors
      * @throws IOException throws error if image file can not be read
      */
     public AbstractVolumeDescriptor[] getVolumeDescriptors() throws IOException {
+        AbstractVolumeDescriptor[] descriptors = volumeDescriptors;
+        if (descriptors == null) {
+            metrics.cacheMiss(VOLUME_DESCRIPTOR_CACHE);
+            descriptors = readVolumeDescriptors();
+            volumeDescriptors = descriptors;
+        } else {
+            metrics.cacheHit(VOLUME_DESCRIPTOR_CACHE);
+        }
+        return descriptors.clone();
+    }
+
+    /**
+     * Read the volume descriptor set from sector 16 up to the terminator. Sectors are read in chunks of
+     * VOLUME_DESCRIPTOR_READ_SECTORS, which covers the whole set of nearly every image in a single read.
+     */
+    private AbstractVolumeDescriptor[] readVolumeDescriptors() throws IOException {
         List<AbstractVolumeDescriptor> sectors = new ArrayList<>();
-        byte[] headerInfo = new byte[2048];
         long loc = IsoFormatConstant.BYTES_PER_SECTOR * IsoFormatConstant.BUFFER_SECTORS;
-        boolean foundTerminator = false;
         long mTableLoc = isoFile.length();
-        try (RandomAccessFile file = new RandomAccessFile(isoFile, "r")) {
+        byte[] chunk = new byte[IsoFormatConstant.BYTES_PER_SECTOR * VOLUME_DESCRIPTOR_READ_SECTORS];
+        try (RandomAccessFile file = openImage()) {
             file.seek(loc);
-            while (loc < mTableLoc && !foundTerminator) {
-                loc += file.read(headerInfo, 0, 2048);
-                AbstractVolumeDescriptor tempDescriptor = new AbstractVolumeDescriptor(headerInfo);
-                switch (tempDescriptor.getVolumeDescriptorTypeAsInt()) {
-                    case AbstractVolumeDescriptor.IsoPrimaryVolumeDescriptor:
-                        IsoFormatPrimaryVolumeDescriptor temp = new IsoFormatPrimaryVolumeDescriptor(headerInfo);
-                        mTableLoc = 2048 * temp.getLPathTableLocAsLong();
-                        if (2048 * temp.getLocOfMPathTableAsLong() < mTableLoc) {
-                            mTableLoc = 2048 * temp.getLocOfMPathTableAsLong();
-                        }
-                        sectors.add(temp);
-                        break;
-                    case AbstractVolumeDescriptor.IsoEnhancedVolumeDescriptor:
-                        sectors.add(new IsoFormatEnhancedVolumeDescriptor(headerInfo));
-                        break;
-                    case AbstractVolumeDescriptor.IsoVolumePartitionDescriptor:
-                        sectors.add(new IsoFormatVolumePartitionDescriptor(headerInfo));
-                        break;
-                    case AbstractVolumeDescriptor.VolumeDescriptorTerminator:
-                        foundTerminator = true;
+            while (loc < mTableLoc) {
+                int wanted = (int) Math.min(chunk.length, mTableLoc - loc);
+                int filled = 0;
+                while (filled < wanted) {
+                    int read = file.read(chunk, filled, wanted - filled);
+                    if (read <= 0) {
                         break;
+                    }
+                    filled += read;
+                }
+                int fullSectors = filled / IsoFormatConstant.BYTES_PER_SECTOR;
+                if (fullSectors == 0) {
+                    break;
+                }
+                for (int i = 0; i < fullSectors && loc < mTableLoc; i++) {
+                    byte[] headerInfo = Arrays.copyOfRange(
+                            chunk,
+                            i * IsoFormatConstant.BYTES_PER_SECTOR,
+                            (i + 1) * IsoFormatConstant.BYTES_PER_SECTOR);
+                    loc += IsoFormatConstant.BYTES_PER_SECTOR;
+                    AbstractVolumeDescriptor tempDescriptor = new AbstractVolumeDescriptor(headerInfo);
+                    metrics.volumeDescriptorParsed(tempDescriptor.getVolumeDescriptorTypeAsInt());
+                    switch (tempDescriptor.getVolumeDescriptorTypeAsInt()) {
+                        case AbstractVolumeDescriptor.IsoPrimaryVolumeDescriptor:
+                            IsoFormatPrimaryVolumeDescriptor temp = new IsoFormatPrimaryVolumeDescriptor(headerInfo);
+                            mTableLoc = 2048 * temp.getLPathTableLocAsLong();
+                            if (2048 * temp.getLocOfMPathTableAsLong() < mTableLoc) {
+                                mTableLoc = 2048 * temp.getLocOfMPathTableAsLong();
+                            }
+                            sectors.add(temp);
+                            break;
+                        case AbstractVolumeDescriptor.IsoEnhancedVolumeDescriptor:
+                            sectors.add(new IsoFormatEnhancedVolumeDescriptor(headerInfo));
+                            break;
+                        case AbstractVolumeDescriptor.IsoVolumePartitionDescriptor:
+                            sectors.add(new IsoFormatVolumePartitionDescriptor(headerInfo));
+                            break;
+                        case AbstractVolumeDescriptor.VolumeDescriptorTerminator:
+                            return sectors.toArray(new AbstractVolumeDescriptor[0]);
+                    }
+                }
+                if (filled < wanted) {
+                    break;
                 }
             }
         }
@@ -288,18 +543,26 @@ public class TraditionalIsoReader {
                 }
             } else {
                 // This is a file
-                for (Map.Entry<String, RockRidgeAttribute> rockRidgeAttribute : singleRecord
+                int nameEntryLength = singleRecord
                         .getUnderlyingRecord()
                         .get()
-                        .getRockRidgeAttributeMap()
-                        .entrySet()) {
-                    if (rockRidgeAttribute.getKey().equals("NM")
-                            && rockRidgeAttribute.getValue().getLength() > largestrecord) {
-                        largestrecord = rockRidgeAttribute.getValue().getLength();
-                    }
+                        .getSystemUseArea()
+                        .getNameEntryLength();
+                if (nameEntryLength > largestrecord) {
+                    largestrecord = nameEntryLength;
                 }
             }
         }
         return largestrecord;
     }
+
+    private static final class PathTableCount {
+        private final int table;
+        private final long directories;
+
+        private PathTableCount(int table, long directories) {
+            this.table = table;
+            this.directories = directories;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.iso.types;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SUSP continuation areas (CE entries) of the records of one directory. Records register the block their CE entry
+ * points at when they are created; the first record that needs its continuation area has every block registered so
+ * far read in sorted, coalesced runs, so a directory full of long Rock Ridge names costs a handful of reads instead of
+ * one per record. The read sectors are dropped once every registered area has been handed out.
+ */
+public final class ContinuationAreas {
+    // Blocks this close together are read in one go, the sectors in between are read and thrown away
+    private static final int PREFETCH_GAP_SECTORS = 8;
+    private static final int MAX_PREFETCH_SECTORS = 64;
+
+    private final Source source;
+    // Registered blocks not read yet
+    private long[] pendingBlocks = new long[4];
+    private int pendingCount;
+    // Registered areas not handed out yet by block, the read sectors are dropped when none are left
+    private final Map<Long, Integer> outstanding = new HashMap<>();
+    private final Map<Long, byte[]> sectors = new HashMap<>();
+
+    /**
+     * Positional reads from the image.
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * Read bytes of the image.
+         *
+         * @param position byte position in the image
+         * @param buffer buffer to read into
+         * @param offset offset in the buffer
+         * @param length number of bytes wanted
+         * @return bytes read, -1 at the end of the image
+         * @throws IOException failure reading the image
+         */
+        int read(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Continuation areas for one directory.
+     *
+     * @param source reads from the image the directory is on
+     */
+    public ContinuationAreas(Source source) {
+        this.source = source;
+    }
+
+    synchronized void register(long block) {
+        if (pendingCount == pendingBlocks.length) {
+            pendingBlocks = Arrays.copyOf(pendingBlocks, Math.max(4, pendingCount * 2));
+        }
+        pendingBlocks[pendingCount++] = block;
+        outstanding.merge(block, 1, Integer::sum);
+    }
+
+    /**
+     * Get a continuation area.
+     *
+     * @param block logical block the area is in
+     * @param offset offset of the area in the block
+     * @param length length of the area
+     * @return bytes of the area
+     * @throws IOException failure reading the image
+     */
+    synchronized byte[] read(long block, int offset, int length) throws IOException {
+        if (!sectors.containsKey(block) && pendingCount > 0) {
+            readPendingBlocks();
+        }
+        byte[] sector = sectors.get(block);
+        byte[] area;
+        if (sector == null || offset + length > IsoFormatConstant.BYTES_PER_SECTOR) {
+            // Chained areas are not known up front, and an area should never cross its block
+            area = readFully(block * IsoFormatConstant.BYTES_PER_SECTOR + offset, length);
+        } else {
+            area = Arrays.copyOfRange(sector, offset, offset + length);
+        }
+        // Chained areas were never registered, so only registered blocks count down
+        if (outstanding.computeIfPresent(block, (key, count) -> count > 1 ? count - 1 : null) == null
+                && outstanding.isEmpty()) {
+            sectors.clear();
+        }
+        return area;
+    }
+
+    private void readPendingBlocks() throws IOException {
+        long[] blocks = Arrays.copyOf(pendingBlocks, pendingCount);
+        pendingCount = 0;
+        Arrays.sort(blocks);
+        int i = 0;
+        while (i < blocks.length) {
+            int first = i;
+            long runStart = blocks[i];
+            long runEnd = runStart + 1;
+            while (i < blocks.length
+                    && blocks[i] - runEnd <= PREFETCH_GAP_SECTORS
+                    && blocks[i] + 1 - runStart <= MAX_PREFETCH_SECTORS) {
+                runEnd = Math.max(runEnd, blocks[i] + 1);
+                i++;
+            }
+            byte[] run = readFully(
+                    runStart * IsoFormatConstant.BYTES_PER_SECTOR,
+                    (int) (runEnd - runStart) * IsoFormatConstant.BYTES_PER_SECTOR);
+            for (int j = first; j < i; j++) {
+                int start = (int) (blocks[j] - runStart) * IsoFormatConstant.BYTES_PER_SECTOR;
+                sectors.computeIfAbsent(
+                        blocks[j], block -> Arrays.copyOfRange(run, start, start + IsoFormatConstant.BYTES_PER_SECTOR));
+            }
+        }
+    }
+
+    private byte[] readFully(long position, int length) throws IOException {
+        byte[] data = new byte[length];
+        int filled = 0;
+        while (filled < length) {
+            int read = source.read(position + filled, data, filled, length - filled);
+            if (read <= 0) {
+                throw new IOException("Continuation area at " + position + " runs past the end of the image");
+            }
+            filled += read;
+        }
+        return data;
+    }
+}
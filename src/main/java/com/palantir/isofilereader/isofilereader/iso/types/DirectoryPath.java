@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.iso.types;
+
+/**
+ * Path of a folder as a parent pointer plus the folder's own name. Every record in a folder shares the one
+ * DirectoryPath of that folder, so a deep tree stores each folder name once instead of a full path string per record.
+ * The joined string is built the first time it is asked for and kept.
+ */
+public final class DirectoryPath {
+    /**
+     * Path of the root folder, it joins as the empty string.
+     */
+    public static final DirectoryPath ROOT = new DirectoryPath(null, "", '/');
+
+    private final DirectoryPath parent;
+    private final String name;
+    private final char separatorChar;
+    private volatile String path;
+
+    private DirectoryPath(DirectoryPath parent, String name, char separatorChar) {
+        this.parent = parent;
+        this.name = name;
+        this.separatorChar = separatorChar;
+    }
+
+    /**
+     * Wrap an already joined path string, for callers that still track parents as strings.
+     *
+     * @param path joined path, "" for the root
+     * @return DirectoryPath that joins to exactly that string
+     */
+    public static DirectoryPath of(String path) {
+        if (path.isEmpty()) {
+            return ROOT;
+        }
+        return new DirectoryPath(null, path, '/');
+    }
+
+    /**
+     * Path of a folder inside this one.
+     *
+     * @param childName name of the folder
+     * @param separator separator to join it with
+     * @return path of the child folder
+     */
+    public DirectoryPath resolve(String childName, char separator) {
+        return new DirectoryPath(this, childName, separator);
+    }
+
+    /**
+     * The folder above this one, null for the root or a wrapped string.
+     *
+     * @return parent path or null
+     */
+    public DirectoryPath getParent() {
+        return parent;
+    }
+
+    /**
+     * Name of this folder alone.
+     *
+     * @return folder name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The joined path, for example "/dir/sub", or "" for the root.
+     *
+     * @return joined path
+     */
+    @Override
+    public String toString() {
+        String joined = path;
+        if (joined == null) {
+            joined = parent == null ? name : parent.toString() + separatorChar + name;
+            path = joined;
+        }
+        return joined;
+    }
+}
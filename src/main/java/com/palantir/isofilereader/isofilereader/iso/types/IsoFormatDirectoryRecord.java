@@ -16,13 +16,15 @@
 
 package com.palantir.isofilereader.isofilereader.iso.types;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.Util;
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
@@ -56,9 +58,20 @@ public class IsoFormatDirectoryRecord {
     private final byte[] fileIdentifier;
     // 34+lenOfFileIdentifier
     // Padding
-    private Map<String, RockRidgeAttribute> rockRidgeAttributeMap = new HashMap<>();
-
-    private final String parent; // This is not part of the spec, but it's much harder to track files without it
+    // System Use area, decoded on first use from the record bytes kept here
+    private final byte[] record;
+    private final int systemUseStart;
+    private final ContinuationAreas continuationAreas;
+    // Whether a CE entry was registered with continuationAreas, only such records need I/O to walk their area
+    private final boolean continued;
+    private volatile SystemUseArea systemUseArea;
+
+    // This is not part of the spec, but it's much harder to track files without it. Shared by the whole folder.
+    private final DirectoryPath parent;
+    // Charset of the volume descriptor the record was read through, null when unknown
+    private final Charset identifierCharset;
+    // Decoded once on first use, racing threads decode the same bytes to an equal String
+    private volatile String fileIdentifierAsString;
 
     /**
      * Create a new raw IsoDirectoryRecord, feed in the raw bytes, and if it can be parsed, the data will be split.
@@ -67,7 +80,47 @@ public class IsoFormatDirectoryRecord {
      * @param parent  String of the parent for full filename tracking
      */
     public IsoFormatDirectoryRecord(byte[] record, String parent) {
+        this(record, DirectoryPath.of(parent));
+    }
+
+    /**
+     * Create a new raw IsoDirectoryRecord, feed in the raw bytes, and if it can be parsed, the data will be split.
+     *
+     * @param record  raw bytes of the record
+     * @param parent  path of the folder holding the record, shared with the other records in it
+     */
+    public IsoFormatDirectoryRecord(byte[] record, DirectoryPath parent) {
+        this(record, parent, null);
+    }
+
+    /**
+     * Create a new raw IsoDirectoryRecord, feed in the raw bytes, and if it can be parsed, the data will be split.
+     *
+     * @param record  raw bytes of the record
+     * @param parent  path of the folder holding the record, shared with the other records in it
+     * @param identifierCharset charset of the file identifiers of this volume descriptor, UTF-16BE for Joliet, null
+     *                          to work it out from the identifier bytes
+     */
+    public IsoFormatDirectoryRecord(byte[] record, DirectoryPath parent, Charset identifierCharset) {
+        this(record, parent, identifierCharset, null);
+    }
+
+    /**
+     * Create a new raw IsoDirectoryRecord, feed in the raw bytes, and if it can be parsed, the data will be split.
+     *
+     * @param record  raw bytes of the record, kept by the record for its System Use area
+     * @param parent  path of the folder holding the record, shared with the other records in it
+     * @param identifierCharset charset of the file identifiers of this volume descriptor, UTF-16BE for Joliet, null
+     *                          to work it out from the identifier bytes
+     * @param continuationAreas continuation areas of the folder, shared with the other records in it, null to not
+     *                          follow CE entries
+     */
+    public IsoFormatDirectoryRecord(
+            byte[] record, DirectoryPath parent, Charset identifierCharset, ContinuationAreas continuationAreas) {
         this.parent = parent;
+        this.identifierCharset = identifierCharset;
+        this.record = record;
+        this.continuationAreas = continuationAreas;
 
         // 0 - Length of directory record
         lenDirRecord = record[0];
@@ -94,29 +147,18 @@ public class IsoFormatDirectoryRecord {
         // 34+lenOfFileIdentifier
         // Padding
         if (record.length > (34 + Byte.toUnsignedInt(lenOfFileIdentifier))) {
-            if (getLenOfFileIdentifierAsInt() % 2 == 0) {
-                // Optional padding bit
-                rockRidgeAttributeMap = readAttributes(
-                        Arrays.copyOfRange(record, 34 + Byte.toUnsignedInt(lenOfFileIdentifier), record.length));
-            } else {
-                rockRidgeAttributeMap = readAttributes(
-                        Arrays.copyOfRange(record, 33 + Byte.toUnsignedInt(lenOfFileIdentifier), record.length));
-            }
+            // Optional padding byte after even length identifiers
+            systemUseStart = 33 + getLenOfFileIdentifierAsInt() + (getLenOfFileIdentifierAsInt() % 2 == 0 ? 1 : 0);
+        } else {
+            systemUseStart = record.length;
         }
-    }
-
-    private Map<String, RockRidgeAttribute> readAttributes(byte[] systemUseArea) {
-        Map<String, RockRidgeAttribute> returningHash = new HashMap<>();
-        int loc = 0;
-        while (loc < (systemUseArea.length - 1)) {
-            int lengthOfSingleExtension = Byte.toUnsignedInt(systemUseArea[2 + loc]);
-            byte[] arrayData = Arrays.copyOfRange(systemUseArea, loc, loc + lengthOfSingleExtension);
-
-            RockRidgeAttribute rockRidgeAttribute = new RockRidgeAttribute(arrayData);
-            returningHash.put(rockRidgeAttribute.getSignatureAsString(), rockRidgeAttribute);
-            loc += lengthOfSingleExtension;
+        long continuationBlock = continuationAreas == null
+                ? -1
+                : SystemUseArea.findContinuationBlock(record, systemUseStart, record.length);
+        if (continuationBlock >= 0) {
+            continuationAreas.register(continuationBlock);
         }
-        return returningHash;
+        continued = continuationBlock >= 0;
     }
 
     /**
@@ -170,9 +212,7 @@ public class IsoFormatDirectoryRecord {
      * @return long of the loc of the ext, this is in logical blocks
      */
     public long getLocOfExtAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getLocOfExt(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getLocOfExt(), 4);
     }
 
     /**
@@ -190,9 +230,7 @@ public class IsoFormatDirectoryRecord {
      * @return long of the data length
      */
     public long getDataLengthAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getDataLength(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getDataLength(), 4);
     }
 
     /**
@@ -213,6 +251,15 @@ public class IsoFormatDirectoryRecord {
         return Util.convert9_1_5DateTime(getDataAndTime());
     }
 
+    /**
+     * The date and time with its offset from GMT. 9.1.5 format
+     *
+     * @return OffsetDateTime of the record
+     */
+    public Optional<OffsetDateTime> getDataAndTimeAsOffsetDateTime() {
+        return Util.convert9_1_5OffsetDateTime(getDataAndTime());
+    }
+
     /**
      * Byte of all the file flags.
      *
@@ -286,38 +333,105 @@ public class IsoFormatDirectoryRecord {
     }
 
     /**
-     * Get the file identifier as a String.
+     * Get the file identifier as a String, the identifier is decoded on first use and kept.
      *
      * @return string of identifier
      */
     public String getFileIdentifierAsString() {
-        // TODO(#): There are specific flags to look out for
+        String name = fileIdentifierAsString;
+        if (name == null) {
+            name = decodeFileIdentifier();
+            fileIdentifierAsString = name;
+        }
+        return name;
+    }
 
-        if (getFileIdentifier().length == 1) {
-            switch (getFileIdentifier()[0]) {
+    private String decodeFileIdentifier() {
+        if (fileIdentifier.length == 1) {
+            switch (fileIdentifier[0]) {
                 case 0x00:
                     return ".";
                 case 0x01:
                     return "..";
             }
         }
-        // Instead of trying to choose
-        Charset charSetToUse = StandardCharsets.UTF_8;
-        if (Arrays.binarySearch(getFileIdentifier(), (byte) 0) >= 0) {
-            // Sometimes this is UTF-16 sometimes its UTF-8, if its UTF-16 there should be at least 1 zero, otherwise
-            // this name should not have a 0 according to spec.
-            charSetToUse = StandardCharsets.UTF_16BE;
+        Charset charSetToUse = identifierCharset;
+        if (charSetToUse == null) {
+            // Without the volume descriptor, a zero byte in an even length identifier can only be UCS-2, d-characters
+            // never contain one
+            charSetToUse = fileIdentifier.length % 2 == 0 && containsZero(fileIdentifier)
+                    ? StandardCharsets.UTF_16BE
+                    : StandardCharsets.UTF_8;
+        }
+        return new String(fileIdentifier, charSetToUse);
+    }
+
+    private static boolean containsZero(byte[] data) {
+        for (byte singleByte : data) {
+            if (singleByte == 0x00) {
+                return true;
+            }
         }
-        return new String(getFileIdentifier(), charSetToUse);
+        return false;
     }
 
     /**
-     * Get all the Rock Ridge attributes of the record.
+     * Get all the Rock Ridge attributes of the record as a map, built on each call. A signature that repeats keeps its
+     * last entry, {@link #getSystemUseArea()} has every entry and merges multi part names.
      *
      * @return Map of attributes
      */
     public Map<String, RockRidgeAttribute> getRockRidgeAttributeMap() {
-        return rockRidgeAttributeMap;
+        return getSystemUseArea().toAttributeMap();
+    }
+
+    /**
+     * Get the SUSP entries of the record, such as the Rock Ridge NM, PX, TF and SL entries. The System Use area is
+     * walked on first use, following CE entries into continuation areas, and kept. Readers load the records that have
+     * a continuation area while indexing, see {@link #hasContinuationArea()}, so this does no I/O on records from a
+     * finished index.
+     *
+     * @return entries of the System Use area
+     * @throws UncheckedIOException a continuation area could not be read
+     */
+    public SystemUseArea getSystemUseArea() {
+        try {
+            return loadSystemUseArea();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether the System Use area has a CE entry pointing at a continuation area, so walking it reads the image.
+     *
+     * @return true if loadSystemUseArea will read a continuation area
+     */
+    public boolean hasContinuationArea() {
+        return continued;
+    }
+
+    /**
+     * Walk the System Use area now, following CE entries into continuation areas, so later calls to getSystemUseArea
+     * do no I/O. Calling this again does nothing.
+     *
+     * @return entries of the System Use area
+     * @throws IOException a continuation area could not be read
+     */
+    public SystemUseArea loadSystemUseArea() throws IOException {
+        SystemUseArea area = systemUseArea;
+        if (area == null) {
+            synchronized (this) {
+                area = systemUseArea;
+                if (area == null) {
+                    area = systemUseStart >= record.length
+                            ? SystemUseArea.EMPTY
+                            : SystemUseArea.parse(record, systemUseStart, record.length, continuationAreas);
+                    systemUseArea = area;
+                }
+            }
+        }
+        return area;
     }
 
     /**
@@ -342,10 +456,8 @@ public class IsoFormatDirectoryRecord {
      * @return the record is a directory
      */
     public boolean isDirectory() {
-        return java.math.BigInteger.valueOf(getFileFlags()).testBit(1)
-                && !java.math.BigInteger.valueOf(getFileFlags()).testBit(2)
-                && !java.math.BigInteger.valueOf(getFileFlags()).testBit(3)
-                && !java.math.BigInteger.valueOf(getFileFlags()).testBit(7);
+        // Directory bit (1) set, associated file (2), record (3) and multi-extent (7) bits clear
+        return (getFileFlags() & 0x8E) == 0x02;
     }
 
     /**
@@ -354,8 +466,8 @@ public class IsoFormatDirectoryRecord {
      * @return has extended attributes
      */
     public boolean hasExtendedAttributes() {
-        return java.math.BigInteger.valueOf(getFileFlags()).testBit(3)
-                || java.math.BigInteger.valueOf(getFileFlags()).testBit(4);
+        // Record (3) or protection (4) bits
+        return (getFileFlags() & 0x18) != 0;
     }
 
     /**
@@ -364,6 +476,15 @@ public class IsoFormatDirectoryRecord {
      * @return string of name
      */
     public String getParent() {
+        return parent.toString();
+    }
+
+    /**
+     * Get the path of the folder holding this record.
+     *
+     * @return shared parent path
+     */
+    public DirectoryPath getParentPath() {
         return parent;
     }
 }
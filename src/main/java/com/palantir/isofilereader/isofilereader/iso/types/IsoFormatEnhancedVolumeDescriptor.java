@@ -56,6 +56,18 @@ public class IsoFormatEnhancedVolumeDescriptor extends IsoFormatPrimaryVolumeDes
         return escapeCharSet;
     }
 
+    /**
+     * Joliet marks its supplementary volume descriptor with one of the ECMA-35 escape sequences for UCS-2 level 1, 2
+     * or 3. File identifiers under such a descriptor are UCS-2 big endian.
+     *
+     * @return true if the escape sequences name Joliet UCS-2
+     */
+    public boolean isJoliet() {
+        return escapeCharSet[0] == '%'
+                && escapeCharSet[1] == '/'
+                && (escapeCharSet[2] == '@' || escapeCharSet[2] == 'C' || escapeCharSet[2] == 'E');
+    }
+
     /**
      * Supplemental and enhanced volume descriptors are technically different, this will return true if the descriptor
      * is a supplemental one.
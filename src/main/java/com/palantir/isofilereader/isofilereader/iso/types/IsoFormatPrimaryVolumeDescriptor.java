@@ -16,10 +16,11 @@
 
 package com.palantir.isofilereader.isofilereader.iso.types;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.Util;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Optional;
@@ -253,9 +254,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return Long of number of logical sectors
      */
     public long getVolumeSpaceSizeAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getVolumeSpaceSize(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getVolumeSpaceSize(), 4);
     }
 
     /**
@@ -273,9 +272,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return int of the number of discs in volume
      */
     public int getVolumeSetSizeAsInt() {
-        byte[] paddedFixedBothNumber = new byte[4];
-        System.arraycopy(Arrays.copyOfRange(getVolumeSetSize(), 2, 4), 0, paddedFixedBothNumber, 2, 2);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getInt();
+        return BinaryFields.uint16Be(getVolumeSetSize(), 2);
     }
 
     /**
@@ -293,9 +290,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return int of the disc number in volume
      */
     public int getVolumeSequenceNumberAsInt() {
-        byte[] paddedFixedBothNumber = new byte[4];
-        System.arraycopy(Arrays.copyOfRange(getVolumeSequenceNumber(), 2, 4), 0, paddedFixedBothNumber, 2, 2);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getInt();
+        return BinaryFields.uint16Be(getVolumeSequenceNumber(), 2);
     }
 
     /**
@@ -313,9 +308,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return int array of logical block size
      */
     public int getLogicBlockSizeAsInt() {
-        byte[] paddedFixedBothNumber = new byte[4];
-        System.arraycopy(Arrays.copyOfRange(getLogicBlockSize(), 2, 4), 0, paddedFixedBothNumber, 2, 2);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getInt();
+        return BinaryFields.uint16Be(getLogicBlockSize(), 2);
     }
 
     /**
@@ -333,9 +326,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return long of number of logical sectors in
      */
     public long getPathTableSizeAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getPathTableSize(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getPathTableSize(), 4);
     }
 
     /**
@@ -353,8 +344,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return long of number of logical sectors in
      */
     public long getLPathTableLocAsLong() {
-        byte[] paddedFixedBothNumber = Util.convertFromLeastSignificantAndPad(getLocOfLPathTable(), 4, (byte) 0);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Le(getLocOfLPathTable(), 0);
     }
 
     /**
@@ -372,9 +362,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return long of number of logical sectors in
      */
     public long getLocOfOptionalLPathTableAsLong() {
-        byte[] paddedFixedBothNumber =
-                Util.convertFromLeastSignificantAndPad(getLocOfOptionalLPathTable(), 4, (byte) 0);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Le(getLocOfOptionalLPathTable(), 0);
     }
 
     /**
@@ -392,9 +380,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return long of number of logical sectors in
      */
     public long getLocOfMPathTableAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(getLocOfMPathTable(), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getLocOfMPathTable(), 0);
     }
 
     /**
@@ -412,9 +398,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return long of number of logical sectors in
      */
     public long getLocOfOptionalMPathTableAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getLocOfOptionalMPathTable(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getLocOfOptionalMPathTable(), 0);
     }
 
     /**
@@ -432,7 +416,7 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
      * @return Structure of the initial record
      */
     public IsoFormatDirectoryRecord getDirectoryRecordForRootDirectoryAsIsoDirectorRecord() {
-        return new IsoFormatDirectoryRecord(getDirectoryRecordForRootDirectory(), "");
+        return new IsoFormatDirectoryRecord(getDirectoryRecordForRootDirectory(), DirectoryPath.ROOT);
     }
 
     /**
@@ -581,6 +565,16 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
         return Util.convert8_4_26_1DateTime(getVolumeCreationDataTime());
     }
 
+    /**
+     * The volume creation date and time with its offset from GMT, according to ECMA-119 8.4.26.1.
+     *
+     * @return OffsetDateTime, empty if the date is not specified
+     * @throws ParseException If the bytes cannot be converted, a ParseException can be thrown.
+     */
+    public Optional<OffsetDateTime> getVolumeCreationDataTimeAsOffsetDateTime() throws ParseException {
+        return Util.convert8_4_26_1OffsetDateTime(getVolumeCreationDataTime());
+    }
+
     /**
      * Byte array of the volume modification date and time.
      *
@@ -599,6 +593,16 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
         return Util.convert8_4_26_1DateTime(getVolumeModificationDateTime());
     }
 
+    /**
+     * The volume modification date and time with its offset from GMT, according to ECMA-119 8.4.26.1.
+     *
+     * @return OffsetDateTime, empty if the date is not specified
+     * @throws ParseException If the bytes cannot be converted, a ParseException can be thrown.
+     */
+    public Optional<OffsetDateTime> getVolumeModificationDateTimeAsOffsetDateTime() throws ParseException {
+        return Util.convert8_4_26_1OffsetDateTime(getVolumeModificationDateTime());
+    }
+
     /**
      * Byte array of the volume expiration date and time.
      *
@@ -617,6 +621,16 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
         return Util.convert8_4_26_1DateTime(getVolumeExpirationDateTime());
     }
 
+    /**
+     * The volume expiration date and time with its offset from GMT, according to ECMA-119 8.4.26.1.
+     *
+     * @return OffsetDateTime, empty if the date is not specified
+     * @throws ParseException If the bytes cannot be converted, a ParseException can be thrown.
+     */
+    public Optional<OffsetDateTime> getVolumeExpirationDateTimeAsOffsetDateTime() throws ParseException {
+        return Util.convert8_4_26_1OffsetDateTime(getVolumeExpirationDateTime());
+    }
+
     /**
      * Byte array of the volume effective date and time.
      *
@@ -635,6 +649,16 @@ public class IsoFormatPrimaryVolumeDescriptor extends AbstractVolumeDescriptor {
         return Util.convert8_4_26_1DateTime(getVolumeEffectiveDateTime());
     }
 
+    /**
+     * The volume effective date and time with its offset from GMT, according to ECMA-119 8.4.26.1.
+     *
+     * @return OffsetDateTime, empty if the date is not specified
+     * @throws ParseException If the bytes cannot be converted, a ParseException can be thrown.
+     */
+    public Optional<OffsetDateTime> getVolumeEffectiveDateTimeAsOffsetDateTime() throws ParseException {
+        return Util.convert8_4_26_1OffsetDateTime(getVolumeEffectiveDateTime());
+    }
+
     /**
      * Get the version of file structure in a single byte.
      *
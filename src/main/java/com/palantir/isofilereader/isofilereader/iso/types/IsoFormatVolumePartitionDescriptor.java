@@ -16,7 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.iso.types;
 
-import java.nio.ByteBuffer;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
@@ -151,9 +151,7 @@ public class IsoFormatVolumePartitionDescriptor extends AbstractVolumeDescriptor
      * @return long of logical sector number
      */
     public long getVolumePartitionLocationAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getVolumePartitionLocation(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getVolumePartitionLocation(), 4);
     }
 
     /**
@@ -171,8 +169,6 @@ public class IsoFormatVolumePartitionDescriptor extends AbstractVolumeDescriptor
      * @return this long * logical block size = byte offset
      */
     public long getVolumePartitionSizeAsLong() {
-        byte[] paddedFixedBothNumber = new byte[8];
-        System.arraycopy(Arrays.copyOfRange(getVolumePartitionSize(), 4, 8), 0, paddedFixedBothNumber, 4, 4);
-        return ByteBuffer.wrap(paddedFixedBothNumber).getLong();
+        return BinaryFields.uint32Be(getVolumePartitionSize(), 4);
     }
 }
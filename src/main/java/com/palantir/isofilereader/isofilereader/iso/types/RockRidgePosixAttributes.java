@@ -0,0 +1,90 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.iso.types;
+
+/**
+ * POSIX file attributes of a Rock Ridge PX entry (RRIP 4.1.1).
+ */
+public final class RockRidgePosixAttributes {
+    private final long mode;
+    private final long links;
+    private final long userId;
+    private final long groupId;
+    private final long serialNumber;
+
+    RockRidgePosixAttributes(long mode, long links, long userId, long groupId, long serialNumber) {
+        this.mode = mode;
+        this.links = links;
+        this.userId = userId;
+        this.groupId = groupId;
+        this.serialNumber = serialNumber;
+    }
+
+    /**
+     * File mode, the st_mode bits of stat(2) including the file type.
+     *
+     * @return long of the mode
+     */
+    public long getMode() {
+        return mode;
+    }
+
+    /**
+     * Number of links, st_nlink.
+     *
+     * @return long of the link count
+     */
+    public long getLinks() {
+        return links;
+    }
+
+    /**
+     * User ID of the owner, st_uid.
+     *
+     * @return long of the user ID
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Group ID of the owner, st_gid.
+     *
+     * @return long of the group ID
+     */
+    public long getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * File serial number, st_ino. Entries written before RRIP 1.12 do not record one and return 0.
+     *
+     * @return long of the serial number
+     */
+    public long getSerialNumber() {
+        return serialNumber;
+    }
+
+    /**
+     * The mode marks a symbolic link, the target is in the SL entries.
+     *
+     * @return true for symbolic links
+     */
+    public boolean isSymbolicLink() {
+        return (mode & 0xF000) == 0xA000;
+    }
+}
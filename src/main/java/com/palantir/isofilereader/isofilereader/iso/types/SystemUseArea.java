@@ -0,0 +1,412 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.isofilereader.iso.types;
+
+import com.palantir.isofilereader.isofilereader.BinaryFields;
+import com.palantir.isofilereader.isofilereader.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The SUSP entries of a directory record's System Use area and any continuation areas it points at. Only the offset
+ * of each entry is kept, the entries are decoded when asked for, and multi part NM and SL entries are merged.
+ * <a href="https://web.archive.org/web/20170404043745/http://www.ymi.com/ymi/sites/default/files/pdf/Rockridge.pdf">Rock Ridge Standard</a>
+ */
+public final class SystemUseArea {
+    /** TF flag of the creation time. */
+    public static final int TF_CREATION = 0x01;
+    /** TF flag of the modification time. */
+    public static final int TF_MODIFY = 0x02;
+    /** TF flag of the last access time. */
+    public static final int TF_ACCESS = 0x04;
+    /** TF flag of the last attribute change time. */
+    public static final int TF_ATTRIBUTES = 0x08;
+    /** TF flag of the last backup time. */
+    public static final int TF_BACKUP = 0x10;
+    /** TF flag of the expiration time. */
+    public static final int TF_EXPIRATION = 0x20;
+    /** TF flag of the effective time. */
+    public static final int TF_EFFECTIVE = 0x40;
+
+    static final SystemUseArea EMPTY = new SystemUseArea(new byte[0][], new int[0]);
+
+    // Guards against continuation areas that point back at each other
+    private static final int MAX_CONTINUATION_AREAS = 16;
+    private static final int TF_LONG_FORM = 0x80;
+    private static final int CONTINUE = 0x01;
+    private static final int CURRENT = 0x02;
+    private static final int PARENT = 0x04;
+    private static final int ROOT = 0x08;
+
+    // Area 0 is the directory record itself, the rest are continuation areas in the order they were followed
+    private final byte[][] areas;
+    // Area index in the high 16 bits, offset of the entry in the area in the low 16 bits
+    private final int[] entries;
+
+    private SystemUseArea(byte[][] areas, int[] entries) {
+        this.areas = areas;
+        this.entries = entries;
+    }
+
+    /**
+     * Walk the entries of a System Use area, following CE entries into continuation areas.
+     *
+     * @param record directory record, kept as is and not copied
+     * @param start offset of the System Use area in the record
+     * @param end end of the System Use area in the record
+     * @param continuationAreas where continuation areas are read from, null to not follow CE entries
+     * @return the entries found
+     * @throws IOException failure reading a continuation area
+     */
+    static SystemUseArea parse(byte[] record, int start, int end, ContinuationAreas continuationAreas)
+            throws IOException {
+        List<byte[]> areas = new ArrayList<>(1);
+        int[] entries = new int[8];
+        int count = 0;
+        byte[] area = record;
+        int from = start;
+        int to = end;
+        while (area != null) {
+            int areaIndex = areas.size();
+            areas.add(area);
+            int continuation = -1;
+            for (int loc = entryAt(area, from, to); loc >= 0; loc = next(area, loc, to)) {
+                if (isSignature(area, loc, 'S', 'T')) {
+                    break;
+                }
+                if (isContinuation(area, loc)) {
+                    continuation = loc;
+                }
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2);
+                }
+                entries[count++] = (areaIndex << 16) | loc;
+            }
+            byte[] current = area;
+            area = null;
+            if (continuation >= 0 && continuationAreas != null && areas.size() <= MAX_CONTINUATION_AREAS) {
+                area = continuationAreas.read(
+                        BinaryFields.uint32Le(current, continuation + 4),
+                        (int) BinaryFields.uint32Le(current, continuation + 12),
+                        (int) BinaryFields.uint32Le(current, continuation + 20));
+                from = 0;
+                to = area.length;
+            }
+        }
+        return new SystemUseArea(areas.toArray(new byte[0][]), Arrays.copyOf(entries, count));
+    }
+
+    /**
+     * Find the block the CE entry of a System Use area points at, without decoding anything else.
+     *
+     * @return logical block of the continuation area, -1 if there is none
+     */
+    static long findContinuationBlock(byte[] record, int start, int end) {
+        for (int loc = entryAt(record, start, end); loc >= 0; loc = next(record, loc, end)) {
+            if (isSignature(record, loc, 'S', 'T')) {
+                break;
+            }
+            if (isContinuation(record, loc)) {
+                return BinaryFields.uint32Le(record, loc + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Offset of the entry at loc, -1 once the area ends or the entry length does not fit.
+     */
+    private static int entryAt(byte[] area, int loc, int end) {
+        if (loc + 4 > end) {
+            return -1;
+        }
+        int length = Byte.toUnsignedInt(area[loc + 2]);
+        return length >= 4 && loc + length <= end ? loc : -1;
+    }
+
+    private static int next(byte[] area, int loc, int end) {
+        return entryAt(area, loc + Byte.toUnsignedInt(area[loc + 2]), end);
+    }
+
+    /**
+     * A CE entry is 28 bytes of version 1 with each field recorded in both byte orders. Checking all of it keeps
+     * System Use bytes that are not SUSP, such as CD-XA attributes, from being followed as a continuation.
+     */
+    private static boolean isContinuation(byte[] area, int loc) {
+        if (!isSignature(area, loc, 'C', 'E') || area[loc + 2] != 28 || area[loc + 3] != 1) {
+            return false;
+        }
+        for (int field = loc + 4; field < loc + 28; field += 8) {
+            if (BinaryFields.uint32Le(area, field) != BinaryFields.uint32Be(area, field + 4)) {
+                return false;
+            }
+        }
+        long offset = BinaryFields.uint32Le(area, loc + 12);
+        long length = BinaryFields.uint32Le(area, loc + 20);
+        return offset + length <= IsoFormatConstant.BYTES_PER_SECTOR;
+    }
+
+    private static boolean isSignature(byte[] area, int loc, char first, char second) {
+        return area[loc] == first && area[loc + 1] == second;
+    }
+
+    /**
+     * Number of entries found, continuation areas included.
+     *
+     * @return int of entries
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Check for an entry.
+     *
+     * @param signature two letter signature such as NM or PX
+     * @return true if at least one entry has the signature
+     */
+    public boolean contains(String signature) {
+        return indexOf(signature, 0) >= 0;
+    }
+
+    /**
+     * Copy out every entry with a signature, in recorded order.
+     *
+     * @param signature two letter signature such as NM or PX
+     * @return list of entries, empty if none
+     */
+    public List<RockRidgeAttribute> getEntries(String signature) {
+        List<RockRidgeAttribute> found = new ArrayList<>();
+        for (int i = indexOf(signature, 0); i >= 0; i = indexOf(signature, i + 1)) {
+            found.add(attribute(i));
+        }
+        return found;
+    }
+
+    /**
+     * Copy out the entries as a map keyed by signature. When a signature repeats the last entry is kept, use
+     * {@link #getEntries(String)} or the typed getters to see all of them.
+     *
+     * @return map of signature to entry
+     */
+    public Map<String, RockRidgeAttribute> toAttributeMap() {
+        Map<String, RockRidgeAttribute> map = new HashMap<>();
+        for (int i = 0; i < entries.length; i++) {
+            RockRidgeAttribute attribute = attribute(i);
+            map.put(attribute.getSignatureAsString(), attribute);
+        }
+        return map;
+    }
+
+    /**
+     * The alternate name from the NM entries, continued entries joined into one.
+     *
+     * @return name, empty if there are no NM entries
+     */
+    public Optional<String> getName() {
+        int i = indexOfFlagged("NM", 0);
+        if (i < 0) {
+            return Optional.empty();
+        }
+        int flags = Byte.toUnsignedInt(area(i)[offset(i) + 4]);
+        if ((flags & CURRENT) != 0) {
+            return Optional.of(".");
+        }
+        if ((flags & PARENT) != 0) {
+            return Optional.of("..");
+        }
+        ByteArrayOutputStream name = new ByteArrayOutputStream();
+        for (; i >= 0; i = indexOfFlagged("NM", i + 1)) {
+            byte[] area = area(i);
+            int loc = offset(i);
+            name.write(area, loc + 5, Byte.toUnsignedInt(area[loc + 2]) - 5);
+            if ((area[loc + 4] & CONTINUE) == 0) {
+                break;
+            }
+        }
+        return Optional.of(new String(name.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Bytes taken by the NM entries of the name, entry headers included, -1 if there are none.
+     *
+     * @return int of the length
+     */
+    public int getNameEntryLength() {
+        int length = -1;
+        for (int i = indexOfFlagged("NM", 0); i >= 0; i = indexOfFlagged("NM", i + 1)) {
+            byte[] area = area(i);
+            int loc = offset(i);
+            length = Math.max(length, 0) + Byte.toUnsignedInt(area[loc + 2]);
+            if ((area[loc + 4] & CONTINUE) == 0) {
+                break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The target of a symbolic link from the SL entries, components joined with / and continued entries merged.
+     *
+     * @return link target, empty if there are no SL entries
+     */
+    public Optional<String> getSymbolicLink() {
+        int i = indexOfFlagged("SL", 0);
+        if (i < 0) {
+            return Optional.empty();
+        }
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        boolean separate = false;
+        for (; i >= 0; i = indexOfFlagged("SL", i + 1)) {
+            byte[] area = area(i);
+            int loc = offset(i);
+            int end = loc + Byte.toUnsignedInt(area[loc + 2]);
+            for (int component = loc + 5; component + 2 <= end; ) {
+                int flags = Byte.toUnsignedInt(area[component]);
+                int length = Math.min(Byte.toUnsignedInt(area[component + 1]), end - component - 2);
+                if ((flags & ROOT) != 0) {
+                    target.write('/');
+                    separate = false;
+                } else {
+                    if (separate) {
+                        target.write('/');
+                    }
+                    if ((flags & CURRENT) != 0) {
+                        target.write('.');
+                    } else if ((flags & PARENT) != 0) {
+                        target.write('.');
+                        target.write('.');
+                    } else {
+                        target.write(area, component + 2, length);
+                    }
+                    // A continued component goes on in the next component record without a separator
+                    separate = (flags & CONTINUE) == 0;
+                }
+                component += 2 + length;
+            }
+            if ((area[loc + 4] & CONTINUE) == 0) {
+                break;
+            }
+        }
+        return Optional.of(new String(target.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The POSIX attributes of the PX entry.
+     *
+     * @return attributes, empty if there is no PX entry
+     */
+    public Optional<RockRidgePosixAttributes> getPosixAttributes() {
+        int i = indexOf("PX", 0);
+        if (i < 0) {
+            return Optional.empty();
+        }
+        byte[] area = area(i);
+        int loc = offset(i);
+        int length = Byte.toUnsignedInt(area[loc + 2]);
+        if (length < 36) {
+            return Optional.empty();
+        }
+        return Optional.of(new RockRidgePosixAttributes(
+                BinaryFields.uint32Le(area, loc + 4),
+                BinaryFields.uint32Le(area, loc + 12),
+                BinaryFields.uint32Le(area, loc + 20),
+                BinaryFields.uint32Le(area, loc + 28),
+                length >= 44 ? BinaryFields.uint32Le(area, loc + 36) : 0));
+    }
+
+    /**
+     * One of the time stamps of the TF entry.
+     *
+     * @param type one of the TF_ flags, such as {@link #TF_MODIFY}
+     * @return time stamp, empty if the TF entry does not record it
+     */
+    public Optional<OffsetDateTime> getTimestamp(int type) {
+        int i = indexOf("TF", 0);
+        if (i < 0 || Integer.bitCount(type) != 1 || type >= TF_LONG_FORM) {
+            return Optional.empty();
+        }
+        byte[] area = area(i);
+        int loc = offset(i);
+        int flags = Byte.toUnsignedInt(area[loc + 4]);
+        if ((flags & type) == 0) {
+            return Optional.empty();
+        }
+        boolean longForm = (flags & TF_LONG_FORM) != 0;
+        int size = longForm ? 17 : 7;
+        // Time stamps are recorded in flag order, only the ones flagged are present
+        int start = loc + 5 + Integer.bitCount(flags & (type - 1)) * size;
+        if (start + size > loc + Byte.toUnsignedInt(area[loc + 2])) {
+            return Optional.empty();
+        }
+        byte[] stamp = Arrays.copyOfRange(area, start, start + size);
+        if (!longForm) {
+            return Util.convert9_1_5OffsetDateTime(stamp);
+        }
+        try {
+            return Util.convert8_4_26_1OffsetDateTime(stamp);
+        } catch (ParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private int indexOf(String signature, int from) {
+        char first = signature.charAt(0);
+        char second = signature.charAt(1);
+        for (int i = from; i < entries.length; i++) {
+            if (isSignature(area(i), offset(i), first, second)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Like indexOf, but skips entries too short to hold the flags byte that NM and SL entries start with.
+     */
+    private int indexOfFlagged(String signature, int from) {
+        for (int i = indexOf(signature, from); i >= 0; i = indexOf(signature, i + 1)) {
+            if (Byte.toUnsignedInt(area(i)[offset(i) + 2]) >= 5) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private RockRidgeAttribute attribute(int i) {
+        int loc = offset(i);
+        byte[] area = area(i);
+        return new RockRidgeAttribute(Arrays.copyOfRange(area, loc, loc + Byte.toUnsignedInt(area[loc + 2])));
+    }
+
+    private byte[] area(int i) {
+        return areas[entries[i] >>> 16];
+    }
+
+    private int offset(int i) {
+        return entries[i] & 0xFFFF;
+    }
+}
@@ -17,13 +17,12 @@
 package com.palantir.isofilereader.isofilereader.udf;
 
 import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
-import com.palantir.isofilereader.isofilereader.Util;
 import com.palantir.isofilereader.isofilereader.udf.types.files.FileEntry;
 import com.palantir.isofilereader.isofilereader.udf.types.files.FileIdentifierDescriptor;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -31,16 +30,40 @@ import java.util.Optional;
  */
 @SuppressWarnings("StrictUnusedVariable")
 public class UdfInternalDataFile extends GenericInternalIsoFile {
-    private final List<UdfInternalDataFile> children = new ArrayList<>();
-    private final FileEntry thisFileEntry;
+    private volatile FileEntry thisFileEntry;
     private final FileIdentifierDescriptor thisFileDescriptor;
     private UdfInternalDataFile parent;
     private final long offset;
+    // Set for files from a shallow listing, whose File Entry is read on first use
+    private final UdfIsoReader fileEntryLoader;
+    private final long fileEntrySector;
+    private boolean listed = false;
 
     public UdfInternalDataFile(FileEntry thisFileEntry, FileIdentifierDescriptor thisFileDescriptor, long offset) {
         this.thisFileEntry = thisFileEntry;
         this.thisFileDescriptor = thisFileDescriptor;
         this.offset = offset;
+        this.fileEntryLoader = null;
+        this.fileEntrySector = -1;
+    }
+
+    /**
+     * A file known only from its File Identifier Descriptor, the File Entry is read from the image when first needed.
+     *
+     * @param fileEntryLoader reader to load the File Entry with
+     * @param fileEntrySector absolute logical sector of the File Entry
+     * @param thisFileDescriptor File Identifier Descriptor naming this file
+     * @param offset start of the partition this file's data is relative to
+     */
+    UdfInternalDataFile(
+            UdfIsoReader fileEntryLoader,
+            long fileEntrySector,
+            FileIdentifierDescriptor thisFileDescriptor,
+            long offset) {
+        this.thisFileDescriptor = thisFileDescriptor;
+        this.offset = offset;
+        this.fileEntryLoader = fileEntryLoader;
+        this.fileEntrySector = fileEntrySector;
     }
 
     /**
@@ -50,14 +73,14 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
      */
     @Override
     public UdfInternalDataFile[] getChildren() {
-        return children.toArray(new UdfInternalDataFile[0]);
+        return copyChildren(new UdfInternalDataFile[0]);
     }
 
     @Override
     public final UdfInternalDataFile addChild(GenericInternalIsoFile child) {
         UdfInternalDataFile convertedChild = (UdfInternalDataFile) child;
+        appendChildren(convertedChild);
         convertedChild.setParent(this);
-        this.children.add(convertedChild);
         return convertedChild;
     }
 
@@ -68,6 +91,7 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
      */
     public void setParent(UdfInternalDataFile parent) {
         this.parent = parent;
+        clearFullFileName();
     }
 
     /**
@@ -78,8 +102,39 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
     @Override
     public void addChildren(GenericInternalIsoFile[] passedChildren) {
         UdfInternalDataFile[] convertedType = (UdfInternalDataFile[]) passedChildren;
+        appendChildren(convertedType);
         Arrays.stream(convertedType).forEach(each -> each.setParent(this));
-        this.children.addAll(List.of(convertedType));
+        this.listed = true;
+    }
+
+    /**
+     * Whether the children of this folder have been read, either by a full index or a listing. A frozen folder is
+     * never listed again.
+     *
+     * @return true once children were added or the folder was frozen
+     */
+    boolean isListed() {
+        return listed || isFrozen();
+    }
+
+    /**
+     * Start of the partition that locations in this file's records are relative to.
+     *
+     * @return logical sector
+     */
+    long getPartitionOffset() {
+        return offset;
+    }
+
+    /**
+     * Whether the File Entry has been read yet. Files from a full index always have it, files from
+     * {@link UdfIsoReader#listDirectory(UdfInternalDataFile)} read it the first time size, dates or location are
+     * asked for.
+     *
+     * @return true if the File Entry is in memory
+     */
+    public boolean isFileEntryLoaded() {
+        return thisFileEntry != null;
     }
 
     /**
@@ -89,7 +144,17 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
      * @return FileEntry record
      */
     public FileEntry getThisFileEntry() {
-        return thisFileEntry;
+        FileEntry fileEntry = thisFileEntry;
+        if (fileEntry == null && fileEntryLoader != null) {
+            synchronized (this) {
+                fileEntry = thisFileEntry;
+                if (fileEntry == null) {
+                    fileEntry = fileEntryLoader.loadFileEntry(fileEntrySector);
+                    thisFileEntry = fileEntry;
+                }
+            }
+        }
+        return fileEntry;
     }
 
     /**
@@ -111,7 +176,7 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
     @Override
     public String getFileName() {
         if (getThisFileDescriptor() != null) {
-            return Util.convertDStringBytesToString(getThisFileDescriptor().getFileIdentifier());
+            return getThisFileDescriptor().getFileIdentifierAsString();
         } else {
             return "";
         }
@@ -124,7 +189,20 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
      */
     @Override
     public boolean isDirectory() {
-        return thisFileEntry.getIcbTag().getFileType() == FileEntry.FOLDER;
+        if (thisFileEntry == null && thisFileDescriptor != null) {
+            // The File Identifier carries the folder flag, no need to read the File Entry for it
+            return thisFileDescriptor.getFileCharacteristicsExistenceIsDirectory();
+        }
+        return getThisFileEntry().getIcbTag().getFileType() == FileEntry.FOLDER;
+    }
+
+    /**
+     * Check the hidden flag of the File Identifier Descriptor, the root folder is never hidden.
+     *
+     * @return is hidden
+     */
+    public boolean isHidden() {
+        return thisFileDescriptor != null && !thisFileDescriptor.getFileCharacteristicsExistenceIsSet();
     }
 
     /**
@@ -151,26 +229,38 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
     }
 
     /**
-     * Returns the full file name including parent data by traversing the tree up.
+     * Get the modification time of the file with its offset from GMT.
+     *
+     * @return OffsetDateTime, empty if the timestamp fields do not form a valid date
+     */
+    @Override
+    public Optional<OffsetDateTime> getDateAsOffsetDateTime() {
+        return getThisFileEntry().getModificationTime().getAsOffsetDateTime();
+    }
+
+    /**
+     * Get the recorded time of the file as an Instant, from getDateAsOffsetDateTime.
+     *
+     * @return Instant object
+     */
+    @Override
+    public Optional<Instant> getDateAsInstant() {
+        return getDateAsOffsetDateTime().map(OffsetDateTime::toInstant);
+    }
+
+    /**
+     * Returns the full file name including parent data. This is built from the parent's full file name, which is kept
+     * by each folder, so after the first call for a separator it does not walk the tree.
      *
      * @param separatorChar depending on OS you may want to change separator char
      * @return full string of filename starting with a '/'
      */
     @Override
-    public String getFullFileName(char separatorChar) {
-        List<String> reverseOrderStrings = new ArrayList<>();
-        UdfInternalDataFile pointer = this;
-        while (pointer.getParent() != null) {
-            reverseOrderStrings.add(pointer.getFileName());
-            reverseOrderStrings.add(String.valueOf(separatorChar));
-            pointer = pointer.getParent();
-        }
-
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = reverseOrderStrings.size() - 1; i >= 0; i--) {
-            stringBuilder.append(reverseOrderStrings.get(i));
-        }
-        return stringBuilder.toString();
+    protected String buildFullFileName(char separatorChar) {
+        UdfInternalDataFile currentParent = getParent();
+        return currentParent == null
+                ? ""
+                : currentParent.getFullFileName(separatorChar) + separatorChar + getFileName();
     }
 
     /**
@@ -180,7 +270,7 @@ public class UdfInternalDataFile extends GenericInternalIsoFile {
      */
     @Override
     public long getSize() {
-        return this.thisFileEntry.getLengthInAllocationDescriptorAsInt();
+        return getThisFileEntry().getLengthInAllocationDescriptorAsInt();
     }
 
     /**
@@ -16,10 +16,18 @@
 
 package com.palantir.isofilereader.isofilereader.udf;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.io.BlockCache;
+import com.palantir.isofilereader.isofilereader.io.BlockCacheBinding;
+import com.palantir.isofilereader.isofilereader.io.MeteredRandomAccessFile;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
 import com.palantir.isofilereader.isofilereader.udf.types.files.FileEntry;
 import com.palantir.isofilereader.isofilereader.udf.types.files.FileIdentifierDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.files.FileSetDescriptor;
+import com.palantir.isofilereader.isofilereader.udf.types.partition.AbstractPartitionMap;
+import com.palantir.isofilereader.isofilereader.udf.types.partition.PartitionTypeOne;
+import com.palantir.isofilereader.isofilereader.udf.types.partition.PartitionTypeTwo;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.AnchorVolumePointer;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.GenericDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.ImplUseVolumeDescriptor;
@@ -29,12 +37,16 @@ import com.palantir.isofilereader.isofilereader.udf.types.toc.PartitionDescripto
 import com.palantir.isofilereader.isofilereader.udf.types.toc.PrimaryVolumeDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.TerminatingDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.UnallocatedSpaceDescriptor;
+import com.palantir.isofilereader.isofilereader.udf.types.types.ExtendedDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.types.LongAd;
 import com.palantir.isofilereader.isofilereader.udf.types.types.Tag;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,17 +58,66 @@ import java.util.Map;
  */
 @SuppressWarnings("StrictUnusedVariable")
 public class UdfIsoReader {
+    // Bounds on the descriptor sequences, real images use 16 sectors and a single extent
+    private static final int MAX_SEQUENCE_SECTORS = 256;
+    private static final int MAX_SEQUENCE_EXTENTS = 16;
+    // File Entries closer than this are read together, bounded so a single read stays small
+    private static final int PREFETCH_GAP_SECTORS = 8;
+    private static final int MAX_PREFETCH_SECTORS = 64;
+
     private final File isoFile;
     private List<GenericDescriptor> discDescriptors = null;
     private List<Long> udfAnchorLocations = null;
+    private volatile boolean volumeDescriptorsVerified = true;
 
     // All the locations within a partition are relative, we need to be able to get where that physically is on the disc
     private final Map<Integer, Long> partitionLogicalStart = new HashMap<>();
 
     private char separatorChar = File.separatorChar;
+    private final IsoReaderMetrics metrics;
+    // Shared cache of image blocks and the key of this image in it, both set together
+    private volatile BlockCacheBinding blockCache = null;
 
     public UdfIsoReader(File isoFile) {
+        this(isoFile, IsoReaderMetrics.NO_OP);
+    }
+
+    /**
+     * Create a reader that reports reads and parsing to metrics.
+     *
+     * @param isoFile image to read
+     * @param metrics listener for reads and parsing
+     */
+    public UdfIsoReader(File isoFile, IsoReaderMetrics metrics) {
         this.isoFile = isoFile;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Read descriptors and directories through a block cache shared with other readers, null reads the image directly.
+     *
+     * @param blockCache shared cache, or null
+     */
+    public void setBlockCache(BlockCache blockCache) {
+        setBlockCache(BlockCacheBinding.of(blockCache, isoFile));
+    }
+
+    /**
+     * Read descriptors and directories through a block cache bound to this image, null reads the image directly. Lets
+     * the readers and handles of one image share a single image key.
+     *
+     * @param blockCache binding of the shared cache to this image, or null
+     */
+    public void setBlockCache(BlockCacheBinding blockCache) {
+        this.blockCache = blockCache;
+    }
+
+    private RandomAccessFile openImage() throws FileNotFoundException {
+        BlockCacheBinding binding = blockCache;
+        if (binding == null) {
+            return new MeteredRandomAccessFile(isoFile, metrics);
+        }
+        return new MeteredRandomAccessFile(isoFile, metrics, binding);
     }
 
     /**
@@ -69,7 +130,7 @@ public class UdfIsoReader {
         // UDF says the starting pointer should be at either Logical Sector 256 (524,288 bytes in), or N - 256, or N.
         // N is the last sector on the media. In practice first and last seem to be it.
         udfAnchorLocations = new ArrayList<>();
-        try (RandomAccessFile file = new RandomAccessFile(isoFile, "r")) {
+        try (RandomAccessFile file = openImage()) {
             // This is not supposed to be a valid location, but some images seem to start here... ImgBurn is one of them
             boolean fakeFirstSpotForData = checkSpotForUdfData(file, 32);
             if (fakeFirstSpotForData) {
@@ -134,6 +195,10 @@ public class UdfIsoReader {
      * @throws IOException Read errors at that location
      */
     private boolean checkSpotForUdfData(RandomAccessFile file, long logicalSector) throws IOException {
+        if (logicalSector < 0) {
+            // Images smaller than 257 sectors have no N - 256 anchor
+            return false;
+        }
         file.seek(logicalSector * IsoFormatConstant.BYTES_PER_SECTOR);
 
         byte[] data = new byte[16];
@@ -156,14 +221,93 @@ public class UdfIsoReader {
         if (discDescriptors == null) {
             getDiscDescriptors();
         }
-        try (RandomAccessFile file = new RandomAccessFile(isoFile, "r")) {
-            rootFiles = indexFileData(file);
+        try (RandomAccessFile file = openImage()) {
+            rootFiles = indexFileData(file, false);
         } catch (IOException | UdfFormatException e) {
             throw new RuntimeException(e);
         }
         return rootFiles;
     }
 
+    /**
+     * Get the root folder without walking the tree below it. Its children are read with
+     * {@link #listDirectory(UdfInternalDataFile)}, one folder at a time.
+     *
+     * @return root folder of the file set
+     * @throws UdfFormatException if no File Set Descriptor can be found
+     */
+    public UdfInternalDataFile getRootDirectory() throws UdfFormatException {
+        UdfInternalDataFile[] rootFiles;
+        if (discDescriptors == null) {
+            getDiscDescriptors();
+        }
+        try (RandomAccessFile file = openImage()) {
+            rootFiles = indexFileData(file, true);
+        } catch (IOException | UdfFormatException e) {
+            throw new RuntimeException(e);
+        }
+        if (rootFiles.length == 0) {
+            throw new UdfFormatException("No File Set Descriptor found on the image.");
+        }
+        return rootFiles[0];
+    }
+
+    /**
+     * List a single folder from its File Identifier Descriptors, which hold the name and the folder, hidden and
+     * deleted flags. The directory data is read in one go and the File Entry of each child, which holds its size,
+     * times, permissions and location, is only read the first time it is needed. Deleted and parent entries are
+     * skipped. The children are attached to the folder, so listing it again does not read the image.
+     *
+     * @param directory folder from {@link #getRootDirectory()} or an earlier listing
+     * @return children of the folder
+     * @throws UdfFormatException if the passed file is not a folder or the directory data is not File Identifiers
+     */
+    public UdfInternalDataFile[] listDirectory(UdfInternalDataFile directory) throws UdfFormatException {
+        if (!directory.isDirectory()) {
+            throw new UdfFormatException("Can not list a file: " + directory.getFullFileName(separatorChar));
+        }
+        synchronized (directory) {
+            if (directory.isListed()) {
+                return directory.getChildren();
+            }
+            long rootPartitionLogicalSector = directory.getPartitionOffset();
+            List<UdfInternalDataFile> children = new ArrayList<>();
+            try (RandomAccessFile file = openImage()) {
+                for (FileIdentifierDescriptor fileIdentifier :
+                        readFileIdentifiers(file, rootPartitionLogicalSector, directory.getThisFileEntry())) {
+                    LongAd icb = fileIdentifier.getInformationControlBlock();
+                    long offset = fileIdentifier.getFileCharacteristicsExistenceIsDirectory()
+                            ? rootPartitionLogicalSector
+                            : partitionLogicalStart.getOrDefault(
+                                    icb.getExtentLocation().getPartitionReferenceAsInt(), rootPartitionLogicalSector);
+                    children.add(new UdfInternalDataFile(
+                            this,
+                            rootPartitionLogicalSector + icb.getExtentLocation().getLogicalBlockNumberAsLong(),
+                            fileIdentifier,
+                            offset));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            directory.addChildren(children.toArray(new UdfInternalDataFile[0]));
+            return directory.getChildren();
+        }
+    }
+
+    /**
+     * Read a single File Entry, used when a file from a shallow listing first needs it.
+     *
+     * @param logicalSector absolute sector of the File Entry
+     * @return the File Entry
+     */
+    FileEntry loadFileEntry(long logicalSector) {
+        try (RandomAccessFile file = openImage()) {
+            return readFileEntry(file, logicalSector);
+        } catch (IOException | UdfFormatException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Read a Table of contents header, using logical positioning. Logical * Sector size = position.
      *
@@ -176,6 +320,88 @@ public class UdfIsoReader {
         return readTocItemRaw(file, logicalPos * IsoFormatConstant.BYTES_PER_SECTOR);
     }
 
+    /**
+     * Read a descriptor that lives alone in its logical block, such as a File Entry, with a single read of the block.
+     *
+     * @param file Raw File to read
+     * @param logicalPos logical position from start of image
+     * @return byte array of the descriptor, empty if the block could not be read
+     * @throws IOException if a failure to read occurs
+     */
+    private byte[] readDescriptorBlock(RandomAccessFile file, long logicalPos) throws IOException {
+        byte[] data = readExtent(file, logicalPos, IsoFormatConstant.BYTES_PER_SECTOR);
+        return trimDescriptor(data, 0, data.length);
+    }
+
+    /**
+     * Cut the descriptor at the start of a block out of a larger buffer, using the CRC length of its tag.
+     *
+     * @return byte array of the descriptor, empty if it does not fit in the available bytes
+     */
+    private byte[] trimDescriptor(byte[] data, int offset, int available) {
+        if (available < 16) {
+            return new byte[0];
+        }
+        Tag firstTag = new Tag(Arrays.copyOfRange(data, offset, offset + 16));
+        int length = firstTag.getDescriptorCrcLengthAsInt() + 16;
+        if (length > available) {
+            return new byte[0];
+        }
+        if (firstTag.getTagIdentifierAsInt() != 0) {
+            metrics.descriptorParsed(firstTag.getTagIdentifierAsInt());
+        }
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    private FileEntry readFileEntry(RandomAccessFile file, long logicalPos) throws IOException, UdfFormatException {
+        return toFileEntry(readDescriptorBlock(file, logicalPos));
+    }
+
+    /**
+     * Read the File Entries at the given sectors, sorted by location, with nearby entries read together in one I/O.
+     * This turns the scattered order of a folder's File Identifiers into mostly sequential reads.
+     *
+     * @param file Raw File to read
+     * @param logicalSectors absolute sectors of the File Entries, in any order and possibly repeated
+     * @return File Entry for each sector
+     * @throws IOException if a failure to read occurs
+     * @throws UdfFormatException if a sector does not hold a File Entry
+     */
+    private Map<Long, FileEntry> prefetchFileEntries(RandomAccessFile file, long[] logicalSectors)
+            throws IOException, UdfFormatException {
+        long[] sorted = Arrays.stream(logicalSectors).sorted().distinct().toArray();
+        Map<Long, FileEntry> fileEntries = new HashMap<>(sorted.length * 2);
+        int runStart = 0;
+        while (runStart < sorted.length) {
+            int runEnd = runStart;
+            while (runEnd + 1 < sorted.length
+                    && sorted[runEnd + 1] - sorted[runEnd] <= PREFETCH_GAP_SECTORS
+                    && sorted[runEnd + 1] - sorted[runStart] < MAX_PREFETCH_SECTORS) {
+                runEnd++;
+            }
+            long firstSector = sorted[runStart];
+            int sectors = (int) (sorted[runEnd] - firstSector + 1);
+            byte[] data = readExtent(file, firstSector, sectors * IsoFormatConstant.BYTES_PER_SECTOR);
+            for (int i = runStart; i <= runEnd; i++) {
+                int offset = (int) (sorted[i] - firstSector) * IsoFormatConstant.BYTES_PER_SECTOR;
+                int available = Math.max(0, Math.min(IsoFormatConstant.BYTES_PER_SECTOR, data.length - offset));
+                fileEntries.put(sorted[i], toFileEntry(trimDescriptor(data, offset, available)));
+            }
+            runStart = runEnd + 1;
+        }
+        return fileEntries;
+    }
+
+    private static FileEntry toFileEntry(byte[] rawTocInfo) throws UdfFormatException {
+        int tagIdentifier = rawTocInfo.length == 0 ? 0 : new Tag(rawTocInfo).getTagIdentifierAsInt();
+        if (tagIdentifier != Tag.FILE_ENTRY && tagIdentifier != Tag.EXTENDED_FILE_ENTRY) {
+            throw new UdfFormatException(
+                    "Expected File Entry and did not receive it. Disc table of contents or library error. Type: "
+                            + tagIdentifier);
+        }
+        return new FileEntry(rawTocInfo);
+    }
+
     private byte[] readTocItemRaw(RandomAccessFile file, long purePosition) throws IOException {
         file.seek(purePosition);
         byte[] data = new byte[16];
@@ -192,98 +418,200 @@ public class UdfIsoReader {
         if (read != data.length) {
             return new byte[0];
         }
+        if (firstTag.getTagIdentifierAsInt() != 0) {
+            // Blank sectors read as tag 0, they are not descriptors
+            metrics.descriptorParsed(firstTag.getTagIdentifierAsInt());
+        }
         return data;
     }
 
     /**
-     * There are many tables to go through when traversing a disc, this will go through them.
+     * Read the anchor, then the Volume Descriptor Sequence and Logical Volume Integrity Sequence it leads to. Each
+     * extent is read in a single I/O and parsed from memory. If any descriptor of the main sequence fails its tag
+     * checksum, location or CRC check, the reserve sequence is used instead. If both fail, the main sequence is parsed
+     * without the checks, as older versions did, and isVolumeDescriptorSequenceVerified returns false.
+     *
      * @param file The random access file to use
-     * @param pos the logical block number to read
+     * @param anchorSector logical sector of the anchor volume descriptor pointer
      * @throws IOException if the image fails to read
+     * @throws UdfFormatException if the sequence contains an unknown descriptor
      */
-    @SuppressWarnings("ReadReturnValueIgnored")
-    private void recursiveTableLookup(RandomAccessFile file, long pos, long stoppingPos)
+    private void readVolumeDescriptors(RandomAccessFile file, long anchorSector)
             throws IOException, UdfFormatException {
         // Page 136 is the DVD example
-        byte[] descriptor = readTocItem(file, pos);
-        Tag tagOfDescriptor = new Tag(descriptor);
+        byte[] anchor = readTocItem(file, anchorSector);
+        AnchorVolumePointer anchorVolumePointer = new AnchorVolumePointer(anchor);
+        discDescriptors.add(anchorVolumePointer);
 
-        switch (tagOfDescriptor.getTagIdentifierAsInt()) {
-            case 0:
-                // blank sectors, there are a lot in the header
-                break;
+        List<GenericDescriptor> sequence =
+                readVolumeDescriptorSequence(file, anchorVolumePointer.getMainVolumeDescriptor(), true);
+        if (sequence == null) {
+            sequence = readVolumeDescriptorSequence(file, anchorVolumePointer.getReserveVolumeDescriptor(), true);
+        }
+        volumeDescriptorsVerified = sequence != null;
+        if (sequence == null) {
+            // Both copies are damaged, fall back to the unchecked parse rather than refusing the image
+            sequence = readVolumeDescriptorSequence(file, anchorVolumePointer.getMainVolumeDescriptor(), false);
+        }
+        for (GenericDescriptor descriptor : sequence) {
+            discDescriptors.add(descriptor);
+            if (descriptor instanceof LogicalVolumeDescriptor) {
+                readIntegritySequence(file, ((LogicalVolumeDescriptor) descriptor).getIntegritySequenceExtent());
+            }
+        }
+    }
+
+    /**
+     * Parse a Volume Descriptor Sequence extent, following Volume Descriptor Pointers to continuation extents.
+     *
+     * @param verify check the tag checksum, location and CRC of every descriptor
+     * @return descriptors in order, or null if verifying and a descriptor failed its checks
+     */
+    private List<GenericDescriptor> readVolumeDescriptorSequence(
+            RandomAccessFile file, ExtendedDescriptor extent, boolean verify) throws IOException, UdfFormatException {
+        List<GenericDescriptor> sequence = new ArrayList<>();
+        long sector = Integer.toUnsignedLong(extent.getLocAsInt());
+        long length = Integer.toUnsignedLong(extent.getLengthAsInt());
+        for (int extents = 0; extents < MAX_SEQUENCE_EXTENTS && length > 0; extents++) {
+            byte[] data = readExtent(file, sector, sequenceBytes(length));
+            long next = -1;
+            long nextLength = 0;
+            for (int offset = 0; offset + 16 <= data.length; offset += IsoFormatConstant.BYTES_PER_SECTOR) {
+                long currentSector = sector + offset / IsoFormatConstant.BYTES_PER_SECTOR;
+                Tag tag = new Tag(Arrays.copyOfRange(data, offset, offset + 16));
+                int tagId = tag.getTagIdentifierAsInt();
+                if (tagId == 0) {
+                    // blank sectors, there are a lot in the header
+                    continue;
+                }
+                byte[] descriptor = Arrays.copyOfRange(
+                        data, offset, Math.min(data.length, offset + 16 + tag.getDescriptorCrcLengthAsInt()));
+                if (verify
+                        && (!tag.tagChecksumIsCorrect()
+                                || tag.getTagLocationAsInt() != currentSector
+                                || !tag.descriptorCrcIsCorrect(descriptor))) {
+                    metrics.descriptorCheckFailed(tagId);
+                    return null;
+                }
+                metrics.descriptorParsed(tagId);
+                if (tagId == Tag.VOLUME_DESCRIPTOR_POINTER) {
+                    // Continues in another extent, ECMA-167 3/10.3
+                    next = BinaryFields.uint32Le(descriptor, 24);
+                    nextLength = BinaryFields.uint32Le(descriptor, 20);
+                    break;
+                }
+                sequence.add(parseVolumeDescriptor(tagId, descriptor));
+                if (tagId == Tag.TERMINATING_DESCRIPTOR) {
+                    return sequence;
+                }
+            }
+            sector = next;
+            length = nextLength;
+        }
+        return sequence;
+    }
+
+    /**
+     * Whether the Volume Descriptor Sequence in use passed its checks. False when both the main and reserve sequences
+     * failed and the main one was parsed without them, in which case the descriptors may be damaged.
+     *
+     * @return true if the main or reserve sequence was intact, or the descriptors have not been read yet
+     */
+    public boolean isVolumeDescriptorSequenceVerified() {
+        return volumeDescriptorsVerified;
+    }
+
+    /**
+     * Read the Logical Volume Integrity Sequence, following the next integrity extent of each LVID. Integrity
+     * descriptors are added as found, without CRC checks, since the volume can still be read without them.
+     */
+    private void readIntegritySequence(RandomAccessFile file, ExtendedDescriptor extent)
+            throws IOException, UdfFormatException {
+        long sector = Integer.toUnsignedLong(extent.getLocAsInt());
+        long length = Integer.toUnsignedLong(extent.getLengthAsInt());
+        for (int extents = 0; extents < MAX_SEQUENCE_EXTENTS && sector != 0 && length > 0; extents++) {
+            byte[] data = readExtent(file, sector, sequenceBytes(length));
+            long next = 0;
+            long nextLength = 0;
+            for (int offset = 0; offset + 16 <= data.length; offset += IsoFormatConstant.BYTES_PER_SECTOR) {
+                Tag tag = new Tag(Arrays.copyOfRange(data, offset, offset + 16));
+                int tagId = tag.getTagIdentifierAsInt();
+                if (tagId == 0) {
+                    continue;
+                }
+                byte[] descriptor = Arrays.copyOfRange(
+                        data, offset, Math.min(data.length, offset + 16 + tag.getDescriptorCrcLengthAsInt()));
+                metrics.descriptorParsed(tagId);
+                GenericDescriptor parsed = parseVolumeDescriptor(tagId, descriptor);
+                discDescriptors.add(parsed);
+                if (parsed instanceof LogicalVolumeIntegrityDescriptor) {
+                    ExtendedDescriptor nextExtent =
+                            ((LogicalVolumeIntegrityDescriptor) parsed).getNextIntegrityExtent();
+                    next = Integer.toUnsignedLong(nextExtent.getLocAsInt());
+                    nextLength = Integer.toUnsignedLong(nextExtent.getLengthAsInt());
+                }
+                if (tagId == Tag.TERMINATING_DESCRIPTOR || next != 0) {
+                    break;
+                }
+            }
+            sector = next;
+            length = nextLength;
+        }
+    }
+
+    private static int sequenceBytes(long length) {
+        return (int) Math.min(length, (long) MAX_SEQUENCE_SECTORS * IsoFormatConstant.BYTES_PER_SECTOR);
+    }
+
+    private static GenericDescriptor parseVolumeDescriptor(int tagId, byte[] descriptor) throws UdfFormatException {
+        switch (tagId) {
             case Tag.PRIMARY_VOLUME:
-                PrimaryVolumeDescriptor primaryVolumeDescriptor = new PrimaryVolumeDescriptor(descriptor);
-                discDescriptors.add(primaryVolumeDescriptor);
-                break;
-            case Tag.ANCHOR_VOLUME_DESCRIPTOR_POINTER:
-                AnchorVolumePointer anchorVolumePointer = new AnchorVolumePointer(descriptor);
-                discDescriptors.add(anchorVolumePointer);
-                int logicalSectorOfPrimaryLogicalVolumeDescriptor =
-                        anchorVolumePointer.getMainVolumeDescriptor().getLocAsInt();
-                long headerEndLocation =
-                        (long) IsoFormatConstant.BYTES_PER_SECTOR * logicalSectorOfPrimaryLogicalVolumeDescriptor;
-                headerEndLocation +=
-                        anchorVolumePointer.getMainVolumeDescriptor().getLengthAsInt();
-                recursiveTableLookup(file, logicalSectorOfPrimaryLogicalVolumeDescriptor, headerEndLocation);
-                break;
+                return new PrimaryVolumeDescriptor(descriptor);
             case Tag.IMPL_USE_VOLUME_DESCRIPTOR:
-                ImplUseVolumeDescriptor implUseVolumeDescriptor = new ImplUseVolumeDescriptor(descriptor);
-                discDescriptors.add(implUseVolumeDescriptor);
-                break;
+                return new ImplUseVolumeDescriptor(descriptor);
             case Tag.PARTITION_DESCRIPTOR:
-                PartitionDescriptor partitionDescriptor = new PartitionDescriptor(descriptor);
-                discDescriptors.add(partitionDescriptor);
                 // These are on page 74 of the 1997 doc
-                break;
+                return new PartitionDescriptor(descriptor);
             case Tag.LOGICAL_VOLUME_DESCRIPTOR:
-                LogicalVolumeDescriptor logicalVolumeDescriptor = new LogicalVolumeDescriptor(descriptor);
-                discDescriptors.add(logicalVolumeDescriptor);
-                int logicalSectorOfNextIntegritySeqExt =
-                        logicalVolumeDescriptor.getIntegritySequenceExtent().getLocAsInt();
-                long logicalSectorOfNextIntegritySeqExtEnd =
-                        (long) IsoFormatConstant.BYTES_PER_SECTOR * logicalSectorOfNextIntegritySeqExt;
-                logicalSectorOfNextIntegritySeqExtEnd +=
-                        logicalVolumeDescriptor.getIntegritySequenceExtent().getLengthAsInt();
-                recursiveTableLookup(file, logicalSectorOfNextIntegritySeqExt, logicalSectorOfNextIntegritySeqExtEnd);
-                break;
+                return new LogicalVolumeDescriptor(descriptor);
             case Tag.UNALLOCATED_SPACE_DESCRIPTOR:
-                UnallocatedSpaceDescriptor unallocatedSpaceDescriptor = new UnallocatedSpaceDescriptor(descriptor);
-                discDescriptors.add(unallocatedSpaceDescriptor);
-                break;
+                return new UnallocatedSpaceDescriptor(descriptor);
             case Tag.TERMINATING_DESCRIPTOR:
-                TerminatingDescriptor terminatingDescriptor = new TerminatingDescriptor(descriptor);
-                discDescriptors.add(terminatingDescriptor);
-                break;
+                return new TerminatingDescriptor(descriptor);
             case Tag.LOGICAL_VOLUME_INTEGRITY_DESCRIPTOR:
-                LogicalVolumeIntegrityDescriptor logicalVolumeIntegrityDescriptor =
-                        new LogicalVolumeIntegrityDescriptor(descriptor);
-                discDescriptors.add(logicalVolumeIntegrityDescriptor);
-                if (logicalVolumeIntegrityDescriptor.getNextIntegrityExtent().getLocAsInt() != 0) {
-                    int logNextVolumeIntegritySector = logicalVolumeIntegrityDescriptor
-                            .getNextIntegrityExtent()
-                            .getLocAsInt();
-                    long logNextVolumeIntegritySectorEnd =
-                            (long) IsoFormatConstant.BYTES_PER_SECTOR * logNextVolumeIntegritySector;
-                    logNextVolumeIntegritySectorEnd += logicalVolumeIntegrityDescriptor
-                            .getNextIntegrityExtent()
-                            .getLengthAsInt();
-                    recursiveTableLookup(file, logNextVolumeIntegritySector, logNextVolumeIntegritySectorEnd);
-                }
-                break;
+                return new LogicalVolumeIntegrityDescriptor(descriptor);
             default:
-                throw new UdfFormatException("Unknown Descriptor Type: " + tagOfDescriptor.getTagIdentifierAsInt());
+                throw new UdfFormatException("Unknown Descriptor Type: " + tagId);
         }
-        if (((pos + 1) * IsoFormatConstant.BYTES_PER_SECTOR) < stoppingPos) {
-            recursiveTableLookup(file, pos + 1, stoppingPos);
+    }
+
+    /**
+     * Read a whole extent in one go, cut short at the end of the image.
+     */
+    private byte[] readExtent(RandomAccessFile file, long sector, int wanted) throws IOException {
+        byte[] data = new byte[wanted];
+        file.seek(sector * IsoFormatConstant.BYTES_PER_SECTOR);
+        int filled = 0;
+        while (filled < wanted) {
+            int read = file.read(data, filled, wanted - filled);
+            if (read <= 0) {
+                break;
+            }
+            filled += read;
         }
+        return filled == wanted ? data : Arrays.copyOf(data, filled);
     }
 
     @SuppressWarnings("StrictUnusedVariable")
-    private UdfInternalDataFile[] indexFileData(RandomAccessFile file) throws IOException, UdfFormatException {
+    private UdfInternalDataFile[] indexFileData(RandomAccessFile file, boolean shallow)
+            throws IOException, UdfFormatException {
         // How to read a DVD helps, that starts at page 135 of UDF 2.60
         PartitionDescriptor[] descriptor = (PartitionDescriptor[]) getSpecificDiscDescriptor(Tag.PARTITION_DESCRIPTOR);
         // PartitionDescriptor[] descriptor = getPartitionDescriptors();
+        UdfInternalDataFile directRoot = indexFromLogicalVolumeContentsUse(file, descriptor, shallow);
+        if (directRoot != null) {
+            return new UdfInternalDataFile[] {directRoot};
+        }
         List<UdfInternalDataFile> rootFiles = new ArrayList<>();
         // There can be multiple partitions, I haven't seen this, but it can happen.
         for (PartitionDescriptor partitionDescriptor : descriptor) {
@@ -295,22 +623,7 @@ public class UdfIsoReader {
 
                 switch (tagOfDescriptor.getTagIdentifierAsInt()) {
                     case Tag.FILE_SET_DESCRIPTOR:
-                        FileSetDescriptor fileSetDescriptor = new FileSetDescriptor(rawTocInfo);
-                        partitionLogicalStart.put(
-                                fileSetDescriptor
-                                        .getRootDirectoryIcb()
-                                        .getExtentLocation()
-                                        .getPartitionReferenceAsInt(),
-                                startOfPartition);
-                        LongAd rootFolderLoc =
-                                fileSetDescriptor.getRootDirectoryIcb(); // This should point to a File Entry
-                        UdfInternalDataFile rootFolder = getFilesAndFoldersAtLocForFileEntries(
-                                file,
-                                i,
-                                rootFolderLoc.getExtentLengthAsInt(),
-                                rootFolderLoc.getExtentLocation().getLogicalBlockNumberAsLong(),
-                                null);
-                        rootFiles.add(rootFolder);
+                        rootFiles.add(indexFromFileSetDescriptor(file, rawTocInfo, i, startOfPartition, shallow));
                         return rootFiles.toArray(new UdfInternalDataFile[0]);
                     case Tag.EXTENDED_FILE_ENTRY:
                         // This is a Metadata bitmap if it's here
@@ -327,6 +640,114 @@ public class UdfIsoReader {
         return rootFiles.toArray(new UdfInternalDataFile[0]);
     }
 
+    /**
+     * Index from the File Set Descriptor named by the Logical Volume Descriptor's contents use field (UDF 2.60
+     * 2.2.4.4), rather than scanning the partition for it. Metadata partitions are resolved through the metadata
+     * file's File Entry.
+     *
+     * @param file image to read
+     * @param partitionDescriptors partition descriptors of the volume
+     * @param shallow only read the root folder's File Entry instead of walking the tree
+     * @return root folder, or null if the File Set Descriptor could not be found this way
+     */
+    private UdfInternalDataFile indexFromLogicalVolumeContentsUse(
+            RandomAccessFile file, PartitionDescriptor[] partitionDescriptors, boolean shallow)
+            throws IOException, UdfFormatException {
+        GenericDescriptor[] logicalVolumes = getSpecificDiscDescriptor(Tag.LOGICAL_VOLUME_DESCRIPTOR);
+        if (logicalVolumes.length == 0) {
+            return null;
+        }
+        LogicalVolumeDescriptor logicalVolume = (LogicalVolumeDescriptor) logicalVolumes[0];
+        LongAd fileSetLocation = logicalVolume.getFileSetDescriptorLocation();
+        int partitionReference = fileSetLocation.getExtentLocation().getPartitionReferenceAsInt();
+        List<AbstractPartitionMap> maps = logicalVolume.getPartitionMapList();
+        if (partitionReference >= maps.size()) {
+            return null;
+        }
+
+        AbstractPartitionMap map = maps.get(partitionReference);
+        PartitionDescriptor physicalPartition;
+        long startOfLogicalPartition;
+        if (map instanceof PartitionTypeOne) {
+            physicalPartition = findPartition(partitionDescriptors, ((PartitionTypeOne) map).getPartitionNumberAsInt());
+            if (physicalPartition == null) {
+                return null;
+            }
+            startOfLogicalPartition = physicalPartition.getPartitionStartingLocationAsInt();
+        } else if (map instanceof PartitionTypeTwo && ((PartitionTypeTwo) map).isMetadataPartition()) {
+            PartitionTypeTwo metadataMap = (PartitionTypeTwo) map;
+            physicalPartition = findPartition(partitionDescriptors, metadataMap.getPartitionNumberAsInt());
+            if (physicalPartition == null) {
+                return null;
+            }
+            long startOfPartition = physicalPartition.getPartitionStartingLocationAsInt();
+            byte[] rawMetadataFile = readTocItem(file, startOfPartition + metadataMap.getMetadataFileLocationAsLong());
+            int metadataTag = new Tag(rawMetadataFile).getTagIdentifierAsInt();
+            if (metadataTag != Tag.FILE_ENTRY && metadataTag != Tag.EXTENDED_FILE_ENTRY) {
+                return null;
+            }
+            // The metadata partition is the content of the metadata file, its first extent is where block 0 is
+            startOfLogicalPartition =
+                    startOfPartition + new FileEntry(rawMetadataFile).getLocationInAllocationDescriptorAsInt();
+        } else {
+            // Virtual and sparable partitions need their tables read, let the scan handle them
+            return null;
+        }
+
+        long logicalBlock = fileSetLocation.getExtentLocation().getLogicalBlockNumberAsLong();
+        byte[] rawFileSet = readTocItem(file, startOfLogicalPartition + logicalBlock);
+        if (rawFileSet.length < 16) {
+            return null;
+        }
+        Tag fileSetTag = new Tag(rawFileSet);
+        if (fileSetTag.getTagIdentifierAsInt() != Tag.FILE_SET_DESCRIPTOR
+                || !fileSetTag.tagChecksumIsCorrect()
+                || fileSetTag.getTagLocationAsInt() != logicalBlock) {
+            return null;
+        }
+        return indexFromFileSetDescriptor(
+                file,
+                rawFileSet,
+                startOfLogicalPartition,
+                physicalPartition.getPartitionStartingLocationAsInt(),
+                shallow);
+    }
+
+    private static PartitionDescriptor findPartition(PartitionDescriptor[] partitionDescriptors, int partitionNumber) {
+        for (PartitionDescriptor partitionDescriptor : partitionDescriptors) {
+            if (partitionDescriptor.getPartitionNumberAsInt() == partitionNumber) {
+                return partitionDescriptor;
+            }
+        }
+        return null;
+    }
+
+    private UdfInternalDataFile indexFromFileSetDescriptor(
+            RandomAccessFile file,
+            byte[] rawFileSet,
+            long startOfLogicalPartition,
+            long startOfPartition,
+            boolean shallow)
+            throws IOException, UdfFormatException {
+        FileSetDescriptor fileSetDescriptor = new FileSetDescriptor(rawFileSet);
+        partitionLogicalStart.put(
+                fileSetDescriptor.getRootDirectoryIcb().getExtentLocation().getPartitionReferenceAsInt(),
+                startOfPartition);
+        LongAd rootFolderLoc = fileSetDescriptor.getRootDirectoryIcb(); // This should point to a File Entry
+        if (shallow) {
+            FileEntry rootEntry = readFileEntry(
+                    file,
+                    startOfLogicalPartition + rootFolderLoc.getExtentLocation().getLogicalBlockNumberAsLong());
+            return new UdfInternalDataFile(rootEntry, null, startOfLogicalPartition);
+        }
+        return getFilesAndFoldersAtLocForFileEntries(
+                file,
+                startOfLogicalPartition,
+                rootFolderLoc.getExtentLengthAsInt(),
+                rootFolderLoc.getExtentLocation().getLogicalBlockNumberAsLong(),
+                null);
+    }
+
     private UdfInternalDataFile getFilesAndFoldersAtLocForFileEntries(
             RandomAccessFile file,
             long rootPartitionLogicalSector,
@@ -335,15 +756,16 @@ public class UdfIsoReader {
             FileIdentifierDescriptor fileIdentifierDescriptor)
             throws IOException, UdfFormatException {
         // We need to get the Allocation Descriptor to find the File Identity Descriptors of this
-        byte[] rawTocInfo = readTocItem(file, localRelativeLogicalSector + rootPartitionLogicalSector);
-        Tag tagOfDescriptor = new Tag(rawTocInfo);
-        if (tagOfDescriptor.getTagIdentifierAsInt() != Tag.FILE_ENTRY
-                && tagOfDescriptor.getTagIdentifierAsInt() != Tag.EXTENDED_FILE_ENTRY) {
-            throw new UdfFormatException(
-                    "Expected File Entry and did not receive it. Disc table of contents or library error. Type: "
-                            + tagOfDescriptor.getTagIdentifierAsInt());
-        }
-        FileEntry fileEntry = new FileEntry(rawTocInfo);
+        FileEntry fileEntry = readFileEntry(file, localRelativeLogicalSector + rootPartitionLogicalSector);
+        return getFilesAndFoldersForFileEntry(file, rootPartitionLogicalSector, fileEntry, fileIdentifierDescriptor);
+    }
+
+    private UdfInternalDataFile getFilesAndFoldersForFileEntry(
+            RandomAccessFile file,
+            long rootPartitionLogicalSector,
+            FileEntry fileEntry,
+            FileIdentifierDescriptor fileIdentifierDescriptor)
+            throws IOException, UdfFormatException {
         switch (fileEntry.getIcbTag().getFileType()) {
             case FileEntry.FILE_AS_RAN_ACCESS_STREAM:
                 int partitionId = fileIdentifierDescriptor
@@ -367,53 +789,74 @@ public class UdfIsoReader {
             FileEntry fileEntry,
             FileIdentifierDescriptor parentFolderInfo)
             throws IOException, UdfFormatException {
-        int trackingLogical = 0;
-        byte[] rawTocInfo = readTocItemRaw(
-                file,
-                ((fileEntry.getLocationInAllocationDescriptorAsInt() + rootPartitionLogicalSector)
-                                * IsoFormatConstant.BYTES_PER_SECTOR)
-                        + trackingLogical);
-        trackingLogical += rawTocInfo.length;
-        Tag tagOfDescriptor = new Tag(rawTocInfo);
-        // The area starts with the folder, but it doesn't have more data than the earlier entry.
-        if (tagOfDescriptor.getTagIdentifierAsInt() != Tag.FILE_IDENTIFIER_DESCRIPTOR) {
-            throw new UdfFormatException(
-                    "Error reading UDF disc. Expected a File Identifier Description and found other tag.");
-        }
-
         UdfInternalDataFile parentFolder =
                 new UdfInternalDataFile(fileEntry, parentFolderInfo, rootPartitionLogicalSector);
-
-        List<UdfInternalDataFile> tempItems = new ArrayList<>();
-        // Internally tracking as we move through bytes of the image
-        for (; trackingLogical < fileEntry.getLengthInAllocationDescriptorAsInt(); ) {
-            rawTocInfo = readTocItemRaw(
-                    file,
-                    ((fileEntry.getLocationInAllocationDescriptorAsInt() + rootPartitionLogicalSector)
-                                    * IsoFormatConstant.BYTES_PER_SECTOR)
-                            + trackingLogical);
-            trackingLogical += rawTocInfo.length;
-            tagOfDescriptor = new Tag(rawTocInfo);
-            if (tagOfDescriptor.getTagIdentifierAsInt() != Tag.FILE_IDENTIFIER_DESCRIPTOR) {
-                throw new UdfFormatException(
-                        "Error reading UDF disc. Expected a File Identifier Description and found other tag.");
-            }
-            FileIdentifierDescriptor tempFileDescriptor = new FileIdentifierDescriptor(rawTocInfo);
-            UdfInternalDataFile files = getFilesAndFoldersAtLocForFileEntries(
-                    file,
-                    rootPartitionLogicalSector,
-                    tempFileDescriptor.getInformationControlBlock().getExtentLengthAsInt(),
-                    tempFileDescriptor
+        List<FileIdentifierDescriptor> fileIdentifiers =
+                readFileIdentifiers(file, rootPartitionLogicalSector, fileEntry);
+        long[] fileEntrySectors = new long[fileIdentifiers.size()];
+        for (int i = 0; i < fileEntrySectors.length; i++) {
+            fileEntrySectors[i] = rootPartitionLogicalSector
+                    + fileIdentifiers
+                            .get(i)
                             .getInformationControlBlock()
                             .getExtentLocation()
-                            .getLogicalBlockNumberAsLong(),
-                    tempFileDescriptor);
-            tempItems.add(files);
+                            .getLogicalBlockNumberAsLong();
+        }
+        Map<Long, FileEntry> fileEntries = prefetchFileEntries(file, fileEntrySectors);
+
+        UdfInternalDataFile[] children = new UdfInternalDataFile[fileEntrySectors.length];
+        for (int i = 0; i < fileEntrySectors.length; i++) {
+            children[i] = getFilesAndFoldersForFileEntry(
+                    file, rootPartitionLogicalSector, fileEntries.get(fileEntrySectors[i]), fileIdentifiers.get(i));
         }
-        parentFolder.addChildren(tempItems.toArray(tempItems.toArray(new UdfInternalDataFile[0])));
+        parentFolder.addChildren(children);
         return parentFolder;
     }
 
+    /**
+     * Read the directory data of a folder in one read and parse its File Identifier Descriptors from memory. The
+     * parent entry and deleted entries are left out.
+     *
+     * @param file Raw File to read
+     * @param rootPartitionLogicalSector start of the partition the folder's data is relative to
+     * @param fileEntry File Entry of the folder
+     * @return File Identifier Descriptors of the folder's children, in recorded order
+     * @throws IOException if a failure to read occurs
+     * @throws UdfFormatException if the directory data holds something other than File Identifier Descriptors
+     */
+    private List<FileIdentifierDescriptor> readFileIdentifiers(
+            RandomAccessFile file, long rootPartitionLogicalSector, FileEntry fileEntry)
+            throws IOException, UdfFormatException {
+        int length = fileEntry.getLengthInAllocationDescriptorAsInt();
+        metrics.directorySectorsParsed(
+                (length + IsoFormatConstant.BYTES_PER_SECTOR - 1) / IsoFormatConstant.BYTES_PER_SECTOR);
+        byte[] data = readExtent(
+                file, fileEntry.getLocationInAllocationDescriptorAsInt() + rootPartitionLogicalSector, length);
+
+        List<FileIdentifierDescriptor> fileIdentifiers = new ArrayList<>();
+        // A File Identifier Descriptor is 38 bytes plus its implementation use and name, padded to 4 bytes (4/14.4)
+        int position = 0;
+        while (position + 38 <= data.length) {
+            Tag tag = new Tag(Arrays.copyOfRange(data, position, position + 16));
+            if (tag.getTagIdentifierAsInt() != Tag.FILE_IDENTIFIER_DESCRIPTOR) {
+                throw new UdfFormatException(
+                        "Error reading UDF disc. Expected a File Identification Descriptor and found other tag.");
+            }
+            metrics.descriptorParsed(Tag.FILE_IDENTIFIER_DESCRIPTOR);
+            int recordLength =
+                    38 + BinaryFields.uint16Le(data, position + 36) + Byte.toUnsignedInt(data[position + 19]);
+            int end = Math.min(data.length, position + recordLength);
+            FileIdentifierDescriptor fileIdentifier =
+                    new FileIdentifierDescriptor(Arrays.copyOfRange(data, position, end));
+            if (!fileIdentifier.getFileCharacteristicsExistenceIsParent()
+                    && !fileIdentifier.getFileCharacteristicsExistenceIsDeleted()) {
+                fileIdentifiers.add(fileIdentifier);
+            }
+            position += (recordLength + 3) & ~3;
+        }
+        return fileIdentifiers;
+    }
+
     /**
      * Get all the disc descriptors, this will check if they have been read before, and if not attempt to read them
      * first.
@@ -422,20 +865,78 @@ public class UdfIsoReader {
      * @throws UdfFormatException this can occur if there is an issue reading underlying media
      */
     public List<GenericDescriptor> getDiscDescriptors() throws UdfFormatException {
+        try {
+            return loadDiscDescriptors();
+        } catch (IOException | UdfFormatException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<GenericDescriptor> loadDiscDescriptors() throws IOException, UdfFormatException {
         if (discDescriptors == null) {
             discDescriptors = new ArrayList<>();
             if (udfAnchorLocations == null && !checkForUdfData()) {
                 throw new UdfFormatException("Image does not appear to be a UDF image.");
             }
-            try (RandomAccessFile file = new RandomAccessFile(isoFile, "r")) {
-                recursiveTableLookup(file, udfAnchorLocations.get(0), -1);
-            } catch (IOException | UdfFormatException e) {
-                throw new RuntimeException(e);
+            try (RandomAccessFile file = openImage()) {
+                readVolumeDescriptors(file, udfAnchorLocations.get(0));
             }
         }
         return discDescriptors;
     }
 
+    /**
+     * Number of files the Logical Volume Integrity Descriptor records for the volume (UDF 2.60 2.2.6.4), read from the
+     * volume descriptors without walking the tree. Directories are not counted.
+     *
+     * @return number of files, -1 if the image has no UDF volume or its integrity descriptor does not record it
+     */
+    public long getRecordedFileCount() {
+        LogicalVolumeIntegrityDescriptor integrity = getCurrentIntegrityDescriptor();
+        return integrity == null ? -1 : Integer.toUnsignedLong(integrity.getImplementationUseNumberOfFiles());
+    }
+
+    /**
+     * Number of directories the Logical Volume Integrity Descriptor records for the volume (UDF 2.60 2.2.6.4), read
+     * from the volume descriptors without walking the tree. The root directory is counted.
+     *
+     * @return number of directories, -1 if the image has no UDF volume or its integrity descriptor does not record it
+     */
+    public long getRecordedDirectoryCount() {
+        LogicalVolumeIntegrityDescriptor integrity = getCurrentIntegrityDescriptor();
+        return integrity == null ? -1 : Integer.toUnsignedLong(integrity.getImplementationUseNumberOfDirectories());
+    }
+
+    /**
+     * The last Logical Volume Integrity Descriptor of the integrity sequence is the current one. Its implementation
+     * use holds the counts when it is at least 46 bytes long.
+     */
+    private LogicalVolumeIntegrityDescriptor getCurrentIntegrityDescriptor() {
+        if (discDescriptors == null) {
+            boolean udfFound = udfAnchorLocations == null ? checkForUdfData() : !udfAnchorLocations.isEmpty();
+            if (!udfFound) {
+                return null;
+            }
+            try {
+                loadDiscDescriptors();
+            } catch (UdfFormatException e) {
+                return null;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        LogicalVolumeIntegrityDescriptor current = null;
+        for (GenericDescriptor descriptor : discDescriptors) {
+            if (descriptor instanceof LogicalVolumeIntegrityDescriptor) {
+                current = (LogicalVolumeIntegrityDescriptor) descriptor;
+            }
+        }
+        if (current == null || current.getImplementationUse().length < 46) {
+            return null;
+        }
+        return current;
+    }
+
     /**
      * Find a specific disc descriptor type, for example you want all the Tag.FILE_SET_DESCRIPTOR.
      *
@@ -443,12 +944,36 @@ public class UdfIsoReader {
      * @return array of tags matching that
      */
     public GenericDescriptor[] getSpecificDiscDescriptor(int tagType) {
-        List<PartitionDescriptor> partitionDescriptor = new ArrayList<>();
+        List<GenericDescriptor> matching = new ArrayList<>();
         for (GenericDescriptor genericDescriptor : discDescriptors) {
             if (genericDescriptor.getDescriptorTag().getTagIdentifierAsInt() == tagType) {
-                partitionDescriptor.add((PartitionDescriptor) genericDescriptor);
+                matching.add(genericDescriptor);
             }
         }
-        return partitionDescriptor.toArray(new PartitionDescriptor[0]);
+        // The array has the descriptor's own type, so it can be cast, for example to PartitionDescriptor[]
+        return matching.toArray((GenericDescriptor[]) Array.newInstance(descriptorClass(tagType), 0));
+    }
+
+    private static Class<? extends GenericDescriptor> descriptorClass(int tagType) {
+        switch (tagType) {
+            case Tag.PRIMARY_VOLUME:
+                return PrimaryVolumeDescriptor.class;
+            case Tag.ANCHOR_VOLUME_DESCRIPTOR_POINTER:
+                return AnchorVolumePointer.class;
+            case Tag.IMPL_USE_VOLUME_DESCRIPTOR:
+                return ImplUseVolumeDescriptor.class;
+            case Tag.PARTITION_DESCRIPTOR:
+                return PartitionDescriptor.class;
+            case Tag.LOGICAL_VOLUME_DESCRIPTOR:
+                return LogicalVolumeDescriptor.class;
+            case Tag.UNALLOCATED_SPACE_DESCRIPTOR:
+                return UnallocatedSpaceDescriptor.class;
+            case Tag.TERMINATING_DESCRIPTOR:
+                return TerminatingDescriptor.class;
+            case Tag.LOGICAL_VOLUME_INTEGRITY_DESCRIPTOR:
+                return LogicalVolumeIntegrityDescriptor.class;
+            default:
+                return GenericDescriptor.class;
+        }
     }
 }
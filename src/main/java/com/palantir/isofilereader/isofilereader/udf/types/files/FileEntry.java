@@ -16,14 +16,12 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.files;
 
-import com.palantir.isofilereader.isofilereader.Util;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.GenericDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.types.EntityId;
 import com.palantir.isofilereader.isofilereader.udf.types.types.IcbTag;
 import com.palantir.isofilereader.isofilereader.udf.types.types.LongAd;
 import com.palantir.isofilereader.isofilereader.udf.types.types.Timestamp;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
@@ -220,7 +218,7 @@ public class FileEntry extends GenericDescriptor {
      * @return user id
      */
     public int getUidAsInt() {
-        return Util.fourUnsignedByteToInt(getUid());
+        return BinaryFields.int32Le(getUid(), 0);
     }
 
     /**
@@ -239,7 +237,7 @@ public class FileEntry extends GenericDescriptor {
      * @return group id
      */
     public int getGidAsInt() {
-        return Util.fourUnsignedByteToInt(getGid());
+        return BinaryFields.int32Le(getGid(), 0);
     }
 
     /**
@@ -257,7 +255,7 @@ public class FileEntry extends GenericDescriptor {
      * @return FilePerms
      */
     public FilePerms getFilePerms() {
-        return new FilePerms(Util.fourUnsignedByteToInt(getPermissions()));
+        return new FilePerms(BinaryFields.int32Le(getPermissions(), 0));
     }
 
     /**
@@ -326,9 +324,7 @@ public class FileEntry extends GenericDescriptor {
      * @return long
      */
     public long getInfoLengthAsLong() {
-        final ByteBuffer bb = ByteBuffer.wrap(getInfoLength());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getLong();
+        return BinaryFields.int64Le(getInfoLength(), 0);
     }
 
     /**
@@ -421,9 +417,7 @@ public class FileEntry extends GenericDescriptor {
      * @return int
      */
     public int getLengthOfExtendedAttributesAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getLengthOfExtendedAttributes());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getLengthOfExtendedAttributes(), 0);
     }
 
     /**
@@ -441,9 +435,7 @@ public class FileEntry extends GenericDescriptor {
      * @return int of length
      */
     public int getLengthOfAllocationDescriptorsAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getLengthOfAllocationDescriptors());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getLengthOfAllocationDescriptors(), 0);
     }
 
     /**
@@ -475,13 +467,8 @@ public class FileEntry extends GenericDescriptor {
             2 Extent not recorded and not allocated
             3 The extent is the next extent of allocation descriptors (see 4/12)
         */
-        byte[] tempLength = Arrays.copyOfRange(getAllocationDescriptors(), 0, 4);
-        // To fix this overload, we will do a bitmask...
-        int mask = 63; // 0011 1111 mask is 63
-        tempLength[3] = (byte) (tempLength[3] & mask);
-        final ByteBuffer bb = ByteBuffer.wrap(Arrays.copyOfRange(tempLength, 0, 4));
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        // To fix this overload, we mask off the top 2 bits
+        return BinaryFields.int32Le(getAllocationDescriptors(), 0) & 0x3FFFFFFF;
     }
 
     /**
@@ -490,9 +477,7 @@ public class FileEntry extends GenericDescriptor {
      * @return int of location
      */
     public int getLocationInAllocationDescriptorAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(Arrays.copyOfRange(getAllocationDescriptors(), 4, 8));
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getAllocationDescriptors(), 4);
     }
 
     /**
@@ -16,6 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.files;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.Util;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.GenericDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.types.LongAd;
@@ -44,6 +45,9 @@ public class FileIdentifierDescriptor extends GenericDescriptor {
     private final byte[] fileIdentifier;
     // byte Padding[];
 
+    // Decoded once on first use, racing threads decode the same bytes to an equal String
+    private volatile String fileIdentifierAsString;
+
     public FileIdentifierDescriptor(byte[] record) {
         // struct tag DescriptorTag; this is 16 bytes
         super(record);
@@ -178,7 +182,7 @@ public class FileIdentifierDescriptor extends GenericDescriptor {
      * @return int of length
      */
     public int getLengthOfImplementationUseAsInt() {
-        return Util.twoUnsignedByteToInt(getLengthOfImplementationUse());
+        return BinaryFields.uint16Le(getLengthOfImplementationUse(), 0);
     }
 
     /**
@@ -199,4 +203,18 @@ public class FileIdentifierDescriptor extends GenericDescriptor {
     public byte[] getFileIdentifier() {
         return fileIdentifier;
     }
+
+    /**
+     * Get the file identifier decoded from OSTA CS0, the name is decoded on first use and kept.
+     *
+     * @return String of the file identifier
+     */
+    public String getFileIdentifierAsString() {
+        String name = fileIdentifierAsString;
+        if (name == null) {
+            name = Util.convertDCharactersToString(fileIdentifier, 0, fileIdentifier.length);
+            fileIdentifierAsString = name;
+        }
+        return name;
+    }
 }
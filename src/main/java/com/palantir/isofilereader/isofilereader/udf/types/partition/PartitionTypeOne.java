@@ -16,6 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.partition;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import java.util.Arrays;
 
 /**
@@ -50,4 +51,13 @@ public class PartitionTypeOne extends AbstractPartitionMap {
     public byte[] getPartitionNumber() {
         return partitionNumber;
     }
+
+    /**
+     * Get the partition number as an int.
+     *
+     * @return partition number
+     */
+    public int getPartitionNumberAsInt() {
+        return BinaryFields.uint16Le(getPartitionNumber(), 0);
+    }
 }
@@ -16,6 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.partition;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.udf.types.types.EntityId;
 import java.util.Arrays;
 
@@ -23,18 +24,22 @@ import java.util.Arrays;
  * Section 10.7.3/ Page 3/22 of original document.
  */
 public class PartitionTypeTwo extends AbstractPartitionMap {
+    public static final String METADATA_PARTITION_IDENTIFIER = "*UDF Metadata Partition";
     // Length 32 bytes
     private final EntityId partitionTypeIdentifier;
     // 2 bytes
     private final byte[] volumeSequenceNumber;
     // 2 bytes
     private final byte[] partitionNumber;
+    // 24 bytes, layout depends on the partition type identifier
+    private final byte[] partitionTypeSpecific;
 
     public PartitionTypeTwo(byte[] header) {
         super(header);
         this.partitionTypeIdentifier = new EntityId(Arrays.copyOfRange(header, 4, 36));
         this.volumeSequenceNumber = Arrays.copyOfRange(header, 36, 38);
         this.partitionNumber = Arrays.copyOfRange(header, 38, 40);
+        this.partitionTypeSpecific = Arrays.copyOfRange(header, 40, 64);
     }
 
     /**
@@ -63,4 +68,40 @@ public class PartitionTypeTwo extends AbstractPartitionMap {
     public byte[] getPartitionNumber() {
         return partitionNumber;
     }
+
+    /**
+     * Get the partition number as an int.
+     *
+     * @return partition number
+     */
+    public int getPartitionNumberAsInt() {
+        return BinaryFields.uint16Le(getPartitionNumber(), 0);
+    }
+
+    /**
+     * The 24 bytes after the partition number, their meaning depends on the partition type identifier.
+     *
+     * @return byte array
+     */
+    public byte[] getPartitionTypeSpecific() {
+        return partitionTypeSpecific;
+    }
+
+    /**
+     * Check if this is a UDF 2.50+ metadata partition map, UDF 2.60 2.2.10.
+     *
+     * @return true if the partition type identifier is "*UDF Metadata Partition"
+     */
+    public boolean isMetadataPartition() {
+        return getPartitionTypeIdentifier().getIdentifierAsString().startsWith(METADATA_PARTITION_IDENTIFIER);
+    }
+
+    /**
+     * For a metadata partition, the logical block of the metadata file's File Entry within the physical partition.
+     *
+     * @return long of the logical block
+     */
+    public long getMetadataFileLocationAsLong() {
+        return BinaryFields.uint32Le(getPartitionTypeSpecific(), 0);
+    }
 }
@@ -16,6 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.toc;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.Util;
 import com.palantir.isofilereader.isofilereader.udf.types.partition.AbstractPartitionMap;
 import com.palantir.isofilereader.isofilereader.udf.types.partition.PartitionTypeOne;
@@ -23,7 +24,10 @@ import com.palantir.isofilereader.isofilereader.udf.types.partition.PartitionTyp
 import com.palantir.isofilereader.isofilereader.udf.types.types.CharSpec;
 import com.palantir.isofilereader.isofilereader.udf.types.types.EntityId;
 import com.palantir.isofilereader.isofilereader.udf.types.types.ExtendedDescriptor;
+import com.palantir.isofilereader.isofilereader.udf.types.types.LongAd;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Tag Type 6; max size: no max.
@@ -52,6 +56,7 @@ public class LogicalVolumeDescriptor extends GenericDescriptor {
     private final ExtendedDescriptor integritySequenceExtent;
     // byte PartitionMaps[]
     private final AbstractPartitionMap partitionMaps;
+    private final List<AbstractPartitionMap> partitionMapList;
 
     public LogicalVolumeDescriptor(byte[] record) {
         super(record);
@@ -93,6 +98,32 @@ public class LogicalVolumeDescriptor extends GenericDescriptor {
                 this.partitionMaps = null;
                 break;
         }
+        this.partitionMapList = readPartitionMaps(record, getNumberOfPartitionMapsAsInt());
+    }
+
+    private static List<AbstractPartitionMap> readPartitionMaps(byte[] record, int count) {
+        List<AbstractPartitionMap> maps = new ArrayList<>(Math.max(0, Math.min(count, 64)));
+        int offset = 440;
+        for (int i = 0; i < count && offset + 2 <= record.length; i++) {
+            int length = Byte.toUnsignedInt(record[offset + 1]);
+            if (length < 2 || offset + length > record.length) {
+                break;
+            }
+            byte[] map = Arrays.copyOfRange(record, offset, offset + length);
+            switch (map[0]) {
+                case AbstractPartitionMap.TYPE_1:
+                    maps.add(new PartitionTypeOne(map));
+                    break;
+                case AbstractPartitionMap.TYPE_2:
+                    maps.add(new PartitionTypeTwo(map));
+                    break;
+                default:
+                    maps.add(new AbstractPartitionMap(map));
+                    break;
+            }
+            offset += length;
+        }
+        return maps;
     }
 
     /**
@@ -159,6 +190,15 @@ public class LogicalVolumeDescriptor extends GenericDescriptor {
         return logicalVolumeContentsUse;
     }
 
+    /**
+     * The Logical Volume Contents Use read as the long_ad of the File Set Descriptor, UDF 2.60 2.2.4.4.
+     *
+     * @return LongAd pointing at the File Set Descriptor
+     */
+    public LongAd getFileSetDescriptorLocation() {
+        return new LongAd(getLogicalVolumeContentsUse());
+    }
+
     /**
      * Map table length.
      *
@@ -177,6 +217,15 @@ public class LogicalVolumeDescriptor extends GenericDescriptor {
         return numberOfPartitionMaps;
     }
 
+    /**
+     * Number of Partition Maps as an int.
+     *
+     * @return int of count
+     */
+    public int getNumberOfPartitionMapsAsInt() {
+        return BinaryFields.int32Le(getNumberOfPartitionMaps(), 0);
+    }
+
     /**
      * EntityId of the implementer of the file creation.
      *
@@ -203,4 +252,14 @@ public class LogicalVolumeDescriptor extends GenericDescriptor {
     public AbstractPartitionMap getPartitionMaps() {
         return partitionMaps;
     }
+
+    /**
+     * Every partition map in this logical volume descriptor, the index in the list is the partition reference number
+     * used by lb_addr and long_ad.
+     *
+     * @return list of PartitionTypeOne, PartitionTypeTwo or AbstractPartitionMap for unknown types
+     */
+    public List<AbstractPartitionMap> getPartitionMapList() {
+        return partitionMapList;
+    }
 }
@@ -16,11 +16,9 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.toc;
 
-import com.palantir.isofilereader.isofilereader.Util;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.udf.types.types.ExtendedDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.types.types.Timestamp;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -144,7 +142,7 @@ public class LogicalVolumeIntegrityDescriptor extends GenericDescriptor {
      * @return int of number
      */
     public int getNumberOfPartitionsAsInt() {
-        return Util.fourUnsignedByteToInt(getNumberOfPartitions());
+        return BinaryFields.int32Le(getNumberOfPartitions(), 0);
     }
 
     /**
@@ -163,7 +161,7 @@ public class LogicalVolumeIntegrityDescriptor extends GenericDescriptor {
      * @return int of length
      */
     public int getLengthOfImplementationUseAsInt() {
-        return Util.fourUnsignedByteToInt(getLengthOfImplementationUse());
+        return BinaryFields.int32Le(getLengthOfImplementationUse(), 0);
     }
 
     /**
@@ -226,9 +224,7 @@ public class LogicalVolumeIntegrityDescriptor extends GenericDescriptor {
      * @return int of number of files
      */
     public int getImplementationUseNumberOfFiles() {
-        final ByteBuffer bb = ByteBuffer.wrap(Arrays.copyOfRange(getImplementationUse(), 32, 36));
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getImplementationUse(), 32);
     }
 
     /**
@@ -237,9 +233,7 @@ public class LogicalVolumeIntegrityDescriptor extends GenericDescriptor {
      * @return int of number of directories
      */
     public int getImplementationUseNumberOfDirectories() {
-        final ByteBuffer bb = ByteBuffer.wrap(Arrays.copyOfRange(getImplementationUse(), 36, 40));
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getImplementationUse(), 36);
     }
 
     /**
@@ -16,7 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.toc;
 
-import com.palantir.isofilereader.isofilereader.Util;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.udf.types.types.EntityId;
 import java.util.Arrays;
 
@@ -92,6 +92,15 @@ public class PartitionDescriptor extends GenericDescriptor {
         return partitionNumber;
     }
 
+    /**
+     * Get the partition number as an int, this is what partition maps refer to.
+     *
+     * @return int of partition number
+     */
+    public int getPartitionNumberAsInt() {
+        return BinaryFields.uint16Le(getPartitionNumber(), 0);
+    }
+
     /**
      * Get partition contents as EntityId. This will be something similar to "+NSR03" or "+FDC01" depending on the
      * standard in use.
@@ -136,7 +145,7 @@ public class PartitionDescriptor extends GenericDescriptor {
      * @return int of the logical starting position
      */
     public int getPartitionStartingLocationAsInt() {
-        return Util.fourUnsignedByteToInt(getPartitionStartingLocation());
+        return BinaryFields.int32Le(getPartitionStartingLocation(), 0);
     }
 
     /**
@@ -154,7 +163,7 @@ public class PartitionDescriptor extends GenericDescriptor {
      * @return int
      */
     public int getPartitionLengthAsInt() {
-        return Util.fourUnsignedByteToInt(getPartitionLength());
+        return BinaryFields.int32Le(getPartitionLength(), 0);
     }
 
     /**
@@ -16,9 +16,8 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.toc;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.udf.types.types.ExtendedDescriptor;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -69,9 +68,7 @@ public class UnallocatedSpaceDescriptor extends GenericDescriptor {
      * @return int of number of descriptors
      */
     public int getNumberOfAllocationDescriptorsAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getNumberOfAllocationDescriptors());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getNumberOfAllocationDescriptors(), 0);
     }
 
     /**
@@ -16,8 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.types;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import java.util.Arrays;
 
 /**
@@ -61,9 +60,7 @@ public class ExtendedDescriptor {
      * @return length of the main volume descriptor
      */
     public int getLengthAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getLength());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getLength(), 0);
     }
 
     /**
@@ -81,8 +78,6 @@ public class ExtendedDescriptor {
      * @return int of location
      */
     public int getLocAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getLoc());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getLoc(), 0);
     }
 }
@@ -16,9 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.types;
 
-import com.palantir.isofilereader.isofilereader.Util;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import java.util.Arrays;
 
 /**
@@ -58,9 +56,7 @@ public class LbAddr {
      * @return long of logical block
      */
     public long getLogicalBlockNumberAsLong() {
-        final ByteBuffer bb = ByteBuffer.wrap(getLogicalBlockNumber());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.uint32Le(getLogicalBlockNumber(), 0);
     }
 
     /**
@@ -78,6 +74,6 @@ public class LbAddr {
      * @return partition ID
      */
     public int getPartitionReferenceAsInt() {
-        return Util.twoUnsignedByteToInt(getPartitionReference());
+        return BinaryFields.uint16Le(getPartitionReference(), 0);
     }
 }
@@ -16,8 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.types;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import java.util.Arrays;
 
 /**
@@ -58,9 +57,7 @@ public class LongAd {
      * @return int of length
      */
     public int getExtentLengthAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getExtentLength());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getExtentLength(), 0);
     }
 
     /**
@@ -16,9 +16,7 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.types;
 
-import com.palantir.isofilereader.isofilereader.Util;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import java.util.Arrays;
 
 /**
@@ -49,6 +47,18 @@ public class Tag {
     public static final int PARTITION_INTEGRITY_ENTRY = 265;
     public static final int EXTENDED_FILE_ENTRY = 266;
 
+    private static final int[] CRC_ITU_T_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC_ITU_T_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
     // 2-3
     private final byte[] descriptorVersion;
     // 4
@@ -95,12 +105,7 @@ public class Tag {
      * @return int of tag identifier
      */
     public int getTagIdentifierAsInt() {
-        //        byte[] temp = new byte[4];
-        //        temp[1] = getTagIdentifier()[1];
-        //        temp[0] = getTagIdentifier()[0];
-        //        final ByteBuffer bb = ByteBuffer.wrap(temp);
-        //        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return Util.twoUnsignedByteToInt(getTagIdentifier());
+        return BinaryFields.uint16Le(getTagIdentifier(), 0);
     }
 
     /**
@@ -164,13 +169,7 @@ public class Tag {
      * @return Length of CRC in bytes
      */
     public int getDescriptorCrcLengthAsInt() {
-        //        byte[] paddedFixedBothNumber = new byte[4];
-        //        System.arraycopy(Arrays.copyOfRange(getDescriptorCrcLength(), 0, 2), 0, paddedFixedBothNumber, 2, 2);
-        //        return ByteBuffer.wrap(paddedFixedBothNumber).getInt();
-        return ((getDescriptorCrcLength()[1] & 0xff) << 8) | (getDescriptorCrcLength()[0] & 0xff);
-        //        final ByteBuffer bb = ByteBuffer.wrap(getDescriptorCrcLength());
-        //        bb.order(ByteOrder.LITTLE_ENDIAN);
-        //        return bb.getInt();
+        return BinaryFields.uint16Le(getDescriptorCrcLength(), 0);
     }
 
     /**
@@ -188,9 +187,7 @@ public class Tag {
      * @return Int of logical sector number
      */
     public int getTagLocationAsInt() {
-        final ByteBuffer bb = ByteBuffer.wrap(getTagLocation());
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        return BinaryFields.int32Le(getTagLocation(), 0);
     }
 
     /**
@@ -215,7 +212,39 @@ public class Tag {
         rollingCount += tagLocation[1];
         rollingCount += tagLocation[2];
         rollingCount += tagLocation[3];
-        return (rollingCount % 256) == Byte.toUnsignedInt(tagChecksum);
+        // Bytes are signed, masking keeps the sum modulo 256 positive
+        return (rollingCount & 0xFF) == Byte.toUnsignedInt(tagChecksum);
+    }
+
+    /**
+     * Check the CRC of the descriptor body that follows this tag, ECMA-167 3/7.2.6. The CRC covers
+     * getDescriptorCrcLengthAsInt() bytes starting right after the 16 byte tag.
+     *
+     * @param descriptor the full descriptor, starting with this tag
+     * @return true if the CRC matches, false if it does not or the descriptor is shorter than the CRC length
+     */
+    public boolean descriptorCrcIsCorrect(byte[] descriptor) {
+        int length = getDescriptorCrcLengthAsInt();
+        if (descriptor.length < 16 + length) {
+            return false;
+        }
+        return crcItuT(descriptor, 16, length) == BinaryFields.uint16Le(getDescriptorCrc(), 0);
+    }
+
+    /**
+     * CRC-ITU-T (polynomial 0x1021, initial value 0) as used by UDF descriptor tags.
+     *
+     * @param data bytes to check
+     * @param offset where to start in data
+     * @param length how many bytes to include
+     * @return 16 bit CRC
+     */
+    public static int crcItuT(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ CRC_ITU_T_TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
     }
 
     /**
@@ -16,17 +16,26 @@
 
 package com.palantir.isofilereader.isofilereader.udf.types.types;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.Util;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Optional;
 import java.util.TimeZone;
 
 /**
  * UDF Style, UDF 2.60 3.1.1.
  */
 public class Timestamp {
+    // UDF 2.60 2.1.4.1, the time zone field holds -2047 when no offset was recorded
+    private static final int NO_TIMEZONE_SPECIFIED = -2047;
+
     // Uint16 TypeAndTimezone;
     private final byte[] typeAndTimezone;
     // Int16 Year;
@@ -81,8 +90,7 @@ public class Timestamp {
      * @return 1 for local time
      */
     public int getTypeOfTimestamp() {
-        return ((int) (Util.twoUnsignedByteToInt(getTypeAndTimezone()) & Long.parseUnsignedLong("1111000000000000")))
-                >> 12; // "1111000000000000"
+        return BinaryFields.uint16Le(getTypeAndTimezone(), 0) >>> 12;
     }
 
     /**
@@ -189,20 +197,54 @@ public class Timestamp {
     }
 
     /**
-     * Get the last timestamp as a Java Date.
+     * Get the timestamp with its recorded offset from GMT. An unspecified or out of range offset is treated as UTC.
+     *
+     * @return OffsetDateTime, empty if the fields do not form a valid date
+     */
+    public Optional<OffsetDateTime> getAsOffsetDateTime() {
+        int offsetMinutes = getMinuteOffsetFromGmt();
+        ZoneOffset offset = offsetMinutes == NO_TIMEZONE_SPECIFIED ? ZoneOffset.UTC : Util.minuteOffset(offsetMinutes);
+        int nanos = Byte.toUnsignedInt(getCentiseconds()) * 10_000_000
+                + Byte.toUnsignedInt(getHundredsOfMicroseconds()) * 100_000
+                + Byte.toUnsignedInt(getMicroseconds()) * 1_000;
+        try {
+            return Optional.of(OffsetDateTime.of(
+                    (short) BinaryFields.uint16Le(getYear(), 0),
+                    getMonth(),
+                    getDay(),
+                    getHour(),
+                    getMinute(),
+                    getSecond(),
+                    nanos,
+                    offset));
+        } catch (DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Get the timestamp as an Instant.
+     *
+     * @return Instant, empty if the fields do not form a valid date
+     */
+    public Optional<Instant> getAsInstant() {
+        return getAsOffsetDateTime().map(OffsetDateTime::toInstant);
+    }
+
+    /**
+     * Get the last timestamp as a Java Date. If the fields do not form a valid date, the fields are rolled over
+     * leniently instead, so this never returns null.
      *
      * @return Date
      */
     public Date getAsDate() {
-        Calendar calendar = new GregorianCalendar(
-                Util.twoUnsignedByteToInt(getYear()), getMonth() - 1, getDay(), getHour(), getMinute(), getSecond());
-
-        int rawOffsetAdjustedForJava = getMinuteOffsetFromGmt() * 60 * 1000;
-        // Need to convert to milliseconds
-        String[] timezones = TimeZone.getAvailableIDs(rawOffsetAdjustedForJava);
-        if (timezones.length > 0) { // If an offset is entered and a timezone at that location doesn't exist
-            calendar.setTimeZone(TimeZone.getTimeZone(timezones[0]));
+        Optional<Instant> instant = getAsInstant();
+        if (instant.isPresent()) {
+            return Date.from(instant.get());
         }
+        Calendar calendar = new GregorianCalendar(
+                BinaryFields.uint16Le(getYear(), 0), getMonth() - 1, getDay(), getHour(), getMinute(), getSecond());
+        calendar.setTimeZone(TimeZone.getTimeZone(Util.minuteOffset(getMinuteOffsetFromGmt())));
         return calendar.getTime();
     }
 }
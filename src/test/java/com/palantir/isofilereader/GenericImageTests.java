@@ -16,21 +16,37 @@
 
 package com.palantir.isofilereader;
 
+import com.palantir.isofilereader.isofilereader.CountingIsoReaderMetrics;
 import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
+import com.palantir.isofilereader.isofilereader.ImageProbe;
 import com.palantir.isofilereader.isofilereader.IsoFileReader;
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.ProbedImage;
+import com.palantir.isofilereader.isofilereader.io.RandomAccessFilePool;
+import com.palantir.isofilereader.isofilereader.iso.types.AbstractVolumeDescriptor;
 import com.palantir.isofilereader.isofilereader.udf.UdfFormatException;
 import com.palantir.isofilereader.isofilereader.udf.UdfInternalDataFile;
+import com.palantir.isofilereader.isofilereader.udf.types.types.Tag;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedByInterruptException;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -205,4 +221,246 @@ public class GenericImageTests {
             throw new RuntimeException(e);
         }
     }
+
+    @Test
+    void positionalReadsConcurrentExtractionTest() {
+        File isoFile = new File("./src/test/resources/iso_test.iso");
+
+        try (IsoFileReader iso = new IsoFileReader(isoFile)) {
+            List<GenericInternalIsoFile> flatList = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+            List<byte[]> expected = new ArrayList<>();
+            for (GenericInternalIsoFile file : flatList) {
+                expected.add(iso.getFileBytes(file));
+            }
+
+            iso.usePositionalReads(true);
+            Assertions.assertTrue(iso.isPositionalReadsInUse());
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int round = 0; round < 8; round++) {
+                    for (int i = 0; i < flatList.size(); i++) {
+                        GenericInternalIsoFile file = flatList.get(i);
+                        byte[] known = expected.get(i);
+                        results.add(executor.submit(() -> {
+                            try (InputStream stream = iso.getFileStream(file)) {
+                                return Arrays.equals(known, stream.readAllBytes())
+                                        && Arrays.equals(known, iso.getFileBytes(file));
+                            }
+                        }));
+                    }
+                }
+                for (Future<Boolean> result : results) {
+                    Assertions.assertTrue(result.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            // An interrupted read closes the shared channel, only that read fails
+            Thread.currentThread().interrupt();
+            Assertions.assertThrows(ClosedByInterruptException.class, () -> iso.getFileBytes(flatList.get(0)));
+            Assertions.assertTrue(Thread.interrupted());
+            Assertions.assertArrayEquals(expected.get(0), iso.getFileBytes(flatList.get(0)));
+
+            Optional<GenericInternalIsoFile> generalFile = iso.getSpecificFileByName(
+                    iso.getAllFiles(), "/mactest-mactest-mactest-mactest-mactest-mactest-mactest-mact.txt");
+            Assertions.assertTrue(generalFile.isPresent());
+            InputStream stream = iso.getFileStream(generalFile.get());
+            Assertions.assertTrue(stream.markSupported());
+            Assertions.assertEquals(2, stream.skip(2));
+            stream.mark(0);
+            int third = stream.read();
+            stream.reset();
+            Assertions.assertEquals(third, stream.read());
+            Assertions.assertEquals(5566 - 3, stream.available());
+        } catch (Exception e) {
+            Assertions.fail("Failed concurrent positional extraction", e);
+        }
+    }
+
+    @Test
+    void metricsReportReadsParsingAndTimingsTest() throws IOException, UdfFormatException {
+        CountingIsoReaderMetrics udfMetrics = new CountingIsoReaderMetrics();
+        try (IsoFileReader iso =
+                new IsoFileReader(new File("./src/test/resources/small_only_udf_260.iso"), udfMetrics)) {
+            Assertions.assertTrue(iso.isUdfModeInUse());
+            Assertions.assertSame(udfMetrics, iso.getMetrics());
+            List<GenericInternalIsoFile> flatList = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+            long readCallsBeforeExtraction = udfMetrics.getReadCalls();
+            byte[] data = iso.getFileBytes(flatList.get(0));
+
+            Assertions.assertTrue(udfMetrics.getReadCalls() > readCallsBeforeExtraction);
+            Assertions.assertTrue(udfMetrics.getBytesRead() >= data.length);
+            Assertions.assertTrue(udfMetrics.getSeeks() > 0);
+            Assertions.assertTrue(udfMetrics.getDirectorySectorsParsed() > 0);
+            Assertions.assertTrue(udfMetrics.getDescriptorsParsed().get(Tag.EXTENDED_FILE_ENTRY) > 0);
+            Assertions.assertTrue(udfMetrics.getDescriptorsParsed().get(Tag.FILE_IDENTIFIER_DESCRIPTOR) > 0);
+            Assertions.assertTrue(udfMetrics.getFindOptimalSettingsNanos() > 0);
+            Assertions.assertTrue(udfMetrics.getIndexingNanos() > 0);
+            Assertions.assertTrue(udfMetrics.getExtractionNanos() > 0);
+        }
+
+        CountingIsoReaderMetrics isoMetrics = new CountingIsoReaderMetrics();
+        try (IsoFileReader iso = new IsoFileReader(new File("./src/test/resources/iso_test.iso"), isoMetrics)) {
+            Assertions.assertFalse(iso.isUdfModeInUse());
+            iso.getAllFiles();
+            Assertions.assertTrue(isoMetrics.getVolumeDescriptorsParsed().get((int)
+                            AbstractVolumeDescriptor.IsoPrimaryVolumeDescriptor)
+                    > 0);
+            Assertions.assertTrue(isoMetrics.getDirectorySectorsParsed() > 0);
+            Assertions.assertTrue(isoMetrics.getDescriptorsParsed().isEmpty());
+        }
+    }
+
+    @Test
+    void imageProbeClassifiesFromDescriptors() throws IOException {
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+        ProbedImage hybrid =
+                ImageProbe.probe(new File("./src/test/resources/iso_test_iso_juliet_udf_v260.iso"), metrics);
+        Assertions.assertTrue(hybrid.isUdf());
+        Assertions.assertTrue(hybrid.isBridge());
+        Assertions.assertTrue(hybrid.hasJoliet());
+        Assertions.assertEquals("2.60", hybrid.getUdfRevisionAsString());
+        Assertions.assertEquals("1,0,0", hybrid.getSetting());
+        Assertions.assertTrue(metrics.getReadCalls() <= 2);
+
+        ProbedImage udf102 = ImageProbe.probe(new File("./src/test/resources/iso_test_udf_only_v102.iso"));
+        Assertions.assertFalse(udf102.isIso9660());
+        Assertions.assertFalse(udf102.isBridge());
+        Assertions.assertEquals(0x0102, udf102.getUdfRevision());
+
+        ProbedImage rockRidge = ImageProbe.probe(new File("./src/test/resources/small.iso"));
+        Assertions.assertTrue(rockRidge.hasRockRidge());
+        Assertions.assertTrue(rockRidge.hasJoliet());
+        Assertions.assertFalse(rockRidge.isUdf());
+
+        File plainIso = new File("./src/test/resources/LongFileName_ISO_only_nojoliet.iso");
+        ProbedImage plain = ImageProbe.probe(plainIso);
+        Assertions.assertTrue(plain.isIso9660());
+        Assertions.assertFalse(plain.hasJoliet());
+        Assertions.assertFalse(plain.hasRockRidge());
+        for (String image :
+                new String[] {"small.iso", "LongFileName_ISO_only.iso", "LongFileName_ISO_only_nojoliet.iso"}) {
+            File isoFile = new File("./src/test/resources/" + image);
+            try (IsoFileReader iso = new IsoFileReader(isoFile)) {
+                Assertions.assertEquals(
+                        iso.getCurrentSetting(), ImageProbe.probe(isoFile).getSetting(), image);
+            }
+        }
+    }
+
+    @Test
+    void fileStreamsReuseAPooledHandle() throws IOException, UdfFormatException {
+        File isoFile = new File("./src/test/resources/small.iso");
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+
+        try (IsoFileReader iso = new IsoFileReader(isoFile, metrics)) {
+            List<GenericInternalIsoFile> files = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+            for (GenericInternalIsoFile file : files) {
+                try (InputStream stream = iso.getFileStream(file)) {
+                    Assertions.assertEquals(file.getSize(), stream.readAllBytes().length);
+                }
+                Assertions.assertArrayEquals(
+                        iso.getFileBytes(file), iso.getFileBytes(file), "Bytes should not depend on the handle");
+            }
+            RandomAccessFilePool pool = iso.getFileHandlePool();
+            Assertions.assertEquals(0, pool.getLeasedCount());
+            Assertions.assertEquals(1, pool.getIdleCount());
+            Assertions.assertEquals(1, metrics.getCacheMisses(RandomAccessFilePool.FILE_HANDLE_CACHE));
+            Assertions.assertTrue(metrics.getCacheHits(RandomAccessFilePool.FILE_HANDLE_CACHE) >= files.size());
+        }
+    }
+
+    @Test
+    void fileHandlePoolGrowsPastItsIdleBoundAndEvictsIdleHandles() throws IOException {
+        File isoFile = new File("./src/test/resources/small.iso");
+        RandomAccessFilePool pool = new RandomAccessFilePool(isoFile, IsoReaderMetrics.NO_OP, 1, Duration.ofMinutes(1));
+
+        // Leases are never refused, even past the idle bound
+        RandomAccessFile first = pool.lease();
+        RandomAccessFile second = pool.lease();
+        Assertions.assertEquals(2, pool.getLeasedCount());
+        first.close();
+        // Closing twice must not give the handle back twice
+        first.close();
+        second.close();
+        // Only one given back handle is kept, the other is closed
+        Assertions.assertEquals(1, pool.getIdleCount());
+        Assertions.assertTrue(first.getChannel().isOpen());
+        Assertions.assertFalse(second.getChannel().isOpen());
+
+        RandomAccessFile third = pool.lease();
+        Assertions.assertSame(first, third);
+        pool.close();
+        Assertions.assertFalse(third.getChannel().isOpen());
+        Assertions.assertThrows(IllegalStateException.class, pool::lease);
+
+        // A zero idle timeout closes handles as soon as they are given back
+        RandomAccessFilePool unkept = new RandomAccessFilePool(isoFile, IsoReaderMetrics.NO_OP, 1, Duration.ZERO);
+        RandomAccessFile handle = unkept.lease();
+        handle.close();
+        Assertions.assertEquals(0, unkept.getIdleCount());
+        Assertions.assertFalse(handle.getChannel().isOpen());
+        unkept.close();
+    }
+
+    @Test
+    void frozenTreeIsSharedWithoutCopying() throws Exception {
+        for (String image : new String[] {"small.iso", "small_only_udf_260.iso"}) {
+            File isoFile = new File("./src/test/resources/" + image);
+            try (IsoFileReader iso = new IsoFileReader(isoFile)) {
+                List<GenericInternalIsoFile> expected = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+                GenericInternalIsoFile[] frozen = iso.getAllFilesFrozen();
+                GenericInternalIsoFile root = frozen[0];
+
+                Assertions.assertTrue(root.isFrozen());
+                Assertions.assertSame(root.getChildrenList(), root.getChildrenList());
+                Assertions.assertThrows(UnsupportedOperationException.class, () -> root.getChildrenList()
+                        .remove(0));
+                Assertions.assertThrows(IllegalStateException.class, () -> root.addChild(root.getChildren()[0]));
+
+                List<Future<List<GenericInternalIsoFile>>> results = new ArrayList<>();
+                ExecutorService executor = Executors.newFixedThreadPool(8);
+                try {
+                    for (int i = 0; i < 32; i++) {
+                        results.add(executor.submit(() -> {
+                            List<GenericInternalIsoFile> found = new ArrayList<>();
+                            for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(frozen)) {
+                                found.add(iso.getSpecificFileByName(frozen, file.getFullFileName('/'))
+                                        .orElseThrow());
+                            }
+                            return found;
+                        }));
+                    }
+                    for (Future<List<GenericInternalIsoFile>> result : results) {
+                        Assertions.assertEquals(expected.size(), result.get().size());
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    void dateAccessorsDefaultToTheJavaDate() {
+        Date recorded = new Date(1_700_000_000_000L);
+        // A subclass written before the Instant and OffsetDateTime accessors only knows its Date
+        GenericInternalIsoFile file = new GenericInternalIsoFile() {
+            @Override
+            public GenericInternalIsoFile addChild(GenericInternalIsoFile child) {
+                return child;
+            }
+
+            @Override
+            public Optional<Date> getDateAsDate() {
+                return Optional.of(recorded);
+            }
+        };
+        Assertions.assertEquals(recorded.toInstant(), file.getDateAsInstant().orElseThrow());
+        Assertions.assertEquals(
+                recorded.toInstant().atOffset(ZoneOffset.UTC),
+                file.getDateAsOffsetDateTime().orElseThrow());
+    }
 }
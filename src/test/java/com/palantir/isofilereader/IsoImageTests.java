@@ -16,11 +16,16 @@
 
 package com.palantir.isofilereader;
 
+import com.palantir.isofilereader.isofilereader.CountingIsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
 import com.palantir.isofilereader.isofilereader.IsoFileReader;
 import com.palantir.isofilereader.isofilereader.iso.IsoFormatInternalDataFile;
+import com.palantir.isofilereader.isofilereader.iso.TraditionalIsoReader;
 import com.palantir.isofilereader.isofilereader.iso.types.AbstractVolumeDescriptor;
+import com.palantir.isofilereader.isofilereader.iso.types.DirectoryPath;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatConstant;
 import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
+import com.palantir.isofilereader.isofilereader.udf.UdfFormatException;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -28,8 +33,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -61,6 +70,32 @@ public class IsoImageTests {
         }
     }
 
+    @Test
+    void volumeDescriptorsAreReadOnce() throws IOException, UdfFormatException {
+        File isoFile = new File("./src/test/resources/small.iso");
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+
+        try (IsoFileReader iso = new IsoFileReader(isoFile, metrics)) {
+            AbstractVolumeDescriptor[] first = iso.getTraditionalIsoReader().getVolumeDescriptors();
+            iso.getAllFiles();
+            long readsBefore = metrics.getReadCalls();
+            long parsedBefore = metrics.getVolumeDescriptorsParsed().values().stream()
+                    .mapToLong(Long::longValue)
+                    .sum();
+            AbstractVolumeDescriptor[] second = iso.getTraditionalIsoReader().getVolumeDescriptors();
+            iso.getTraditionalIsoReader().getRootDirectoryOfCurrentToC();
+
+            Assertions.assertEquals(readsBefore, metrics.getReadCalls());
+            Assertions.assertEquals(
+                    parsedBefore,
+                    metrics.getVolumeDescriptorsParsed().values().stream()
+                            .mapToLong(Long::longValue)
+                            .sum());
+            Assertions.assertArrayEquals(first, second);
+            Assertions.assertEquals(1, metrics.getCacheMisses(TraditionalIsoReader.VOLUME_DESCRIPTOR_CACHE));
+        }
+    }
+
     @Test
     void getProcessedImageFiles() {
         File isoFile = new File("./src/test/resources/small.iso");
@@ -212,4 +247,100 @@ public class IsoImageTests {
             throw new RuntimeException(e);
         }
     }
+
+    @Test
+    void recordsShareTheirFolderPath() throws IOException, UdfFormatException {
+        File isoFile = new File("./src/test/resources/small.iso");
+
+        try (IsoFileReader iso = new IsoFileReader(isoFile)) {
+            IsoFormatInternalDataFile[] roots = iso.getAllFilesAsIsoFormatInternalDataFile();
+            List<GenericInternalIsoFile> folders = new ArrayList<>(iso.convertTreeFilesToFlatList(roots));
+            folders.add(roots[0]);
+            int checkedFolders = 0;
+            for (GenericInternalIsoFile folder : folders) {
+                if (!folder.isDirectory() || folder.getChildren().length < 2) {
+                    continue;
+                }
+                IsoFormatInternalDataFile[] children = ((IsoFormatInternalDataFile) folder).getChildren();
+                // Every record in a folder points at the one path object of that folder
+                Assertions.assertSame(
+                        children[0].getUnderlyingRecord().orElseThrow().getParentPath(),
+                        children[1].getUnderlyingRecord().orElseThrow().getParentPath());
+                checkedFolders++;
+            }
+            Assertions.assertTrue(checkedFolders > 0);
+            for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(roots)) {
+                IsoFormatInternalDataFile isoFormatFile = (IsoFormatInternalDataFile) file;
+                String fullFileName = isoFormatFile.getFullFileName('/');
+                Assertions.assertEquals(isoFormatFile.getFullFileNameThroughTraversal('/'), fullFileName);
+                Assertions.assertSame(fullFileName, isoFormatFile.getFullFileName('/'));
+            }
+        }
+    }
+
+    @Test
+    void jolietIdentifiersAreDecodedOnce() {
+        // U+4E2D U+6587, no zero byte anywhere so only the volume descriptor can say this is UCS-2
+        byte[] identifier = {0x4E, 0x2D, 0x65, (byte) 0x87};
+        byte[] record = new byte[34 + identifier.length];
+        record[0] = (byte) record.length;
+        record[32] = (byte) identifier.length;
+        System.arraycopy(identifier, 0, record, 33, identifier.length);
+
+        IsoFormatDirectoryRecord joliet =
+                new IsoFormatDirectoryRecord(record, DirectoryPath.ROOT, StandardCharsets.UTF_16BE);
+        Assertions.assertEquals("\u4e2d\u6587", joliet.getFileIdentifierAsString());
+        Assertions.assertSame(joliet.getFileIdentifierAsString(), joliet.getFileIdentifierAsString());
+
+        // Without a charset an even length identifier holding a zero byte is UCS-2, wherever the zero is
+        byte[] unsorted = {0x4E, 0x2D, 0x00, 'A'};
+        System.arraycopy(unsorted, 0, record, 33, unsorted.length);
+        Assertions.assertEquals(
+                "\u4e2dA", new IsoFormatDirectoryRecord(record, DirectoryPath.ROOT).getFileIdentifierAsString());
+    }
+
+    @Test
+    void symbolicLinkEntriesAreMerged() {
+        // "/usr/lib/x" split over two SL entries, the first flagged to continue
+        byte[] first = {'S', 'L', 12, 1, 1, 8, 0, 0, 3, 'u', 's', 'r'};
+        byte[] second = {'S', 'L', 13, 1, 0, 0, 3, 'l', 'i', 'b', 0, 1, 'x'};
+        byte[] record = new byte[34 + first.length + second.length];
+        record[0] = (byte) record.length;
+        record[32] = 1;
+        record[33] = 'A';
+        System.arraycopy(first, 0, record, 34, first.length);
+        System.arraycopy(second, 0, record, 34 + first.length, second.length);
+
+        IsoFormatDirectoryRecord link = new IsoFormatDirectoryRecord(record, DirectoryPath.ROOT);
+        Assertions.assertEquals(2, link.getSystemUseArea().size());
+        Assertions.assertEquals(
+                "/usr/lib/x", link.getSystemUseArea().getSymbolicLink().orElseThrow());
+        Assertions.assertSame(link.getSystemUseArea(), link.getSystemUseArea());
+    }
+
+    @Test
+    void entriesTooShortForTheirFlagsAreSkipped() {
+        // A 4 byte NM and SL before the real entries, and a 4 byte NM ending the record
+        byte[] entries = {
+            'N', 'M', 4, 1, 'S', 'L', 4, 1, 'N', 'M', 6, 1, 0, 'b', 'S', 'L', 9, 1, 0, 0, 2, 'l', 'n', 'N', 'M', 4, 1
+        };
+        byte[] record = new byte[34 + entries.length];
+        record[0] = (byte) record.length;
+        record[32] = 1;
+        record[33] = 'A';
+        System.arraycopy(entries, 0, record, 34, entries.length);
+
+        IsoFormatDirectoryRecord named = new IsoFormatDirectoryRecord(record, DirectoryPath.ROOT);
+        Assertions.assertEquals(5, named.getSystemUseArea().size());
+        Assertions.assertEquals("b", named.getSystemUseArea().getName().orElseThrow());
+        Assertions.assertEquals(6, named.getSystemUseArea().getNameEntryLength());
+        Assertions.assertEquals("ln", named.getSystemUseArea().getSymbolicLink().orElseThrow());
+
+        byte[] truncated = Arrays.copyOf(record, 34 + 4);
+        truncated[0] = (byte) truncated.length;
+        IsoFormatDirectoryRecord unnamed = new IsoFormatDirectoryRecord(truncated, DirectoryPath.ROOT);
+        Assertions.assertTrue(unnamed.getSystemUseArea().getName().isEmpty());
+        Assertions.assertEquals(-1, unnamed.getSystemUseArea().getNameEntryLength());
+        Assertions.assertEquals("A", new IsoFormatInternalDataFile(unnamed, true).getFileName());
+    }
 }
@@ -0,0 +1,733 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader;
+
+import com.palantir.isofilereader.fixtures.SyntheticImageGenerator;
+import com.palantir.isofilereader.isofilereader.CountingIsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
+import com.palantir.isofilereader.isofilereader.ImageFingerprint;
+import com.palantir.isofilereader.isofilereader.IsoFileReader;
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.IvSession;
+import com.palantir.isofilereader.isofilereader.io.BlockCache;
+import com.palantir.isofilereader.isofilereader.io.FileContentCache;
+import com.palantir.isofilereader.isofilereader.io.RandomAccessFilePool;
+import com.palantir.isofilereader.isofilereader.iso.IsoFormatInternalDataFile;
+import com.palantir.isofilereader.isofilereader.iso.types.IsoFormatDirectoryRecord;
+import com.palantir.isofilereader.isofilereader.iso.types.SystemUseArea;
+import com.palantir.isofilereader.isofilereader.udf.UdfFormatException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SyntheticImageTests {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void udfTreeMatchesGenerator() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(2)
+                .directoriesPerDirectory(3)
+                .filesPerDirectory(5)
+                .nameLength(40)
+                .largeFileSize(100_000)
+                .multiExtentFile(50_000, 16_384);
+        File image = write(generator);
+
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            Assertions.assertTrue(iso.isUdfModeInUse());
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            Assertions.assertEquals(
+                    generator.getFileCount(),
+                    iso.convertTreeFilesToFlatList(files).size());
+
+            GenericInternalIsoFile deepest = required(iso.getSpecificFileByName(files, generator.deepestFilePath()));
+            Assertions.assertArrayEquals(SyntheticImageGenerator.pattern(512, 0), iso.getFileBytes(deepest));
+
+            GenericInternalIsoFile large = required(iso.getSpecificFileByName(files, "/large.bin"));
+            Assertions.assertArrayEquals(SyntheticImageGenerator.pattern(100_000, 0), iso.getFileBytes(large));
+            Assertions.assertTrue(iso.getSpecificFileByName(files, "/multi.bin").isPresent());
+        }
+    }
+
+    @Test
+    void udfFileEntriesAreReadInBatches() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(4)
+                .filesPerDirectory(32);
+        File image = write(generator);
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+
+        try (IsoFileReader iso = new IsoFileReader(image, "1,0,0", metrics)) {
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            Assertions.assertEquals(
+                    generator.getFileCount(),
+                    iso.convertTreeFilesToFlatList(files).size());
+            // Without batching every File Entry would take its own read
+            Assertions.assertTrue(
+                    metrics.getReadCalls() < generator.getFileCount() / 4,
+                    "Expected batched File Entry reads, got " + metrics.getReadCalls());
+        }
+    }
+
+    @Test
+    void largeFoldersAreSearchedThroughTheNameIndex() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(64);
+        File image = write(generator);
+
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            GenericInternalIsoFile[] files = iso.getAllFilesFrozen();
+            for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(files)) {
+                String fullFileName = file.getFullFileName('/');
+                Assertions.assertSame(file, required(iso.getSpecificFileByName(files, fullFileName)));
+                Assertions.assertSame(file, required(iso.getSpecificFileByName(files, fullFileName + ";1")));
+
+                String otherCase = fullFileName.toUpperCase(Locale.ROOT);
+                if (!otherCase.equals(fullFileName)) {
+                    Assertions.assertTrue(
+                            iso.getSpecificFileByName(files, otherCase).isEmpty());
+                    iso.useCaseInsensitiveNames(true);
+                    Assertions.assertSame(file, required(iso.getSpecificFileByName(files, otherCase)));
+                    iso.useCaseInsensitiveNames(false);
+                }
+            }
+            Assertions.assertTrue(
+                    iso.getSpecificFileByName(files, "/no/such/file").isEmpty());
+        }
+    }
+
+    @Test
+    void rockRidgeJolietAndPlainTreesMatchGenerator() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(3)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(4)
+                .uniqueFileData(true);
+        File image = write(generator);
+
+        // Rock Ridge on the primary table, Joliet table, then plain ISO-9660 identifiers
+        for (String setting : new String[] {"0,1,0", "0,0,1", "0,0,0"}) {
+            try (IsoFileReader iso = new IsoFileReader(image, setting)) {
+                GenericInternalIsoFile[] files = iso.getAllFiles();
+                Assertions.assertEquals(
+                        generator.getFileCount(),
+                        iso.convertTreeFilesToFlatList(files).size(),
+                        setting);
+                String path = "0,0,0".equals(setting) ? generator.deepestIsoFilePath() : generator.deepestFilePath();
+                GenericInternalIsoFile deepest = required(iso.getSpecificFileByName(files, path));
+                long lastOrdinal = generator.getFileCount() - 1;
+                Assertions.assertArrayEquals(
+                        SyntheticImageGenerator.pattern(512, lastOrdinal * 512), iso.getFileBytes(deepest), setting);
+            }
+        }
+    }
+
+    @Test
+    void rockRidgePreferredWithoutUdf() throws IOException {
+        File image = write(new SyntheticImageGenerator().udf(false).depth(1));
+
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            Assertions.assertFalse(iso.isUdfModeInUse());
+            Assertions.assertEquals("0,1,0", iso.getCurrentSetting());
+        }
+    }
+
+    @Test
+    void jolietPreferredWithoutRockRidgeOrUdf() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator =
+                new SyntheticImageGenerator().udf(false).rockRidge(false).depth(1);
+        File image = write(generator);
+
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            Assertions.assertEquals("0,0,1", iso.getCurrentSetting());
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            Assertions.assertTrue(iso.getSpecificFileByName(files, generator.deepestFilePath())
+                    .isPresent());
+        }
+    }
+
+    @Test
+    void hugeFileIsSplitIntoExtents() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator =
+                new SyntheticImageGenerator().depth(0).filesPerDirectory(1).hugeFileSize(5L * 1024 * 1024 * 1024);
+        File image = write(generator);
+
+        try (IsoFileReader iso = new IsoFileReader(image, "0,1,0")) {
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            long hugeExtents = iso.convertTreeFilesToFlatList(files).stream()
+                    .filter(file -> file.getFileName().equals("huge.bin"))
+                    .count();
+            Assertions.assertEquals(2, hugeExtents);
+        }
+        Assertions.assertTrue(image.length() > 5L * 1024 * 1024 * 1024);
+    }
+
+    @Test
+    void rockRidgeNamesAreReadFromContinuationAreas() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(16)
+                .nameLength(255)
+                .joliet(false)
+                .udf(false);
+        File image = write(generator);
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+
+        try (IsoFileReader iso = new IsoFileReader(image, "0,1,0", metrics)) {
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            GenericInternalIsoFile deepest = required(iso.getSpecificFileByName(files, generator.deepestFilePath()));
+            Assertions.assertEquals(generator.fileName(15), deepest.getFileName());
+            // Every name is too long for its record, the continuation areas of a folder are read together
+            Assertions.assertTrue(
+                    metrics.getReadCalls() < generator.getFileCount() / 2,
+                    "Expected batched continuation area reads, got " + metrics.getReadCalls());
+
+            // Continuation areas are read while indexing, the finished tree does no I/O
+            long reads = metrics.getReadCalls();
+            IsoFormatDirectoryRecord record =
+                    ((IsoFormatInternalDataFile) deepest).getUnderlyingRecord().orElseThrow();
+            Assertions.assertTrue(record.hasContinuationArea());
+            SystemUseArea area = record.getSystemUseArea();
+            Assertions.assertEquals(reads, metrics.getReadCalls());
+            Assertions.assertTrue(area.contains("CE"));
+            Assertions.assertEquals(2, area.getEntries("NM").size());
+            Assertions.assertEquals(
+                    0x81A4, area.getPosixAttributes().orElseThrow().getMode());
+            Assertions.assertEquals(
+                    OffsetDateTime.of(2023, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+                    area.getTimestamp(SystemUseArea.TF_MODIFY).orElseThrow());
+            Assertions.assertTrue(area.getTimestamp(SystemUseArea.TF_CREATION).isEmpty());
+            Assertions.assertTrue(area.getSymbolicLink().isEmpty());
+        }
+    }
+
+    @Test
+    void countsAreReadWithoutWalkingTheTree() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(2)
+                .directoriesPerDirectory(3)
+                .filesPerDirectory(8);
+        File image = write(generator);
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+
+        try (IsoFileReader iso = new IsoFileReader(image, "1,0,0", metrics)) {
+            Assertions.assertTrue(iso.isUdfModeInUse());
+            Assertions.assertEquals(generator.getFileCount(), iso.getFileCount());
+            Assertions.assertEquals(generator.getDirectoryCount(), iso.getDirectoryCount());
+            // Only the volume descriptors were read, no directory or File Entry
+            long descriptorReads = metrics.getReadCalls();
+            Assertions.assertTrue(descriptorReads < generator.getDirectoryCount(), "Got " + descriptorReads + " reads");
+            iso.getFileCount();
+            iso.getDirectoryCount();
+            Assertions.assertEquals(descriptorReads, metrics.getReadCalls());
+            Assertions.assertEquals(
+                    generator.getFileCount(),
+                    iso.convertTreeFilesToFlatList(iso.getAllFiles()).size());
+        }
+        // ISO-9660 records no file count, so the UDF count also applies when reading the ISO-9660 tables
+        try (IsoFileReader iso = new IsoFileReader(image, "0,1,0")) {
+            Assertions.assertFalse(iso.isUdfModeInUse());
+            Assertions.assertEquals(generator.getFileCount(), iso.getFileCount());
+        }
+
+        generator.udf(false);
+        image = write(generator);
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            Assertions.assertFalse(iso.isUdfModeInUse());
+            Assertions.assertEquals(-1, iso.getFileCount());
+            Assertions.assertEquals(generator.getDirectoryCount(), iso.getDirectoryCount());
+        }
+    }
+
+    @Test
+    void versionTwoIvsSampleTheWholeImage() throws Exception {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(4)
+                .largeFileSize(100_000);
+        File image = write(generator);
+
+        String imageIv;
+        String fileIv;
+        String legacyImageIv;
+        String legacyFileIv;
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            GenericInternalIsoFile large = required(iso.getSpecificFileByName(iso.getAllFiles(), "/large.bin"));
+            imageIv = iso.getInitializationVectorForImageV2();
+            fileIv = iso.getFileInitializationVectorForFileV2(large);
+            legacyImageIv = iso.getInitializationVectorForImage();
+            legacyFileIv = iso.getFileInitializationVectorForFile(large);
+            Assertions.assertTrue(imageIv.matches("I2\\|2048\\|10\\|" + image.length() + "\\|[0-9a-f]{8}"), imageIv);
+            Assertions.assertTrue(
+                    fileIv.startsWith("F2|2048|4|100000|" + large.getLogicalSectorLocation() + "|/large.bin|"), fileIv);
+            Assertions.assertTrue(legacyImageIv.startsWith("I1|"));
+        }
+
+        byte[] expected = SyntheticImageGenerator.pattern(100_000, 0);
+        Assertions.assertArrayEquals(
+                expected,
+                IsoFileReader.getFileDataWithIVsFromFile(image, imageIv, fileIv).orElseThrow());
+        Assertions.assertArrayEquals(
+                expected,
+                IsoFileReader.getFileDataWithIVsFromFile(image, legacyImageIv, legacyFileIv)
+                        .orElseThrow());
+        Assertions.assertTrue(
+                IsoFileReader.getFileDataWithIVsFromFile(image, imageIv, fileIv.replace("/large", "/other"))
+                        .isEmpty());
+
+        // The last byte of the image is only covered by version 2
+        try (RandomAccessFile file = new RandomAccessFile(image, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        Assertions.assertTrue(
+                IsoFileReader.getFileDataWithIVsFromFile(image, imageIv, fileIv).isEmpty());
+        Assertions.assertTrue(IsoFileReader.getFileDataWithIVsFromFile(image, legacyImageIv, legacyFileIv)
+                .isPresent());
+    }
+
+    @Test
+    void ivSessionServesManyFilesAfterOneImageCheck() throws Exception {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(8);
+        File image = write(generator);
+
+        String imageIv;
+        List<String> fileIvs = new ArrayList<>();
+        List<byte[]> expected = new ArrayList<>();
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            imageIv = iso.getInitializationVectorForImageV2();
+            for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(iso.getAllFiles())) {
+                fileIvs.add(iso.getFileInitializationVectorForFileV2(file));
+                fileIvs.add(iso.getFileInitializationVectorForFile(file));
+                expected.add(iso.getFileBytes(file));
+                expected.add(iso.getFileBytes(file));
+            }
+        }
+        Assertions.assertTrue(IvSession.open(image, imageIv.replace("I2|2048|10|", "I2|2048|9|"))
+                .isEmpty());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (IvSession session = IvSession.open(image, imageIv).orElseThrow()) {
+            List<Boolean> valid = session.validate(fileIvs, executor);
+            Assertions.assertEquals(fileIvs.size(), valid.size());
+            Assertions.assertFalse(valid.contains(false));
+            for (int i = 0; i < fileIvs.size(); i++) {
+                Assertions.assertArrayEquals(
+                        expected.get(i), session.getFileData(fileIvs.get(i)).orElseThrow());
+            }
+            try (InputStream stream = session.getFileStream(fileIvs.get(0)).orElseThrow()) {
+                Assertions.assertArrayEquals(expected.get(0), stream.readAllBytes());
+            }
+            String wrongName = fileIvs.get(0).replace("|/", "|/x");
+            Assertions.assertEquals(List.of(false), session.validate(List.of(wrongName), executor));
+            Assertions.assertTrue(session.getFileData(wrongName).isEmpty());
+
+            // An interrupted read only fails itself, the session keeps serving
+            Thread.currentThread().interrupt();
+            Assertions.assertThrows(ClosedByInterruptException.class, () -> session.getFileData(fileIvs.get(1)));
+            Assertions.assertTrue(Thread.interrupted());
+            Assertions.assertArrayEquals(
+                    expected.get(1), session.getFileData(fileIvs.get(1)).orElseThrow());
+
+            // A rebuilt image renamed over the checked one is never read, even after an interrupt reopens the handle
+            Path rebuilt = tempDir.resolve("rebuilt.iso");
+            Files.copy(image.toPath(), rebuilt);
+            Files.move(rebuilt, image.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Thread.currentThread().interrupt();
+            Assertions.assertThrows(ClosedByInterruptException.class, () -> session.getFileData(fileIvs.get(1)));
+            Assertions.assertTrue(Thread.interrupted());
+            IOException changed = Assertions.assertThrows(IOException.class, () -> session.getFileData(fileIvs.get(1)));
+            Assertions.assertTrue(changed.getMessage().startsWith("Image changed"), changed.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void fingerprintNeverReportsIsoMultiExtentRecordsUnchanged() throws Exception {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .udf(false)
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(4)
+                .multiExtentFile(50_000, 16_384);
+        File image = write(generator);
+
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            Assertions.assertFalse(iso.isUdfModeInUse());
+            ImageFingerprint fingerprint = iso.getImageFingerprint(16, null);
+            BitSet unchanged = fingerprint.changedLeaves(fingerprint);
+            List<GenericInternalIsoFile> records = new ArrayList<>();
+            for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(iso.getAllFiles())) {
+                if (file.getFileName().equalsIgnoreCase("multi.bin")) {
+                    records.add(file);
+                }
+            }
+            Assertions.assertTrue(records.size() > 1);
+            // Every record, the last one with the Multi-Extent flag clear included, only holds part of the file
+            for (GenericInternalIsoFile record : records) {
+                Assertions.assertFalse(fingerprint.isFileUnchanged(unchanged, record));
+            }
+            GenericInternalIsoFile deepest =
+                    required(iso.getSpecificFileByName(iso.getAllFiles(), generator.deepestFilePath()));
+            Assertions.assertTrue(fingerprint.isFileUnchanged(unchanged, deepest));
+        }
+    }
+
+    @Test
+    void fingerprintFindsChangedLeaves() throws Exception {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(4)
+                .largeFileSize(200_000)
+                .multiExtentFile(50_000, 16_384);
+        File image = write(generator);
+
+        ImageFingerprint before;
+        String largeIv;
+        String deepestIv;
+        GenericInternalIsoFile deepest;
+        GenericInternalIsoFile multi;
+        long largeStart;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            GenericInternalIsoFile large = required(iso.getSpecificFileByName(files, "/large.bin"));
+            largeIv = iso.getFileInitializationVectorForFileV2(large);
+            deepest = required(iso.getSpecificFileByName(files, generator.deepestFilePath()));
+            deepestIv = iso.getFileInitializationVectorForFileV2(deepest);
+            multi = required(iso.getSpecificFileByName(files, "/multi.bin"));
+            largeStart = large.getLogicalSectorLocation() * 2048;
+            before = iso.getImageFingerprint(16, executor);
+            Assertions.assertEquals(before, iso.getImageFingerprint(16, null));
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(before, ImageFingerprint.parse(before.toString()));
+        Assertions.assertTrue(before.changedLeaves(before).isEmpty());
+
+        try (RandomAccessFile file = new RandomAccessFile(image, "rw")) {
+            file.seek(largeStart + 100_000);
+            file.write(0xFF ^ SyntheticImageGenerator.pattern(100_001, 0)[100_000]);
+        }
+        ImageFingerprint after;
+        try (IsoFileReader iso = new IsoFileReader(image)) {
+            after = iso.getImageFingerprint(16, null);
+        }
+        Assertions.assertNotEquals(before.getRoot(), after.getRoot());
+        BitSet changed = before.changedLeaves(after);
+        Assertions.assertEquals(1, changed.cardinality());
+        Assertions.assertEquals((largeStart + 100_000) / before.getLeafSize(), changed.nextSetBit(0));
+        Assertions.assertFalse(before.isFileUnchanged(changed, largeIv));
+        Assertions.assertTrue(before.isFileUnchanged(changed, deepestIv));
+        Assertions.assertTrue(before.isFileUnchanged(changed, deepest));
+        // Files in more than one extent are never reported unchanged, a file IV assumes one contiguous run
+        Assertions.assertTrue(before.isExtentUnchanged(changed, multi.getLogicalSectorLocation(), multi.getSize()));
+        Assertions.assertFalse(before.isFileUnchanged(changed, multi));
+    }
+
+    @Test
+    void smallFilesAreServedFromTheContentCache() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(8)
+                .uniqueFileData(true)
+                .largeFileSize(100_000);
+        File image = write(generator);
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+        // Room for four 512 byte files, large.bin is over the size threshold
+        FileContentCache cache = new FileContentCache(2048, 4096);
+
+        try (IsoFileReader iso = new IsoFileReader(image, metrics)) {
+            iso.useContentCache(cache);
+            GenericInternalIsoFile[] files = iso.getAllFiles();
+            GenericInternalIsoFile deepest = required(iso.getSpecificFileByName(files, generator.deepestFilePath()));
+            byte[] first = iso.getFileBytes(deepest);
+            byte[] expected = first.clone();
+            first[0] ^= 1;
+            long reads = metrics.getReadCalls();
+            Assertions.assertArrayEquals(expected, iso.getFileBytes(deepest));
+            Assertions.assertEquals(reads, metrics.getReadCalls());
+            Assertions.assertEquals(1, metrics.getCacheHits(FileContentCache.CONTENT_CACHE));
+
+            GenericInternalIsoFile large = required(iso.getSpecificFileByName(files, "/large.bin"));
+            iso.getFileBytes(large);
+            iso.getFileBytes(large);
+            Assertions.assertEquals(1, cache.size());
+
+            for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(files)) {
+                if (file.getSize() <= 4096) {
+                    Assertions.assertArrayEquals(iso.getFileBytes(file), iso.getFileBytes(file));
+                }
+            }
+            Assertions.assertTrue(cache.getUsedBytes() <= 2048);
+            Assertions.assertEquals(4, cache.size());
+        }
+
+        // A reader of a rebuilt image of the same length must not be served the old contents
+        Assertions.assertTrue(image.setLastModified(image.lastModified() - 10_000));
+        CountingIsoReaderMetrics rebuilt = new CountingIsoReaderMetrics();
+        try (IsoFileReader iso = new IsoFileReader(image, rebuilt)) {
+            iso.useContentCache(cache);
+            GenericInternalIsoFile deepest =
+                    required(iso.getSpecificFileByName(iso.getAllFiles(), generator.deepestFilePath()));
+            iso.getFileBytes(deepest);
+            Assertions.assertEquals(0, rebuilt.getCacheHits(FileContentCache.CONTENT_CACHE));
+            iso.getFileBytes(deepest);
+            Assertions.assertEquals(1, rebuilt.getCacheHits(FileContentCache.CONTENT_CACHE));
+        }
+    }
+
+    @Test
+    void metadataBlocksAreSharedBetweenReaders() throws IOException, UdfFormatException {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(2)
+                .directoriesPerDirectory(3)
+                .filesPerDirectory(8)
+                .rockRidge(true);
+        File image = write(generator);
+        BlockCache cache = new BlockCache();
+
+        for (String setting : new String[] {"1,0,0", "0,1,0"}) {
+            CountingIsoReaderMetrics plain = new CountingIsoReaderMetrics();
+            List<String> expected = new ArrayList<>();
+            try (IsoFileReader iso = new IsoFileReader(image, setting, plain)) {
+                for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(iso.getAllFiles())) {
+                    expected.add(file.getFullFileName('/'));
+                }
+            }
+
+            CountingIsoReaderMetrics first = new CountingIsoReaderMetrics();
+            try (IsoFileReader iso = new IsoFileReader(image, setting, first)) {
+                iso.useBlockCache(cache);
+                iso.getAllFiles();
+            }
+            CountingIsoReaderMetrics second = new CountingIsoReaderMetrics();
+            List<String> names = new ArrayList<>();
+            try (IsoFileReader iso = new IsoFileReader(image, setting, second)) {
+                iso.useBlockCache(cache);
+                for (GenericInternalIsoFile file : iso.convertTreeFilesToFlatList(iso.getAllFiles())) {
+                    names.add(file.getFullFileName('/'));
+                }
+            }
+            Assertions.assertEquals(expected, names);
+            Assertions.assertTrue(second.getCacheHits(BlockCache.BLOCK_CACHE) > 0);
+            Assertions.assertTrue(
+                    second.getReadCalls() < plain.getReadCalls() / 2,
+                    "Expected cached metadata reads, got " + second.getReadCalls() + " of " + plain.getReadCalls());
+        }
+        Assertions.assertTrue(cache.size() > 0);
+
+        // Walks through the cache still lease their handles from the pool
+        CountingIsoReaderMetrics pooled = new CountingIsoReaderMetrics();
+        try (IsoFileReader iso = new IsoFileReader(image, "0,1,0", pooled)) {
+            iso.useBlockCache(cache);
+            iso.getAllFiles();
+            // Handles leased later still use the key the reader bound, so they find the same blocks
+            int blocks = cache.size();
+            Assertions.assertTrue(image.setLastModified(image.lastModified() - 10_000));
+            iso.getAllFiles();
+            Assertions.assertEquals(blocks, cache.size());
+        }
+        Assertions.assertTrue(pooled.getCacheHits(RandomAccessFilePool.FILE_HANDLE_CACHE) > 0);
+    }
+
+    @Test
+    void concurrentFrozenIndexingIsCoalesced() throws Exception {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator()
+                .depth(1)
+                .directoriesPerDirectory(2)
+                .filesPerDirectory(8);
+        File image = write(generator);
+        int threads = 4;
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(threads - 1);
+        AtomicBoolean gate = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        // The first read of the index holds it in flight until every other worker has joined it
+        IsoReaderMetrics metrics = new IsoReaderMetrics() {
+            @Override
+            public void read(long bytes) {
+                reads.incrementAndGet();
+                if (gate.compareAndSet(true, false)) {
+                    leading.countDown();
+                    try {
+                        Assertions.assertTrue(joined.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+
+            @Override
+            public void cacheHit(String cache) {
+                if (IsoFileReader.COALESCED_INDEXES.equals(cache)) {
+                    joined.countDown();
+                }
+            }
+        };
+
+        long coalescedReads;
+        try (IsoFileReader iso = new IsoFileReader(image, "1,0,0", metrics)) {
+            GenericInternalIsoFile[][] results = new GenericInternalIsoFile[threads][];
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int index = i;
+                workers.add(new Thread(() -> {
+                    try {
+                        results[index] = iso.getAllFilesFrozen();
+                    } catch (IOException | UdfFormatException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            workers.get(0).start();
+            Assertions.assertTrue(leading.await(10, TimeUnit.SECONDS));
+            workers.subList(1, threads).forEach(Thread::start);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            coalescedReads = reads.get();
+            for (int worker = 1; worker < threads; worker++) {
+                // Each caller gets its own root array over the one shared frozen tree
+                Assertions.assertNotSame(results[0], results[worker]);
+                Assertions.assertArrayEquals(results[0], results[worker]);
+            }
+            Assertions.assertEquals(
+                    generator.getFileCount(),
+                    iso.convertTreeFilesToFlatList(results[0]).size());
+            // Once nothing is in flight the next call indexes again
+            Assertions.assertNotSame(results[0][0], iso.getAllFilesFrozen()[0]);
+            // Mutable trees are never shared
+            Assertions.assertNotSame(iso.getAllFiles()[0], iso.getAllFiles()[0]);
+        }
+
+        CountingIsoReaderMetrics single = new CountingIsoReaderMetrics();
+        try (IsoFileReader iso = new IsoFileReader(image, "1,0,0", single)) {
+            iso.getAllFilesFrozen();
+        }
+        Assertions.assertEquals(single.getReadCalls(), coalescedReads);
+    }
+
+    @Test
+    void coalescedReadSurvivesInterruptedLeader() throws Exception {
+        SyntheticImageGenerator generator = new SyntheticImageGenerator().largeFileSize(100_000);
+        File image = write(generator);
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        AtomicBoolean gate = new AtomicBoolean(true);
+        // The first read of the extent waits for the follower to join it, then its thread is interrupted
+        IsoReaderMetrics metrics = new IsoReaderMetrics() {
+            @Override
+            public void cacheMiss(String cache) {
+                if (IsoFileReader.COALESCED_READS.equals(cache) && gate.compareAndSet(true, false)) {
+                    leading.countDown();
+                    try {
+                        Assertions.assertTrue(joined.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void cacheHit(String cache) {
+                if (IsoFileReader.COALESCED_READS.equals(cache)) {
+                    joined.countDown();
+                }
+            }
+        };
+
+        try (IsoFileReader iso = new IsoFileReader(image, "1,0,0", metrics)) {
+            iso.usePositionalReads(true);
+            GenericInternalIsoFile large = required(iso.getSpecificFileByName(iso.getAllFiles(), "/large.bin"));
+            AtomicBoolean leaderInterrupted = new AtomicBoolean();
+            byte[][] followerBytes = new byte[1][];
+            Thread leader = new Thread(() -> {
+                try {
+                    iso.getFileBytes(large);
+                } catch (ClosedByInterruptException e) {
+                    leaderInterrupted.set(true);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread follower = new Thread(() -> {
+                try {
+                    followerBytes[0] = iso.getFileBytes(large);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            leader.start();
+            Assertions.assertTrue(leading.await(10, TimeUnit.SECONDS));
+            follower.start();
+            leader.join();
+            follower.join();
+
+            Assertions.assertTrue(leaderInterrupted.get());
+            Assertions.assertFalse(follower.isInterrupted());
+            Assertions.assertArrayEquals(SyntheticImageGenerator.pattern(100_000, 0), followerBytes[0]);
+        }
+    }
+
+    private File write(SyntheticImageGenerator generator) throws IOException {
+        File image = tempDir.resolve("synthetic.iso").toFile();
+        generator.write(image);
+        return image;
+    }
+
+    private static GenericInternalIsoFile required(Optional<GenericInternalIsoFile> file) {
+        return file.orElseThrow(() -> new AssertionError("Generated image is missing an expected file"));
+    }
+}
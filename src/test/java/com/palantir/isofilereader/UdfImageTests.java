@@ -16,27 +16,43 @@
 
 package com.palantir.isofilereader;
 
+import com.palantir.isofilereader.isofilereader.CountingIsoReaderMetrics;
 import com.palantir.isofilereader.isofilereader.GenericInternalIsoFile;
 import com.palantir.isofilereader.isofilereader.IsoFileReader;
+import com.palantir.isofilereader.isofilereader.IsoReaderMetrics;
+import com.palantir.isofilereader.isofilereader.Util;
 import com.palantir.isofilereader.isofilereader.udf.UdfFormatException;
 import com.palantir.isofilereader.isofilereader.udf.UdfInternalDataFile;
+import com.palantir.isofilereader.isofilereader.udf.UdfIsoReader;
+import com.palantir.isofilereader.isofilereader.udf.types.partition.AbstractPartitionMap;
+import com.palantir.isofilereader.isofilereader.udf.types.partition.PartitionTypeOne;
+import com.palantir.isofilereader.isofilereader.udf.types.partition.PartitionTypeTwo;
 import com.palantir.isofilereader.isofilereader.udf.types.toc.GenericDescriptor;
+import com.palantir.isofilereader.isofilereader.udf.types.toc.LogicalVolumeDescriptor;
+import com.palantir.isofilereader.isofilereader.udf.types.types.Tag;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 @SuppressWarnings("StrictUnusedVariable")
 public class UdfImageTests {
@@ -413,4 +429,190 @@ public class UdfImageTests {
         }
         return newlyCreatedMd5;
     }
+
+    @Test
+    void logicalVolumeDescriptorLocatesFileSet() throws IOException, UdfFormatException {
+        File isoFile = new File("./src/test/resources/small_only_udf_260.iso");
+
+        try (IsoFileReader iso = new IsoFileReader(isoFile)) {
+            Assertions.assertTrue(iso.isUdfModeInUse());
+            UdfIsoReader udfReader = iso.getUdfIsoReader();
+            udfReader.getDiscDescriptors();
+            LogicalVolumeDescriptor[] logicalVolumes =
+                    (LogicalVolumeDescriptor[]) udfReader.getSpecificDiscDescriptor(Tag.LOGICAL_VOLUME_DESCRIPTOR);
+            Assertions.assertEquals(1, logicalVolumes.length);
+
+            List<AbstractPartitionMap> maps = logicalVolumes[0].getPartitionMapList();
+            Assertions.assertEquals(2, maps.size());
+            Assertions.assertInstanceOf(PartitionTypeOne.class, maps.get(0));
+            Assertions.assertTrue(((PartitionTypeTwo) maps.get(1)).isMetadataPartition());
+            // The File Set Descriptor lives in the metadata partition
+            Assertions.assertEquals(
+                    1,
+                    logicalVolumes[0]
+                            .getFileSetDescriptorLocation()
+                            .getExtentLocation()
+                            .getPartitionReferenceAsInt());
+
+            List<GenericInternalIsoFile> files = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+            Assertions.assertEquals(8, files.size());
+        }
+    }
+
+    @Test
+    void descriptorCrcMatchesStoredValue() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("./src/test/resources/small_only_udf_260.iso", "r")) {
+            byte[] anchor = new byte[2048];
+            file.seek(256L * 2048);
+            file.readFully(anchor);
+            Tag tag = new Tag(Arrays.copyOfRange(anchor, 0, 16));
+            Assertions.assertTrue(tag.descriptorCrcIsCorrect(anchor));
+
+            anchor[20] ^= 0x01;
+            Assertions.assertFalse(tag.descriptorCrcIsCorrect(anchor));
+        }
+    }
+
+    @Test
+    void tagChecksumAcceptsBytesThatSumNegative() {
+        // Signed, the bytes sum to -25, the checksum is the unsigned sum 487 modulo 256
+        byte[] record = new byte[] {2, 0, 2, 0, (byte) 231, 0, 0, 0, (byte) 0xF0, (byte) 0xF0, 0, 2, 1, 0, 0, 0};
+        Assertions.assertTrue(new Tag(record).tagChecksumIsCorrect());
+
+        record[4] = (byte) 230;
+        Assertions.assertFalse(new Tag(record).tagChecksumIsCorrect());
+    }
+
+    @Test
+    void imageSmallerThanTheAnchorOffsetIsNotUdf(@TempDir Path tempDir) throws IOException {
+        // 100 sectors leaves no N - 256 anchor to look at
+        Path image = tempDir.resolve("small.iso");
+        Files.write(image, new byte[100 * 2048]);
+        Assertions.assertFalse(new UdfIsoReader(image.toFile()).checkForUdfData());
+    }
+
+    @Test
+    void reserveVolumeDescriptorSequenceUsedWhenMainIsCorrupt(@TempDir Path tempDir)
+            throws IOException, UdfFormatException {
+        Path copy = tempDir.resolve("corrupt_main_vds.iso");
+        Files.copy(Path.of("./src/test/resources/small_only_udf_260.iso"), copy);
+        long mainSector;
+        long reserveSector;
+        try (RandomAccessFile file = new RandomAccessFile(copy.toFile(), "rw")) {
+            byte[] anchor = new byte[32];
+            file.seek(256L * 2048);
+            file.readFully(anchor);
+            mainSector = Integer.toUnsignedLong(Util.fourUnsignedByteToInt(Arrays.copyOfRange(anchor, 20, 24)));
+            reserveSector = Integer.toUnsignedLong(Util.fourUnsignedByteToInt(Arrays.copyOfRange(anchor, 28, 32)));
+            // Flip a byte inside the first descriptor of the main sequence, leaving its tag intact
+            file.seek(mainSector * 2048 + 100);
+            int original = file.read();
+            file.seek(mainSector * 2048 + 100);
+            file.write(original ^ 0xFF);
+        }
+        Assertions.assertNotEquals(mainSector, reserveSector);
+
+        try (IsoFileReader iso = new IsoFileReader(copy.toFile())) {
+            Assertions.assertTrue(iso.isUdfModeInUse());
+            UdfIsoReader udfReader = iso.getUdfIsoReader();
+            udfReader.getDiscDescriptors();
+            GenericDescriptor[] primary = udfReader.getSpecificDiscDescriptor(Tag.PRIMARY_VOLUME);
+            Assertions.assertEquals(1, primary.length);
+            Assertions.assertTrue(primary[0].getDescriptorTag().getTagLocationAsInt() >= reserveSector);
+            Assertions.assertTrue(udfReader.isVolumeDescriptorSequenceVerified());
+
+            List<GenericInternalIsoFile> files = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+            Assertions.assertEquals(8, files.size());
+        }
+    }
+
+    @Test
+    void mainVolumeDescriptorSequenceParsedLenientlyWhenBothAreCorrupt(@TempDir Path tempDir)
+            throws IOException, UdfFormatException {
+        Path copy = tempDir.resolve("corrupt_both_vds.iso");
+        Files.copy(Path.of("./src/test/resources/small_only_udf_260.iso"), copy);
+        long mainSector;
+        try (RandomAccessFile file = new RandomAccessFile(copy.toFile(), "rw")) {
+            byte[] anchor = new byte[32];
+            file.seek(256L * 2048);
+            file.readFully(anchor);
+            mainSector = Integer.toUnsignedLong(Util.fourUnsignedByteToInt(Arrays.copyOfRange(anchor, 20, 24)));
+            long reserveSector = Integer.toUnsignedLong(Util.fourUnsignedByteToInt(Arrays.copyOfRange(anchor, 28, 32)));
+            // Flip a byte inside the first descriptor of both sequences, leaving their tags intact
+            for (long sector : new long[] {mainSector, reserveSector}) {
+                file.seek(sector * 2048 + 100);
+                int original = file.read();
+                file.seek(sector * 2048 + 100);
+                file.write(original ^ 0xFF);
+            }
+        }
+
+        List<Integer> failedChecks = new ArrayList<>();
+        IsoReaderMetrics metrics = new IsoReaderMetrics() {
+            @Override
+            public synchronized void descriptorCheckFailed(int tagIdentifier) {
+                failedChecks.add(tagIdentifier);
+            }
+        };
+        try (IsoFileReader iso = new IsoFileReader(copy.toFile(), metrics)) {
+            Assertions.assertTrue(iso.isUdfModeInUse());
+            UdfIsoReader udfReader = iso.getUdfIsoReader();
+            udfReader.getDiscDescriptors();
+            Assertions.assertFalse(udfReader.isVolumeDescriptorSequenceVerified());
+            Assertions.assertEquals(2, failedChecks.size());
+            GenericDescriptor[] primary = udfReader.getSpecificDiscDescriptor(Tag.PRIMARY_VOLUME);
+            Assertions.assertEquals(1, primary.length);
+            Assertions.assertEquals(mainSector, primary[0].getDescriptorTag().getTagLocationAsInt());
+
+            List<GenericInternalIsoFile> files = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+            Assertions.assertEquals(8, files.size());
+        }
+    }
+
+    @Test
+    void shallowListingReadsFileEntriesLazily() throws IOException, UdfFormatException {
+        File isoFile = new File("./src/test/resources/small_only_udf_260.iso");
+        List<GenericInternalIsoFile> indexed;
+        try (IsoFileReader iso = new IsoFileReader(isoFile)) {
+            indexed = iso.convertTreeFilesToFlatList(iso.getAllFiles());
+        }
+
+        CountingIsoReaderMetrics metrics = new CountingIsoReaderMetrics();
+        UdfIsoReader udfReader = new UdfIsoReader(isoFile, metrics);
+        UdfInternalDataFile root = udfReader.getRootDirectory();
+        long readsBefore = metrics.getReadCalls();
+        UdfInternalDataFile[] children = udfReader.listDirectory(root);
+        // The whole directory comes from a single read of its File Identifier Descriptors
+        Assertions.assertEquals(readsBefore + 1, metrics.getReadCalls());
+        Assertions.assertTrue(children.length > 0);
+        for (UdfInternalDataFile child : children) {
+            Assertions.assertFalse(child.isFileEntryLoaded());
+        }
+        readsBefore = metrics.getReadCalls();
+        Assertions.assertArrayEquals(children, udfReader.listDirectory(root));
+        Assertions.assertEquals(readsBefore, metrics.getReadCalls());
+
+        List<UdfInternalDataFile> listed = new ArrayList<>();
+        Deque<UdfInternalDataFile> toList = new ArrayDeque<>(List.of(root));
+        while (!toList.isEmpty()) {
+            for (UdfInternalDataFile child : udfReader.listDirectory(toList.pop())) {
+                if (child.isDirectory()) {
+                    toList.push(child);
+                } else {
+                    // The flat list only holds files
+                    listed.add(child);
+                }
+            }
+        }
+        Assertions.assertEquals(indexed.size(), listed.size());
+        for (UdfInternalDataFile file : listed) {
+            GenericInternalIsoFile match = indexed.stream()
+                    .filter(each -> each.getFullFileName('/').equals(file.getFullFileName('/')))
+                    .findFirst()
+                    .orElseThrow();
+            Assertions.assertEquals(match.getSize(), file.getSize());
+            Assertions.assertEquals(match.getLogicalSectorLocation(), file.getLogicalSectorLocation());
+            Assertions.assertTrue(file.isFileEntryLoaded());
+        }
+    }
 }
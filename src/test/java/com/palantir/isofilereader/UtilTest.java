@@ -17,10 +17,18 @@
 package com.palantir.isofilereader;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.palantir.isofilereader.isofilereader.BinaryFields;
 import com.palantir.isofilereader.isofilereader.Util;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Optional;
@@ -36,6 +44,21 @@ public class UtilTest {
         assertEquals(0, Arrays.compare(wantedResult, result));
     }
 
+    @Test
+    void binaryFieldsDecodeBothByteOrders() {
+        // Both-byte-order 32 bit field from ECMA-119 7.3.3, 0x87654321 little endian followed by big endian
+        byte[] both = {0x21, 0x43, 0x65, (byte) 0x87, (byte) 0x87, 0x65, 0x43, 0x21};
+        assertEquals(0x87654321L, BinaryFields.uint32Le(both, 0));
+        assertEquals(0x87654321L, BinaryFields.uint32Be(both, 4));
+        assertEquals(0x87654321, BinaryFields.int32Le(both, 0));
+        assertEquals(0x4321, BinaryFields.uint16Le(both, 0));
+        assertEquals(0x8765, BinaryFields.uint16Be(both, 4));
+        assertEquals(0x87, BinaryFields.uint8(both, 3));
+        assertEquals(0x2143658787654321L, BinaryFields.int64Le(both, 0));
+        assertEquals(0x4321, Util.twoUnsignedByteToInt(both));
+        assertEquals(0x87654321, Util.fourUnsignedByteToInt(both));
+    }
+
     @Test
     void convert9_1_5DateTime() {
         // 2019/11/21 18:09:17
@@ -47,4 +70,49 @@ public class UtilTest {
         assertEquals("2019/Nov/21 23:09:17", stringDate);
         System.out.println(dateFormat.format(time.get()));
     }
+
+    @Test
+    void convert9_1_5OffsetDateTime() {
+        // 2019/11/21 18:09:17 at GMT-5, offset is -20 quarter hours
+        byte[] date = {0x77, 0x0B, 0x15, 0x12, 0x09, 0x11, (byte) -20};
+        OffsetDateTime time = Util.convert9_1_5OffsetDateTime(date).get();
+        assertEquals(OffsetDateTime.of(2019, 11, 21, 18, 9, 17, 0, ZoneOffset.ofHours(-5)), time);
+        assertEquals(Instant.parse("2019-11-21T23:09:17Z"), time.toInstant());
+        assertEquals(
+                Date.from(time.toInstant()), Util.convert9_1_5DateTime(date).get());
+        assertTrue(Util.convert9_1_5OffsetDateTime(new byte[7]).isEmpty());
+        // The Date variant keeps rolling invalid fields over
+        assertEquals(
+                Date.from(OffsetDateTime.of(1899, 11, 30, 0, 0, 0, 0, ZoneOffset.UTC)
+                        .toInstant()),
+                Util.convert9_1_5DateTime(new byte[7]).get());
+    }
+
+    @Test
+    void convert8_4_26_1OffsetDateTime() throws ParseException {
+        byte[] date = Arrays.copyOf("2019112123095125".getBytes(StandardCharsets.US_ASCII), 17);
+        date[16] = 4;
+        assertEquals(
+                OffsetDateTime.of(2019, 11, 21, 23, 9, 51, 250_000_000, ZoneOffset.ofHours(1)),
+                Util.convert8_4_26_1OffsetDateTime(date).get());
+        byte[] unset = Arrays.copyOf("0000000000000000".getBytes(StandardCharsets.US_ASCII), 17);
+        assertTrue(Util.convert8_4_26_1OffsetDateTime(unset).isEmpty());
+        assertSame(Util.quarterHourOffset(-20), Util.minuteOffset(-300));
+    }
+
+    @Test
+    void convertDStringsAndDCharacters() {
+        // dString[8] with the used length in the last byte, the padding and length byte are not part of the name
+        byte[] label = {8, 'D', 'I', 'S', 'K', 0, 0, 5};
+        assertEquals("DISK", Util.convertDStringBytesToString(label));
+        // 8 bit CS0 is Unicode code points up to 255, not UTF-8
+        byte[] latin = {8, 'c', 'a', 'f', (byte) 0xE9};
+        assertEquals("caf\u00e9", Util.convertDCharactersToString(latin, 0, latin.length));
+        // 16 bit CS0 names can end with a zero byte, U+0100 is 0x01 0x00
+        byte[] wide = {16, 0x00, 'A', 0x01, 0x00};
+        assertEquals("A\u0100", Util.convertDCharactersToString(wide, 0, wide.length));
+        byte[] wideLabel = {16, 0x00, 'A', 0x01, 0x00, 0, 0, 5};
+        assertEquals("A\u0100", Util.convertDStringBytesToString(wideLabel));
+        assertEquals("", Util.convertDStringBytesToString(new byte[8]));
+    }
 }
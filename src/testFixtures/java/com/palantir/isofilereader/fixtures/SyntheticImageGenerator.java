@@ -0,0 +1,1578 @@
+/*
+ * (c) Copyright 2023 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.isofilereader.fixtures;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes synthetic ISO-9660 images, optionally with Joliet, Rock Ridge and a UDF 2.60 bridge, for scale and
+ * performance testing without downloading anything.
+ *
+ * <p>The tree is regular: every directory above the configured depth has the same number of sub-directories, and
+ * every directory has the same number of files. That lets the layout be computed per level instead of per entry, so
+ * images with millions of entries can be written in memory proportional to one directory. The root directory can also
+ * hold a large file with real content, a sparse huge file and a file split over multiple extents.
+ *
+ * <p>Layout, in logical sectors: 16 primary volume descriptor, 17 Joliet supplementary descriptor, then the
+ * terminator and the UDF volume recognition sequence. With UDF, 32 and 48 hold the main and reserve volume descriptor
+ * sequences, 64 the integrity sequence, 256 and the last sector the anchors, and the partition starts at 257 with the
+ * file set descriptor. Path tables, ISO directories with their Rock Ridge continuation areas, Joliet directories, UDF
+ * entries and then file data follow, all inside the UDF partition so both trees share the file data.
+ */
+public final class SyntheticImageGenerator {
+    public static final int SECTOR = 2048;
+
+    private static final long MAX_ISO_EXTENT = 0xFFFFF800L;
+    private static final long MAX_UDF_EXTENT = 0x3FFFF800L;
+    private static final int MAIN_VDS = 32;
+    private static final int RESERVE_VDS = 48;
+    private static final int INTEGRITY_SEQUENCE = 64;
+    private static final int VDS_SECTORS = 16;
+    private static final int ANCHOR = 256;
+    private static final int UDF_PARTITION_START = 257;
+    private static final int MAX_RECORD = 254;
+    private static final int MAX_NM_PART = 250;
+    private static final int MAX_JOLIET_CHARS = 64;
+    private static final byte[] RECORD_DATE = {123, 1, 1, 0, 0, 0, 0};
+    private static final String VOLUME_DATE = "2023010100000000";
+    private static final String ER_ID = "RRIP_1991A";
+    private static final String ER_DESCRIPTION =
+            "THE ROCK RIDGE INTERCHANGE PROTOCOL PROVIDES SUPPORT FOR POSIX FILE SYSTEM SEMANTICS";
+    private static final String ER_SOURCE = "PLEASE CONTACT DISC PUBLISHER FOR SPECIFICATION SOURCE.  SEE PUBLISHER "
+            + "IDENTIFIER IN PRIMARY VOLUME DESCRIPTOR FOR CONTACT INFORMATION.";
+    private static final int[] CRC_TABLE = crcTable();
+
+    private int depth = 2;
+    private int directoriesPerDirectory = 4;
+    private int filesPerDirectory = 16;
+    private int fileSize = 512;
+    private int nameLength = 0;
+    private boolean uniqueFileData = false;
+    private boolean joliet = true;
+    private boolean rockRidge = true;
+    private boolean udf = true;
+    private long largeFileSize = 0;
+    private long hugeFileSize = 0;
+    private long multiExtentFileSize = 0;
+    private long multiExtentSize = 0;
+
+    /**
+     * Levels of sub-directories below the root, 0 puts every file in the root.
+     *
+     * @param value depth of the tree
+     * @return this generator
+     */
+    public SyntheticImageGenerator depth(int value) {
+        this.depth = value;
+        return this;
+    }
+
+    /**
+     * Sub-directories in every directory above the deepest level.
+     *
+     * @param value fan out of the tree
+     * @return this generator
+     */
+    public SyntheticImageGenerator directoriesPerDirectory(int value) {
+        this.directoriesPerDirectory = value;
+        return this;
+    }
+
+    /**
+     * Regular files in every directory.
+     *
+     * @param value file count per directory
+     * @return this generator
+     */
+    public SyntheticImageGenerator filesPerDirectory(int value) {
+        this.filesPerDirectory = value;
+        return this;
+    }
+
+    /**
+     * Size in bytes of every regular file.
+     *
+     * @param value size in bytes
+     * @return this generator
+     */
+    public SyntheticImageGenerator fileSize(int value) {
+        this.fileSize = value;
+        return this;
+    }
+
+    /**
+     * Pad Rock Ridge, Joliet and UDF names out to this many characters, 0 keeps the short generated names. Joliet
+     * names are cut at 64 characters, UDF names at 254, and Rock Ridge names that no longer fit in the directory record
+     * are written to a continuation area.
+     *
+     * @param value name length, at most 255
+     * @return this generator
+     */
+    public SyntheticImageGenerator nameLength(int value) {
+        this.nameLength = Math.min(255, value);
+        return this;
+    }
+
+    /**
+     * By default every regular file points at one shared data extent, which keeps very large trees small on disk.
+     * Unique data gives every file its own extent and content.
+     *
+     * @param value true for one extent per file
+     * @return this generator
+     */
+    public SyntheticImageGenerator uniqueFileData(boolean value) {
+        this.uniqueFileData = value;
+        return this;
+    }
+
+    /**
+     * Write a Joliet supplementary volume descriptor and directory tree.
+     *
+     * @param value true to write Joliet
+     * @return this generator
+     */
+    public SyntheticImageGenerator joliet(boolean value) {
+        this.joliet = value;
+        return this;
+    }
+
+    /**
+     * Write Rock Ridge entries (SP, ER, PX, TF, NM, CE) into the primary tree.
+     *
+     * @param value true to write Rock Ridge
+     * @return this generator
+     */
+    public SyntheticImageGenerator rockRidge(boolean value) {
+        this.rockRidge = value;
+        return this;
+    }
+
+    /**
+     * Write a UDF 2.60 bridge sharing the file data of the ISO-9660 tree.
+     *
+     * @param value true to write UDF
+     * @return this generator
+     */
+    public SyntheticImageGenerator udf(boolean value) {
+        this.udf = value;
+        return this;
+    }
+
+    /**
+     * Add large.bin to the root, filled with {@link #pattern(int, long)} content.
+     *
+     * @param value size in bytes, 0 for none
+     * @return this generator
+     */
+    public SyntheticImageGenerator largeFileSize(long value) {
+        this.largeFileSize = value;
+        return this;
+    }
+
+    /**
+     * Add huge.bin to the root. The data is left sparse so it reads as zeros, files over 4 GiB are split into multiple
+     * ISO extents and UDF allocation descriptors as the formats require.
+     *
+     * @param value size in bytes, 0 for none
+     * @return this generator
+     */
+    public SyntheticImageGenerator hugeFileSize(long value) {
+        this.hugeFileSize = value;
+        return this;
+    }
+
+    /**
+     * Add multi.bin to the root, split into extents of at most extentSize bytes, filled with pattern content.
+     *
+     * @param size size in bytes, 0 for none
+     * @param extentSize bytes per extent, rounded down to whole sectors
+     * @return this generator
+     */
+    public SyntheticImageGenerator multiExtentFile(long size, long extentSize) {
+        this.multiExtentFileSize = size;
+        this.multiExtentSize = Math.max(SECTOR, extentSize - (extentSize % SECTOR));
+        return this;
+    }
+
+    /**
+     * Number of directories, including the root.
+     *
+     * @return directory count
+     */
+    public long getDirectoryCount() {
+        long total = 0;
+        for (int level = 0; level <= depth; level++) {
+            total += directoriesAtLevel(level);
+        }
+        return total;
+    }
+
+    /**
+     * Number of files, including the large, huge and multi extent files in the root.
+     *
+     * @return file count
+     */
+    public long getFileCount() {
+        return getDirectoryCount() * filesPerDirectory + specials().size();
+    }
+
+    /**
+     * Long (Rock Ridge, Joliet and UDF) name of the sub-directory at index.
+     *
+     * @param index position in its parent
+     * @return name
+     */
+    public String directoryName(int index) {
+        return padName(String.format("dir_%07d", index), "");
+    }
+
+    /**
+     * Long (Rock Ridge, Joliet and UDF) name of the file at index.
+     *
+     * @param index position in its parent
+     * @return name
+     */
+    public String fileName(int index) {
+        return padName(String.format("file_%07d", index), ".bin");
+    }
+
+    /**
+     * Path with / separators and long names of the last file in the last directory of the deepest level.
+     *
+     * @return path usable with IsoFileReader.getSpecificFileByName
+     */
+    public String deepestFilePath() {
+        StringBuilder path = new StringBuilder();
+        for (int level = 0; level < depth; level++) {
+            path.append('/').append(directoryName(directoriesPerDirectory - 1));
+        }
+        return path.append('/').append(fileName(filesPerDirectory - 1)).toString();
+    }
+
+    /**
+     * Same file as deepestFilePath, with the plain ISO-9660 identifiers used when neither Rock Ridge nor Joliet is in
+     * use.
+     *
+     * @return path usable with IsoFileReader.getSpecificFileByName
+     */
+    public String deepestIsoFilePath() {
+        StringBuilder path = new StringBuilder();
+        for (int level = 0; level < depth; level++) {
+            path.append('/').append(isoDirectoryId(directoriesPerDirectory - 1));
+        }
+        return path.append('/').append(isoFileId(filesPerDirectory - 1)).toString();
+    }
+
+    /**
+     * Content written to files, byte i of a file starting at offset start is (start + i) * 31. Regular files start at
+     * 0 unless unique data is on, then the file with ordinal n (counting files breadth first) starts at n * fileSize.
+     *
+     * @param length bytes wanted
+     * @param start offset of the first byte
+     * @return content
+     */
+    public static byte[] pattern(int length, long start) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ((start + i) * 31);
+        }
+        return data;
+    }
+
+    /**
+     * Write the image, replacing anything at output.
+     *
+     * @param output file to write
+     * @throws IOException failure writing the image
+     */
+    public void write(File output) throws IOException {
+        Layout layout = new Layout();
+        try (FileChannel channel = FileChannel.open(
+                output.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.READ,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            new Writer(channel, layout).writeAll();
+        }
+    }
+
+    private long directoriesAtLevel(int level) {
+        long count = 1;
+        for (int i = 0; i < level; i++) {
+            count *= directoriesPerDirectory;
+        }
+        return count;
+    }
+
+    private String padName(String base, String suffix) {
+        StringBuilder name = new StringBuilder(base);
+        int wanted = nameLength - suffix.length();
+        for (int i = 0; name.length() < wanted; i++) {
+            name.append((char) ('a' + (i % 26)));
+        }
+        return name.append(suffix).toString();
+    }
+
+    private static String isoDirectoryId(int index) {
+        return String.format("D%07d", index);
+    }
+
+    private static String isoFileId(int index) {
+        return String.format("F%07d.BIN", index);
+    }
+
+    private List<Special> specials() {
+        List<Special> specials = new ArrayList<>();
+        if (hugeFileSize > 0) {
+            specials.add(new Special("HUGE.BIN", "huge.bin", hugeFileSize, MAX_ISO_EXTENT, false));
+        }
+        if (largeFileSize > 0) {
+            specials.add(new Special("LARGE.BIN", "large.bin", largeFileSize, MAX_ISO_EXTENT, true));
+        }
+        if (multiExtentFileSize > 0) {
+            specials.add(new Special("MULTI.BIN", "multi.bin", multiExtentFileSize, multiExtentSize, true));
+        }
+        return specials;
+    }
+
+    private static int sectorsFor(long bytes) {
+        return (int) ((bytes + SECTOR - 1) / SECTOR);
+    }
+
+    private static int even(int length) {
+        return length + (length & 1);
+    }
+
+    /**
+     * A file in the root outside the regular tree.
+     */
+    private static final class Special {
+        private final String isoId;
+        private final String longName;
+        private final long size;
+        private final long extentSize;
+        private final boolean written;
+        private long firstSector;
+
+        private Special(String isoId, String longName, long size, long extentSize, boolean written) {
+            this.isoId = isoId;
+            this.longName = longName;
+            this.size = size;
+            this.extentSize = extentSize;
+            this.written = written;
+        }
+
+        private int extentCount() {
+            return (int) Math.max(1, (size + extentSize - 1) / extentSize);
+        }
+
+        private long extentLength(int extent) {
+            return Math.min(extentSize, size - extent * extentSize);
+        }
+
+        private long extentSector(int extent) {
+            return firstSector + (long) extent * sectorsFor(extentSize);
+        }
+    }
+
+    /**
+     * One entry of a directory as it appears in every directory of a level. Only extents differ between directories
+     * of the same level, so names, record sizes and continuation area offsets are computed once.
+     */
+    private static final class Child {
+        private final int index;
+        private final boolean directory;
+        private final Special special;
+        private final byte[] isoId;
+        private final byte[] jolietId;
+        private final String longName;
+        private byte[] nameContinuation;
+        private int ceSector;
+        private int ceOffset;
+
+        private Child(int index, boolean directory, Special special, String isoId, String jolietName, String longName) {
+            this.index = index;
+            this.directory = directory;
+            this.special = special;
+            this.isoId = isoId.getBytes(StandardCharsets.US_ASCII);
+            this.jolietId = jolietName.getBytes(StandardCharsets.UTF_16BE);
+            this.longName = longName;
+        }
+
+        private int extentCount() {
+            return special == null ? 1 : special.extentCount();
+        }
+    }
+
+    /**
+     * Sizes and starting sectors for every level of the tree.
+     */
+    private final class Level {
+        private final int number;
+        private final long count;
+        private final List<Child> children = new ArrayList<>();
+        private final int filesPerDirectoryHere;
+        private int isoSectors;
+        private int ceSectors;
+        private byte[] rootContinuation;
+        private int jolietSectors;
+        private long udfDataBytes;
+        private int udfDataSectors;
+        private long isoBase;
+        private long jolietBase;
+        private long udfDirectoryBase;
+        private long udfFileEntryBase;
+        private long fileOrdinalBase;
+        private long directoryOrdinalBase;
+
+        private Level(int number, List<Special> specials) {
+            this.number = number;
+            this.count = directoriesAtLevel(number);
+            if (number < depth) {
+                for (int i = 0; i < directoriesPerDirectory; i++) {
+                    String name = directoryName(i);
+                    children.add(new Child(i, true, null, isoDirectoryId(i), jolietName(name, false), name));
+                }
+            }
+            for (int i = 0; i < filesPerDirectory; i++) {
+                String name = fileName(i);
+                children.add(new Child(i, false, null, isoFileId(i) + ";1", jolietName(name, true), name));
+            }
+            if (number == 0) {
+                for (Special special : specials) {
+                    children.add(new Child(
+                            -1,
+                            false,
+                            special,
+                            special.isoId + ";1",
+                            jolietName(special.longName, true),
+                            special.longName));
+                }
+            }
+            this.filesPerDirectoryHere = children.size() - (number < depth ? directoriesPerDirectory : 0);
+            layoutIso();
+            layoutJoliet();
+            layoutUdf();
+        }
+
+        private int isoSectorsWithContinuation() {
+            return isoSectors + ceSectors;
+        }
+
+        private void layoutIso() {
+            List<Integer> lengths = new ArrayList<>();
+            lengths.add(isoRecordLength(1, dotSystemUseLength(number == 0)));
+            lengths.add(isoRecordLength(1, dotSystemUseLength(false)));
+            // Continuation areas, packed so that none crosses a sector boundary
+            int ceUsed = 0;
+            int ceSectorCount = 0;
+            if (number == 0 && rockRidge) {
+                rootContinuation = extensionReference();
+                ceUsed = rootContinuation.length;
+                ceSectorCount = 1;
+            }
+            for (Child child : children) {
+                int inline = childSystemUseLength(child, false);
+                if (rockRidge && isoRecordLength(child.isoId.length, inline) > MAX_RECORD) {
+                    child.nameContinuation = nameEntries(child.longName);
+                    if (ceSectorCount == 0 || ceUsed + child.nameContinuation.length > SECTOR) {
+                        ceSectorCount++;
+                        ceUsed = 0;
+                    }
+                    child.ceSector = ceSectorCount - 1;
+                    child.ceOffset = ceUsed;
+                    ceUsed += child.nameContinuation.length;
+                }
+                int length = isoRecordLength(child.isoId.length, childSystemUseLength(child, true));
+                for (int extent = 0; extent < child.extentCount(); extent++) {
+                    lengths.add(length);
+                }
+            }
+            isoSectors = packedSectors(lengths);
+            ceSectors = ceSectorCount;
+        }
+
+        private void layoutJoliet() {
+            if (!joliet) {
+                return;
+            }
+            List<Integer> lengths = new ArrayList<>();
+            lengths.add(isoRecordLength(1, 0));
+            lengths.add(isoRecordLength(1, 0));
+            for (Child child : children) {
+                for (int extent = 0; extent < child.extentCount(); extent++) {
+                    lengths.add(isoRecordLength(child.jolietId.length, 0));
+                }
+            }
+            jolietSectors = packedSectors(lengths);
+        }
+
+        private void layoutUdf() {
+            if (!udf) {
+                return;
+            }
+            long bytes = fidLength(0);
+            for (Child child : children) {
+                bytes += fidLength(udfName(child.longName).length);
+            }
+            udfDataBytes = bytes;
+            udfDataSectors = sectorsFor(bytes);
+        }
+
+        private int childSystemUseLength(Child child, boolean afterLayout) {
+            if (!rockRidge) {
+                return 0;
+            }
+            int base = 36 + 19; // PX and TF
+            if (afterLayout && child.nameContinuation != null) {
+                return base + 28; // CE
+            }
+            return base + 5 + child.longName.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        private int dotSystemUseLength(boolean rootDot) {
+            if (!rockRidge) {
+                return 0;
+            }
+            return (rootDot ? 7 + 28 : 0) + 36 + 19;
+        }
+    }
+
+    private String jolietName(String name, boolean file) {
+        String clipped = name.length() > MAX_JOLIET_CHARS ? name.substring(0, MAX_JOLIET_CHARS) : name;
+        return file ? clipped + ";1" : clipped;
+    }
+
+    private static byte[] udfName(String name) {
+        byte[] raw = name.getBytes(StandardCharsets.ISO_8859_1);
+        int length = Math.min(254, raw.length);
+        byte[] compressed = new byte[length + 1];
+        compressed[0] = 8;
+        System.arraycopy(raw, 0, compressed, 1, length);
+        return compressed;
+    }
+
+    private static int isoRecordLength(int identifierLength, int systemUseLength) {
+        return even(33 + identifierLength + ((identifierLength & 1) == 0 ? 1 : 0) + systemUseLength);
+    }
+
+    private static int fidLength(int identifierLength) {
+        int length = 38 + identifierLength;
+        return (length + 3) & ~3;
+    }
+
+    private static int packedSectors(List<Integer> lengths) {
+        int used = 0;
+        int sectors = 1;
+        for (int length : lengths) {
+            if (used + length > SECTOR) {
+                sectors++;
+                used = 0;
+            }
+            used += length;
+        }
+        return sectors;
+    }
+
+    /**
+     * Global positions of every region of the image.
+     */
+    private final class Layout {
+        private final List<Special> specials = specials();
+        private final List<Level> levels = new ArrayList<>();
+        private final long totalDirectories;
+        private final long pathTableSize;
+        private final long jolietPathTableSize;
+        private final int terminatorSector;
+        private final long partitionStart;
+        private long pathTableSector;
+        private long jolietPathTableSector;
+        private long sharedDataSector;
+        private long fileDataBase;
+        private final long totalSectors;
+
+        private Layout() {
+            long directories = 0;
+            long files = 0;
+            for (int level = 0; level <= depth; level++) {
+                Level shape = new Level(level, specials);
+                shape.directoryOrdinalBase = directories;
+                shape.fileOrdinalBase = files;
+                directories += shape.count;
+                files += shape.count * filesPerDirectory;
+                levels.add(shape);
+            }
+            totalDirectories = directories;
+            long regularFiles = files;
+
+            long isoTable = 0;
+            long jolietTable = 0;
+            for (Level level : levels) {
+                for (Child child : level.children) {
+                    if (child.directory) {
+                        isoTable += level.count * even(8 + child.isoId.length);
+                        jolietTable += level.count * even(8 + child.jolietId.length);
+                    }
+                }
+            }
+            pathTableSize = isoTable + 10;
+            jolietPathTableSize = jolietTable + 10;
+
+            terminatorSector = joliet ? 18 : 17;
+            partitionStart = udf ? UDF_PARTITION_START : terminatorSector + 1;
+            long next = partitionStart + (udf ? 2 : 0); // file set descriptor and its terminator
+            pathTableSector = next;
+            next += 2L * sectorsFor(pathTableSize);
+            if (joliet) {
+                jolietPathTableSector = next;
+                next += 2L * sectorsFor(jolietPathTableSize);
+            }
+            for (Level level : levels) {
+                level.isoBase = next;
+                next += level.count * level.isoSectorsWithContinuation();
+            }
+            if (joliet) {
+                for (Level level : levels) {
+                    level.jolietBase = next;
+                    next += level.count * level.jolietSectors;
+                }
+            }
+            if (udf) {
+                for (Level level : levels) {
+                    level.udfDirectoryBase = next;
+                    next += level.count * (1 + level.udfDataSectors);
+                }
+                for (Level level : levels) {
+                    level.udfFileEntryBase = next;
+                    next += level.count * level.filesPerDirectoryHere;
+                }
+            }
+            sharedDataSector = next;
+            fileDataBase = next;
+            if (uniqueFileData) {
+                next += regularFiles * sectorsFor(fileSize);
+            } else {
+                next += sectorsFor(fileSize);
+            }
+            for (Special special : specials) {
+                special.firstSector = next;
+                next += (long) special.extentCount() * sectorsFor(special.extentSize);
+            }
+            if (udf) {
+                next = Math.max(next, ANCHOR + 2);
+                next++; // closing anchor
+            }
+            totalSectors = next;
+            if (totalSectors > 0xFFFFFFFFL) {
+                throw new IllegalStateException("Image does not fit in 32 bit sector addresses");
+            }
+        }
+
+        private long isoDirectory(int level, long index) {
+            return levels.get(level).isoBase + index * levels.get(level).isoSectorsWithContinuation();
+        }
+
+        private long jolietDirectory(int level, long index) {
+            return levels.get(level).jolietBase + index * levels.get(level).jolietSectors;
+        }
+
+        private long udfDirectoryEntry(int level, long index) {
+            return levels.get(level).udfDirectoryBase + index * (1 + levels.get(level).udfDataSectors);
+        }
+
+        private long udfFileEntry(int level, long index, int position) {
+            Level shape = levels.get(level);
+            return shape.udfFileEntryBase + index * shape.filesPerDirectoryHere + position;
+        }
+
+        private long fileData(Level level, long index, int fileIndex) {
+            if (fileSize == 0) {
+                return 0;
+            }
+            if (!uniqueFileData) {
+                return sharedDataSector;
+            }
+            return fileDataBase + fileOrdinal(level, index, fileIndex) * sectorsFor(fileSize);
+        }
+
+        private long fileOrdinal(Level level, long index, int fileIndex) {
+            return level.fileOrdinalBase + index * filesPerDirectory + fileIndex;
+        }
+    }
+
+    /**
+     * Writes the regions computed by a Layout.
+     */
+    private final class Writer {
+        private final FileChannel channel;
+        private final Layout layout;
+
+        private Writer(FileChannel channel, Layout layout) {
+            this.channel = channel;
+            this.layout = layout;
+        }
+
+        private void writeAll() throws IOException {
+            // Extending the file first leaves unwritten data, like the huge file, sparse
+            channel.truncate(0);
+            write(layout.totalSectors * SECTOR - 1, new byte[1]);
+
+            write(16L * SECTOR, primaryVolumeDescriptor(false));
+            if (joliet) {
+                write(17L * SECTOR, primaryVolumeDescriptor(true));
+            }
+            write((long) layout.terminatorSector * SECTOR, volumeDescriptorTerminator());
+            if (udf) {
+                write((layout.terminatorSector + 1L) * SECTOR, volumeStructure("BEA01"));
+                write((layout.terminatorSector + 2L) * SECTOR, volumeStructure("NSR03"));
+                write((layout.terminatorSector + 3L) * SECTOR, volumeStructure("TEA01"));
+                writeUdfVolume();
+            }
+            writePathTables(false);
+            if (joliet) {
+                writePathTables(true);
+            }
+            for (Level level : layout.levels) {
+                for (long index = 0; index < level.count; index++) {
+                    writeIsoDirectory(level, index, false);
+                    if (joliet) {
+                        writeIsoDirectory(level, index, true);
+                    }
+                    if (udf) {
+                        writeUdfDirectory(level, index);
+                    }
+                }
+            }
+            writeFileData();
+        }
+
+        private void write(long position, byte[] data) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long at = position;
+            while (buffer.hasRemaining()) {
+                at += channel.write(buffer, at);
+            }
+        }
+
+        // ---------------------------------------------------------------- ISO-9660
+
+        private byte[] primaryVolumeDescriptor(boolean supplementary) {
+            byte[] sector = new byte[SECTOR];
+            sector[0] = (byte) (supplementary ? 2 : 1);
+            putAscii(sector, 1, "CD001");
+            sector[6] = 1;
+            putPadded(sector, 8, 32, "LINUX");
+            putPadded(sector, 40, 32, "SYNTHETIC");
+            putBoth32(sector, 80, layout.totalSectors);
+            if (supplementary) {
+                putAscii(sector, 88, "%/E");
+            }
+            putBoth16(sector, 120, 1);
+            putBoth16(sector, 124, 1);
+            putBoth16(sector, 128, SECTOR);
+            long tableSize = supplementary ? layout.jolietPathTableSize : layout.pathTableSize;
+            long tableSector = supplementary ? layout.jolietPathTableSector : layout.pathTableSector;
+            putBoth32(sector, 132, tableSize);
+            putLittle32(sector, 140, tableSector);
+            putBig32(sector, 148, tableSector + sectorsFor(tableSize));
+            Level root = layout.levels.get(0);
+            long rootExtent = supplementary ? layout.jolietDirectory(0, 0) : layout.isoDirectory(0, 0);
+            int rootSectors = supplementary ? root.jolietSectors : root.isoSectors;
+            byte[] rootRecord = isoRecord(new byte[] {0}, rootExtent, (long) rootSectors * SECTOR, true, false, null);
+            System.arraycopy(rootRecord, 0, sector, 156, rootRecord.length);
+            putPadded(sector, 190, 623, "");
+            for (int dateField = 813; dateField < 881; dateField += 17) {
+                putAscii(sector, dateField, VOLUME_DATE);
+            }
+            sector[881] = 1;
+            return sector;
+        }
+
+        private byte[] volumeDescriptorTerminator() {
+            byte[] sector = new byte[SECTOR];
+            sector[0] = (byte) 0xFF;
+            putAscii(sector, 1, "CD001");
+            sector[6] = 1;
+            return sector;
+        }
+
+        private byte[] volumeStructure(String identifier) {
+            byte[] sector = new byte[SECTOR];
+            putAscii(sector, 1, identifier);
+            sector[6] = 1;
+            return sector;
+        }
+
+        private void writePathTables(boolean supplementary) throws IOException {
+            long size = supplementary ? layout.jolietPathTableSize : layout.pathTableSize;
+            long first = supplementary ? layout.jolietPathTableSector : layout.pathTableSector;
+            int sectors = sectorsFor(size);
+            PathTableWriter little = new PathTableWriter(channel, first * SECTOR, false);
+            PathTableWriter big = new PathTableWriter(channel, (first + sectors) * SECTOR, true);
+            long rootExtent = supplementary ? layout.jolietDirectory(0, 0) : layout.isoDirectory(0, 0);
+            little.add(new byte[] {0}, rootExtent, 1);
+            big.add(new byte[] {0}, rootExtent, 1);
+            // Directories are numbered breadth first, matching the order of the levels
+            for (Level level : layout.levels) {
+                if (level.number == depth) {
+                    break;
+                }
+                for (long index = 0; index < level.count; index++) {
+                    long parentNumber = level.directoryOrdinalBase + index + 1;
+                    for (Child child : level.children) {
+                        if (!child.directory) {
+                            continue;
+                        }
+                        long childIndex = index * directoriesPerDirectory + child.index;
+                        long extent = supplementary
+                                ? layout.jolietDirectory(level.number + 1, childIndex)
+                                : layout.isoDirectory(level.number + 1, childIndex);
+                        byte[] identifier = supplementary ? child.jolietId : child.isoId;
+                        little.add(identifier, extent, parentNumber);
+                        big.add(identifier, extent, parentNumber);
+                    }
+                }
+            }
+            little.flush();
+            big.flush();
+        }
+
+        private void writeIsoDirectory(Level level, long index, boolean supplementary) throws IOException {
+            int sectors = supplementary ? level.jolietSectors : level.isoSectors;
+            long extent = supplementary
+                    ? layout.jolietDirectory(level.number, index)
+                    : layout.isoDirectory(level.number, index);
+            long parentExtent = extent;
+            long parentSize = (long) sectors * SECTOR;
+            if (level.number > 0) {
+                Level parent = layout.levels.get(level.number - 1);
+                long parentIndex = index / directoriesPerDirectory;
+                parentExtent = supplementary
+                        ? layout.jolietDirectory(parent.number, parentIndex)
+                        : layout.isoDirectory(parent.number, parentIndex);
+                parentSize = (long) (supplementary ? parent.jolietSectors : parent.isoSectors) * SECTOR;
+            }
+            boolean withRockRidge = rockRidge && !supplementary;
+            long continuationSector = extent + sectors;
+
+            byte[] data = new byte[sectors * SECTOR];
+            RecordPacker packer = new RecordPacker(data);
+            byte[] dotSystemUse = null;
+            byte[] dotDotSystemUse = null;
+            if (withRockRidge) {
+                dotSystemUse = level.number == 0
+                        ? concat(
+                                sharingProtocol(),
+                                continuation(continuationSector, 0, level.rootContinuation.length),
+                                posix(true),
+                                timestamps())
+                        : concat(posix(true), timestamps());
+                dotDotSystemUse = concat(posix(true), timestamps());
+            }
+            packer.add(isoRecord(new byte[] {0}, extent, (long) sectors * SECTOR, true, false, dotSystemUse));
+            packer.add(isoRecord(new byte[] {1}, parentExtent, parentSize, true, false, dotDotSystemUse));
+
+            byte[] continuationData = withRockRidge && level.ceSectors > 0 ? new byte[level.ceSectors * SECTOR] : null;
+            if (withRockRidge && level.rootContinuation != null) {
+                System.arraycopy(level.rootContinuation, 0, continuationData, 0, level.rootContinuation.length);
+            }
+
+            for (Child child : level.children) {
+                byte[] identifier = supplementary ? child.jolietId : child.isoId;
+                byte[] systemUse = null;
+                if (withRockRidge) {
+                    if (child.nameContinuation != null) {
+                        systemUse = concat(
+                                posix(child.directory),
+                                timestamps(),
+                                continuation(
+                                        continuationSector + child.ceSector,
+                                        child.ceOffset,
+                                        child.nameContinuation.length));
+                        System.arraycopy(
+                                child.nameContinuation,
+                                0,
+                                continuationData,
+                                child.ceSector * SECTOR + child.ceOffset,
+                                child.nameContinuation.length);
+                    } else {
+                        systemUse = concat(posix(child.directory), timestamps(), nameEntries(child.longName));
+                    }
+                }
+                if (child.directory) {
+                    long childIndex = index * directoriesPerDirectory + child.index;
+                    Level below = layout.levels.get(level.number + 1);
+                    long childExtent = supplementary
+                            ? layout.jolietDirectory(below.number, childIndex)
+                            : layout.isoDirectory(below.number, childIndex);
+                    long childSize = (long) (supplementary ? below.jolietSectors : below.isoSectors) * SECTOR;
+                    packer.add(isoRecord(identifier, childExtent, childSize, true, false, systemUse));
+                } else if (child.special == null) {
+                    long dataExtent = layout.fileData(level, index, child.index);
+                    packer.add(isoRecord(identifier, dataExtent, fileSize, false, false, systemUse));
+                } else {
+                    Special special = child.special;
+                    for (int part = 0; part < special.extentCount(); part++) {
+                        boolean more = part < special.extentCount() - 1;
+                        packer.add(isoRecord(
+                                identifier,
+                                special.extentSector(part),
+                                special.extentLength(part),
+                                false,
+                                more,
+                                systemUse));
+                    }
+                }
+            }
+            write(extent * SECTOR, data);
+            if (continuationData != null) {
+                write(continuationSector * SECTOR, continuationData);
+            }
+        }
+
+        private byte[] isoRecord(
+                byte[] identifier, long extent, long length, boolean directory, boolean moreExtents, byte[] systemUse) {
+            int systemUseLength = systemUse == null ? 0 : systemUse.length;
+            byte[] record = new byte[isoRecordLength(identifier.length, systemUseLength)];
+            record[0] = (byte) record.length;
+            putBoth32(record, 2, extent);
+            putBoth32(record, 10, length);
+            System.arraycopy(RECORD_DATE, 0, record, 18, RECORD_DATE.length);
+            record[25] = (byte) ((directory ? 2 : 0) | (moreExtents ? 0x80 : 0));
+            putBoth16(record, 28, 1);
+            record[32] = (byte) identifier.length;
+            System.arraycopy(identifier, 0, record, 33, identifier.length);
+            if (systemUse != null) {
+                int start = 33 + identifier.length + ((identifier.length & 1) == 0 ? 1 : 0);
+                System.arraycopy(systemUse, 0, record, start, systemUse.length);
+            }
+            return record;
+        }
+
+        // ---------------------------------------------------------------- UDF
+
+        private void writeUdfVolume() throws IOException {
+            for (int copy = 0; copy < 2; copy++) {
+                long base = copy == 0 ? MAIN_VDS : RESERVE_VDS;
+                write((base) * SECTOR, udfPrimaryVolumeDescriptor(base));
+                write((base + 1) * SECTOR, implementationUseVolumeDescriptor(base + 1));
+                write((base + 2) * SECTOR, partitionDescriptor(base + 2));
+                write((base + 3) * SECTOR, logicalVolumeDescriptor(base + 3));
+                write((base + 4) * SECTOR, unallocatedSpaceDescriptor(base + 4));
+                write((base + 5) * SECTOR, terminatingDescriptor(base + 5));
+            }
+            write((long) INTEGRITY_SEQUENCE * SECTOR, logicalVolumeIntegrityDescriptor());
+            write((INTEGRITY_SEQUENCE + 1L) * SECTOR, terminatingDescriptor(INTEGRITY_SEQUENCE + 1));
+            write((long) ANCHOR * SECTOR, anchor(ANCHOR));
+            write((layout.totalSectors - 1) * SECTOR, anchor(layout.totalSectors - 1));
+
+            write(layout.partitionStart * SECTOR, fileSetDescriptor());
+            write((layout.partitionStart + 1) * SECTOR, terminatingDescriptor(1));
+        }
+
+        private byte[] anchor(long sector) {
+            byte[] data = new byte[512];
+            putLittle32(data, 16, VDS_SECTORS * SECTOR);
+            putLittle32(data, 20, MAIN_VDS);
+            putLittle32(data, 24, VDS_SECTORS * SECTOR);
+            putLittle32(data, 28, RESERVE_VDS);
+            return tag(data, 2, sector);
+        }
+
+        private byte[] udfPrimaryVolumeDescriptor(long sector) {
+            byte[] data = new byte[512];
+            putDString(data, 24, 32, "SYNTHETIC");
+            putLittle16(data, 56, 1);
+            putLittle16(data, 58, 1);
+            putLittle16(data, 60, 2);
+            putLittle16(data, 62, 3);
+            putLittle32(data, 64, 1);
+            putLittle32(data, 68, 1);
+            putDString(data, 72, 128, "SYNTHETIC_SET");
+            putCharSpec(data, 200);
+            putCharSpec(data, 264);
+            putTimestamp(data, 376);
+            putEntity(data, 388, "*isofilereader synthetic", new byte[0]);
+            return tag(data, 1, sector);
+        }
+
+        private byte[] implementationUseVolumeDescriptor(long sector) {
+            byte[] data = new byte[512];
+            putLittle32(data, 16, 1);
+            putEntity(data, 20, "*UDF LV Info", new byte[] {0x60, 0x02});
+            putCharSpec(data, 52);
+            putDString(data, 116, 128, "SYNTHETIC");
+            return tag(data, 4, sector);
+        }
+
+        private byte[] partitionDescriptor(long sector) {
+            byte[] data = new byte[512];
+            putLittle32(data, 16, 2);
+            putLittle16(data, 20, 1);
+            putLittle16(data, 22, 0);
+            putEntity(data, 24, "+NSR03", new byte[0]);
+            putLittle32(data, 184, 1);
+            putLittle32(data, 188, layout.partitionStart);
+            putLittle32(data, 192, partitionLength());
+            putEntity(data, 196, "*isofilereader synthetic", new byte[0]);
+            return tag(data, 5, sector);
+        }
+
+        private long partitionLength() {
+            return layout.totalSectors - 1 - layout.partitionStart;
+        }
+
+        private byte[] logicalVolumeDescriptor(long sector) {
+            byte[] data = new byte[446];
+            putLittle32(data, 16, 3);
+            putCharSpec(data, 20);
+            putDString(data, 84, 128, "SYNTHETIC");
+            putLittle32(data, 212, SECTOR);
+            putEntity(data, 216, "*OSTA UDF Compliant", new byte[] {0x60, 0x02});
+            // File set descriptor location as a long_ad
+            putLittle32(data, 248, SECTOR);
+            putLittle32(data, 252, 0);
+            putLittle16(data, 256, 0);
+            putLittle32(data, 264, 6);
+            putLittle32(data, 268, 1);
+            putEntity(data, 272, "*isofilereader synthetic", new byte[0]);
+            putLittle32(data, 432, 2 * SECTOR);
+            putLittle32(data, 436, INTEGRITY_SEQUENCE);
+            // Type 1 partition map
+            data[440] = 1;
+            data[441] = 6;
+            putLittle16(data, 442, 1);
+            putLittle16(data, 444, 0);
+            return tag(data, 6, sector);
+        }
+
+        private byte[] unallocatedSpaceDescriptor(long sector) {
+            byte[] data = new byte[24];
+            putLittle32(data, 16, 4);
+            return tag(data, 7, sector);
+        }
+
+        private byte[] terminatingDescriptor(long sector) {
+            return tag(new byte[512], 8, sector);
+        }
+
+        private byte[] logicalVolumeIntegrityDescriptor() {
+            byte[] data = new byte[134];
+            putTimestamp(data, 16);
+            putLittle32(data, 28, 1);
+            // Next unique id, after every entry written
+            putLittle64(data, 40, 16 + totalEntries());
+            putLittle32(data, 72, 1);
+            putLittle32(data, 76, 46);
+            putLittle32(data, 80, 0);
+            putLittle32(data, 84, partitionLength());
+            putEntity(data, 88, "*isofilereader synthetic", new byte[0]);
+            putLittle32(data, 120, getFileCount());
+            putLittle32(data, 124, getDirectoryCount());
+            putLittle16(data, 128, 0x0201);
+            putLittle16(data, 130, 0x0260);
+            putLittle16(data, 132, 0x0260);
+            return tag(data, 9, INTEGRITY_SEQUENCE);
+        }
+
+        private long totalEntries() {
+            return getDirectoryCount() + getFileCount();
+        }
+
+        private byte[] fileSetDescriptor() {
+            byte[] data = new byte[512];
+            putTimestamp(data, 16);
+            putLittle16(data, 28, 3);
+            putLittle16(data, 30, 3);
+            putLittle32(data, 32, 1);
+            putLittle32(data, 36, 1);
+            putCharSpec(data, 48);
+            putDString(data, 112, 128, "SYNTHETIC");
+            putCharSpec(data, 240);
+            putDString(data, 304, 32, "SYNTHETIC");
+            putLongAd(data, 400, SECTOR, relative(layout.udfDirectoryEntry(0, 0)));
+            putEntity(data, 416, "*OSTA UDF Compliant", new byte[] {0x60, 0x02});
+            return tag(data, 256, 0);
+        }
+
+        private long relative(long sector) {
+            return sector - layout.partitionStart;
+        }
+
+        private void writeUdfDirectory(Level level, long index) throws IOException {
+            long entry = layout.udfDirectoryEntry(level.number, index);
+            long parentEntry = level.number == 0
+                    ? entry
+                    : layout.udfDirectoryEntry(level.number - 1, index / directoriesPerDirectory);
+            long uniqueId = 16 + level.directoryOrdinalBase + index;
+            int subdirectories = level.number < depth ? directoriesPerDirectory : 0;
+            write(
+                    entry * SECTOR,
+                    fileEntry(
+                            relative(entry),
+                            relative(parentEntry),
+                            true,
+                            level.udfDataBytes,
+                            new long[] {relative(entry + 1)},
+                            new long[] {level.udfDataBytes},
+                            uniqueId,
+                            1 + subdirectories));
+
+            byte[] fids = new byte[level.udfDataSectors * SECTOR];
+            int offset = 0;
+            offset += fileIdentifier(fids, offset, relative(entry + 1), relative(parentEntry), true, true, null);
+            byte[] fileEntries = new byte[level.filesPerDirectoryHere * SECTOR];
+            int filePosition = 0;
+            for (Child child : level.children) {
+                long dataSector = relative(entry + 1) + offset / SECTOR;
+                if (child.directory) {
+                    long childEntry =
+                            layout.udfDirectoryEntry(level.number + 1, index * directoriesPerDirectory + child.index);
+                    offset += fileIdentifier(
+                            fids, offset, dataSector, relative(childEntry), true, false, udfName(child.longName));
+                    continue;
+                }
+                long fileEntrySector = layout.udfFileEntry(level.number, index, filePosition);
+                offset += fileIdentifier(
+                        fids, offset, dataSector, relative(fileEntrySector), false, false, udfName(child.longName));
+                long[] locations;
+                long[] lengths;
+                long size;
+                if (child.special == null) {
+                    size = fileSize;
+                    long data = layout.fileData(level, index, child.index);
+                    locations = new long[] {data == 0 ? 0 : relative(data)};
+                    lengths = new long[] {fileSize};
+                } else {
+                    Special special = child.special;
+                    size = special.size;
+                    List<long[]> pieces = new ArrayList<>();
+                    for (int part = 0; part < special.extentCount(); part++) {
+                        long start = relative(special.extentSector(part));
+                        long remaining = special.extentLength(part);
+                        while (remaining > 0) {
+                            long piece = Math.min(remaining, MAX_UDF_EXTENT);
+                            pieces.add(new long[] {start, piece});
+                            start += sectorsFor(piece);
+                            remaining -= piece;
+                        }
+                    }
+                    locations = new long[pieces.size()];
+                    lengths = new long[pieces.size()];
+                    for (int i = 0; i < pieces.size(); i++) {
+                        locations[i] = pieces.get(i)[0];
+                        lengths[i] = pieces.get(i)[1];
+                    }
+                }
+                long uniqueFile = 16 + getDirectoryCount() + layout.fileOrdinal(level, index, filePosition);
+                byte[] fe = fileEntry(
+                        relative(fileEntrySector), relative(entry), false, size, locations, lengths, uniqueFile, 1);
+                System.arraycopy(fe, 0, fileEntries, filePosition * SECTOR, fe.length);
+                filePosition++;
+            }
+            write((entry + 1) * SECTOR, fids);
+            write(layout.udfFileEntry(level.number, index, 0) * SECTOR, fileEntries);
+        }
+
+        private byte[] fileEntry(
+                long location,
+                long parentLocation,
+                boolean directory,
+                long informationLength,
+                long[] adLocations,
+                long[] adLengths,
+                long uniqueId,
+                int linkCount) {
+            int adLength = 8 * adLocations.length;
+            byte[] data = new byte[176 + adLength];
+            // ICB tag, strategy 4 with short allocation descriptors
+            putLittle16(data, 20, 4);
+            putLittle16(data, 24, 1);
+            data[27] = (byte) (directory ? 4 : 5);
+            putLittle32(data, 28, parentLocation);
+            putLittle32(data, 36, 0xFFFFFFFFL);
+            putLittle32(data, 40, 0xFFFFFFFFL);
+            putLittle32(data, 44, directory ? 0x14A5L | 0x0842L : 0x14A5L);
+            putLittle16(data, 48, linkCount);
+            putLittle64(data, 56, informationLength);
+            long recorded = 0;
+            for (long length : adLengths) {
+                recorded += sectorsFor(length);
+            }
+            putLittle64(data, 64, recorded);
+            putTimestamp(data, 72);
+            putTimestamp(data, 84);
+            putTimestamp(data, 96);
+            putLittle32(data, 108, 1);
+            putEntity(data, 128, "*isofilereader synthetic", new byte[0]);
+            putLittle64(data, 160, uniqueId);
+            putLittle32(data, 168, 0);
+            putLittle32(data, 172, adLength);
+            for (int i = 0; i < adLocations.length; i++) {
+                putLittle32(data, 176 + 8 * i, adLengths[i]);
+                putLittle32(data, 180 + 8 * i, adLengths[i] == 0 ? 0 : adLocations[i]);
+            }
+            return tag(data, 261, location);
+        }
+
+        private int fileIdentifier(
+                byte[] target,
+                int offset,
+                long tagLocation,
+                long icbLocation,
+                boolean directory,
+                boolean parent,
+                byte[] name) {
+            int nameLength = name == null ? 0 : name.length;
+            byte[] data = new byte[fidLength(nameLength)];
+            putLittle16(data, 16, 1);
+            data[18] = (byte) ((directory ? 2 : 0) | (parent ? 8 : 0));
+            data[19] = (byte) nameLength;
+            putLongAd(data, 20, SECTOR, icbLocation);
+            putLittle16(data, 36, 0);
+            if (name != null) {
+                System.arraycopy(name, 0, data, 38, name.length);
+            }
+            byte[] tagged = tag(data, 257, tagLocation);
+            System.arraycopy(tagged, 0, target, offset, tagged.length);
+            return tagged.length;
+        }
+
+        // ---------------------------------------------------------------- data
+
+        private void writeFileData() throws IOException {
+            if (fileSize > 0) {
+                if (uniqueFileData) {
+                    for (Level level : layout.levels) {
+                        for (long index = 0; index < level.count; index++) {
+                            for (int file = 0; file < filesPerDirectory; file++) {
+                                long ordinal = layout.fileOrdinal(level, index, file);
+                                write(
+                                        layout.fileData(level, index, file) * SECTOR,
+                                        pattern(fileSize, ordinal * fileSize));
+                            }
+                        }
+                    }
+                } else {
+                    write(layout.sharedDataSector * SECTOR, pattern(fileSize, 0));
+                }
+            }
+            for (Special special : layout.specials) {
+                if (!special.written) {
+                    continue;
+                }
+                long written = 0;
+                for (int part = 0; part < special.extentCount(); part++) {
+                    long position = special.extentSector(part) * SECTOR;
+                    long remaining = special.extentLength(part);
+                    while (remaining > 0) {
+                        int chunk = (int) Math.min(1024 * 1024, remaining);
+                        write(position, pattern(chunk, written));
+                        position += chunk;
+                        written += chunk;
+                        remaining -= chunk;
+                    }
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------- Rock Ridge entries
+
+    private static byte[] sharingProtocol() {
+        return new byte[] {'S', 'P', 7, 1, (byte) 0xBE, (byte) 0xEF, 0};
+    }
+
+    private static byte[] extensionReference() {
+        byte[] id = ER_ID.getBytes(StandardCharsets.US_ASCII);
+        byte[] description = ER_DESCRIPTION.getBytes(StandardCharsets.US_ASCII);
+        byte[] source = ER_SOURCE.getBytes(StandardCharsets.US_ASCII);
+        byte[] entry = new byte[8 + id.length + description.length + source.length];
+        entry[0] = 'E';
+        entry[1] = 'R';
+        entry[2] = (byte) entry.length;
+        entry[3] = 1;
+        entry[4] = (byte) id.length;
+        entry[5] = (byte) description.length;
+        entry[6] = (byte) source.length;
+        entry[7] = 1;
+        System.arraycopy(id, 0, entry, 8, id.length);
+        System.arraycopy(description, 0, entry, 8 + id.length, description.length);
+        System.arraycopy(source, 0, entry, 8 + id.length + description.length, source.length);
+        return entry;
+    }
+
+    private static byte[] continuation(long block, int offset, int length) {
+        byte[] entry = new byte[28];
+        entry[0] = 'C';
+        entry[1] = 'E';
+        entry[2] = 28;
+        entry[3] = 1;
+        putBoth32(entry, 4, block);
+        putBoth32(entry, 12, offset);
+        putBoth32(entry, 20, length);
+        return entry;
+    }
+
+    private static byte[] posix(boolean directory) {
+        byte[] entry = new byte[36];
+        entry[0] = 'P';
+        entry[1] = 'X';
+        entry[2] = 36;
+        entry[3] = 1;
+        putBoth32(entry, 4, directory ? 0x41ED : 0x81A4); // drwxr-xr-x and -rw-r--r--
+        putBoth32(entry, 12, directory ? 2 : 1);
+        putBoth32(entry, 20, 0);
+        putBoth32(entry, 28, 0);
+        return entry;
+    }
+
+    private static byte[] timestamps() {
+        byte[] entry = new byte[19];
+        entry[0] = 'T';
+        entry[1] = 'F';
+        entry[2] = 19;
+        entry[3] = 1;
+        entry[4] = 0x06; // modify and access, short form
+        System.arraycopy(RECORD_DATE, 0, entry, 5, RECORD_DATE.length);
+        System.arraycopy(RECORD_DATE, 0, entry, 12, RECORD_DATE.length);
+        return entry;
+    }
+
+    private static byte[] nameEntries(String name) {
+        byte[] raw = name.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> parts = new ArrayList<>();
+        for (int start = 0; start < raw.length || parts.isEmpty(); start += MAX_NM_PART) {
+            int length = Math.min(MAX_NM_PART, raw.length - start);
+            byte[] entry = new byte[5 + length];
+            entry[0] = 'N';
+            entry[1] = 'M';
+            entry[2] = (byte) entry.length;
+            entry[3] = 1;
+            entry[4] = (byte) (start + length < raw.length ? 1 : 0); // CONTINUE flag
+            System.arraycopy(raw, start, entry, 5, length);
+            parts.add(entry);
+        }
+        return concat(parts.toArray(new byte[0][]));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] joined = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, joined, offset, part.length);
+            offset += part.length;
+        }
+        return joined;
+    }
+
+    // -------------------------------------------------------------------- field encoders
+
+    /**
+     * Fill in a descriptor tag for data, which already holds the descriptor body after byte 16.
+     */
+    private static byte[] tag(byte[] data, int identifier, long location) {
+        putLittle16(data, 0, identifier);
+        putLittle16(data, 2, 3);
+        putLittle16(data, 6, 1);
+        int crcLength = data.length - 16;
+        putLittle16(data, 8, crc(data, 16, crcLength));
+        putLittle16(data, 10, crcLength);
+        putLittle32(data, 12, location);
+        int checksum = 0;
+        for (int i = 0; i < 16; i++) {
+            if (i != 4) {
+                checksum += Byte.toUnsignedInt(data[i]);
+            }
+        }
+        data[4] = (byte) checksum;
+        return data;
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ CRC_TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    private static int[] crcTable() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            int value = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 0x8000) != 0 ? (value << 1) ^ 0x1021 : value << 1;
+            }
+            table[i] = value & 0xFFFF;
+        }
+        return table;
+    }
+
+    private static void putTimestamp(byte[] target, int offset) {
+        putLittle16(target, offset, 0x1000); // type 1, UTC
+        putLittle16(target, offset + 2, 2023);
+        target[offset + 4] = 1;
+        target[offset + 5] = 1;
+    }
+
+    private static void putCharSpec(byte[] target, int offset) {
+        putAscii(target, offset + 1, "OSTA Compressed Unicode");
+    }
+
+    private static void putEntity(byte[] target, int offset, String identifier, byte[] suffix) {
+        putAscii(target, offset + 1, identifier);
+        System.arraycopy(suffix, 0, target, offset + 24, suffix.length);
+    }
+
+    private static void putDString(byte[] target, int offset, int fieldLength, String value) {
+        byte[] raw = value.getBytes(StandardCharsets.ISO_8859_1);
+        target[offset] = 8;
+        System.arraycopy(raw, 0, target, offset + 1, raw.length);
+        target[offset + fieldLength - 1] = (byte) (raw.length + 1);
+    }
+
+    private static void putLongAd(byte[] target, int offset, long length, long location) {
+        putLittle32(target, offset, length);
+        putLittle32(target, offset + 4, location);
+        putLittle16(target, offset + 8, 0);
+    }
+
+    private static void putAscii(byte[] target, int offset, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+    }
+
+    private static void putPadded(byte[] target, int offset, int length, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = i < bytes.length ? bytes[i] : (byte) ' ';
+        }
+    }
+
+    private static void putBoth16(byte[] target, int offset, int value) {
+        putLittle16(target, offset, value);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static void putBoth32(byte[] target, int offset, long value) {
+        putLittle32(target, offset, value);
+        putBig32(target, offset + 4, value);
+    }
+
+    private static void putLittle16(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putLittle32(byte[] target, int offset, long value) {
+        for (int i = 0; i < 4; i++) {
+            target[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static void putLittle64(byte[] target, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            target[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static void putBig32(byte[] target, int offset, long value) {
+        for (int i = 0; i < 4; i++) {
+            target[offset + 3 - i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    /**
+     * Packs directory records into sectors, records never cross a sector boundary.
+     */
+    private static final class RecordPacker {
+        private final byte[] target;
+        private int offset = 0;
+
+        private RecordPacker(byte[] target) {
+            this.target = target;
+        }
+
+        private void add(byte[] record) {
+            int used = offset % SECTOR;
+            if (used + record.length > SECTOR) {
+                offset += SECTOR - used;
+            }
+            System.arraycopy(record, 0, target, offset, record.length);
+            offset += record.length;
+        }
+    }
+
+    /**
+     * Streams path table records out through a buffer of a few sectors.
+     */
+    private static final class PathTableWriter {
+        private final FileChannel channel;
+        private final boolean bigEndian;
+        private final byte[] buffer = new byte[SECTOR * 16];
+        private long position;
+        private int used = 0;
+
+        private PathTableWriter(FileChannel channel, long position, boolean bigEndian) {
+            this.channel = channel;
+            this.position = position;
+            this.bigEndian = bigEndian;
+        }
+
+        private void add(byte[] identifier, long extent, long parentNumber) throws IOException {
+            int length = even(8 + identifier.length);
+            if (used + length > buffer.length) {
+                flush();
+            }
+            buffer[used] = (byte) identifier.length;
+            if (bigEndian) {
+                putBig32(buffer, used + 2, extent);
+                buffer[used + 6] = (byte) (parentNumber >>> 8);
+                buffer[used + 7] = (byte) parentNumber;
+            } else {
+                putLittle32(buffer, used + 2, extent);
+                putLittle16(buffer, used + 6, (int) parentNumber);
+            }
+            System.arraycopy(identifier, 0, buffer, used + 8, identifier.length);
+            used += length;
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer pending = ByteBuffer.wrap(buffer, 0, used);
+            while (pending.hasRemaining()) {
+                position += channel.write(pending, position);
+            }
+            Arrays.fill(buffer, 0, used, (byte) 0);
+            used = 0;
+        }
+    }
+}